@@ -0,0 +1,152 @@
+package com.azvtech.monitoring_service.benchmark;
+
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.service.FleetStateService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deduplication hot paths: the record comparisons, the DTO setters the decoder and the legacy
+ * string path use, and one {@link FleetStateService#applyUpdates} cycle over the whole fleet in
+ * which {@code changedPercent} of the vehicles moved.
+ *
+ * @author Fellipe Toledo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DedupBenchmark {
+
+    @Param({"10000"})
+    private int vehicles;
+
+    @Param({"10"})
+    private int changedPercent;
+
+    private GpsDataDTO[] current;
+    private GpsDataDTO[] spare;
+    private GpsDataDTO[] candidates;
+    private String[] latitudes;
+    private String[] longitudes;
+    private final GpsDataDTO scratch = new GpsDataDTO();
+
+    private FleetStateService fleetState;
+    private Map<String, GpsDataDTO> batch;
+    private int changedPerCycle;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        List<GpsDataDTO> fleet = SyntheticFleet.vehicles(vehicles, 42);
+        current = new GpsDataDTO[vehicles];
+        spare = new GpsDataDTO[vehicles];
+        candidates = new GpsDataDTO[vehicles];
+        latitudes = new String[vehicles];
+        longitudes = new String[vehicles];
+        batch = new HashMap<>();
+        for (int i = 0; i < vehicles; i++) {
+            GpsDataDTO data = fleet.get(i);
+            // Todos recentes, para que a expiração não interfira no ciclo medido
+            data.setDatahoraservidor(now);
+            current[i] = data;
+            spare[i] = new GpsDataDTO();
+            candidates[i] = new GpsDataDTO();
+            candidates[i].copyFrom(data);
+            if (i % 2 == 0) {
+                candidates[i].setCoordinates(data.getLatitude() + 0.0001, data.getLongitude());
+                candidates[i].setDatahoraservidor(now + 1000);
+            }
+            latitudes[i] = String.valueOf(data.getLatitude()).replace('.', ',');
+            longitudes[i] = String.valueOf(data.getLongitude()).replace('.', ',');
+            batch.put(data.getOrdem(), data);
+        }
+
+        fleetState = new FleetStateService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fleetState, "staleAfterSeconds", 90L);
+        fleetState.applyUpdates(batch);
+        changedPerCycle = Math.max(1, vehicles * changedPercent / 100);
+    }
+
+    @Benchmark
+    public int isMoreRecentThan() {
+        int newer = 0;
+        for (int i = 0; i < vehicles; i++) {
+            if (candidates[i].isMoreRecentThan(current[i])) {
+                newer++;
+            }
+        }
+        return newer;
+    }
+
+    @Benchmark
+    public int hasChangedFrom() {
+        int changed = 0;
+        for (int i = 0; i < vehicles; i++) {
+            if (candidates[i].hasChangedFrom(current[i])) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    @Benchmark
+    public GpsDataDTO stringCoordinateSetters() {
+        for (int i = 0; i < vehicles; i++) {
+            scratch.setLatitude(latitudes[i]);
+            scratch.setLongitude(longitudes[i]);
+        }
+        return scratch;
+    }
+
+    @Benchmark
+    public GpsDataDTO copyFrom() {
+        for (int i = 0; i < vehicles; i++) {
+            scratch.copyFrom(current[i]);
+        }
+        return scratch;
+    }
+
+    /**
+     * Moves the next slice of vehicles and applies the full batch, as one polling cycle does.
+     * Preparing the slice costs one {@code copyFrom} and one map put per changed vehicle.
+     */
+    @Benchmark
+    public FleetDelta applyUpdates() {
+        long now = System.currentTimeMillis();
+        for (int n = 0; n < changedPerCycle; n++) {
+            int i = cursor;
+            cursor = (cursor + 1) % vehicles;
+
+            // O estado guarda a referência recebida, então cada mudança usa o outro objeto do par
+            GpsDataDTO next = spare[i];
+            next.copyFrom(current[i]);
+            next.setCoordinates(next.getLatitude() + 0.00001, next.getLongitude());
+            next.setDatahoraservidor(now);
+            spare[i] = current[i];
+            current[i] = next;
+            batch.put(next.getOrdem(), next);
+        }
+        return fleetState.applyUpdates(batch);
+    }
+}
@@ -0,0 +1,139 @@
+package com.azvtech.monitoring_service.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.azvtech.monitoring_service.config.metrics.BroadcastMetrics;
+import com.azvtech.monitoring_service.config.metrics.FreshnessMetrics;
+import com.azvtech.monitoring_service.config.metrics.WebSocketMetrics;
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.handler.BinaryMessageEncoder;
+import com.azvtech.monitoring_service.handler.GpsMessageEncoder;
+import com.azvtech.monitoring_service.handler.GpsWebSocketHandler;
+import com.azvtech.monitoring_service.handler.OverflowPolicy;
+import com.azvtech.monitoring_service.service.FleetClusterIndex;
+import com.azvtech.monitoring_service.service.FleetStateService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One broadcast of a delta with {@code changed} vehicles to {@code sessions} connected clients,
+ * measured until every session has been sent every message of it: routing, encoding once per
+ * format and the per-session virtual-thread drains. Sessions are in-memory, so this is the cost
+ * of the fan-out itself without network I/O.
+ *
+ * @author Fellipe Toledo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+
+    private static final int BATCH_SIZE = 10;
+
+    @Param({"100", "1000", "10000"})
+    private int sessions;
+
+    @Param({"100"})
+    private int changed;
+
+    @Param({"false", "true"})
+    private boolean binary;
+
+    private final LongAdder delivered = new LongAdder();
+    private GpsWebSocketHandler handler;
+    private FleetDelta[] deltas;
+    private long messagesPerBroadcast;
+    private long expected;
+    private int next;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        // O handler registra cada conexão e cada broadcast em INFO
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.azvtech")).setLevel(Level.WARN);
+
+        List<GpsDataDTO> fleet = SyntheticFleet.vehicles(changed, 42);
+        FleetStateService fleetState = new FleetStateService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fleetState, "staleAfterSeconds", 90L);
+        Map<String, GpsDataDTO> initial = new HashMap<>();
+        fleet.forEach(data -> initial.put(data.getOrdem(), data));
+        fleetState.applyUpdates(initial);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BroadcastMetrics metrics = new BroadcastMetrics(registry);
+        handler = new GpsWebSocketHandler(fleetState, new FleetClusterIndex(14, 64, registry),
+                new GpsMessageEncoder(metrics), new BinaryMessageEncoder(metrics), metrics,
+                new FreshnessMetrics(registry, false), new WebSocketMetrics(registry));
+        ReflectionTestUtils.setField(handler, "batchSize", BATCH_SIZE);
+        ReflectionTestUtils.setField(handler, "sendQueueCapacity", 16);
+        ReflectionTestUtils.setField(handler, "overflowPolicy", OverflowPolicy.COALESCE_LATEST);
+
+        String protocol = binary ? BinaryMessageEncoder.SUBPROTOCOL : null;
+        for (int i = 0; i < sessions; i++) {
+            handler.afterConnectionEstablished(new BenchmarkSession("s" + i, protocol, delivered));
+        }
+
+        // Dois deltas alternados com as mesmas ids: o dicionário binário já foi enviado no snapshot
+        deltas = new FleetDelta[]{delta(fleet, 0.0001), delta(fleet, 0.0002)};
+        messagesPerBroadcast = (long) sessions * (binary ? 1 : (changed + BATCH_SIZE - 1) / BATCH_SIZE);
+
+        // Espera os snapshots de conexão saírem antes de medir
+        long snapshots = -1;
+        while (snapshots != delivered.sum()) {
+            snapshots = delivered.sum();
+            Thread.sleep(200);
+        }
+        expected = delivered.sum();
+    }
+
+    private static FleetDelta delta(List<GpsDataDTO> fleet, double offset) {
+        List<GpsDataDTO> moved = new ArrayList<>(fleet.size());
+        for (GpsDataDTO data : fleet) {
+            GpsDataDTO copy = new GpsDataDTO();
+            copy.copyFrom(data);
+            copy.setCoordinates(data.getLatitude() + offset, data.getLongitude());
+            moved.add(copy);
+        }
+        return new FleetDelta(moved, List.of());
+    }
+
+    @Benchmark
+    public long broadcast() {
+        handler.broadcastUpdate(deltas[next]);
+        next ^= 1;
+        expected += messagesPerBroadcast;
+        long sent;
+        while ((sent = delivered.sum()) < expected) {
+            // Cede o núcleo às virtual threads que drenam as sessões
+            Thread.yield();
+        }
+        return sent;
+    }
+
+    @TearDown
+    public void tearDown() {
+        handler.shutdown();
+    }
+}
@@ -0,0 +1,137 @@
+package com.azvtech.monitoring_service.benchmark;
+
+import com.azvtech.monitoring_service.service.FeedParseResult;
+import com.azvtech.monitoring_service.service.GpsFeedParser;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest of one upstream response: Jackson databind into the previous DTO shape (string
+ * coordinates replaced and parsed, {@link LocalDateTime} timestamps) against the streaming
+ * decoder of {@link GpsFeedParser}. Run with {@code -prof gc} and divide
+ * {@code gc.alloc.rate.norm} by {@code records} for the bytes allocated per record.
+ *
+ * @author Fellipe Toledo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedIngestBenchmark {
+
+    @Param({"50000"})
+    private int records;
+
+    @Param({"5000"})
+    private int vehicles;
+
+    private byte[] feed;
+    private ObjectReader legacyReader;
+    private ObjectMapper legacyMapper;
+    private GpsFeedParser parser;
+
+    @Setup
+    public void setUp() {
+        feed = SyntheticFleet.feed(records, vehicles, 42);
+
+        legacyMapper = new ObjectMapper();
+        legacyReader = legacyMapper.readerFor(LegacyGpsDataDTO.class);
+        parser = new GpsFeedParser();
+    }
+
+    @Benchmark
+    public Map<String, LegacyGpsDataDTO> databind() throws IOException {
+        Map<String, LegacyGpsDataDTO> latest = new HashMap<>();
+        try (JsonParser jsonParser = legacyMapper.getFactory().createParser(new ByteArrayInputStream(feed))) {
+            jsonParser.nextToken();
+            while (jsonParser.nextToken() == JsonToken.START_OBJECT) {
+                LegacyGpsDataDTO data = legacyReader.readValue(jsonParser);
+                LegacyGpsDataDTO existing = latest.get(data.getOrdem());
+                if (existing == null || data.datahoraservidor.isAfter(existing.datahoraservidor)) {
+                    latest.put(data.getOrdem(), data);
+                }
+            }
+        }
+        return latest;
+    }
+
+    @Benchmark
+    public FeedParseResult streaming() throws IOException {
+        return parser.parseLatestUpdates(new ByteArrayInputStream(feed));
+    }
+
+    /**
+     * The record shape used before ingest moved to primitive timestamps.
+     */
+    public static class LegacyGpsDataDTO {
+
+        private String ordem;
+        private double latitude;
+        private double longitude;
+        private LocalDateTime datahora;
+        private int velocidade;
+        private String linha;
+        private LocalDateTime datahoraenvio;
+        private LocalDateTime datahoraservidor;
+
+        public String getOrdem() {
+            return ordem;
+        }
+
+        public void setOrdem(String ordem) {
+            this.ordem = ordem;
+        }
+
+        public void setLatitude(String latitude) {
+            this.latitude = Double.parseDouble(latitude.replace(",", "."));
+        }
+
+        public void setLongitude(String longitude) {
+            this.longitude = Double.parseDouble(longitude.replace(",", "."));
+        }
+
+        public void setVelocidade(int velocidade) {
+            this.velocidade = velocidade;
+        }
+
+        public void setLinha(String linha) {
+            this.linha = linha;
+        }
+
+        public void setDatahora(long timestamp) {
+            this.datahora = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        }
+
+        public void setDatahoraenvio(long timestamp) {
+            this.datahoraenvio = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        }
+
+        public void setDatahoraservidor(long timestamp) {
+            this.datahoraservidor = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        }
+    }
+}
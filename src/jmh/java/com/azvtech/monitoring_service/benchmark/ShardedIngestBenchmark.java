@@ -0,0 +1,64 @@
+package com.azvtech.monitoring_service.benchmark;
+
+import com.azvtech.monitoring_service.service.FeedParseResult;
+import com.azvtech.monitoring_service.service.GpsFeedParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and per-vehicle reduction of one very large response: the single-threaded streaming
+ * loop against the buffered parse split into {@code shards} ranges. The speedup is bounded by the
+ * cores available to the fork; on a single core this only measures the sharding overhead. The 5M
+ * case needs a ~1.1 GB feed buffer, hence the larger heap.
+ *
+ * @author Fellipe Toledo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ShardedIngestBenchmark {
+
+    @Param({"100000", "1000000", "5000000"})
+    private int records;
+
+    @Param({"1", "2", "4", "8"})
+    private int shards;
+
+    @Param({"10000"})
+    private int vehicles;
+
+    private byte[] feed;
+    private GpsFeedParser parser;
+
+    @Setup
+    public void setUp() {
+        feed = SyntheticFleet.feed(records, vehicles, 42);
+        parser = new GpsFeedParser();
+    }
+
+    @Benchmark
+    public FeedParseResult currentLoop() throws IOException {
+        return parser.parseLatestUpdates(new ByteArrayInputStream(feed));
+    }
+
+    @Benchmark
+    public FeedParseResult sharded() throws IOException {
+        return parser.parseLatestUpdates(feed, shards, data -> false);
+    }
+}
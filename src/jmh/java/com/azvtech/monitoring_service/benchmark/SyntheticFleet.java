@@ -0,0 +1,120 @@
+package com.azvtech.monitoring_service.benchmark;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic fleets and upstream responses for the benchmarks. Vehicles are spread over the
+ * Rio de Janeiro bounding box on a few hundred lines; feeds use the upstream encoding (decimal
+ * comma coordinates, epoch millis as strings) with the records of the last 90 seconds in random
+ * vehicle order, as a polling window returns them.
+ *
+ * @author Fellipe Toledo
+ */
+final class SyntheticFleet {
+
+    static final double MIN_LAT = -23.08, MAX_LAT = -22.75, MIN_LON = -43.79, MAX_LON = -43.10;
+
+    private static final int LINES = 400;
+
+    private SyntheticFleet() {
+    }
+
+    static List<GpsDataDTO> vehicles(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long now = System.currentTimeMillis();
+        List<GpsDataDTO> fleet = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long timestamp = now - random.nextLong(90_000);
+            GpsDataDTO data = new GpsDataDTO();
+            data.setOrdem(ordem(i));
+            data.setLinha(line(random));
+            data.setCoordinates(random.nextDouble(MIN_LAT, MAX_LAT), random.nextDouble(MIN_LON, MAX_LON));
+            data.setVelocidade(random.nextInt(80));
+            data.setDatahora(timestamp - 2000);
+            data.setDatahoraenvio(timestamp - 1000);
+            data.setDatahoraservidor(timestamp);
+            fleet.add(data);
+        }
+        return fleet;
+    }
+
+    /**
+     * One upstream response with {@code records} records spread over {@code vehicles} vehicles.
+     */
+    static byte[] feed(int records, int vehicles, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long now = System.currentTimeMillis();
+        AsciiBuffer json = new AsciiBuffer(records * 230 + 2).append('[');
+        for (int i = 0; i < records; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            long timestamp = now - random.nextLong(90_000);
+            json.append("{\"ordem\":\"").append(ordem(random.nextInt(vehicles)))
+                    .append("\",\"latitude\":\"-22,").append(75000 + random.nextInt(33000))
+                    .append("\",\"longitude\":\"-43,").append(10000 + random.nextInt(69000))
+                    .append("\",\"datahora\":\"").append(timestamp - 2000)
+                    .append("\",\"velocidade\":\"").append(random.nextInt(80))
+                    .append("\",\"linha\":\"").append(line(random))
+                    .append("\",\"datahoraenvio\":\"").append(timestamp - 1000)
+                    .append("\",\"datahoraservidor\":\"").append(timestamp)
+                    .append("\"}");
+        }
+        return json.append(']').toArray();
+    }
+
+    private static String ordem(int index) {
+        return "A" + (10000 + index);
+    }
+
+    private static String line(SplittableRandom random) {
+        return String.valueOf(100 + random.nextInt(LINES));
+    }
+
+    /**
+     * Growable ASCII byte buffer, so gigabyte-sized feeds are never held as a {@code String}.
+     */
+    private static final class AsciiBuffer {
+
+        private byte[] bytes;
+        private int length;
+
+        private AsciiBuffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private AsciiBuffer append(char c) {
+            ensure(1);
+            bytes[length++] = (byte) c;
+            return this;
+        }
+
+        private AsciiBuffer append(String text) {
+            byte[] ascii = text.getBytes(StandardCharsets.US_ASCII);
+            ensure(ascii.length);
+            System.arraycopy(ascii, 0, bytes, length, ascii.length);
+            length += ascii.length;
+            return this;
+        }
+
+        private AsciiBuffer append(long value) {
+            return append(Long.toString(value));
+        }
+
+        private byte[] toArray() {
+            return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.azvtech.monitoring_service.benchmark;
+
+import com.azvtech.monitoring_service.dto.BoundingBox;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.NearbyVehicleDTO;
+import com.azvtech.monitoring_service.service.VehicleSpatialIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grid index queries against a linear scan of the fleet. Vehicles are spread over the
+ * Rio de Janeiro bounding box; queries are centered on random points inside it.
+ *
+ * @author Fellipe Toledo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VehicleSpatialIndexBenchmark {
+
+    @Param({"10000"})
+    private int vehicles;
+
+    @Param({"500"})
+    private double radiusMeters;
+
+    private VehicleSpatialIndex index;
+    private List<GpsDataDTO> fleet;
+    private double[][] queryPoints;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(7);
+        index = new VehicleSpatialIndex(0.01, new SimpleMeterRegistry());
+        fleet = SyntheticFleet.vehicles(vehicles, 42);
+        fleet.forEach(index::update);
+        queryPoints = new double[1024][];
+        for (int i = 0; i < queryPoints.length; i++) {
+            queryPoints[i] = new double[]{random.nextDouble(SyntheticFleet.MIN_LAT, SyntheticFleet.MAX_LAT),
+                    random.nextDouble(SyntheticFleet.MIN_LON, SyntheticFleet.MAX_LON)};
+        }
+    }
+
+    private double[] nextPoint() {
+        next = (next + 1) & (queryPoints.length - 1);
+        return queryPoints[next];
+    }
+
+    @Benchmark
+    public List<NearbyVehicleDTO> gridWithinRadius() {
+        double[] point = nextPoint();
+        return index.findWithinRadius(point[0], point[1], radiusMeters);
+    }
+
+    @Benchmark
+    public List<NearbyVehicleDTO> linearWithinRadius() {
+        double[] point = nextPoint();
+        List<NearbyVehicleDTO> result = new ArrayList<>();
+        for (GpsDataDTO data : fleet) {
+            double distance = distance(point, data);
+            if (distance <= radiusMeters) {
+                result.add(new NearbyVehicleDTO(data, distance));
+            }
+        }
+        result.sort(Comparator.comparingDouble(NearbyVehicleDTO::distanceMeters));
+        return result;
+    }
+
+    @Benchmark
+    public List<NearbyVehicleDTO> gridNearest10() {
+        double[] point = nextPoint();
+        return index.findNearest(point[0], point[1], 10);
+    }
+
+    @Benchmark
+    public List<NearbyVehicleDTO> linearNearest10() {
+        double[] point = nextPoint();
+        PriorityQueue<NearbyVehicleDTO> best = new PriorityQueue<>(
+                Comparator.comparingDouble(NearbyVehicleDTO::distanceMeters).reversed());
+        for (GpsDataDTO data : fleet) {
+            double distance = distance(point, data);
+            if (best.size() < 10) {
+                best.add(new NearbyVehicleDTO(data, distance));
+            } else if (distance < best.peek().distanceMeters()) {
+                best.poll();
+                best.add(new NearbyVehicleDTO(data, distance));
+            }
+        }
+        List<NearbyVehicleDTO> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(NearbyVehicleDTO::distanceMeters));
+        return result;
+    }
+
+    @Benchmark
+    public List<GpsDataDTO> gridBoundingBox() {
+        double[] point = nextPoint();
+        return index.findInBoundingBox(new BoundingBox(point[0], point[1], point[0] + 0.02, point[1] + 0.02));
+    }
+
+    @Benchmark
+    public List<GpsDataDTO> linearBoundingBox() {
+        double[] point = nextPoint();
+        BoundingBox box = new BoundingBox(point[0], point[1], point[0] + 0.02, point[1] + 0.02);
+        List<GpsDataDTO> result = new ArrayList<>();
+        for (GpsDataDTO data : fleet) {
+            if (box.contains(data.getLatitude(), data.getLongitude())) {
+                result.add(data);
+            }
+        }
+        return result;
+    }
+
+    private static double distance(double[] point, GpsDataDTO data) {
+        double x = Math.toRadians(data.getLongitude() - point[1]) * Math.cos(Math.toRadians((point[0] + data.getLatitude()) / 2));
+        double y = Math.toRadians(data.getLatitude() - point[0]);
+        return Math.sqrt(x * x + y * y) * 111_320.0 * 180 / Math.PI;
+    }
+}
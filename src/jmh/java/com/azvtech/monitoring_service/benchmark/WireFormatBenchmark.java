@@ -0,0 +1,70 @@
+package com.azvtech.monitoring_service.benchmark;
+
+import com.azvtech.monitoring_service.config.metrics.BroadcastMetrics;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.handler.BinaryMessageEncoder;
+import com.azvtech.monitoring_service.handler.GpsMessageEncoder;
+import com.azvtech.monitoring_service.handler.OutboundUpdate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode time of one update in the JSON text format against the binary subprotocol. Bytes per
+ * vehicle of each format are printed once during setup.
+ *
+ * @author Fellipe Toledo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"1000"})
+    private int vehicles;
+
+    private List<GpsDataDTO> fleet;
+    private GpsMessageEncoder jsonEncoder;
+    private BinaryMessageEncoder binaryEncoder;
+
+    @Setup
+    public void setUp() throws IOException {
+        fleet = SyntheticFleet.vehicles(vehicles, 42);
+
+        BroadcastMetrics metrics = new BroadcastMetrics(new SimpleMeterRegistry());
+        jsonEncoder = new GpsMessageEncoder(metrics);
+        binaryEncoder = new BinaryMessageEncoder(metrics);
+
+        int jsonBytes = json().getPayloadLength();
+        int binaryBytes = binary().messages().get(0).getPayloadLength();
+        System.out.printf("%nbytes/vehicle: json=%.1f binary=%.1f%n",
+                (double) jsonBytes / vehicles, (double) binaryBytes / vehicles);
+    }
+
+    @Benchmark
+    public TextMessage json() throws IOException {
+        return jsonEncoder.encodeBatch("delta", fleet, List.of(), 1, 1);
+    }
+
+    @Benchmark
+    public OutboundUpdate binary() {
+        return binaryEncoder.encodeUpdate(false, fleet, List.of());
+    }
+}
@@ -0,0 +1,185 @@
+package com.azvtech.monitoring_service.loadtest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opens many JSON clients on {@code /gps-updates} and reports end-to-end freshness: how long after
+ * the upstream server received a position ({@code datahoraservidor}) a client got it in a delta.
+ * Snapshots are counted but not measured, since they replay positions of any age by design.
+ * <p>
+ * Run against the application started with the {@code simulator} profile:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.main=com.azvtech.monitoring_service.loadtest.WebSocketLoadGenerator
+ * -Djmh.args="ws://localhost:8080/gps-updates 2000 120"} (url, clients, seconds).
+ * <p>
+ * The feed and the clients share the JVM's clock, so no skew correction is applied. Timestamps
+ * reach clients with second precision, so percentiles carry up to a second of truncation.
+ *
+ * @author Fellipe Toledo
+ */
+public final class WebSocketLoadGenerator {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final int CONNECT_BATCH = 100;
+    private static final long REPORT_INTERVAL_SECONDS = 10;
+
+    private final ConcurrentHistogram freshness = new ConcurrentHistogram(TimeUnit.MINUTES.toMillis(10), 3);
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder positions = new LongAdder();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+
+    private WebSocketLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create(args.length > 0 ? args[0] : "ws://localhost:8080/gps-updates");
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+        new WebSocketLoadGenerator().run(uri, clients, seconds);
+        System.exit(0);
+    }
+
+    private void run(URI uri, int clients, long seconds) throws InterruptedException {
+        HttpClient httpClient = HttpClient.newHttpClient();
+        List<WebSocket> sockets = new ArrayList<>(clients);
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < clients; i += CONNECT_BATCH) {
+            List<CompletableFuture<WebSocket>> batch = new ArrayList<>();
+            for (int j = i; j < Math.min(clients, i + CONNECT_BATCH); j++) {
+                batch.add(httpClient.newWebSocketBuilder().buildAsync(uri, new Client()));
+            }
+            for (CompletableFuture<WebSocket> future : batch) {
+                try {
+                    sockets.add(future.join());
+                    connected.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                }
+            }
+        }
+        System.out.printf("connected %d clients (%d failed) in %d ms%n", connected.get(), failed.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart));
+
+        Histogram interval = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(Math.min(REPORT_INTERVAL_SECONDS,
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime())))));
+            Histogram total = freshness.copy();
+            if (interval == null) {
+                print("interval", total);
+            } else {
+                Histogram delta = total.copy();
+                delta.subtract(interval);
+                print("interval", delta);
+            }
+            interval = total;
+        }
+
+        System.out.println();
+        print("total", freshness.copy());
+        System.out.printf("deltas=%d snapshots=%d positions=%d connected=%d closed=%d failed=%d%n",
+                deltas.sum(), snapshots.sum(), positions.sum(), connected.get(), closed.get(), failed.get());
+        sockets.forEach(WebSocket::abort);
+    }
+
+    private static void print(String label, Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            System.out.printf("%-8s no delta positions received%n", label);
+            return;
+        }
+        System.out.printf("%-8s freshness ms: p50=%d p90=%d p99=%d p99.9=%d max=%d (n=%d)%n", label,
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue(), histogram.getTotalCount());
+    }
+
+    private void record(String message, long receivedAt) {
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            boolean delta = false;
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                if (field.equals("type")) {
+                    delta = "delta".equals(parser.getText());
+                    (delta ? deltas : snapshots).increment();
+                } else if (field.equals("batch") && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        recordVehicle(parser, delta, receivedAt);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            failed.incrementAndGet();
+        }
+    }
+
+    private void recordVehicle(JsonParser parser, boolean delta, long receivedAt) throws IOException {
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            if (field.equals("datahoraservidor") && delta && parser.currentToken() == JsonToken.VALUE_STRING) {
+                long serverTime = LocalDateTime.parse(parser.getText(), TIMESTAMP)
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                freshness.recordValue(Math.clamp(receivedAt - serverTime, 0, freshness.getHighestTrackableValue()));
+                positions.increment();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private final class Client implements WebSocket.Listener {
+
+        private final StringBuilder partial = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                record(partial.toString(), System.currentTimeMillis());
+                partial.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            closed.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            failed.incrementAndGet();
+        }
+    }
+}
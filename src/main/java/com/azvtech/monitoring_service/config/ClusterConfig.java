@@ -0,0 +1,49 @@
+package com.azvtech.monitoring_service.config;
+
+import com.azvtech.monitoring_service.handler.ReplicationWebSocketHandler;
+import com.azvtech.monitoring_service.service.FileLeaderLease;
+import com.azvtech.monitoring_service.service.LeaderLease;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * @author Fellipe Toledo
+ */
+
+@Configuration
+@ConditionalOnProperty(name = "gps.cluster.enabled", havingValue = "true")
+public class ClusterConfig implements WebSocketConfigurer {
+
+    private final ReplicationWebSocketHandler replicationWebSocketHandler;
+
+    public ClusterConfig(ReplicationWebSocketHandler replicationWebSocketHandler) {
+        this.replicationWebSocketHandler = replicationWebSocketHandler;
+    }
+
+    // Para outro armazenamento (JDBC, Consul...), basta substituir este bean por outra LeaderLease
+    @Bean
+    public LeaderLease leaderLease(@Value("${gps.cluster.lease-file}") String leaseFile,
+                                   @Value("${gps.cluster.node-id}") String nodeId,
+                                   @Value("${gps.cluster.advertised-url}") String advertisedUrl,
+                                   @Value("${gps.cluster.lease-ttl-ms}") long leaseTtlMs,
+                                   @Value("${gps.cluster.renew-interval-ms}") long renewIntervalMs) {
+        if (leaseTtlMs < 2 * renewIntervalMs) {
+            throw new IllegalArgumentException("gps.cluster.lease-ttl-ms must be at least twice renew-interval-ms");
+        }
+        String id = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        return new FileLeaderLease(Path.of(leaseFile), id, advertisedUrl + ReplicationWebSocketHandler.PATH, leaseTtlMs);
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Canal entre nós do cluster: sem origem de navegador
+        registry.addHandler(replicationWebSocketHandler, ReplicationWebSocketHandler.PATH);
+    }
+}
@@ -0,0 +1,27 @@
+package com.azvtech.monitoring_service.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * @author Fellipe Toledo
+ */
+
+@Configuration
+public class UpstreamClientConfig {
+
+    // O HttpClient do JDK mantém as conexões abertas e as reaproveita entre as consultas
+    @Bean(destroyMethod = "close")
+    public HttpClient upstreamHttpClient(@Value("${gps.upstream.connect-timeout-ms}") long connectTimeoutMs,
+                                         @Value("${gps.upstream.http-version}") HttpClient.Version version) {
+        return HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+}
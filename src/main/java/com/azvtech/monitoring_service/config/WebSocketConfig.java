@@ -1,6 +1,8 @@
 package com.azvtech.monitoring_service.config;
 
 import com.azvtech.monitoring_service.handler.GpsWebSocketHandler;
+import com.azvtech.monitoring_service.handler.ReplayWebSocketHandler;
+import com.azvtech.monitoring_service.handler.RouteEventWebSocketHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
@@ -17,9 +19,14 @@ import org.springframework.web.socket.server.standard.ServletServerContainerFact
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final GpsWebSocketHandler webSocketHandler;
+    private final ReplayWebSocketHandler replayWebSocketHandler;
+    private final RouteEventWebSocketHandler routeEventWebSocketHandler;
 
-    public WebSocketConfig(GpsWebSocketHandler webSocketHandler) {
+    public WebSocketConfig(GpsWebSocketHandler webSocketHandler, ReplayWebSocketHandler replayWebSocketHandler,
+                           RouteEventWebSocketHandler routeEventWebSocketHandler) {
         this.webSocketHandler = webSocketHandler;
+        this.replayWebSocketHandler = replayWebSocketHandler;
+        this.routeEventWebSocketHandler = routeEventWebSocketHandler;
     }
 
     @Bean
@@ -32,5 +39,7 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(webSocketHandler, "/gps-updates").setAllowedOrigins("*");
+        registry.addHandler(replayWebSocketHandler, "/gps-replay").setAllowedOrigins("*");
+        registry.addHandler(routeEventWebSocketHandler, "/route-events").setAllowedOrigins("*");
     }
 }
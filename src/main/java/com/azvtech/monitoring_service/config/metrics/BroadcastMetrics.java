@@ -0,0 +1,155 @@
+package com.azvtech.monitoring_service.config.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Throughput and allocation counters for the WebSocket broadcast path. The allocation summary
+ * records how many bytes the broadcasting thread allocated per cycle, which should stay flat as
+ * the number of connected clients grows. Per-frame accounting runs on every session's send
+ * thread, so it goes to striped {@link LongAdder}s and pre-registered meters, never to a registry
+ * lookup.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+public class BroadcastMetrics {
+
+    private final Counter encodedMessagesCounter;
+    private final DistributionSummary encodedBytesSummary;
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final Timer sendLatencyTimer;
+    private final Counter cachedSnapshotsCounter;
+    private final Counter encodedSnapshotsCounter;
+    private final Map<String, Counter> droppedCounters = new ConcurrentHashMap<>();
+    private final DistributionSummary cycleAllocationSummary;
+    private final com.sun.management.ThreadMXBean allocationBean;
+    private final DistributionSummary queueDepthSummary;
+    private final MeterRegistry meterRegistry;
+
+    public BroadcastMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+
+        encodedMessagesCounter = Counter.builder("websocket.broadcast.encoded.messages")
+                .description("Mensagens serializadas (uma vez por batch, independente do número de clientes)")
+                .register(meterRegistry);
+
+        encodedBytesSummary = DistributionSummary.builder("websocket.broadcast.encoded.size")
+                .description("Tamanho em bytes UTF-8 de cada batch serializado")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("websocket.broadcast.messages.sent", messagesSent, LongAdder::sum)
+                .description("Mensagens entregues às sessões WebSocket")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("websocket.broadcast.bytes.sent", bytesSent, LongAdder::sum)
+                .description("Bytes entregues às sessões WebSocket")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("websocket.send.failures", sendFailures, LongAdder::sum)
+                .description("Envios a sessões WebSocket que falharam e encerraram a sessão")
+                .register(meterRegistry);
+
+        sendLatencyTimer = Timer.builder("websocket.send.latency")
+                .description("Tempo de escrita de cada frame no socket de uma sessão")
+                .publishPercentileHistogram(true)
+                .register(meterRegistry);
+
+        cachedSnapshotsCounter = snapshotCounter("cache");
+        encodedSnapshotsCounter = snapshotCounter("encoded");
+
+        cycleAllocationSummary = DistributionSummary.builder("websocket.broadcast.cycle.allocated")
+                .description("Bytes alocados pela thread de broadcast em cada ciclo")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        // Profundidade da fila de cada sessão, amostrada a cada enfileiramento (sem tag por sessão)
+        queueDepthSummary = DistributionSummary.builder("websocket.outbox.queue.depth")
+                .description("Atualizações pendentes na fila de envio de uma sessão")
+                .baseUnit("updates")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        allocationBean = threadBean instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled() ? bean : null;
+    }
+
+    public void messageEncoded(int bytes) {
+        encodedMessagesCounter.increment();
+        encodedBytesSummary.record(bytes);
+    }
+
+    public void messageSent(int bytes, long sendNanos) {
+        messagesSent.increment();
+        bytesSent.add(bytes);
+        sendLatencyTimer.record(sendNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void sendFailed() {
+        sendFailures.increment();
+    }
+
+    public void queueDepth(int depth) {
+        queueDepthSummary.record(depth);
+    }
+
+    public void updatesDropped(String policy, int count) {
+        droppedCounters.computeIfAbsent(policy, name -> Counter.builder("websocket.outbox.dropped")
+                        .description("Atualizações descartadas por filas de envio cheias")
+                        .tag("policy", name.toLowerCase())
+                        .register(meterRegistry))
+                .increment(count);
+    }
+
+    /**
+     * Counts a snapshot queued for a client, either reused from the snapshot cache or encoded.
+     */
+    public void snapshotServed(boolean cached) {
+        (cached ? cachedSnapshotsCounter : encodedSnapshotsCounter).increment();
+    }
+
+    public void registerQueueBacklog(Supplier<Number> backlog) {
+        Gauge.builder("websocket.outbox.backlog", backlog)
+                .description("Total de atualizações pendentes em todas as filas de envio")
+                .baseUnit("updates")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or {@code -1} when the JVM cannot tell.
+     */
+    public long currentThreadAllocatedBytes() {
+        return allocationBean != null ? allocationBean.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    public void cycleCompleted(long allocatedBytesAtStart) {
+        if (allocatedBytesAtStart >= 0) {
+            cycleAllocationSummary.record(currentThreadAllocatedBytes() - allocatedBytesAtStart);
+        }
+    }
+
+    private Counter snapshotCounter(String source) {
+        return Counter.builder("websocket.snapshot.served")
+                .description("Snapshots enviados a clientes, reaproveitados do cache ou serializados")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,171 @@
+package com.azvtech.monitoring_service.config.metrics;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How stale a position is at each hop between the vehicle and a client, published as
+ * {@code gps.freshness} percentile timers tagged by stage:
+ * <ul>
+ *     <li>{@code device}: GPS fix ({@code datahora}) to transmission ({@code datahoraenvio})</li>
+ *     <li>{@code upstream}: transmission to arrival at the upstream server ({@code datahoraservidor})</li>
+ *     <li>{@code ingest}: upstream arrival to the position entering the fleet state</li>
+ *     <li>{@code serialization}: encoding one update for a subscription group</li>
+ *     <li>{@code send}: encoded update to its last frame written to a session</li>
+ *     <li>{@code delivered}: upstream arrival of the freshest position in an update to that write</li>
+ * </ul>
+ * The three position stages are also published per line as {@code gps.freshness.line}, with
+ * client-side percentiles only, so a few hundred lines do not multiply the histogram buckets.
+ * Negative hops (device clocks ahead of the server) are recorded as zero and counted.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+public class FreshnessMetrics {
+
+    // Posições podem chegar com minutos de atraso; o padrão de 30 s cortaria a cauda
+    private static final Duration MAX_POSITION_AGE = Duration.ofMinutes(10);
+
+    private final MeterRegistry meterRegistry;
+    private final boolean perLine;
+    private final Timer deviceTimer;
+    private final Timer upstreamTimer;
+    private final Timer ingestTimer;
+    private final Timer serializationTimer;
+    private final Timer sendTimer;
+    private final Timer deliveredTimer;
+    private final Counter deviceSkewCounter;
+    private final Counter upstreamSkewCounter;
+    private final Counter ingestSkewCounter;
+    private final Map<String, LineTimers> lineTimers = new ConcurrentHashMap<>();
+
+    public FreshnessMetrics(MeterRegistry meterRegistry,
+                            @Value("${gps.freshness.per-line:true}") boolean perLine) {
+        this.meterRegistry = meterRegistry;
+        this.perLine = perLine;
+
+        deviceTimer = positionTimer("device", "Atraso entre o fix do GPS e o envio pelo dispositivo");
+        upstreamTimer = positionTimer("upstream", "Atraso entre o envio pelo dispositivo e a chegada ao servidor da API");
+        ingestTimer = positionTimer("ingest", "Atraso entre a chegada ao servidor da API e a ingestão no estado da frota");
+        deliveredTimer = positionTimer("delivered",
+                "Idade da posição mais recente de uma atualização quando entregue a uma sessão");
+
+        serializationTimer = Timer.builder("gps.freshness")
+                .description("Tempo de serialização de uma atualização para um grupo de assinaturas")
+                .tag("stage", "serialization")
+                .publishPercentileHistogram(true)
+                .register(meterRegistry);
+
+        sendTimer = Timer.builder("gps.freshness")
+                .description("Tempo entre a serialização de uma atualização e o envio do último frame a uma sessão")
+                .tag("stage", "send")
+                .publishPercentileHistogram(true)
+                .maximumExpectedValue(MAX_POSITION_AGE)
+                .register(meterRegistry);
+
+        deviceSkewCounter = skewCounter("device");
+        upstreamSkewCounter = skewCounter("upstream");
+        ingestSkewCounter = skewCounter("ingest");
+    }
+
+    /**
+     * Records the position stages of the vehicles that changed in one cycle.
+     */
+    public void positionsIngested(Collection<GpsDataDTO> changed, long ingestedAtMillis) {
+        for (GpsDataDTO data : changed) {
+            LineTimers line = perLine && data.getLinha() != null
+                    ? lineTimers.computeIfAbsent(data.getLinha(), LineTimers::new) : null;
+            long datahora = data.getDatahoraMillis();
+            long envio = data.getDatahoraenvioMillis();
+            long servidor = data.getDatahoraservidorMillis();
+
+            if (datahora != GpsDataDTO.NO_TIMESTAMP && envio != GpsDataDTO.NO_TIMESTAMP) {
+                record(deviceTimer, line == null ? null : line.device, deviceSkewCounter, envio - datahora);
+            }
+            if (envio != GpsDataDTO.NO_TIMESTAMP && servidor != GpsDataDTO.NO_TIMESTAMP) {
+                record(upstreamTimer, line == null ? null : line.upstream, upstreamSkewCounter, servidor - envio);
+            }
+            if (servidor != GpsDataDTO.NO_TIMESTAMP) {
+                record(ingestTimer, line == null ? null : line.ingest, ingestSkewCounter, ingestedAtMillis - servidor);
+            }
+        }
+    }
+
+    public void updateSerialized(long startNanos) {
+        serializationTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the last frame of an update written to a session. {@code newestPositionMillis} is
+     * {@link GpsDataDTO#NO_TIMESTAMP} for updates that carry no positions.
+     */
+    public void updateSent(long encodedAtNanos, long newestPositionMillis) {
+        sendTimer.record(System.nanoTime() - encodedAtNanos, TimeUnit.NANOSECONDS);
+        if (newestPositionMillis != GpsDataDTO.NO_TIMESTAMP) {
+            deliveredTimer.record(Math.max(0, System.currentTimeMillis() - newestPositionMillis), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void record(Timer stage, Timer line, Counter skew, long millis) {
+        if (millis < 0) {
+            skew.increment();
+            millis = 0;
+        }
+        stage.record(millis, TimeUnit.MILLISECONDS);
+        if (line != null) {
+            line.record(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Timer positionTimer(String stage, String description) {
+        return Timer.builder("gps.freshness")
+                .description(description)
+                .tag("stage", stage)
+                .publishPercentileHistogram(true)
+                .maximumExpectedValue(MAX_POSITION_AGE)
+                .register(meterRegistry);
+    }
+
+    private Counter skewCounter(String stage) {
+        return Counter.builder("gps.freshness.clock.skew")
+                .description("Registros com horário posterior ao da etapa seguinte, registrados como atraso zero")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Per-line timers of the position stages, created the first time a line is seen.
+     */
+    private final class LineTimers {
+
+        private final Timer device;
+        private final Timer upstream;
+        private final Timer ingest;
+
+        private LineTimers(String linha) {
+            device = lineTimer("device", linha);
+            upstream = lineTimer("upstream", linha);
+            ingest = lineTimer("ingest", linha);
+        }
+
+        private Timer lineTimer(String stage, String linha) {
+            return Timer.builder("gps.freshness.line")
+                    .description("Atraso de cada etapa das posições, por linha")
+                    .tag("stage", stage)
+                    .tag("linha", linha)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .percentilePrecision(1)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.azvtech.monitoring_service.config.metrics;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.service.FleetStateService;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * {@code /actuator/stalevehicles}: the tracked vehicles whose last position is the oldest, i.e.
+ * the ones clients currently see with the most outdated data, oldest first.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+@Endpoint(id = "stalevehicles")
+public class StaleVehiclesEndpoint {
+
+    private static final Comparator<GpsDataDTO> NEWEST_FIRST =
+            Comparator.comparingLong(GpsDataDTO::getDatahoraservidorMillis).reversed();
+
+    private final FleetStateService fleetStateService;
+    private final int maxLimit;
+
+    public StaleVehiclesEndpoint(FleetStateService fleetStateService,
+                                 @Value("${gps.freshness.stale-vehicles-limit:50}") int maxLimit) {
+        this.fleetStateService = fleetStateService;
+        this.maxLimit = maxLimit;
+    }
+
+    @ReadOperation
+    public List<StaleVehicle> staleVehicles(@Nullable Integer limit) {
+        int size = Math.clamp(limit == null ? maxLimit : limit, 1, maxLimit);
+        long now = System.currentTimeMillis();
+
+        // Heap com os N mais antigos: o mais novo entre eles fica no topo e sai primeiro
+        PriorityQueue<GpsDataDTO> oldest = new PriorityQueue<>(size + 1, NEWEST_FIRST);
+        for (GpsDataDTO data : fleetStateService.snapshot()) {
+            oldest.add(data);
+            if (oldest.size() > size) {
+                oldest.poll();
+            }
+        }
+
+        List<StaleVehicle> result = new ArrayList<>(oldest.size());
+        while (!oldest.isEmpty()) {
+            GpsDataDTO data = oldest.poll();
+            result.add(new StaleVehicle(data.getOrdem(), data.getLinha(), data.getDatahoraservidor(),
+                    (now - data.getDatahoraservidorMillis()) / 1000));
+        }
+        return result.reversed();
+    }
+
+    public record StaleVehicle(
+            String ordem,
+            String linha,
+            @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
+            LocalDateTime datahoraservidor,
+            long ageSeconds) {
+    }
+}
@@ -1,61 +1,94 @@
 package com.azvtech.monitoring_service.config.metrics;
 
-import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Lifecycle of the WebSocket sessions: how many are open, how many opened and closed, and how
+ * long each lasted, recorded when it closes and tagged by a small set of close statuses. Nothing
+ * is tagged per session, and the counters are striped {@link LongAdder}s read only at scrape
+ * time, so tens of thousands of sessions cost neither series nor contention.
+ *
+ * @author Fellipe Toledo
+ */
 @Component
 public class WebSocketMetrics {
 
-    private final AtomicInteger activeConnections = new AtomicInteger(0);
-    private final Counter establishedCounter;
-    private final Counter closedCounter;
-    private final Timer connectionDurationTimer;
+    private final LongAdder established = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final Timer normalLifetime;
+    private final Timer goingAwayLifetime;
+    private final Timer inactiveLifetime;
+    private final Timer overloadLifetime;
+    private final Timer errorLifetime;
+    private final Timer otherLifetime;
 
     public WebSocketMetrics(MeterRegistry meterRegistry) {
         // Gauge para conexões ativas
-        Gauge.builder("websocket.connections.active", activeConnections, AtomicInteger::get)
+        Gauge.builder("websocket.connections.active", this, metrics -> metrics.established.sum() - metrics.closed.sum())
                 .description("Número atual de conexões WebSocket ativas")
                 .register(meterRegistry);
 
         // Contadores
-        establishedCounter = Counter.builder("websocket.connections.established.total")
+        FunctionCounter.builder("websocket.connections.established.total", established, LongAdder::sum)
                 .description("Total de conexões WebSocket estabelecidas")
                 .register(meterRegistry);
 
-        closedCounter = Counter.builder("websocket.connections.closed.total")
+        FunctionCounter.builder("websocket.connections.closed.total", closed, LongAdder::sum)
                 .description("Total de conexões WebSocket encerradas")
                 .register(meterRegistry);
 
-        // Timer para duração das conexões
-        connectionDurationTimer = Timer.builder("websocket.connection.duration")
-                .description("Duração das conexões WebSocket")
-                .register(meterRegistry);
+        // Duração das conexões, registrada no encerramento
+        normalLifetime = lifetimeTimer(meterRegistry, "normal");
+        goingAwayLifetime = lifetimeTimer(meterRegistry, "going_away");
+        inactiveLifetime = lifetimeTimer(meterRegistry, "inactive");
+        overloadLifetime = lifetimeTimer(meterRegistry, "overload");
+        errorLifetime = lifetimeTimer(meterRegistry, "error");
+        otherLifetime = lifetimeTimer(meterRegistry, "other");
     }
 
-    public Timer.Sample startConnectionTimer() {
-        return Timer.start();
+    public void connectionEstablished() {
+        established.increment();
     }
 
-    public void connectionEstablished(Timer.Sample sample) {
-        activeConnections.incrementAndGet();
-        establishedCounter.increment();
-        if (sample != null) {
-            sample.stop(connectionDurationTimer);
-        }
+    /**
+     * Records a closed session; {@code status} is {@code null} when it ended on a transport error.
+     */
+    public void connectionClosed(long openedAtNanos, CloseStatus status) {
+        closed.increment();
+        lifetimeTimer(status).record(System.nanoTime() - openedAtNanos, TimeUnit.NANOSECONDS);
     }
 
-    public void connectionEstablished() {
-        activeConnections.incrementAndGet();
-        establishedCounter.increment();
+    private Timer lifetimeTimer(CloseStatus status) {
+        if (status == null) {
+            return errorLifetime;
+        }
+        // Códigos de CloseStatus: 4500 = SESSION_NOT_RELIABLE (inatividade), 1013 = SERVICE_OVERLOAD (fila cheia)
+        return switch (status.getCode()) {
+            case 1000 -> normalLifetime;
+            case 1001 -> goingAwayLifetime;
+            case 4500 -> inactiveLifetime;
+            case 1013 -> overloadLifetime;
+            case 1006, 1011 -> errorLifetime;
+            default -> otherLifetime;
+        };
     }
 
-    public void connectionClosed() {
-        activeConnections.decrementAndGet();
-        closedCounter.increment();
+    private static Timer lifetimeTimer(MeterRegistry meterRegistry, String status) {
+        return Timer.builder("websocket.connection.duration")
+                .description("Duração das conexões WebSocket, registrada no encerramento")
+                .tag("status", status)
+                .publishPercentileHistogram(true)
+                .minimumExpectedValue(Duration.ofSeconds(1))
+                .maximumExpectedValue(Duration.ofHours(12))
+                .register(meterRegistry);
     }
 }
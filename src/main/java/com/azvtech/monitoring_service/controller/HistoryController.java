@@ -0,0 +1,54 @@
+package com.azvtech.monitoring_service.controller;
+
+import com.azvtech.monitoring_service.dto.VehicleTrailDTO;
+import com.azvtech.monitoring_service.service.PositionHistoryStore;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Trails and past positions, answered from {@link PositionHistoryStore}.
+ *
+ * @author Fellipe Toledo
+ */
+@RestController
+@RequestMapping("/history")
+public class HistoryController {
+
+    // Limita o tamanho da resposta com a frota inteira
+    private static final Duration MAX_WINDOW = Duration.ofMinutes(15);
+
+    private final PositionHistoryStore historyStore;
+
+    public HistoryController(PositionHistoryStore historyStore) {
+        this.historyStore = historyStore;
+    }
+
+    @GetMapping("/vehicles/{ordem}")
+    public VehicleTrailDTO trail(@PathVariable String ordem,
+                                 @RequestParam(required = false)
+                                 @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+        return historyStore.trail(ordem, since == null ? Long.MIN_VALUE : toMillis(since));
+    }
+
+    @GetMapping("/positions")
+    public List<VehicleTrailDTO> positions(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                           @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (!to.isAfter(from) || Duration.between(from, to).compareTo(MAX_WINDOW) > 0) {
+            throw new IllegalArgumentException("to must be after from and the window at most " + MAX_WINDOW.toMinutes() + " minutes");
+        }
+        return historyStore.positionsBetween(toMillis(from), toMillis(to));
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
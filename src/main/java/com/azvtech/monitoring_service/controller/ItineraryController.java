@@ -0,0 +1,75 @@
+package com.azvtech.monitoring_service.controller;
+
+import com.azvtech.monitoring_service.service.ItineraryService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Route geometry of one line, simplified for the map's zoom level, as a GeoJSON
+ * FeatureCollection. Responses come pre-compressed from {@link ItineraryService} and carry an
+ * ETag, so a dashboard that already has the line gets a 304 without a body.
+ *
+ * @author Fellipe Toledo
+ */
+@RestController
+@RequestMapping("/itineraries")
+public class ItineraryController {
+
+    private static final int DEFAULT_ZOOM = 13;
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(Duration.ofHours(1)).cachePublic();
+
+    private final ItineraryService itineraryService;
+
+    public ItineraryController(ItineraryService itineraryService) {
+        this.itineraryService = itineraryService;
+    }
+
+    @GetMapping("/{linha}")
+    public ResponseEntity<byte[]> itinerary(@PathVariable String linha,
+                                            @RequestParam(defaultValue = "" + DEFAULT_ZOOM) int zoom,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                            String acceptEncoding) {
+        if (!itineraryService.isLoaded()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return itineraryService.geometry(linha, zoom)
+                .map(geometry -> {
+                    boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+                    // Com ETag na resposta, o Spring responde 304 quando o If-None-Match confere
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .eTag(geometry.etag())
+                            .cacheControl(CACHE_CONTROL)
+                            .varyBy(HttpHeaders.ACCEPT_ENCODING);
+                    if (gzip) {
+                        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(geometry.gzip());
+                    }
+                    return response.body(gunzip(geometry.gzip()));
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Raro: navegadores sempre aceitam gzip
+    private static byte[] gunzip(byte[] gzip) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.azvtech.monitoring_service.controller;
+
+import com.azvtech.monitoring_service.dto.LineStatsDTO;
+import com.azvtech.monitoring_service.service.LineAnalyticsService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Per-line speed, headway and bunching aggregates, answered from {@link LineAnalyticsService}.
+ *
+ * @author Fellipe Toledo
+ */
+@RestController
+@RequestMapping("/lines")
+public class LineStatsController {
+
+    private final LineAnalyticsService lineAnalyticsService;
+
+    public LineStatsController(LineAnalyticsService lineAnalyticsService) {
+        this.lineAnalyticsService = lineAnalyticsService;
+    }
+
+    /**
+     * Summary of every active line, or only of those with bunched buses when {@code bunched=true}.
+     */
+    @GetMapping("/stats")
+    public List<LineStatsDTO> stats(@RequestParam(defaultValue = "false") boolean bunched) {
+        return lineAnalyticsService.stats().stream()
+                .filter(line -> !bunched || line.bunchedPairs() > 0)
+                .map(LineStatsDTO::summary)
+                .toList();
+    }
+
+    /**
+     * One line's aggregates, including which pairs are bunched.
+     */
+    @GetMapping("/stats/{linha}")
+    public ResponseEntity<LineStatsDTO> stats(@PathVariable String linha) {
+        return ResponseEntity.of(lineAnalyticsService.stats(linha));
+    }
+}
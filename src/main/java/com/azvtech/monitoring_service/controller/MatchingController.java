@@ -0,0 +1,59 @@
+package com.azvtech.monitoring_service.controller;
+
+import com.azvtech.monitoring_service.dto.RouteEventDTO;
+import com.azvtech.monitoring_service.dto.RouteMatchDTO;
+import com.azvtech.monitoring_service.service.MapMatchingService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Itinerary matching of the fleet and the route events it raised, answered from
+ * {@link MapMatchingService}. The same events are pushed on the {@code /route-events} WebSocket.
+ *
+ * @author Fellipe Toledo
+ */
+@RestController
+@RequestMapping("/matching")
+public class MatchingController {
+
+    private static final int MAX_EVENTS = 1000;
+
+    private final MapMatchingService mapMatchingService;
+
+    public MatchingController(MapMatchingService mapMatchingService) {
+        this.mapMatchingService = mapMatchingService;
+    }
+
+    @GetMapping("/vehicles/{ordem}")
+    public ResponseEntity<RouteMatchDTO> vehicle(@PathVariable String ordem) {
+        return ResponseEntity.of(mapMatchingService.match(ordem));
+    }
+
+    @GetMapping("/off-route")
+    public List<RouteMatchDTO> offRoute() {
+        return mapMatchingService.offRoute();
+    }
+
+    @GetMapping("/stopped")
+    public List<RouteMatchDTO> stopped() {
+        return mapMatchingService.stopped();
+    }
+
+    /**
+     * Events after sequence {@code since}, oldest first; pass the last sequence received to resume.
+     */
+    @GetMapping("/events")
+    public List<RouteEventDTO> events(@RequestParam(defaultValue = "0") long since,
+                                      @RequestParam(defaultValue = "" + MAX_EVENTS) int limit) {
+        if (limit <= 0 || limit > MAX_EVENTS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_EVENTS);
+        }
+        return mapMatchingService.eventsSince(since, limit);
+    }
+}
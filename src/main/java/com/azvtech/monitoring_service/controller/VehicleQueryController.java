@@ -0,0 +1,94 @@
+package com.azvtech.monitoring_service.controller;
+
+import com.azvtech.monitoring_service.dto.BoundingBox;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.MapClusterDTO;
+import com.azvtech.monitoring_service.dto.NearbyVehicleDTO;
+import com.azvtech.monitoring_service.service.FleetClusterIndex;
+import com.azvtech.monitoring_service.service.VehicleSpatialIndex;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Proximity queries over the live fleet, answered from {@link VehicleSpatialIndex}, and the
+ * map clusters of {@link FleetClusterIndex}.
+ *
+ * @author Fellipe Toledo
+ */
+@RestController
+@RequestMapping("/vehicles")
+public class VehicleQueryController {
+
+    private static final double MAX_RADIUS_METERS = 50_000;
+    private static final int MAX_NEAREST = 500;
+
+    private final VehicleSpatialIndex spatialIndex;
+    private final FleetClusterIndex clusterIndex;
+
+    public VehicleQueryController(VehicleSpatialIndex spatialIndex, FleetClusterIndex clusterIndex) {
+        this.spatialIndex = spatialIndex;
+        this.clusterIndex = clusterIndex;
+    }
+
+    @GetMapping("/within")
+    public List<NearbyVehicleDTO> within(@RequestParam double lat, @RequestParam double lon,
+                                         @RequestParam double radius) {
+        if (!(radius > 0 && radius <= MAX_RADIUS_METERS)) {
+            throw new IllegalArgumentException("radius must be between 0 and " + MAX_RADIUS_METERS + " meters");
+        }
+        requireCoordinates(lat, lon);
+        return spatialIndex.findWithinRadius(lat, lon, radius);
+    }
+
+    @GetMapping("/nearest")
+    public List<NearbyVehicleDTO> nearest(@RequestParam double lat, @RequestParam double lon,
+                                          @RequestParam(defaultValue = "10") int k) {
+        if (k <= 0 || k > MAX_NEAREST) {
+            throw new IllegalArgumentException("k must be between 1 and " + MAX_NEAREST);
+        }
+        requireCoordinates(lat, lon);
+        return spatialIndex.findNearest(lat, lon, k);
+    }
+
+    @GetMapping("/bbox")
+    public List<GpsDataDTO> boundingBox(@RequestParam double minLat, @RequestParam double minLon,
+                                        @RequestParam double maxLat, @RequestParam double maxLon) {
+        return spatialIndex.findInBoundingBox(toBoundingBox(minLat, minLon, maxLat, maxLon));
+    }
+
+    /**
+     * Vehicle clusters at {@code zoom}, inside the box when all four bounds are given.
+     */
+    @GetMapping("/clusters")
+    public List<MapClusterDTO> clusters(@RequestParam int zoom,
+                                        @RequestParam(required = false) Double minLat,
+                                        @RequestParam(required = false) Double minLon,
+                                        @RequestParam(required = false) Double maxLat,
+                                        @RequestParam(required = false) Double maxLon) {
+        BoundingBox box = null;
+        if (minLat != null || minLon != null || maxLat != null || maxLon != null) {
+            if (minLat == null || minLon == null || maxLat == null || maxLon == null) {
+                throw new IllegalArgumentException("minLat, minLon, maxLat and maxLon must be given together");
+            }
+            box = toBoundingBox(minLat, minLon, maxLat, maxLon);
+        }
+        return clusterIndex.clusters(zoom, box);
+    }
+
+    private static BoundingBox toBoundingBox(double minLat, double minLon, double maxLat, double maxLon) {
+        requireCoordinates(minLat, minLon);
+        requireCoordinates(maxLat, maxLon);
+        return new BoundingBox(minLat, minLon, maxLat, maxLon);
+    }
+
+    private static void requireCoordinates(double lat, double lon) {
+        // Também rejeita NaN e infinitos
+        if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+            throw new IllegalArgumentException("lat must be between -90 and 90 and lon between -180 and 180");
+        }
+    }
+}
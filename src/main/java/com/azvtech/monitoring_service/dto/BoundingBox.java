@@ -0,0 +1,19 @@
+package com.azvtech.monitoring_service.dto;
+
+/**
+ * Lat/lon rectangle, used for viewport subscriptions and area queries.
+ *
+ * @author Fellipe Toledo
+ */
+public record BoundingBox(double minLat, double minLon, double maxLat, double maxLon) {
+
+    public BoundingBox {
+        if (minLat > maxLat || minLon > maxLon) {
+            throw new IllegalArgumentException("Invalid bounding box: min must not exceed max");
+        }
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= minLat && latitude <= maxLat && longitude >= minLon && longitude <= maxLon;
+    }
+}
@@ -0,0 +1,63 @@
+package com.azvtech.monitoring_service.dto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of applying one polling cycle to the last-known fleet state: the vehicles whose
+ * position, speed, line or server timestamp changed and the vehicles that went stale.
+ * {@code previous} holds the state each changed or removed vehicle had before this cycle,
+ * so consumers can tell when a vehicle left a line or area they were tracking.
+ *
+ * @author Fellipe Toledo
+ */
+public record FleetDelta(List<GpsDataDTO> changed, List<String> removed, Map<String, GpsDataDTO> previous) {
+
+    public FleetDelta(List<GpsDataDTO> changed, List<String> removed) {
+        this(changed, removed, Map.of());
+    }
+
+    public static FleetDelta empty() {
+        return new FleetDelta(List.of(), List.of());
+    }
+
+    /**
+     * Combines this delta with the one computed right after it into a single delta covering both
+     * cycles: the latest state of each vehicle, removals that were not undone by a later update and
+     * the state each vehicle had before the first of the two cycles.
+     */
+    public FleetDelta followedBy(FleetDelta newer) {
+        Map<String, GpsDataDTO> mergedChanged = new LinkedHashMap<>();
+        changed.forEach(data -> mergedChanged.put(data.getOrdem(), data));
+        Set<String> mergedRemoved = new LinkedHashSet<>(removed);
+
+        for (GpsDataDTO data : newer.changed) {
+            mergedChanged.put(data.getOrdem(), data);
+            mergedRemoved.remove(data.getOrdem());
+        }
+        for (String ordem : newer.removed) {
+            mergedChanged.remove(ordem);
+            mergedRemoved.add(ordem);
+        }
+
+        // O estado anterior ao primeiro ciclo prevalece; veículos que surgiram nele não tinham estado
+        Map<String, GpsDataDTO> mergedPrevious = new HashMap<>(newer.previous);
+        mergedPrevious.putAll(previous);
+        for (GpsDataDTO data : changed) {
+            if (!previous.containsKey(data.getOrdem())) {
+                mergedPrevious.remove(data.getOrdem());
+                mergedRemoved.remove(data.getOrdem());
+            }
+        }
+        return new FleetDelta(new ArrayList<>(mergedChanged.values()), new ArrayList<>(mergedRemoved), mergedPrevious);
+    }
+
+    public boolean isEmpty() {
+        return changed.isEmpty() && removed.isEmpty();
+    }
+}
@@ -1,10 +1,11 @@
 package com.azvtech.monitoring_service.dto;
 
+import com.azvtech.monitoring_service.utils.DateUtils;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
-import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.util.Objects;
 
 /**
  * @author Fellipe Toledo
@@ -12,17 +13,17 @@ import java.time.ZoneId;
 
 public class GpsDataDTO {
 
+    /** Valor dos campos de data/hora quando ausentes no registro. */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
     private String ordem;
     private double latitude;
     private double  longitude;
-    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
-    private LocalDateTime datahora;
+    private long datahora = NO_TIMESTAMP;
     private int velocidade;
     private String linha;
-    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
-    private LocalDateTime datahoraenvio;
-    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
-    private LocalDateTime datahoraservidor;
+    private long datahoraenvio = NO_TIMESTAMP;
+    private long datahoraservidor = NO_TIMESTAMP;
 
     public String getOrdem() {
         return ordem;
@@ -48,6 +49,11 @@ public class GpsDataDTO {
         this.longitude = Double.parseDouble(longitude.replace(",", "."));
     }
 
+    public void setCoordinates(double latitude, double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
     public int getVelocidade() {
         return velocidade;
     }
@@ -64,32 +70,95 @@ public class GpsDataDTO {
         this.linha = linha;
     }
 
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
     public LocalDateTime getDatahora() {
-        return datahora;
+        return toLocalDateTime(datahora);
     }
 
     public void setDatahora(long timestamp) {
-        this.datahora = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        this.datahora = timestamp;
+    }
+
+    @JsonIgnore
+    public long getDatahoraMillis() {
+        return datahora;
     }
 
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
     public LocalDateTime getDatahoraenvio() {
-        return datahoraenvio;
+        return toLocalDateTime(datahoraenvio);
     }
 
     public void setDatahoraenvio(long timestamp) {
-        this.datahoraenvio = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        this.datahoraenvio = timestamp;
+    }
+
+    @JsonIgnore
+    public long getDatahoraenvioMillis() {
+        return datahoraenvio;
     }
 
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
     public LocalDateTime getDatahoraservidor() {
-        return datahoraservidor;
+        return toLocalDateTime(datahoraservidor);
     }
 
     public void setDatahoraservidor(long timestamp) {
-        this.datahoraservidor = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        this.datahoraservidor = timestamp;
+    }
+
+    @JsonIgnore
+    public long getDatahoraservidorMillis() {
+        return datahoraservidor;
     }
 
     public boolean isMoreRecentThan(GpsDataDTO other) {
-        return this.datahoraservidor.isAfter(other.getDatahoraservidor());
+        return this.datahoraservidor > other.datahoraservidor;
+    }
+
+    /**
+     * Whether this record differs from {@code previous} in any field clients care about:
+     * position, speed, line or server timestamp.
+     */
+    public boolean hasChangedFrom(GpsDataDTO previous) {
+        return Double.compare(latitude, previous.latitude) != 0
+                || Double.compare(longitude, previous.longitude) != 0
+                || velocidade != previous.velocidade
+                || !Objects.equals(linha, previous.linha)
+                || datahoraservidor != previous.datahoraservidor;
+    }
+
+    /**
+     * Overwrites every field with the values of {@code other}, so a decoded record can be
+     * reused instead of allocating a new one.
+     */
+    public void copyFrom(GpsDataDTO other) {
+        this.ordem = other.ordem;
+        this.latitude = other.latitude;
+        this.longitude = other.longitude;
+        this.datahora = other.datahora;
+        this.velocidade = other.velocidade;
+        this.linha = other.linha;
+        this.datahoraenvio = other.datahoraenvio;
+        this.datahoraservidor = other.datahoraservidor;
+    }
+
+    public void clear() {
+        this.ordem = null;
+        this.latitude = 0;
+        this.longitude = 0;
+        this.datahora = NO_TIMESTAMP;
+        this.velocidade = 0;
+        this.linha = null;
+        this.datahoraenvio = NO_TIMESTAMP;
+        this.datahoraservidor = NO_TIMESTAMP;
+    }
+
+    private static LocalDateTime toLocalDateTime(long timestamp) {
+        if (timestamp == NO_TIMESTAMP) {
+            return null;
+        }
+        return DateUtils.toLocalDateTime(timestamp);
     }
 
     @Override
@@ -98,11 +167,11 @@ public class GpsDataDTO {
                 "ordem='" + ordem + '\'' +
                 ", latitude=" + latitude +
                 ", longitude=" + longitude +
-                ", datahora=" + datahora +
+                ", datahora=" + getDatahora() +
                 ", velocidade=" + velocidade +
                 ", linha='" + linha + '\'' +
-                ", datahoraenvio=" + datahoraenvio +
-                ", datahoraservidor=" + datahoraservidor +
+                ", datahoraenvio=" + getDatahoraenvio() +
+                ", datahoraservidor=" + getDatahoraservidor() +
                 '}';
     }
 }
@@ -0,0 +1,44 @@
+package com.azvtech.monitoring_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Running aggregates of one line. Speeds are in km/h over every vehicle of the line; headways
+ * are the gaps along the itinerary between consecutive buses running the same direction,
+ * counting only vehicles on route and not stopped. Headway fields are {@code null} while fewer
+ * than two such vehicles share a direction, and {@code meanHeadwaySeconds} also while none of
+ * them is moving. {@code bunching} lists the bunched pairs and is left out of summaries.
+ *
+ * @author Fellipe Toledo
+ */
+public record LineStatsDTO(
+        String linha,
+        int vehicles,
+        double meanSpeed,
+        int p50Speed,
+        int p95Speed,
+        int headwayVehicles,
+        Double meanHeadwayMeters,
+        Double minHeadwayMeters,
+        Double meanHeadwaySeconds,
+        int bunchedPairs,
+        @JsonInclude(JsonInclude.Include.NON_EMPTY)
+        List<BunchedPair> bunching) {
+
+    /**
+     * The same aggregates without the list of bunched pairs, for listings of every line.
+     */
+    public LineStatsDTO summary() {
+        return new LineStatsDTO(linha, vehicles, meanSpeed, p50Speed, p95Speed, headwayVehicles, meanHeadwayMeters,
+                minHeadwayMeters, meanHeadwaySeconds, bunchedPairs, List.of());
+    }
+
+    /**
+     * Two consecutive buses closer than the bunching threshold: {@code follower} is behind
+     * {@code leader} by {@code gapMeters} along itinerary {@code direcao}.
+     */
+    public record BunchedPair(String follower, String leader, int direcao, double gapMeters) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.azvtech.monitoring_service.dto;
+
+/**
+ * Vehicles grouped in one cell of the map grid at a given zoom: how many there are and the
+ * centroid of their positions, where the client draws the cluster.
+ *
+ * @author Fellipe Toledo
+ */
+public record MapClusterDTO(double latitude, double longitude, int count) {
+}
@@ -0,0 +1,9 @@
+package com.azvtech.monitoring_service.dto;
+
+/**
+ * A vehicle returned by a proximity query, with its distance to the query point in meters.
+ *
+ * @author Fellipe Toledo
+ */
+public record NearbyVehicleDTO(GpsDataDTO vehicle, double distanceMeters) {
+}
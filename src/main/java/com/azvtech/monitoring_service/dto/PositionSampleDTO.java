@@ -0,0 +1,18 @@
+package com.azvtech.monitoring_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stored position of a vehicle, as returned by the history endpoints.
+ *
+ * @author Fellipe Toledo
+ */
+public record PositionSampleDTO(
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
+        LocalDateTime datahoraservidor,
+        double latitude,
+        double longitude,
+        int velocidade) {
+}
@@ -0,0 +1,34 @@
+package com.azvtech.monitoring_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * A change in how a vehicle relates to its line's itinerary. {@code sequence} grows by one per
+ * event, so a client polling {@code /matching/events?since=} resumes where it stopped.
+ * {@code direcao}, {@code distanceMeters} and {@code progress} are {@code null} when the vehicle
+ * matched no itinerary at the time.
+ *
+ * @author Fellipe Toledo
+ */
+public record RouteEventDTO(
+        long sequence,
+        Type type,
+        String ordem,
+        String linha,
+        Integer direcao,
+        double latitude,
+        double longitude,
+        Double distanceMeters,
+        Double progress,
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
+        LocalDateTime datahoraservidor) {
+
+    public enum Type {
+        OFF_ROUTE,
+        BACK_ON_ROUTE,
+        STOPPED,
+        MOVING
+    }
+}
@@ -0,0 +1,28 @@
+package com.azvtech.monitoring_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Latest position of a vehicle matched to its line's itinerary: the direction it is running,
+ * how far along it is (in meters, and as a fraction from 0 at the start to 1 at the end) and how
+ * far from the route. The route fields are {@code null} while the vehicle matches no itinerary.
+ *
+ * @author Fellipe Toledo
+ */
+public record RouteMatchDTO(
+        String ordem,
+        String linha,
+        Integer direcao,
+        String destino,
+        double latitude,
+        double longitude,
+        Double distanceMeters,
+        Double progress,
+        Double distanceAlongMeters,
+        boolean offRoute,
+        boolean stopped,
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
+        LocalDateTime datahoraservidor) {
+}
@@ -0,0 +1,73 @@
+package com.azvtech.monitoring_service.dto;
+
+import java.util.List;
+
+/**
+ * Message a WebSocket client sends on {@code /gps-updates} to choose what it receives, e.g.
+ * {@code {"action":"subscribe","lines":["232"],"vehicles":[],"viewport":{...}}}.
+ * {@code {"action":"unsubscribe"}} goes back to the whole fleet. A map view adds its
+ * {@code zoom}: up to the server's cluster zoom it is sent the vehicle clusters in its viewport
+ * instead of the vehicles; the zoom is ignored together with line or vehicle filters, which
+ * already select few enough buses to draw one by one. With {@code "match":"contains"} the lines
+ * and vehicles are fragments matched anywhere in the ids, ignoring case; the default,
+ * {@code "exact"}, matches whole ids.
+ *
+ * @author Fellipe Toledo
+ */
+public class SubscriptionRequestDTO {
+
+    private String action;
+    private List<String> lines;
+    private List<String> vehicles;
+    private BoundingBox viewport;
+    private Integer zoom;
+    private String match;
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<String> lines) {
+        this.lines = lines;
+    }
+
+    public List<String> getVehicles() {
+        return vehicles;
+    }
+
+    public void setVehicles(List<String> vehicles) {
+        this.vehicles = vehicles;
+    }
+
+    public BoundingBox getViewport() {
+        return viewport;
+    }
+
+    public void setViewport(BoundingBox viewport) {
+        this.viewport = viewport;
+    }
+
+    public Integer getZoom() {
+        return zoom;
+    }
+
+    public void setZoom(Integer zoom) {
+        this.zoom = zoom;
+    }
+
+    public String getMatch() {
+        return match;
+    }
+
+    public void setMatch(String match) {
+        this.match = match;
+    }
+}
@@ -0,0 +1,11 @@
+package com.azvtech.monitoring_service.dto;
+
+import java.util.List;
+
+/**
+ * The stored positions of one vehicle, oldest first.
+ *
+ * @author Fellipe Toledo
+ */
+public record VehicleTrailDTO(String ordem, List<PositionSampleDTO> positions) {
+}
@@ -0,0 +1,31 @@
+package com.azvtech.monitoring_service.exception;
+
+import com.azvtech.monitoring_service.controller.HistoryController;
+import com.azvtech.monitoring_service.controller.MatchingController;
+import com.azvtech.monitoring_service.controller.VehicleQueryController;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Turns the parameter checks of the query controllers into 400 responses. Limited to those
+ * controllers so that an {@link IllegalArgumentException} from anywhere else is still a 500;
+ * ordered ahead of {@link GlobalExceptionHandler}, whose catch-all would otherwise match first.
+ *
+ * @author Fellipe Toledo
+ */
+
+@RestControllerAdvice(assignableTypes = {VehicleQueryController.class, HistoryController.class,
+        MatchingController.class})
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryExceptionHandler {
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String handleIllegalArgument(IllegalArgumentException e) {
+        return "Requisição inválida: " + e.getMessage();
+    }
+}
@@ -0,0 +1,159 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.config.metrics.BroadcastMetrics;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.utils.DateUtils;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes updates for clients that negotiate the {@value #SUBPROTOCOL} subprotocol. Every frame
+ * starts with a type byte; integers are unsigned LEB128 varints, signed values zigzag-encoded.
+ * <pre>
+ * DICTIONARY: type=1, count, count x (id, byteLength, UTF-8 bytes)
+ * SNAPSHOT/DELTA: type=2|3, baseSeconds, zigzag(offsetSeconds), count, count x record, removedCount,
+ *                 removedCount x ordemId
+ * record: ordemId, linhaId, zigzag(latitude * 1e6), zigzag(longitude * 1e6), zigzag(velocidade),
+ *         datahora, datahoraenvio, datahoraservidor
+ * </pre>
+ * {@code offsetSeconds} is the UTC offset of {@link DateUtils#ZONE} at {@code baseSeconds}.
+ * Timestamps are local wall-clock seconds in that zone, written as
+ * {@code zigzag(seconds + offset(seconds) - (baseSeconds + offsetSeconds)) + 1}, with 0 for a
+ * missing value; formatting {@code baseSeconds + offsetSeconds + delta} as UTC yields the same
+ * text as the JSON encoder, even for a frame that spans a daylight saving change. Ids 0 means null. Ids come from a dictionary shared by all sessions, so a
+ * records frame is encoded once per subscription group; each session is sent only the dictionary
+ * entries it has not seen yet (see {@link SessionDictionary}).
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+public class BinaryMessageEncoder {
+
+    public static final String SUBPROTOCOL = "gps-binary.v2";
+
+    static final int FRAME_DICTIONARY = 1;
+    static final int FRAME_SNAPSHOT = 2;
+    static final int FRAME_DELTA = 3;
+
+    static final double COORDINATE_SCALE = 1e6;
+
+    private final BroadcastMetrics broadcastMetrics;
+
+    // Dicionário global de ordem/linha; protegido pelo monitor deste objeto
+    private final Map<String, Integer> idsByValue = new HashMap<>();
+    private final List<String> valuesById = new ArrayList<>(List.of(""));
+
+    public BinaryMessageEncoder(BroadcastMetrics broadcastMetrics) {
+        this.broadcastMetrics = broadcastMetrics;
+    }
+
+    public OutboundUpdate encodeUpdate(boolean snapshot, List<GpsDataDTO> data, List<String> removed) {
+        ByteArrayBuilder buffer = new ByteArrayBuilder(32 + data.size() * 24 + removed.size() * 3);
+        BitSet referenced = new BitSet();
+
+        long baseSeconds = 0;
+        for (GpsDataDTO vehicle : data) {
+            baseSeconds = Math.max(baseSeconds, toSeconds(vehicle.getDatahoraservidorMillis()));
+        }
+
+        int offsetSeconds = DateUtils.offsetSeconds(baseSeconds);
+        long baseLocalSeconds = baseSeconds + offsetSeconds;
+
+        buffer.append(snapshot ? FRAME_SNAPSHOT : FRAME_DELTA);
+        writeVarint(buffer, baseSeconds);
+        writeVarint(buffer, zigzag(offsetSeconds));
+        writeVarint(buffer, data.size());
+        for (GpsDataDTO vehicle : data) {
+            writeVarint(buffer, reference(vehicle.getOrdem(), referenced));
+            writeVarint(buffer, reference(vehicle.getLinha(), referenced));
+            writeVarint(buffer, zigzag(Math.round(vehicle.getLatitude() * COORDINATE_SCALE)));
+            writeVarint(buffer, zigzag(Math.round(vehicle.getLongitude() * COORDINATE_SCALE)));
+            writeVarint(buffer, zigzag(vehicle.getVelocidade()));
+            writeTimestamp(buffer, vehicle.getDatahoraMillis(), baseLocalSeconds);
+            writeTimestamp(buffer, vehicle.getDatahoraenvioMillis(), baseLocalSeconds);
+            writeTimestamp(buffer, vehicle.getDatahoraservidorMillis(), baseLocalSeconds);
+        }
+        writeVarint(buffer, removed.size());
+        for (String ordem : removed) {
+            writeVarint(buffer, reference(ordem, referenced));
+        }
+
+        byte[] payload = buffer.toByteArray();
+        broadcastMetrics.messageEncoded(payload.length);
+        return new OutboundUpdate(List.of(new BinaryMessage(payload)), snapshot, referenced.stream().toArray());
+    }
+
+    /**
+     * Encodes the dictionary entries for the given ids into one frame.
+     */
+    public BinaryMessage encodeDictionary(int[] ids) {
+        ByteArrayBuilder buffer = new ByteArrayBuilder(16 + ids.length * 12);
+        buffer.append(FRAME_DICTIONARY);
+        writeVarint(buffer, ids.length);
+        for (int id : ids) {
+            byte[] value = valueOf(id).getBytes(StandardCharsets.UTF_8);
+            writeVarint(buffer, id);
+            writeVarint(buffer, value.length);
+            buffer.write(value);
+        }
+        byte[] payload = buffer.toByteArray();
+        broadcastMetrics.messageEncoded(payload.length);
+        return new BinaryMessage(payload);
+    }
+
+    private int reference(String value, BitSet referenced) {
+        if (value == null) {
+            return 0;
+        }
+        int id = idOf(value);
+        referenced.set(id);
+        return id;
+    }
+
+    synchronized int idOf(String value) {
+        Integer id = idsByValue.get(value);
+        if (id == null) {
+            id = valuesById.size();
+            valuesById.add(value);
+            idsByValue.put(value, id);
+        }
+        return id;
+    }
+
+    synchronized String valueOf(int id) {
+        return valuesById.get(id);
+    }
+
+    private static void writeTimestamp(ByteArrayBuilder buffer, long millis, long baseLocalSeconds) {
+        if (millis == GpsDataDTO.NO_TIMESTAMP) {
+            buffer.append(0);
+            return;
+        }
+        long seconds = toSeconds(millis);
+        writeVarint(buffer, zigzag(seconds + DateUtils.offsetSeconds(seconds) - baseLocalSeconds) + 1);
+    }
+
+    private static long toSeconds(long millis) {
+        return millis == GpsDataDTO.NO_TIMESTAMP ? 0 : Math.floorDiv(millis, 1000);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarint(ByteArrayBuilder buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.append((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.append((int) value);
+    }
+}
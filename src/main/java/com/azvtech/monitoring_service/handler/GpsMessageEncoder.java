@@ -0,0 +1,119 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.config.metrics.BroadcastMetrics;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.utils.DateUtils;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Serializes a broadcast batch straight to UTF-8 with Jackson's streaming {@link JsonGenerator}.
+ * The resulting {@link TextMessage} wraps one immutable byte array and is shared by every
+ * session that receives the batch, so serialization cost does not grow with the client count.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+public class GpsMessageEncoder {
+
+    private static final SerializedString TYPE = new SerializedString("type");
+    private static final SerializedString BATCH_NUMBER = new SerializedString("batchNumber");
+    private static final SerializedString TOTAL_BATCHES = new SerializedString("totalBatches");
+    private static final SerializedString TOTAL_RECORDS = new SerializedString("totalRecords");
+    private static final SerializedString REMOVED = new SerializedString("removed");
+    private static final SerializedString BATCH = new SerializedString("batch");
+
+    private static final SerializedString ORDEM = new SerializedString("ordem");
+    private static final SerializedString LATITUDE = new SerializedString("latitude");
+    private static final SerializedString LONGITUDE = new SerializedString("longitude");
+    private static final SerializedString DATAHORA = new SerializedString("datahora");
+    private static final SerializedString VELOCIDADE = new SerializedString("velocidade");
+    private static final SerializedString LINHA = new SerializedString("linha");
+    private static final SerializedString DATAHORAENVIO = new SerializedString("datahoraenvio");
+    private static final SerializedString DATAHORASERVIDOR = new SerializedString("datahoraservidor");
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final BroadcastMetrics broadcastMetrics;
+
+    public GpsMessageEncoder(BroadcastMetrics broadcastMetrics) {
+        this.broadcastMetrics = broadcastMetrics;
+    }
+
+    public TextMessage encodeBatch(String type, List<GpsDataDTO> batch, List<String> removed,
+                                   int batchNumber, int totalBatches) throws IOException {
+        ByteArrayBuilder buffer = new ByteArrayBuilder(jsonFactory._getBufferRecycler(), 256 + batch.size() * 220);
+        char[] timestamp = new char[DateUtils.LOCAL_DATE_TIME_LENGTH];
+
+        try (JsonGenerator generator = jsonFactory.createGenerator(buffer, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeFieldName(TYPE);
+            generator.writeString(type);
+            generator.writeFieldName(BATCH_NUMBER);
+            generator.writeNumber(batchNumber);
+            generator.writeFieldName(TOTAL_BATCHES);
+            generator.writeNumber(totalBatches);
+            generator.writeFieldName(TOTAL_RECORDS);
+            generator.writeNumber(batch.size());
+
+            if (!removed.isEmpty()) {
+                generator.writeFieldName(REMOVED);
+                generator.writeStartArray();
+                for (String ordem : removed) {
+                    generator.writeString(ordem);
+                }
+                generator.writeEndArray();
+            }
+
+            generator.writeFieldName(BATCH);
+            generator.writeStartArray();
+            for (GpsDataDTO data : batch) {
+                writeVehicle(generator, data, timestamp);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+
+        byte[] payload = buffer.toByteArray();
+        buffer.release();
+        broadcastMetrics.messageEncoded(payload.length);
+        return new TextMessage(payload);
+    }
+
+    private void writeVehicle(JsonGenerator generator, GpsDataDTO data, char[] timestamp) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ORDEM);
+        generator.writeString(data.getOrdem());
+        generator.writeFieldName(LATITUDE);
+        generator.writeNumber(data.getLatitude());
+        generator.writeFieldName(LONGITUDE);
+        generator.writeNumber(data.getLongitude());
+        writeTimestamp(generator, DATAHORA, data.getDatahoraMillis(), timestamp);
+        generator.writeFieldName(VELOCIDADE);
+        generator.writeNumber(data.getVelocidade());
+        generator.writeFieldName(LINHA);
+        generator.writeString(data.getLinha());
+        writeTimestamp(generator, DATAHORAENVIO, data.getDatahoraenvioMillis(), timestamp);
+        writeTimestamp(generator, DATAHORASERVIDOR, data.getDatahoraservidorMillis(), timestamp);
+        generator.writeEndObject();
+    }
+
+    // Formata direto do epoch em millis com o fuso de DateUtils, o mesmo usado pelo @JsonFormat de GpsDataDTO
+    private void writeTimestamp(JsonGenerator generator, SerializedString field, long millis,
+                                char[] buffer) throws IOException {
+        generator.writeFieldName(field);
+        if (millis == GpsDataDTO.NO_TIMESTAMP) {
+            generator.writeNull();
+            return;
+        }
+        DateUtils.formatLocal(millis, buffer);
+        generator.writeString(buffer, 0, DateUtils.LOCAL_DATE_TIME_LENGTH);
+    }
+}
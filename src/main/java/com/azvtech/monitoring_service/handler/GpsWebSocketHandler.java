@@ -1,54 +1,159 @@
 package com.azvtech.monitoring_service.handler;
 
+import com.azvtech.monitoring_service.config.metrics.BroadcastMetrics;
+import com.azvtech.monitoring_service.config.metrics.FreshnessMetrics;
+import com.azvtech.monitoring_service.config.metrics.WebSocketMetrics;
+import com.azvtech.monitoring_service.dto.FleetDelta;
 import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.MapClusterDTO;
+import com.azvtech.monitoring_service.dto.SubscriptionRequestDTO;
+import com.azvtech.monitoring_service.service.FleetClusterIndex;
+import com.azvtech.monitoring_service.service.FleetStateService;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @author Fellipe Toledo
  */
 
 @Component
-public class GpsWebSocketHandler extends TextWebSocketHandler {
+public class GpsWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    static final String TYPE_SNAPSHOT = "snapshot";
+    static final String TYPE_DELTA = "delta";
+    static final String TYPE_CLUSTERS = "clusters";
+
+    // Limite de linhas/veículos por assinatura, para proteger o índice invertido
+    private static final int MAX_FILTER_ENTRIES = 1000;
+    // Maior zoom dos mapas de tiles usados pelo cliente
+    private static final int MAX_ZOOM = 22;
 
     @Value("${gps.batch-size}")
     private int batchSize;
 
+    @Value("${gps.websocket.send-queue-capacity}")
+    private int sendQueueCapacity;
+
+    @Value("${gps.websocket.overflow-policy}")
+    private OverflowPolicy overflowPolicy;
+
     private static final Logger logger = LoggerFactory.getLogger(GpsWebSocketHandler.class);
-    private final CopyOnWriteArrayList<WebSocketSession> sessions = new CopyOnWriteArrayList<>();
+    private final Map<String, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+    private final SubscriptionRegistry subscriptions = new SubscriptionRegistry();
+    private final SnapshotCache snapshotCache;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FleetStateService fleetStateService;
+    private final FleetClusterIndex clusterIndex;
+    private final GpsMessageEncoder messageEncoder;
+    private final BinaryMessageEncoder binaryEncoder;
+    private final BroadcastMetrics broadcastMetrics;
+    private final FreshnessMetrics freshnessMetrics;
+    private final WebSocketMetrics webSocketMetrics;
 
+    // Fan-out: cada sessão é drenada em sua própria virtual thread
+    private final ExecutorService sendExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-send-", 0).factory());
+
+    // Garante que o snapshot de um novo cliente não seja intercalado com um delta em andamento
+    // e serializa o acesso ao registro de assinaturas
+    private final Object broadcastLock = new Object();
+
+
+    public GpsWebSocketHandler(FleetStateService fleetStateService, FleetClusterIndex clusterIndex,
+                               GpsMessageEncoder messageEncoder, BinaryMessageEncoder binaryEncoder,
+                               BroadcastMetrics broadcastMetrics, FreshnessMetrics freshnessMetrics,
+                               WebSocketMetrics webSocketMetrics) {
+        this.fleetStateService = fleetStateService;
+        this.clusterIndex = clusterIndex;
+        this.messageEncoder = messageEncoder;
+        this.binaryEncoder = binaryEncoder;
+        this.broadcastMetrics = broadcastMetrics;
+        this.freshnessMetrics = freshnessMetrics;
+        this.webSocketMetrics = webSocketMetrics;
+        this.snapshotCache = new SnapshotCache(fleetStateService::version);
+        broadcastMetrics.registerQueueBacklog(() ->
+                outboxes.values().stream().mapToInt(SessionOutbox::queuedUpdates).sum());
+    }
 
-    public GpsWebSocketHandler() {
-        objectMapper.registerModule(new JavaTimeModule());
-        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    /**
+     * Clients may negotiate the compact binary format; without a subprotocol they get JSON.
+     */
+    @Override
+    @NonNull
+    public List<String> getSubProtocols() {
+        return List.of(BinaryMessageEncoder.SUBPROTOCOL);
     }
 
     @Override
     public void afterConnectionEstablished(@NonNull WebSocketSession session) {
-        sessions.add(session);
-        logger.info("New client connected: {}", session.getId());
+        boolean binary = BinaryMessageEncoder.SUBPROTOCOL.equals(session.getAcceptedProtocol());
+        SessionOutbox outbox = new SessionOutbox(session, sendQueueCapacity, overflowPolicy,
+                () -> encodeSnapshot(subscriptions.subscriptionOf(session.getId()), binary), sendExecutor,
+                broadcastMetrics, binary ? new SessionDictionary(binaryEncoder) : null, freshnessMetrics);
+
+        synchronized (broadcastLock) {
+            OutboundUpdate snapshot = encodeSnapshot(Subscription.ALL, binary);
+            outbox.enqueue(snapshot);
+            outboxes.put(session.getId(), outbox);
+            subscriptions.register(outbox, Subscription.ALL);
+            webSocketMetrics.connectionEstablished();
+            logger.info("New {} client connected: {} - queued snapshot in {} messages",
+                    binary ? "binary" : "JSON", session.getId(), snapshot.messages().size());
+        }
+    }
+
+    /**
+     * Handles subscription requests. Every (re)subscription is answered with a snapshot of
+     * the vehicles that match the new filter, which replaces the client's fleet, or with the
+     * current clusters for a clustered subscription.
+     */
+    @Override
+    protected void handleTextMessage(@NonNull WebSocketSession session, @NonNull TextMessage message) {
+        SessionOutbox outbox = outboxes.get(session.getId());
+        if (outbox == null) {
+            return;
+        }
+
+        Subscription subscription;
+        try {
+            subscription = toSubscription(objectMapper.readValue(message.getPayload(), SubscriptionRequestDTO.class));
+        } catch (IOException | IllegalArgumentException | NullPointerException e) {
+            logger.warn("Invalid subscription request from session {}: {}", session.getId(), e.getMessage());
+            sendError(outbox, "Invalid subscription request: " + e.getMessage());
+            return;
+        }
+
+        synchronized (broadcastLock) {
+            subscriptions.register(outbox, subscription);
+            outbox.enqueue(encodeSnapshot(subscription, outbox.isBinary()));
+        }
+        logger.info("Session {} subscribed to {} lines, {} vehicles, viewport {}, zoom {} ({} active groups)",
+                session.getId(), subscription.lines().size(), subscription.vehicles().size(),
+                subscription.viewport(), subscription.zoom(), subscriptions.groupCount());
     }
 
     @Override
     public void afterConnectionClosed(@NonNull WebSocketSession session, CloseStatus status) {
-        sessions.remove(session);
+        removeOutbox(session, status);
         if (status.getCode() == CloseStatus.SESSION_NOT_RELIABLE.getCode()) {
             logger.info("Connection closed due to inactivity: {}", session.getId());
         } else {
@@ -63,11 +168,11 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
         // Notificar o cliente sobre o erro antes de fechar a conexão
         try {
             session.sendMessage(new TextMessage("Error: " + exception.getMessage()));
-        } catch (IOException e) {
+        } catch (IOException | IllegalStateException e) {
             logger.error("Failed to send error message to session {}: {}", session.getId(), e.getMessage());
         }
 
-        sessions.remove(session);
+        removeOutbox(session, null);
 
         // Tentar reconectar após 5 segundos
         try {
@@ -79,36 +184,191 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
-    public void broadcastUpdate(List<GpsDataDTO> data) {
-        logger.info("Broadcasting {} records to {} clients in batches of {}",
-                data.size(), sessions.size(), batchSize);
+    /**
+     * Sends only the vehicles that changed in the last cycle, plus the ids of vehicles that
+     * went stale, to every connected client, and the refreshed clusters to clustered
+     * subscriptions. The batches are encoded once and queued on each session's outbox; this
+     * method never blocks on a client socket.
+     */
+    public void broadcastUpdate(FleetDelta delta) {
+        if (delta.isEmpty()) {
+            logger.debug("No fleet changes to broadcast");
+            return;
+        }
+
+        synchronized (broadcastLock) {
+            logger.info("Broadcasting {} changed and {} removed vehicles to {} clients in batches of {}",
+                    delta.changed().size(), delta.removed().size(), outboxes.size(), batchSize);
+
+            long allocatedAtStart = broadcastMetrics.currentThreadAllocatedBytes();
+            // Cada grupo de assinaturas idênticas é serializado uma vez por formato e compartilhado pelas sessões
+            subscriptions.route(delta).forEach((group, groupDelta) -> {
+                long newestPosition = newestServerTimestamp(groupDelta.changed());
+                OutboundUpdate json = null;
+                OutboundUpdate binary = null;
+                for (SessionOutbox outbox : group.members()) {
+                    if (outbox.isBinary()) {
+                        if (binary == null) {
+                            long start = System.nanoTime();
+                            binary = binaryEncoder.encodeUpdate(false, groupDelta.changed(), groupDelta.removed())
+                                    .withNewestPosition(newestPosition)
+                                    .withRemovals(!groupDelta.removed().isEmpty());
+                            freshnessMetrics.updateSerialized(start);
+                        }
+                        outbox.enqueue(binary);
+                    } else {
+                        if (json == null) {
+                            long start = System.nanoTime();
+                            json = new OutboundUpdate(
+                                    encodeBatches(TYPE_DELTA, groupDelta.changed(), groupDelta.removed()), false)
+                                    .withNewestPosition(newestPosition)
+                                    .withRemovals(!groupDelta.removed().isEmpty());
+                            freshnessMetrics.updateSerialized(start);
+                        }
+                        outbox.enqueue(json);
+                    }
+                }
+            });
+            if (!subscriptions.clusteredGroups().isEmpty()) {
+                long newestPosition = newestServerTimestamp(delta.changed());
+                for (SubscriptionRegistry.SubscriptionGroup group : subscriptions.clusteredGroups()) {
+                    // Clusters vão sempre em JSON, também para sessões binárias
+                    OutboundUpdate clusters = encodeClusters(group.subscription(), false)
+                            .withNewestPosition(newestPosition);
+                    group.members().forEach(outbox -> outbox.enqueue(clusters));
+                }
+            }
+            broadcastMetrics.cycleCompleted(allocatedAtStart);
+        }
+    }
 
-        int totalBatches = (int) Math.ceil((double) data.size() / batchSize);
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
 
-        for (int i = 0; i < data.size(); i += batchSize) {
-            List<GpsDataDTO> batch = data.subList(i, Math.min(i + batchSize, data.size()));
-            sendBatch(batch, i/batchSize + 1, totalBatches);
+    private OutboundUpdate encodeSnapshot(Subscription subscription, boolean binary) {
+        if (subscription.isClustered()) {
+            broadcastMetrics.snapshotServed(false);
+            return encodeClusters(subscription, true);
         }
+        if (subscription.isUnfiltered()) {
+            // Frota inteira: reaproveita a serialização enquanto o estado não mudar
+            SnapshotCache.Lookup lookup = snapshotCache.get(binary, () -> encodeFleet(subscription, binary));
+            broadcastMetrics.snapshotServed(lookup.cached());
+            return lookup.snapshot();
+        }
+        broadcastMetrics.snapshotServed(false);
+        return encodeFleet(subscription, binary);
     }
 
-    private void sendBatch(List<GpsDataDTO> batch, int batchNumber, int totalBatches) {
+    private OutboundUpdate encodeFleet(Subscription subscription, boolean binary) {
+        List<GpsDataDTO> snapshot = fleetStateService.snapshot();
+        if (!subscription.isUnfiltered()) {
+            snapshot = snapshot.stream().filter(subscription::matches).toList();
+        }
+        long start = System.nanoTime();
+        OutboundUpdate update = binary
+                ? binaryEncoder.encodeUpdate(true, snapshot, List.of())
+                : new OutboundUpdate(encodeBatches(TYPE_SNAPSHOT, snapshot, List.of()), true);
+        freshnessMetrics.updateSerialized(start);
+        return update;
+    }
+
+    private OutboundUpdate encodeClusters(Subscription subscription, boolean snapshot) {
+        long start = System.nanoTime();
+        List<MapClusterDTO> clusters = clusterIndex.clusters(subscription.zoom(), subscription.viewport());
+        int vehicles = clusters.stream().mapToInt(MapClusterDTO::count).sum();
+        List<TextMessage> messages = List.of();
         try {
-            Map<String, Object> messageWrapper = new HashMap<>();
-            messageWrapper.put("batch", batch);
-            messageWrapper.put("batchNumber", batchNumber);
-            messageWrapper.put("totalBatches", totalBatches);
-            messageWrapper.put("totalRecords", batch.size());
-
-            String jsonMessage = objectMapper.writeValueAsString(messageWrapper);
-            TextMessage message = new TextMessage(jsonMessage);
-
-            for (WebSocketSession session : sessions) {
-                if (session.isOpen()) {
-                    session.sendMessage(message);
-                }
-            }
+            messages = List.of(new TextMessage(objectMapper.writeValueAsString(
+                    new ClustersMessage(TYPE_CLUSTERS, subscription.zoom(), vehicles, clusters))));
         } catch (IOException e) {
-            logger.error("Error sending batch: {}", e.getMessage(), e);
+            logger.error("Error serializing clusters: {}", e.getMessage(), e);
+        }
+        freshnessMetrics.updateSerialized(start);
+        return new OutboundUpdate(messages, snapshot);
+    }
+
+    private static long newestServerTimestamp(List<GpsDataDTO> changed) {
+        long newest = GpsDataDTO.NO_TIMESTAMP;
+        for (GpsDataDTO data : changed) {
+            newest = Math.max(newest, data.getDatahoraservidorMillis());
+        }
+        return newest;
+    }
+
+    private Subscription toSubscription(SubscriptionRequestDTO request) {
+        if ("unsubscribe".equals(request.getAction())) {
+            return Subscription.ALL;
+        }
+        if (!"subscribe".equals(request.getAction())) {
+            throw new IllegalArgumentException("unknown action " + request.getAction());
+        }
+        Set<String> lines = request.getLines() == null ? Set.of() : Set.copyOf(request.getLines());
+        Set<String> vehicles = request.getVehicles() == null ? Set.of() : Set.copyOf(request.getVehicles());
+        if (lines.size() + vehicles.size() > MAX_FILTER_ENTRIES) {
+            throw new IllegalArgumentException("at most " + MAX_FILTER_ENTRIES + " lines and vehicles are allowed");
         }
+        boolean partial = "contains".equals(request.getMatch());
+        if (!partial && request.getMatch() != null && !"exact".equals(request.getMatch())) {
+            throw new IllegalArgumentException("match must be exact or contains");
+        }
+        Integer zoom = request.getZoom();
+        if (zoom != null && (zoom < 0 || zoom > MAX_ZOOM)) {
+            throw new IllegalArgumentException("zoom must be between 0 and " + MAX_ZOOM);
+        }
+        // Acima do zoom de clusters, ou com filtro de linhas/veículos, o cliente recebe os veículos;
+        // sem o zoom na assinatura, mapas em zooms altos diferentes compartilham o mesmo grupo
+        if (zoom != null && (zoom > clusterIndex.maxClusterZoom() || !lines.isEmpty() || !vehicles.isEmpty())) {
+            zoom = null;
+        }
+        return new Subscription(lines, vehicles, request.getViewport(), zoom, partial);
+    }
+
+    private void sendError(SessionOutbox outbox, String error) {
+        try {
+            String payload = objectMapper.writeValueAsString(Map.of("type", "error", "message", error));
+            outbox.enqueue(new OutboundUpdate(List.of(new TextMessage(payload)), false));
+        } catch (IOException e) {
+            logger.error("Failed to encode error message: {}", e.getMessage());
+        }
+    }
+
+    private List<TextMessage> encodeBatches(String type, List<GpsDataDTO> data, List<String> removed) {
+        int totalBatches = Math.max(1, (int) Math.ceil((double) data.size() / batchSize));
+        List<TextMessage> messages = new ArrayList<>(totalBatches);
+
+        for (int batchNumber = 1; batchNumber <= totalBatches; batchNumber++) {
+            int from = (batchNumber - 1) * batchSize;
+            List<GpsDataDTO> batch = data.subList(Math.min(from, data.size()), Math.min(from + batchSize, data.size()));
+            // Os ids removidos seguem no último batch, quando o cliente aplica a atualização
+            List<String> batchRemoved = batchNumber == totalBatches ? removed : List.of();
+            try {
+                // Serializado uma única vez; o mesmo buffer é entregue a todas as sessões
+                messages.add(messageEncoder.encodeBatch(type, batch, batchRemoved, batchNumber, totalBatches));
+            } catch (IOException e) {
+                logger.error("Error serializing batch: {}", e.getMessage(), e);
+            }
+        }
+        return messages;
+    }
+
+    // Chamado tanto no erro de transporte quanto no fechamento: só a primeira remoção conta nas métricas
+    private void removeOutbox(WebSocketSession session, CloseStatus status) {
+        synchronized (broadcastLock) {
+            subscriptions.unregister(session.getId());
+        }
+        SessionOutbox outbox = outboxes.remove(session.getId());
+        if (outbox != null) {
+            outbox.close();
+            webSocketMetrics.connectionClosed(outbox.openedAtNanos(), status);
+        }
+    }
+
+    /**
+     * Every cluster of a clustered subscription's viewport, replacing the ones sent before.
+     */
+    private record ClustersMessage(String type, int zoom, int vehicles, List<MapClusterDTO> clusters) {
     }
 }
@@ -0,0 +1,52 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.List;
+
+/**
+ * The pre-encoded messages of one broadcast cycle (or of one snapshot), queued as a unit so
+ * overflow handling never leaves a client with half an update. Binary updates also carry the
+ * dictionary ids their frames reference, so each session can be sent the entries it lacks.
+ * Deltas carry when they were encoded and the newest server timestamp among their positions,
+ * so each session can report how fresh the data it was sent is, and whether they remove
+ * vehicles, which later deltas never repeat.
+ *
+ * @author Fellipe Toledo
+ */
+public record OutboundUpdate(List<? extends WebSocketMessage<?>> messages, boolean snapshot, int[] dictionaryIds,
+                             long encodedAtNanos, long newestPositionMillis, boolean removals) {
+
+    private static final int[] NO_IDS = new int[0];
+
+    public OutboundUpdate(List<? extends WebSocketMessage<?>> messages, boolean snapshot, int[] dictionaryIds) {
+        this(messages, snapshot, dictionaryIds, System.nanoTime(), GpsDataDTO.NO_TIMESTAMP, false);
+    }
+
+    public OutboundUpdate(List<? extends WebSocketMessage<?>> messages, boolean snapshot) {
+        this(messages, snapshot, NO_IDS);
+    }
+
+    /**
+     * Same update, tagged with the newest server timestamp among the positions it carries.
+     */
+    public OutboundUpdate withNewestPosition(long newestPositionMillis) {
+        return new OutboundUpdate(messages, snapshot, dictionaryIds, encodedAtNanos, newestPositionMillis, removals);
+    }
+
+    /**
+     * Same update, tagged with whether it removes vehicles.
+     */
+    public OutboundUpdate withRemovals(boolean removals) {
+        return new OutboundUpdate(messages, snapshot, dictionaryIds, encodedAtNanos, newestPositionMillis, removals);
+    }
+
+    /**
+     * Whether a client that never receives this update ends up only out of date, not wrong:
+     * its positions are sent again when the vehicles next change, but a snapshot or a removal is not.
+     */
+    public boolean isDroppable() {
+        return !snapshot && !removals;
+    }
+}
@@ -0,0 +1,27 @@
+package com.azvtech.monitoring_service.handler;
+
+/**
+ * What a {@link SessionOutbox} does when a slow client lets its send queue fill up.
+ *
+ * @author Fellipe Toledo
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Discards the oldest queued delta that only moves vehicles; they reach the client again the
+     * next time they change. Snapshots and deltas that remove vehicles are never discarded: when
+     * the queue holds nothing else, it falls back to {@link #COALESCE_LATEST}.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Discards everything queued and replaces it with a single snapshot of the current fleet,
+     * so the client catches up without losing state.
+     */
+    COALESCE_LATEST,
+
+    /**
+     * Closes the session; the dashboard reconnects and receives a fresh snapshot.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,122 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.service.FleetJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams a past time range from the {@link FleetJournal} to a WebSocket client, one message per
+ * ingested batch, keeping the original spacing between batches divided by {@code speed}. The
+ * range comes from the query string:
+ * {@code /gps-replay?from=2025-01-10T08:00:00&to=2025-01-10T09:00:00&speed=10}.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+public class ReplayWebSocketHandler extends TextWebSocketHandler {
+
+    static final String TYPE_REPLAY = "replay";
+
+    private static final double MAX_SPEED = 100;
+    // Lacunas no journal (ex.: serviço parado) não devem travar a reprodução
+    private static final long MAX_PAUSE_MILLIS = 5000;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayWebSocketHandler.class);
+
+    private final FleetJournal fleetJournal;
+    private final GpsMessageEncoder messageEncoder;
+    private final Map<String, Thread> replays = new ConcurrentHashMap<>();
+
+    public ReplayWebSocketHandler(FleetJournal fleetJournal, GpsMessageEncoder messageEncoder) {
+        this.fleetJournal = fleetJournal;
+        this.messageEncoder = messageEncoder;
+    }
+
+    @Override
+    public void afterConnectionEstablished(@NonNull WebSocketSession session) throws IOException {
+        long from;
+        long to;
+        double speed;
+        try {
+            MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams();
+            from = toMillis(params.getFirst("from"));
+            to = toMillis(params.getFirst("to"));
+            speed = params.containsKey("speed") ? Double.parseDouble(params.getFirst("speed")) : 1;
+            if (to <= from || speed <= 0 || speed > MAX_SPEED) {
+                throw new IllegalArgumentException("to must be after from and speed between 0 and " + MAX_SPEED);
+            }
+        } catch (NullPointerException | IllegalArgumentException | DateTimeParseException e) {
+            logger.warn("Invalid replay request from session {}: {}", session.getId(), e.getMessage());
+            session.close(CloseStatus.BAD_DATA.withReason("Invalid replay request"));
+            return;
+        }
+        if (!fleetJournal.isEnabled()) {
+            session.close(CloseStatus.SERVICE_RESTARTED.withReason("Journal disabled"));
+            return;
+        }
+
+        logger.info("Replaying journal from {} to {} at {}x to session {}", from, to, speed, session.getId());
+        replays.put(session.getId(), Thread.ofVirtual().name("ws-replay-" + session.getId())
+                .start(() -> replay(session, from, to, speed)));
+    }
+
+    @Override
+    public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) {
+        Thread replay = replays.remove(session.getId());
+        if (replay != null) {
+            replay.interrupt();
+        }
+    }
+
+    private void replay(WebSocketSession session, long from, long to, double speed) {
+        long[] previous = {Long.MIN_VALUE};
+        try {
+            fleetJournal.read(from, to, (timestamp, batch) -> {
+                if (previous[0] != Long.MIN_VALUE) {
+                    Thread.sleep(Math.min(MAX_PAUSE_MILLIS, (long) ((timestamp - previous[0]) / speed)));
+                }
+                previous[0] = timestamp;
+                if (!session.isOpen()) {
+                    return false;
+                }
+                session.sendMessage(messageEncoder.encodeBatch(TYPE_REPLAY, batch, List.of(), 1, 1));
+                return true;
+            });
+            closeQuietly(session, CloseStatus.NORMAL.withReason("Replay finished"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | IllegalStateException e) {
+            logger.error("Replay to session {} failed: {}", session.getId(), e.getMessage());
+            closeQuietly(session, CloseStatus.SERVER_ERROR);
+        } finally {
+            replays.remove(session.getId());
+        }
+    }
+
+    private static long toMillis(String dateTime) {
+        return LocalDateTime.parse(dateTime).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static void closeQuietly(WebSocketSession session, CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            logger.debug("Failed to close replay session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+}
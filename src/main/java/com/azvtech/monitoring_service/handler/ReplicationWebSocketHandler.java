@@ -0,0 +1,119 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.config.metrics.BroadcastMetrics;
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.service.FleetStateService;
+import com.azvtech.monitoring_service.service.FleetUpdateListener;
+import com.azvtech.monitoring_service.service.ReplicationFrame;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Leader side of cluster replication: each follower connected on {@value #PATH} gets the whole
+ * fleet on connect and then the records changed in every processed cycle, as binary
+ * {@link ReplicationFrame}s. A follower that falls behind has its backlog replaced by a fresh
+ * snapshot. Runs ahead of the other listeners, so followers get the cycle as early as possible.
+ * Only exists in cluster mode; {@link com.azvtech.monitoring_service.config.ClusterConfig}
+ * registers the endpoint.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+@ConditionalOnProperty(name = "gps.cluster.enabled", havingValue = "true")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReplicationWebSocketHandler extends AbstractWebSocketHandler implements FleetUpdateListener {
+
+    public static final String PATH = "/cluster/replication";
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationWebSocketHandler.class);
+
+    @Value("${gps.websocket.send-queue-capacity}")
+    private int sendQueueCapacity;
+
+    private final FleetStateService fleetStateService;
+    private final BroadcastMetrics broadcastMetrics;
+    private final Map<String, SessionOutbox> followers = new ConcurrentHashMap<>();
+
+    private final ExecutorService sendExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-replication-", 0).factory());
+
+    public ReplicationWebSocketHandler(FleetStateService fleetStateService, BroadcastMetrics broadcastMetrics,
+                                       MeterRegistry registry) {
+        this.fleetStateService = fleetStateService;
+        this.broadcastMetrics = broadcastMetrics;
+
+        Gauge.builder("gps.cluster.followers", followers, Map::size)
+                .description("Seguidores recebendo a replicação deste nó")
+                .register(registry);
+    }
+
+    @Override
+    public void afterConnectionEstablished(@NonNull WebSocketSession session) {
+        SessionOutbox outbox = new SessionOutbox(session, sendQueueCapacity, OverflowPolicy.COALESCE_LATEST,
+                this::encodeSnapshot, sendExecutor, broadcastMetrics);
+        // Registrado antes do snapshot: um ciclo que chegue antes dele não se perde, e o seguidor
+        // descarta registros mais antigos que os que já tem
+        followers.put(session.getId(), outbox);
+        outbox.enqueue(encodeSnapshot());
+        logger.info("Follower connected for replication: {} ({})", session.getId(), session.getRemoteAddress());
+    }
+
+    @Override
+    public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) {
+        SessionOutbox outbox = followers.remove(session.getId());
+        if (outbox != null) {
+            outbox.close();
+            logger.info("Follower disconnected: {} - {}", session.getId(), status);
+        }
+    }
+
+    @Override
+    public void handleTransportError(@NonNull WebSocketSession session, @NonNull Throwable exception) {
+        logger.warn("Replication transport error on session {}: {}", session.getId(), exception.getMessage());
+        afterConnectionClosed(session, CloseStatus.SERVER_ERROR);
+    }
+
+    /**
+     * Encodes the cycle's changed records once and queues the frame for every follower.
+     */
+    @Override
+    public void onFleetUpdate(FleetDelta delta) {
+        if (followers.isEmpty() || delta.changed().isEmpty()) {
+            return;
+        }
+        OutboundUpdate frame = new OutboundUpdate(List.of(new BinaryMessage(
+                ReplicationFrame.encode(false, System.currentTimeMillis(), delta.changed()))), false);
+        for (SessionOutbox outbox : followers.values()) {
+            outbox.enqueue(frame);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+
+    private OutboundUpdate encodeSnapshot() {
+        return new OutboundUpdate(List.of(new BinaryMessage(
+                ReplicationFrame.encode(true, System.currentTimeMillis(), fleetStateService.snapshot()))), true);
+    }
+}
@@ -0,0 +1,101 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.config.metrics.BroadcastMetrics;
+import com.azvtech.monitoring_service.dto.RouteEventDTO;
+import com.azvtech.monitoring_service.service.MapMatchingService;
+import com.azvtech.monitoring_service.service.RouteEventListener;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pushes the route events raised by {@link MapMatchingService} to every connected client, one
+ * message per fleet delta that raised any:
+ * {@code {"type":"route-events","events":[...]}}. There is no snapshot on connect; clients that
+ * need the current state read {@code /matching/off-route} and {@code /matching/stopped}, or
+ * resume from a sequence with {@code /matching/events?since=}.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+public class RouteEventWebSocketHandler extends TextWebSocketHandler implements RouteEventListener {
+
+    static final String TYPE_ROUTE_EVENTS = "route-events";
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteEventWebSocketHandler.class);
+
+    @Value("${gps.websocket.send-queue-capacity}")
+    private int sendQueueCapacity;
+
+    private final ObjectMapper objectMapper;
+    private final BroadcastMetrics broadcastMetrics;
+    private final Map<String, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+
+    private final ExecutorService sendExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-route-events-", 0).factory());
+
+    public RouteEventWebSocketHandler(ObjectMapper objectMapper, BroadcastMetrics broadcastMetrics) {
+        this.objectMapper = objectMapper;
+        this.broadcastMetrics = broadcastMetrics;
+    }
+
+    @Override
+    public void afterConnectionEstablished(@NonNull WebSocketSession session) {
+        // Eventos são independentes entre si: um cliente lento perde os mais antigos
+        outboxes.put(session.getId(), new SessionOutbox(session, sendQueueCapacity, OverflowPolicy.DROP_OLDEST,
+                null, sendExecutor, broadcastMetrics));
+        logger.info("Route event client connected: {}", session.getId());
+    }
+
+    @Override
+    public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) {
+        SessionOutbox outbox = outboxes.remove(session.getId());
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    @Override
+    public void handleTransportError(@NonNull WebSocketSession session, @NonNull Throwable exception) {
+        logger.warn("Route event transport error on session {}: {}", session.getId(), exception.getMessage());
+        afterConnectionClosed(session, CloseStatus.SERVER_ERROR);
+    }
+
+    /**
+     * Serializes the events once and queues the same message on every session; never blocks.
+     */
+    @Override
+    public void onRouteEvents(List<RouteEventDTO> events) {
+        if (outboxes.isEmpty()) {
+            return;
+        }
+        OutboundUpdate update;
+        try {
+            update = new OutboundUpdate(List.of(new TextMessage(objectMapper.writeValueAsString(
+                    new RouteEventsMessage(TYPE_ROUTE_EVENTS, events)))), false);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to encode route events: {}", e.getMessage(), e);
+            return;
+        }
+        for (SessionOutbox outbox : outboxes.values()) {
+            outbox.enqueue(update);
+        }
+    }
+
+    private record RouteEventsMessage(String type, List<RouteEventDTO> events) {
+    }
+}
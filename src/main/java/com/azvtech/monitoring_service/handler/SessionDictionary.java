@@ -0,0 +1,37 @@
+package com.azvtech.monitoring_service.handler;
+
+import org.springframework.web.socket.BinaryMessage;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Tracks which dictionary entries one binary session has already received. Only used by the
+ * session's drain, so it needs no synchronization.
+ *
+ * @author Fellipe Toledo
+ */
+final class SessionDictionary {
+
+    private final BinaryMessageEncoder encoder;
+    private final BitSet known = new BitSet();
+
+    SessionDictionary(BinaryMessageEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    /**
+     * Returns a dictionary frame with the entries among {@code ids} this session lacks, or
+     * {@code null} when it already knows all of them.
+     */
+    BinaryMessage missingEntries(int[] ids) {
+        int[] missing = Arrays.stream(ids).filter(id -> !known.get(id)).toArray();
+        if (missing.length == 0) {
+            return null;
+        }
+        for (int id : missing) {
+            known.set(id);
+        }
+        return encoder.encodeDictionary(missing);
+    }
+}
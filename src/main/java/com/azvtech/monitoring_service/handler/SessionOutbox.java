@@ -0,0 +1,212 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.config.metrics.BroadcastMetrics;
+import com.azvtech.monitoring_service.config.metrics.FreshnessMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, asynchronous outbound queue for one WebSocket session. The broadcast thread only
+ * enqueues; a virtual thread drains the queue, so a slow client never stalls the others or the
+ * next poll. When the queue is full the configured {@link OverflowPolicy} applies. Binary
+ * sessions get the dictionary entries an update references sent just ahead of it. Deltas whose
+ * last frame was written are reported to {@link FreshnessMetrics}, when given.
+ *
+ * @author Fellipe Toledo
+ */
+public class SessionOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionOutbox.class);
+
+    private final WebSocketSession session;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Supplier<OutboundUpdate> snapshotSupplier;
+    private final Executor sendExecutor;
+    private final BroadcastMetrics broadcastMetrics;
+    // Apenas para sessões no subprotocolo binário
+    private final SessionDictionary dictionary;
+    private final FreshnessMetrics freshnessMetrics;
+    private final long openedAtNanos = System.nanoTime();
+
+    // Protegidos pelo monitor deste objeto
+    private final Deque<OutboundUpdate> queue = new ArrayDeque<>();
+    private boolean draining;
+    private boolean closed;
+
+    public SessionOutbox(WebSocketSession session, int capacity, OverflowPolicy overflowPolicy,
+                         Supplier<OutboundUpdate> snapshotSupplier, Executor sendExecutor,
+                         BroadcastMetrics broadcastMetrics) {
+        this(session, capacity, overflowPolicy, snapshotSupplier, sendExecutor, broadcastMetrics, null, null);
+    }
+
+    SessionOutbox(WebSocketSession session, int capacity, OverflowPolicy overflowPolicy,
+                  Supplier<OutboundUpdate> snapshotSupplier, Executor sendExecutor,
+                  BroadcastMetrics broadcastMetrics, SessionDictionary dictionary,
+                  FreshnessMetrics freshnessMetrics) {
+        this.session = session;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.snapshotSupplier = snapshotSupplier;
+        this.sendExecutor = sendExecutor;
+        this.broadcastMetrics = broadcastMetrics;
+        this.dictionary = dictionary;
+        this.freshnessMetrics = freshnessMetrics;
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    /**
+     * {@link System#nanoTime()} when this session's outbox was created, i.e. when it connected.
+     */
+    public long openedAtNanos() {
+        return openedAtNanos;
+    }
+
+    public boolean isBinary() {
+        return dictionary != null;
+    }
+
+    public synchronized int queuedUpdates() {
+        return queue.size();
+    }
+
+    public void enqueue(OutboundUpdate update) {
+        boolean startDrain;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (queue.size() >= capacity) {
+                handleOverflow(update);
+                if (closed) {
+                    return;
+                }
+            } else {
+                queue.addLast(update);
+            }
+            broadcastMetrics.queueDepth(queue.size());
+
+            startDrain = !draining;
+            draining = true;
+        }
+        if (startDrain) {
+            sendExecutor.execute(this::drain);
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    private void handleOverflow(OutboundUpdate update) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST -> {
+                if (dropOldestDroppable()) {
+                    queue.addLast(update);
+                    broadcastMetrics.updatesDropped(overflowPolicy.name(), 1);
+                } else {
+                    // Só há snapshots e remoções na fila: descartar qualquer um deixaria o cliente errado
+                    coalesce();
+                }
+            }
+            case COALESCE_LATEST -> coalesce();
+            case DISCONNECT -> {
+                broadcastMetrics.updatesDropped(overflowPolicy.name(), queue.size() + 1);
+                closed = true;
+                queue.clear();
+                logger.warn("Send queue overflow, disconnecting slow client: {}", session.getId());
+                sendExecutor.execute(() -> closeSession(CloseStatus.SERVICE_OVERLOAD.withReason("Send queue overflow")));
+            }
+        }
+    }
+
+    private boolean dropOldestDroppable() {
+        for (Iterator<OutboundUpdate> queued = queue.iterator(); queued.hasNext(); ) {
+            if (queued.next().isDroppable()) {
+                queued.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void coalesce() {
+        // O snapshot já reflete o update recebido, que também é descartado
+        broadcastMetrics.updatesDropped(overflowPolicy.name(), queue.size() + 1);
+        queue.clear();
+        queue.addLast(snapshotSupplier.get());
+    }
+
+    private void drain() {
+        while (true) {
+            OutboundUpdate update;
+            synchronized (this) {
+                update = closed ? null : queue.pollFirst();
+                if (update == null) {
+                    draining = false;
+                    return;
+                }
+            }
+
+            if (dictionary != null) {
+                BinaryMessage entries = dictionary.missingEntries(update.dictionaryIds());
+                if (entries != null && !send(entries)) {
+                    continue;
+                }
+            }
+            boolean delivered = true;
+            for (WebSocketMessage<?> message : update.messages()) {
+                if (!send(message)) {
+                    delivered = false;
+                    break;
+                }
+            }
+            // Snapshots podem vir do cache, então o instante da serialização não diz nada sobre o envio
+            if (delivered && !update.snapshot() && freshnessMetrics != null) {
+                freshnessMetrics.updateSent(update.encodedAtNanos(), update.newestPositionMillis());
+            }
+        }
+    }
+
+    private boolean send(WebSocketMessage<?> message) {
+        if (!session.isOpen()) {
+            close();
+            return false;
+        }
+        try {
+            long start = System.nanoTime();
+            session.sendMessage(message);
+            broadcastMetrics.messageSent(message.getPayloadLength(), System.nanoTime() - start);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            broadcastMetrics.sendFailed();
+            logger.error("Error sending update to session {}: {}", session.getId(), e.getMessage());
+            close();
+            closeSession(CloseStatus.SERVER_ERROR);
+            return false;
+        }
+    }
+
+    private void closeSession(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            logger.debug("Failed to close session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.azvtech.monitoring_service.handler;
+
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Pre-encoded snapshot of the whole fleet, one per wire format, tagged with the fleet state
+ * version it was built from. It is re-encoded lazily, at most once per state version, so any
+ * number of clients connecting within a cycle share the same messages.
+ *
+ * @author Fellipe Toledo
+ */
+final class SnapshotCache {
+
+    private final LongSupplier currentVersion;
+
+    private long jsonVersion = -1;
+    private OutboundUpdate json;
+    private long binaryVersion = -1;
+    private OutboundUpdate binary;
+
+    SnapshotCache(LongSupplier currentVersion) {
+        this.currentVersion = currentVersion;
+    }
+
+    /**
+     * Returns the cached snapshot for the format if it matches the current version, otherwise
+     * encodes and caches a new one. {@code encoder} must read the state at least as new as the
+     * version observed here.
+     *
+     * @return the snapshot and whether it came from the cache
+     */
+    synchronized Lookup get(boolean binaryFormat, Supplier<OutboundUpdate> encoder) {
+        long version = currentVersion.getAsLong();
+        if (binaryFormat) {
+            if (binary != null && binaryVersion == version) {
+                return new Lookup(binary, true);
+            }
+            binary = encoder.get();
+            binaryVersion = version;
+            return new Lookup(binary, false);
+        }
+        if (json != null && jsonVersion == version) {
+            return new Lookup(json, true);
+        }
+        json = encoder.get();
+        jsonVersion = version;
+        return new Lookup(json, false);
+    }
+
+    record Lookup(OutboundUpdate snapshot, boolean cached) {
+    }
+}
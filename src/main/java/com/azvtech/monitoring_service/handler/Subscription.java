@@ -0,0 +1,79 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.dto.BoundingBox;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+
+import java.util.Set;
+
+/**
+ * What a WebSocket client wants to receive. A vehicle matches when its line or its
+ * {@code ordem} is listed (or both sets are empty) and, if a viewport is set, it lies inside it.
+ * A {@code partial} subscription lists fragments instead, matched case-insensitively anywhere in
+ * the line or {@code ordem}, as the dashboard's search box does while the user types.
+ * A subscription with a {@code zoom} is clustered: it receives the map clusters of that zoom in
+ * its viewport instead of vehicles. Equal subscriptions share one
+ * {@link SubscriptionRegistry.SubscriptionGroup} and one encoding.
+ *
+ * @author Fellipe Toledo
+ */
+public record Subscription(Set<String> lines, Set<String> vehicles, BoundingBox viewport, Integer zoom,
+                           boolean partial) {
+
+    public static final Subscription ALL = new Subscription(Set.of(), Set.of(), null);
+
+    public Subscription {
+        lines = Set.copyOf(lines);
+        vehicles = Set.copyOf(vehicles);
+        // Sem linhas nem veículos não há o que casar parcialmente: mesmo grupo da assinatura exata
+        partial = partial && (!lines.isEmpty() || !vehicles.isEmpty());
+    }
+
+    public Subscription(Set<String> lines, Set<String> vehicles, BoundingBox viewport, Integer zoom) {
+        this(lines, vehicles, viewport, zoom, false);
+    }
+
+    public Subscription(Set<String> lines, Set<String> vehicles, BoundingBox viewport) {
+        this(lines, vehicles, viewport, null);
+    }
+
+    public boolean isUnfiltered() {
+        return lines.isEmpty() && vehicles.isEmpty() && viewport == null && zoom == null;
+    }
+
+    public boolean filtersByIdentity() {
+        return !lines.isEmpty() || !vehicles.isEmpty();
+    }
+
+    public boolean isClustered() {
+        return zoom != null;
+    }
+
+    public boolean matches(GpsDataDTO data) {
+        boolean identityMatch = !filtersByIdentity()
+                || (partial ? containsAny(data.getLinha(), lines) || containsAny(data.getOrdem(), vehicles)
+                        : lines.contains(data.getLinha()) || vehicles.contains(data.getOrdem()));
+        return identityMatch && (viewport == null || viewport.contains(data.getLatitude(), data.getLongitude()));
+    }
+
+    private static boolean containsAny(String value, Set<String> fragments) {
+        if (value == null) {
+            return false;
+        }
+        for (String fragment : fragments) {
+            if (containsIgnoreCase(value, fragment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsIgnoreCase(String value, String fragment) {
+        // Sem alocar cópias em maiúsculas por veículo e por ciclo
+        for (int offset = 0; offset <= value.length() - fragment.length(); offset++) {
+            if (value.regionMatches(true, offset, fragment, 0, fragment.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,197 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Groups sessions by identical {@link Subscription} and keeps inverted indexes from line and
+ * from {@code ordem} to groups, so each changed vehicle is routed by lookup instead of being
+ * tested against every session. Only viewport-only and partial groups, which no id lookup can
+ * find, are checked per vehicle. Clustered
+ * groups get no vehicles at all; the handler sends them their clusters each cycle.
+ * <p>
+ * Not thread-safe: callers serialize registration and routing (see {@link GpsWebSocketHandler}).
+ *
+ * @author Fellipe Toledo
+ */
+class SubscriptionRegistry {
+
+    private final Map<Subscription, SubscriptionGroup> groups = new HashMap<>();
+    private final Map<String, SubscriptionGroup> groupBySession = new ConcurrentHashMap<>();
+    private final Map<String, Set<SubscriptionGroup>> groupsByLine = new HashMap<>();
+    private final Map<String, Set<SubscriptionGroup>> groupsByVehicle = new HashMap<>();
+    private final Set<SubscriptionGroup> scannedGroups = new LinkedHashSet<>();
+    private final Set<SubscriptionGroup> clusteredGroups = new LinkedHashSet<>();
+
+    void register(SessionOutbox outbox, Subscription subscription) {
+        String sessionId = outbox.getSession().getId();
+        unregister(sessionId);
+
+        SubscriptionGroup group = groups.computeIfAbsent(subscription, this::createGroup);
+        group.members.put(sessionId, outbox);
+        groupBySession.put(sessionId, group);
+    }
+
+    void unregister(String sessionId) {
+        SubscriptionGroup group = groupBySession.remove(sessionId);
+        if (group == null) {
+            return;
+        }
+        group.members.remove(sessionId);
+        if (group.members.isEmpty()) {
+            removeGroup(group);
+        }
+    }
+
+    Subscription subscriptionOf(String sessionId) {
+        SubscriptionGroup group = groupBySession.get(sessionId);
+        return group != null ? group.subscription : Subscription.ALL;
+    }
+
+    int groupCount() {
+        return groups.size();
+    }
+
+    Collection<SubscriptionGroup> clusteredGroups() {
+        return clusteredGroups;
+    }
+
+    /**
+     * Splits a fleet delta into one delta per subscription group. A vehicle that matched a
+     * group before this cycle but no longer does (changed line or left the viewport) is sent
+     * to that group as removed.
+     */
+    Map<SubscriptionGroup, FleetDelta> route(FleetDelta delta) {
+        Map<SubscriptionGroup, List<GpsDataDTO>> changedByGroup = new HashMap<>();
+        Map<SubscriptionGroup, List<String>> removedByGroup = new HashMap<>();
+        Set<SubscriptionGroup> candidates = new LinkedHashSet<>();
+
+        for (GpsDataDTO data : delta.changed()) {
+            GpsDataDTO previous = delta.previous().get(data.getOrdem());
+            collectCandidates(data, previous, candidates);
+
+            for (SubscriptionGroup group : candidates) {
+                if (group.subscription.matches(data)) {
+                    changedByGroup.computeIfAbsent(group, g -> new ArrayList<>()).add(data);
+                } else if (previous != null && group.subscription.matches(previous)) {
+                    removedByGroup.computeIfAbsent(group, g -> new ArrayList<>()).add(data.getOrdem());
+                }
+            }
+            candidates.clear();
+        }
+
+        for (String ordem : delta.removed()) {
+            GpsDataDTO previous = delta.previous().get(ordem);
+            if (previous == null) {
+                continue;
+            }
+            collectCandidates(previous, null, candidates);
+            for (SubscriptionGroup group : candidates) {
+                if (group.subscription.matches(previous)) {
+                    removedByGroup.computeIfAbsent(group, g -> new ArrayList<>()).add(ordem);
+                }
+            }
+            candidates.clear();
+        }
+
+        Map<SubscriptionGroup, FleetDelta> routed = new HashMap<>();
+        SubscriptionGroup unfiltered = groups.get(Subscription.ALL);
+        if (unfiltered != null) {
+            routed.put(unfiltered, delta);
+        }
+        for (SubscriptionGroup group : groups.values()) {
+            if (group == unfiltered) {
+                continue;
+            }
+            List<GpsDataDTO> changed = changedByGroup.getOrDefault(group, List.of());
+            List<String> removed = removedByGroup.getOrDefault(group, List.of());
+            if (!changed.isEmpty() || !removed.isEmpty()) {
+                routed.put(group, new FleetDelta(changed, removed));
+            }
+        }
+        return routed;
+    }
+
+    private void collectCandidates(GpsDataDTO data, GpsDataDTO previous, Set<SubscriptionGroup> candidates) {
+        addAll(candidates, groupsByLine.get(data.getLinha()));
+        addAll(candidates, groupsByVehicle.get(data.getOrdem()));
+        if (previous != null && !Objects.equals(previous.getLinha(), data.getLinha())) {
+            addAll(candidates, groupsByLine.get(previous.getLinha()));
+        }
+        candidates.addAll(scannedGroups);
+    }
+
+    private static void addAll(Set<SubscriptionGroup> target, Set<SubscriptionGroup> source) {
+        if (source != null) {
+            target.addAll(source);
+        }
+    }
+
+    private SubscriptionGroup createGroup(Subscription subscription) {
+        SubscriptionGroup group = new SubscriptionGroup(subscription);
+        if (subscription.isUnfiltered()) {
+            return group;
+        }
+        if (subscription.isClustered()) {
+            clusteredGroups.add(group);
+            return group;
+        }
+        if (!subscription.filtersByIdentity() || subscription.partial()) {
+            scannedGroups.add(group);
+            return group;
+        }
+        subscription.lines().forEach(line -> groupsByLine.computeIfAbsent(line, l -> new LinkedHashSet<>()).add(group));
+        subscription.vehicles().forEach(ordem -> groupsByVehicle.computeIfAbsent(ordem, o -> new LinkedHashSet<>()).add(group));
+        return group;
+    }
+
+    private void removeGroup(SubscriptionGroup group) {
+        Subscription subscription = group.subscription;
+        groups.remove(subscription);
+        scannedGroups.remove(group);
+        clusteredGroups.remove(group);
+        subscription.lines().forEach(line -> removeFromIndex(groupsByLine, line, group));
+        subscription.vehicles().forEach(ordem -> removeFromIndex(groupsByVehicle, ordem, group));
+    }
+
+    private static void removeFromIndex(Map<String, Set<SubscriptionGroup>> index, String key, SubscriptionGroup group) {
+        Set<SubscriptionGroup> indexed = index.get(key);
+        if (indexed != null) {
+            indexed.remove(group);
+            if (indexed.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Sessions that share the same subscription, and therefore the same encoded messages.
+     */
+    static final class SubscriptionGroup {
+
+        private final Subscription subscription;
+        private final Map<String, SessionOutbox> members = new ConcurrentHashMap<>();
+
+        private SubscriptionGroup(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        Subscription subscription() {
+            return subscription;
+        }
+
+        Collection<SessionOutbox> members() {
+            return members.values();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.azvtech.monitoring_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Tunes the polling interval between configured bounds.
+ * <p>
+ * After each successful cycle the interval is stretched when few tracked vehicles changed (the feed
+ * is quiet, e.g. at night) or the recent error rate is high, and shortened when most of them changed.
+ * It never goes below a multiple of the observed upstream latency. Consecutive failures back off
+ * exponentially up to {@code max-backoff-ms}; from {@code failure-threshold} failures on the circuit
+ * is reported open and each tick is a single probe until a fetch succeeds again.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+public class AdaptivePollingInterval {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePollingInterval.class);
+
+    /** Peso da observação mais recente nas médias móveis de latência e de erros. */
+    private static final double SMOOTHING = 0.2;
+    private static final double IDLE_CHANGED_RATIO = 0.05;
+    private static final double BUSY_CHANGED_RATIO = 0.5;
+    private static final double HIGH_ERROR_RATE = 0.2;
+    private static final double GROWTH_FACTOR = 1.25;
+    private static final double SHRINK_FACTOR = 0.8;
+    /** O intervalo nunca fica abaixo deste múltiplo da latência observada. */
+    private static final double LATENCY_MULTIPLIER = 2.0;
+
+    public enum Reason { IDLE, BUSY, LATENCY, ERROR_RATE, FAILURE, RECOVERED }
+
+    private final long minMillis;
+    private final long maxMillis;
+    private final long maxBackoffMillis;
+    private final int failureThreshold;
+
+    private final Map<Reason, Counter> adjustmentCounters = new EnumMap<>(Reason.class);
+
+    private long intervalMillis;
+    private long healthyIntervalMillis;
+    private double latencyMillis;
+    private double errorRate;
+    private int consecutiveFailures;
+
+    public AdaptivePollingInterval(@Value("${gps.polling.interval-ms}") long initialMillis,
+                                   @Value("${gps.polling.min-interval-ms}") long minMillis,
+                                   @Value("${gps.polling.max-interval-ms}") long maxMillis,
+                                   @Value("${gps.polling.max-backoff-ms}") long maxBackoffMillis,
+                                   @Value("${gps.polling.failure-threshold}") int failureThreshold,
+                                   MeterRegistry registry) {
+        if (minMillis <= 0 || minMillis > initialMillis || initialMillis > maxMillis || maxMillis > maxBackoffMillis) {
+            throw new IllegalArgumentException("Polling intervals must satisfy 0 < min <= initial <= max <= max-backoff");
+        }
+        this.minMillis = minMillis;
+        this.maxMillis = maxMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.failureThreshold = failureThreshold;
+        this.intervalMillis = initialMillis;
+        this.healthyIntervalMillis = initialMillis;
+
+        for (Reason reason : Reason.values()) {
+            adjustmentCounters.put(reason, Counter.builder("gps.polling.interval.adjustments")
+                    .description("Ajustes do intervalo de polling por motivo")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(registry));
+        }
+
+        Gauge.builder("gps.polling.interval.current", this, AdaptivePollingInterval::currentMillis)
+                .description("Intervalo de polling atual")
+                .baseUnit("milliseconds")
+                .register(registry);
+
+        Gauge.builder("gps.polling.circuit.open", this, policy -> policy.isCircuitOpen() ? 1 : 0)
+                .description("1 quando falhas consecutivas abriram o circuito para a API externa")
+                .register(registry);
+    }
+
+    public synchronized long currentMillis() {
+        return intervalMillis;
+    }
+
+    public synchronized boolean isCircuitOpen() {
+        return consecutiveFailures >= failureThreshold;
+    }
+
+    /**
+     * Records a successful fetch and how long the upstream took to answer it.
+     */
+    public synchronized void onFetchSuccess(long fetchMillis) {
+        latencyMillis = latencyMillis == 0 ? fetchMillis : smooth(latencyMillis, fetchMillis);
+        errorRate = smooth(errorRate, 0);
+        if (consecutiveFailures > 0) {
+            if (isCircuitOpen()) {
+                logger.info("Upstream recovered after {} consecutive failures, closing circuit", consecutiveFailures);
+            }
+            consecutiveFailures = 0;
+            adjust(healthyIntervalMillis, Reason.RECOVERED);
+        }
+    }
+
+    /**
+     * Adapts the interval to a processed cycle, given how many tracked vehicles changed in it.
+     */
+    public synchronized void onCycleProcessed(int changed, int fleetSize) {
+        if (consecutiveFailures > 0) {
+            return;
+        }
+        double changedRatio = fleetSize == 0 ? 0 : (double) changed / fleetSize;
+        long latencyFloor = (long) (latencyMillis * LATENCY_MULTIPLIER);
+
+        if (latencyFloor > intervalMillis) {
+            adjust(latencyFloor, Reason.LATENCY);
+        } else if (errorRate > HIGH_ERROR_RATE) {
+            adjust((long) (intervalMillis * GROWTH_FACTOR), Reason.ERROR_RATE);
+        } else if (changedRatio < IDLE_CHANGED_RATIO) {
+            adjust((long) (intervalMillis * GROWTH_FACTOR), Reason.IDLE);
+        } else if (changedRatio > BUSY_CHANGED_RATIO) {
+            adjust(Math.max(latencyFloor, (long) (intervalMillis * SHRINK_FACTOR)), Reason.BUSY);
+        }
+        healthyIntervalMillis = intervalMillis;
+    }
+
+    /**
+     * Records a failed fetch and backs off exponentially from the last healthy interval.
+     */
+    public synchronized void onFailure() {
+        errorRate = smooth(errorRate, 1);
+        consecutiveFailures++;
+        long backoff = healthyIntervalMillis << Math.min(consecutiveFailures, 20);
+        long next = Math.min(maxBackoffMillis, backoff);
+        if (next != intervalMillis) {
+            intervalMillis = next;
+            adjustmentCounters.get(Reason.FAILURE).increment();
+        }
+        if (consecutiveFailures == failureThreshold) {
+            logger.warn("Upstream failed {} times in a row, opening circuit; retrying every {} ms",
+                    consecutiveFailures, intervalMillis);
+        }
+    }
+
+    private void adjust(long candidate, Reason reason) {
+        long next = Math.clamp(candidate, minMillis, maxMillis);
+        if (next == intervalMillis) {
+            return;
+        }
+        logger.debug("Polling interval {} -> {} ms ({})", intervalMillis, next, reason);
+        intervalMillis = next;
+        adjustmentCounters.get(reason).increment();
+    }
+
+    private static double smooth(double current, double observation) {
+        return current + SMOOTHING * (observation - current);
+    }
+}
@@ -0,0 +1,152 @@
+package com.azvtech.monitoring_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster mode: checks the {@link LeaderLease} every {@code gps.cluster.renew-interval-ms}.
+ * The holder polls the upstream and publishes each cycle on {@code /cluster/replication};
+ * every other node stops polling and applies the leader's cycles through its own pipeline, so
+ * all nodes keep the same fleet and fan out to their own WebSocket clients. When the leader
+ * stops renewing, the first follower to see the lease expired takes it and polls right away.
+ *
+ * @author Fellipe Toledo
+ */
+
+@Service
+@ConditionalOnProperty(name = "gps.cluster.enabled", havingValue = "true")
+public class ClusterCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+    private final LeaderLease lease;
+    private final GpsPollingService pollingService;
+    private final TaskScheduler taskScheduler;
+    private final long renewIntervalMillis;
+    private final HttpClient replicationHttpClient = HttpClient.newHttpClient();
+    private final ReplicationClient replicationClient;
+
+    private final Counter leadershipAcquiredCounter;
+    private final Timer failoverTimer;
+
+    // Acessados só pela tarefa de renovação (e pelo desligamento, depois de cancelá-la)
+    private volatile boolean leader;
+    private long heldUntilMillis;
+    private LeaderLease.Lease lastSeen;
+    private ScheduledFuture<?> renewal;
+
+    public ClusterCoordinator(LeaderLease lease, GpsPollingService pollingService, TaskScheduler taskScheduler,
+                              @Value("${gps.cluster.renew-interval-ms}") long renewIntervalMillis,
+                              MeterRegistry registry) {
+        this.lease = lease;
+        this.pollingService = pollingService;
+        this.taskScheduler = taskScheduler;
+        this.renewIntervalMillis = renewIntervalMillis;
+        this.replicationClient = new ReplicationClient(replicationHttpClient, pollingService::applyReplicated, registry);
+
+        Gauge.builder("gps.cluster.leader", this, coordinator -> coordinator.leader ? 1 : 0)
+                .description("1 enquanto este nó detém o lease e faz o polling")
+                .register(registry);
+
+        leadershipAcquiredCounter = Counter.builder("gps.cluster.leadership.acquired")
+                .description("Vezes em que este nó assumiu o polling")
+                .register(registry);
+
+        failoverTimer = Timer.builder("gps.cluster.failover.time")
+                .description("Tempo entre a última renovação do líder anterior e este nó assumir o polling")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        logger.info("Cluster mode enabled: node {}, checking the leader lease every {} ms",
+                lease.nodeId(), renewIntervalMillis);
+        renewal = taskScheduler.scheduleWithFixedDelay(this::renew, Duration.ofMillis(renewIntervalMillis));
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (renewal != null) {
+            renewal.cancel(false);
+        }
+        replicationClient.disconnect();
+        replicationHttpClient.close();
+        if (leader) {
+            pollingService.becomeFollower();
+            leader = false;
+            try {
+                lease.release();
+                logger.info("Released the leader lease");
+            } catch (IOException e) {
+                logger.warn("Failed to release the leader lease: {}", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    synchronized void renew() {
+        LeaderLease.Lease current;
+        try {
+            current = lease.acquireOrRenew();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to check the leader lease: {}", e.getMessage());
+            // Sem conseguir renovar, o líder deixa de consultar antes que outro nó possa assumir
+            if (leader && System.currentTimeMillis() >= heldUntilMillis - renewIntervalMillis) {
+                stepDown();
+            }
+            return;
+        }
+
+        if (current.isHeldBy(lease.nodeId())) {
+            heldUntilMillis = current.expiresAtMillis();
+            if (!leader) {
+                takeOver(current);
+            }
+        } else {
+            if (leader) {
+                stepDown();
+            }
+            replicationClient.follow(current.replicationUrl());
+        }
+        lastSeen = current;
+    }
+
+    private void takeOver(LeaderLease.Lease acquired) {
+        replicationClient.disconnect();
+        leader = true;
+        leadershipAcquiredCounter.increment();
+        if (lastSeen != null && !lastSeen.isHeldBy(lease.nodeId())) {
+            failoverTimer.record(acquired.renewedAtMillis() - lastSeen.renewedAtMillis(), TimeUnit.MILLISECONDS);
+            logger.info("Took over polling from node {}", lastSeen.nodeId());
+        } else {
+            logger.info("Acquired the leader lease, polling the upstream");
+        }
+        pollingService.becomeLeader();
+    }
+
+    private void stepDown() {
+        leader = false;
+        pollingService.becomeFollower();
+        logger.warn("Lost the leader lease, stopping polling");
+    }
+}
@@ -0,0 +1,37 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Latest record per vehicle from one upstream response, how many records the response had,
+ * how many were dropped as already ingested and the newest server timestamp it contained.
+ *
+ * @author Fellipe Toledo
+ */
+public record FeedParseResult(Map<String, GpsDataDTO> latestUpdates, int totalRecords, int discardedRecords,
+                              LocalDateTime newestServerTimestamp) {
+
+    public static FeedParseResult empty() {
+        return new FeedParseResult(Map.of(), 0, 0, null);
+    }
+
+    /**
+     * Combines this result with one fetched after it, keeping the most recent record per vehicle.
+     */
+    public FeedParseResult mergedWith(FeedParseResult newer) {
+        Map<String, GpsDataDTO> merged = new HashMap<>(latestUpdates);
+        newer.latestUpdates.forEach((ordem, data) -> merged.merge(ordem, data,
+                (current, candidate) -> candidate.isMoreRecentThan(current) ? candidate : current));
+
+        LocalDateTime newest = newestServerTimestamp;
+        if (newest == null || (newer.newestServerTimestamp != null && newer.newestServerTimestamp.isAfter(newest))) {
+            newest = newer.newestServerTimestamp;
+        }
+        return new FeedParseResult(merged, totalRecords + newer.totalRecords,
+                discardedRecords + newer.discardedRecords, newest);
+    }
+}
@@ -0,0 +1,135 @@
+package com.azvtech.monitoring_service.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link LeaderLease} kept in a small properties file that every node can reach, on the same
+ * host or on a shared volume. Each read-modify-write runs under an exclusive OS file lock, so
+ * two nodes never both see the lease as free. Expiry uses the nodes' wall clocks, which must
+ * agree to well within the lease TTL.
+ *
+ * @author Fellipe Toledo
+ */
+public class FileLeaderLease implements LeaderLease {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileLeaderLease.class);
+
+    private final Path file;
+    private final String nodeId;
+    private final String replicationUrl;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    public FileLeaderLease(Path file, String nodeId, String replicationUrl, long ttlMillis) {
+        this(file, nodeId, replicationUrl, ttlMillis, System::currentTimeMillis);
+    }
+
+    FileLeaderLease(Path file, String nodeId, String replicationUrl, long ttlMillis, LongSupplier clock) {
+        this.file = file;
+        this.nodeId = nodeId;
+        this.replicationUrl = replicationUrl;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public Lease acquireOrRenew() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE); FileLock ignored = channel.lock()) {
+            long now = clock.getAsLong();
+            Lease current = read(channel);
+            if (current != null && !current.isHeldBy(nodeId) && current.expiresAtMillis() > now) {
+                return current;
+            }
+            Lease acquired = new Lease(nodeId, replicationUrl, now, now + ttlMillis);
+            write(channel, acquired);
+            return acquired;
+        }
+    }
+
+    @Override
+    public void release() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            Lease current = read(channel);
+            if (current != null && current.isHeldBy(nodeId)) {
+                // Expira agora: o próximo nó a tentar assume sem esperar o TTL
+                write(channel, new Lease(nodeId, replicationUrl, current.renewedAtMillis(), clock.getAsLong()));
+            }
+        }
+    }
+
+    private Lease read(FileChannel channel) throws IOException {
+        int size = (int) channel.size();
+        if (size == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        Properties properties = new Properties();
+        properties.load(new StringReader(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8)));
+        try {
+            return new Lease(required(properties, "node-id"), required(properties, "replication-url"),
+                    Long.parseLong(required(properties, "renewed-at")),
+                    Long.parseLong(required(properties, "expires-at")));
+        } catch (IllegalArgumentException e) {
+            // Arquivo truncado ou editado à mão: tratado como lease livre
+            logger.warn("Ignoring unreadable leader lease {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String required(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("missing " + key);
+        }
+        return value;
+    }
+
+    private static void write(FileChannel channel, Lease lease) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("node-id", lease.nodeId());
+        properties.setProperty("replication-url", lease.replicationUrl());
+        properties.setProperty("renewed-at", Long.toString(lease.renewedAtMillis()));
+        properties.setProperty("expires-at", Long.toString(lease.expiresAtMillis()));
+        StringWriter text = new StringWriter();
+        properties.store(text, null);
+
+        ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        channel.truncate(0);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, bytes.position());
+        }
+    }
+}
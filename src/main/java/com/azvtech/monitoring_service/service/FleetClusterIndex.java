@@ -0,0 +1,241 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.BoundingBox;
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.MapClusterDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical grid of vehicle counts for the map view, one level per zoom from 0 to
+ * {@code max-cluster-zoom}. Cells follow the Web Mercator tiles the map is drawn on, split so
+ * that each is {@code cell-pixels} wide on screen at its zoom; a cell's four children are the
+ * cells of the next zoom. Each cell keeps a count and the sum of its vehicles' coordinates, so a
+ * moving vehicle only adjusts one cell per level and the centroids come out of the sums. Reads
+ * are lock-free and may observe a cycle in progress.
+ *
+ * @author Fellipe Toledo
+ */
+
+@Service
+public class FleetClusterIndex implements FleetUpdateListener {
+
+    private static final int TILE_PIXELS = 256;
+    private static final double MAX_LATITUDE = 85.05112878;
+    // Coordenadas de célula no nível mais fino precisam caber em um int
+    private static final int MAX_GRID_ZOOM = 30;
+    private static final double COORDINATE_SCALE = 1e6;
+
+    private final int maxClusterZoom;
+    private final int gridZoom;
+    // Índice = zoom de exibição
+    private final List<Map<Long, Cell>> levels;
+    private final Map<String, Placement> vehicles = new ConcurrentHashMap<>();
+    private final Timer cycleTimer;
+
+    public FleetClusterIndex(@Value("${gps.clustering.max-cluster-zoom}") int maxClusterZoom,
+                             @Value("${gps.clustering.cell-pixels}") int cellPixels,
+                             MeterRegistry registry) {
+        if (cellPixels <= 0 || cellPixels > TILE_PIXELS || Integer.bitCount(cellPixels) != 1) {
+            throw new IllegalArgumentException("cell-pixels must be a power of two up to " + TILE_PIXELS);
+        }
+        this.maxClusterZoom = maxClusterZoom;
+        this.gridZoom = maxClusterZoom + Integer.numberOfTrailingZeros(TILE_PIXELS / cellPixels);
+        if (maxClusterZoom < 0 || gridZoom > MAX_GRID_ZOOM) {
+            throw new IllegalArgumentException("max-cluster-zoom out of range: " + maxClusterZoom);
+        }
+        this.levels = new ArrayList<>(maxClusterZoom + 1);
+        for (int zoom = 0; zoom <= maxClusterZoom; zoom++) {
+            levels.add(new ConcurrentHashMap<>());
+        }
+
+        cycleTimer = Timer.builder("gps.clustering.cycle.time")
+                .description("Tempo para atualizar os clusters do mapa com um ciclo")
+                .register(registry);
+
+        Gauge.builder("gps.clustering.vehicles", vehicles, Map::size)
+                .description("Veículos no índice de clusters do mapa")
+                .register(registry);
+
+        Gauge.builder("gps.clustering.cells", levels, cells -> cells.stream().mapToInt(Map::size).sum())
+                .description("Células ocupadas em todos os zooms do índice de clusters")
+                .register(registry);
+    }
+
+    @Override
+    public void onFleetUpdate(FleetDelta delta) {
+        long start = System.nanoTime();
+        for (GpsDataDTO data : delta.changed()) {
+            update(data);
+        }
+        for (String ordem : delta.removed()) {
+            remove(ordem);
+        }
+        cycleTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    public void update(GpsDataDTO data) {
+        Placement next = place(data.getLatitude(), data.getLongitude());
+        Placement previous = vehicles.put(data.getOrdem(), next);
+        if (next.equals(previous)) {
+            return;
+        }
+        for (int zoom = maxClusterZoom; zoom >= 0; zoom--) {
+            Map<Long, Cell> cells = levels.get(zoom);
+            long key = next.cellKey(maxClusterZoom - zoom);
+            if (previous != null && previous.cellKey(maxClusterZoom - zoom) == key) {
+                // Mesma célula: só o centróide se desloca
+                cells.computeIfPresent(key, (k, cell) -> cell.moved(previous, next));
+            } else {
+                if (previous != null) {
+                    removeFromCell(cells, previous.cellKey(maxClusterZoom - zoom), previous);
+                }
+                cells.merge(key, new Cell(1, next.latitude, next.longitude), Cell::plus);
+            }
+        }
+    }
+
+    public void remove(String ordem) {
+        Placement previous = vehicles.remove(ordem);
+        if (previous == null) {
+            return;
+        }
+        for (int zoom = maxClusterZoom; zoom >= 0; zoom--) {
+            removeFromCell(levels.get(zoom), previous.cellKey(maxClusterZoom - zoom), previous);
+        }
+    }
+
+    public int size() {
+        return vehicles.size();
+    }
+
+    /**
+     * Highest zoom answered with clusters; above it the map shows individual vehicles.
+     */
+    public int maxClusterZoom() {
+        return maxClusterZoom;
+    }
+
+    /**
+     * Clusters of the grid cells at {@code zoom} that overlap the viewport, or of every
+     * occupied cell when the viewport is {@code null}.
+     */
+    public List<MapClusterDTO> clusters(int zoom, BoundingBox viewport) {
+        if (zoom < 0 || zoom > maxClusterZoom) {
+            throw new IllegalArgumentException("zoom must be between 0 and " + maxClusterZoom);
+        }
+        Map<Long, Cell> cells = levels.get(zoom);
+        List<MapClusterDTO> result = new ArrayList<>();
+        if (viewport == null) {
+            cells.values().forEach(cell -> result.add(cell.toCluster()));
+            return result;
+        }
+
+        int shift = maxClusterZoom - zoom;
+        int minX = column(viewport.minLon()) >> shift;
+        int maxX = column(viewport.maxLon()) >> shift;
+        // O eixo y do Mercator cresce para o sul
+        int minY = row(viewport.maxLat()) >> shift;
+        int maxY = row(viewport.minLat()) >> shift;
+
+        // Viewports maiores que a área ocupada: percorrer apenas as células existentes
+        if ((long) (maxX - minX + 1) * (maxY - minY + 1) > cells.size()) {
+            cells.forEach((key, cell) -> {
+                int x = (int) (key >> 32);
+                int y = key.intValue();
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                    result.add(cell.toCluster());
+                }
+            });
+            return result;
+        }
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                Cell cell = cells.get(key(x, y));
+                if (cell != null) {
+                    result.add(cell.toCluster());
+                }
+            }
+        }
+        return result;
+    }
+
+    private Placement place(double latitude, double longitude) {
+        return new Placement(latitude, longitude, column(longitude), row(latitude));
+    }
+
+    private int column(double longitude) {
+        double x = (longitude + 180) / 360;
+        return toGrid(x);
+    }
+
+    private int row(double latitude) {
+        double sin = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude))));
+        double y = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+        return toGrid(y);
+    }
+
+    private int toGrid(double fraction) {
+        long size = 1L << gridZoom;
+        return (int) Math.max(0, Math.min(size - 1, (long) Math.floor(fraction * size)));
+    }
+
+    private static void removeFromCell(Map<Long, Cell> cells, long key, Placement placement) {
+        cells.computeIfPresent(key, (k, cell) -> cell.minus(placement));
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * Where a vehicle was counted: its coordinates and its cell at the finest grid level.
+     */
+    private record Placement(double latitude, double longitude, int x, int y) {
+
+        long cellKey(int shift) {
+            return key(x >> shift, y >> shift);
+        }
+    }
+
+    /**
+     * Immutable, so lock-free readers never see a count that does not match its sums.
+     */
+    private record Cell(int count, double sumLatitude, double sumLongitude) {
+
+        Cell plus(Cell other) {
+            return new Cell(count + other.count, sumLatitude + other.sumLatitude, sumLongitude + other.sumLongitude);
+        }
+
+        Cell minus(Placement placement) {
+            // Célula vazia é removida, o que também descarta o erro de arredondamento acumulado
+            return count <= 1 ? null
+                    : new Cell(count - 1, sumLatitude - placement.latitude, sumLongitude - placement.longitude);
+        }
+
+        Cell moved(Placement from, Placement to) {
+            return new Cell(count, sumLatitude - from.latitude + to.latitude,
+                    sumLongitude - from.longitude + to.longitude);
+        }
+
+        MapClusterDTO toCluster() {
+            // Mesma precisão das posições do feed (6 casas), sem o ruído das somas
+            return new MapClusterDTO(round(sumLatitude / count), round(sumLongitude / count), count);
+        }
+
+        private static double round(double coordinate) {
+            return Math.round(coordinate * COORDINATE_SCALE) / COORDINATE_SCALE;
+        }
+    }
+}
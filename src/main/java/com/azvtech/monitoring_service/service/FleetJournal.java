@@ -0,0 +1,310 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of every ingested batch, written to fixed-size memory-mapped segment files.
+ * Each batch is framed as {@code [int length][int crc][long timestamp][int count][records]}; the
+ * length is written last, so a batch torn by a crash reads as the end of the segment. Segments
+ * roll over when full and are deleted once all their batches fall out of the retention.
+ * <p>
+ * Writes go to the page cache through the mapping and survive a JVM crash; segments are only
+ * forced to disk when they roll over.
+ *
+ * @author Fellipe Toledo
+ */
+@Service
+public class FleetJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetJournal.class);
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("\\d{20}\\.journal");
+    static final int BATCH_HEADER_BYTES = 20;
+    // Um MappedByteBuffer é indexado por int: segmentos precisam ficar abaixo de 2 GiB
+    static final int MAX_SEGMENT_SIZE_MB = 2047;
+
+    // Desligado também quando o diretório não pode ser aberto
+    private volatile boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final long retentionMillis;
+
+    // Segmentos em ordem cronológica; o último recebe as escritas
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private MappedByteBuffer activeBuffer;
+    private int activePosition;
+    private ByteBuffer scratch = ByteBuffer.allocate(64 * 1024);
+
+    private final Counter appendedBytesCounter;
+    private final Timer appendTimer;
+
+    private record Segment(Path path, long firstTimestamp) {
+    }
+
+    public FleetJournal(@Value("${gps.journal.enabled}") boolean enabled,
+                        @Value("${gps.journal.directory}") String directory,
+                        @Value("${gps.journal.segment-size-mb}") int segmentSizeMb,
+                        @Value("${gps.journal.retention-hours}") long retentionHours,
+                        MeterRegistry registry) {
+        if (segmentSizeMb < 1 || segmentSizeMb > MAX_SEGMENT_SIZE_MB) {
+            throw new IllegalArgumentException("gps.journal.segment-size-mb must be between 1 and "
+                    + MAX_SEGMENT_SIZE_MB + ", got " + segmentSizeMb);
+        }
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentBytes = Math.toIntExact(segmentSizeMb * 1024L * 1024L);
+        this.retentionMillis = retentionHours * 3_600_000;
+
+        appendedBytesCounter = Counter.builder("gps.journal.appended")
+                .description("Bytes gravados no journal")
+                .baseUnit("bytes")
+                .register(registry);
+
+        appendTimer = Timer.builder("gps.journal.append.time")
+                .description("Tempo para gravar um batch no journal")
+                .register(registry);
+
+        Gauge.builder("gps.journal.segments", segments, List::size)
+                .description("Segmentos do journal em disco")
+                .register(registry);
+    }
+
+    /**
+     * Opens the journal directory. A directory that cannot be opened disables the journal instead
+     * of failing startup: the service keeps polling, without replay or recovery.
+     */
+    @PostConstruct
+    public synchronized void open() {
+        if (!enabled) {
+            logger.info("Fleet journal disabled");
+            return;
+        }
+        try {
+            openSegments();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to open fleet journal at {}, journaling disabled: {}",
+                    directory.toAbsolutePath(), e.getMessage());
+            enabled = false;
+            segments.clear();
+            activeBuffer = null;
+        }
+    }
+
+    private void openSegments() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches())
+                    .map(path -> new Segment(path, firstTimestampOf(path)))
+                    .sorted((a, b) -> Long.compare(a.firstTimestamp(), b.firstTimestamp()))
+                    .forEach(segments::add);
+        }
+
+        if (!segments.isEmpty()) {
+            // Continua no último segmento, logo após o último batch íntegro
+            Segment last = segments.get(segments.size() - 1);
+            activeBuffer = map(last.path(), FileChannel.MapMode.READ_WRITE, Math.max(segmentBytes, Math.toIntExact(Files.size(last.path()))));
+            activePosition = endOfBatches(activeBuffer);
+        }
+        logger.info("Fleet journal opened at {} with {} segments", directory.toAbsolutePath(), segments.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends one ingested batch, rolling over to a new segment when the current one is full.
+     */
+    public synchronized void append(long timestamp, Collection<GpsDataDTO> batch) {
+        if (!enabled || batch.isEmpty()) {
+            return;
+        }
+        appendTimer.record(() -> {
+            try {
+                scratch = GpsRecordCodec.encode(scratch, batch);
+                ByteBuffer payload = scratch;
+                int frameBytes = BATCH_HEADER_BYTES + payload.remaining();
+                if (activeBuffer == null || activePosition + frameBytes > activeBuffer.capacity()) {
+                    rollover(timestamp, frameBytes);
+                }
+
+                CRC32C crc = new CRC32C();
+                crc.update(payload.duplicate());
+                activeBuffer.put(activePosition + BATCH_HEADER_BYTES, payload, 0, payload.remaining());
+                activeBuffer.putInt(activePosition + 4, (int) crc.getValue());
+                activeBuffer.putLong(activePosition + 8, timestamp);
+                activeBuffer.putInt(activePosition + 16, batch.size());
+                // Gravado por último: confirma o batch
+                activeBuffer.putInt(activePosition, payload.remaining());
+                activePosition += frameBytes;
+                appendedBytesCounter.increment(frameBytes);
+            } catch (IOException e) {
+                logger.error("Failed to append batch to journal: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Reads every batch ingested between {@code fromMillis} and {@code toMillis}, oldest first.
+     */
+    public void read(long fromMillis, long toMillis, JournalBatchConsumer consumer) throws IOException, InterruptedException {
+        List<Segment> snapshot = List.copyOf(segments);
+        for (int i = 0; i < snapshot.size(); i++) {
+            // Pula segmentos que terminam antes do início do intervalo
+            if (i + 1 < snapshot.size() && snapshot.get(i + 1).firstTimestamp() < fromMillis) {
+                continue;
+            }
+            if (snapshot.get(i).firstTimestamp() > toMillis) {
+                return;
+            }
+            if (!readSegment(snapshot.get(i).path(), fromMillis, toMillis, consumer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Latest record per vehicle among the batches ingested since {@code sinceMillis}.
+     */
+    public Map<String, GpsDataDTO> recoverLatestState(long sinceMillis) throws IOException, InterruptedException {
+        Map<String, GpsDataDTO> latest = new HashMap<>();
+        read(sinceMillis, Long.MAX_VALUE, (timestamp, batch) -> {
+            for (GpsDataDTO data : batch) {
+                GpsDataDTO existing = latest.get(data.getOrdem());
+                if (existing == null || data.isMoreRecentThan(existing)) {
+                    latest.put(data.getOrdem(), data);
+                }
+            }
+            return true;
+        });
+        return latest;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (activeBuffer != null) {
+            activeBuffer.force();
+        }
+    }
+
+    private void rollover(long timestamp, int frameBytes) throws IOException {
+        if (activeBuffer != null) {
+            activeBuffer.force();
+        }
+        Path path = directory.resolve(String.format("%020d%s", timestamp, SEGMENT_SUFFIX));
+        activeBuffer = map(path, FileChannel.MapMode.READ_WRITE, Math.max(segmentBytes, frameBytes + BATCH_HEADER_BYTES));
+        activePosition = 0;
+        segments.add(new Segment(path, timestamp));
+        deleteExpiredSegments(timestamp - retentionMillis);
+    }
+
+    private void deleteExpiredSegments(long cutoff) {
+        // Um segmento só expira quando o seguinte também começa antes do corte
+        while (segments.size() > 1 && segments.get(1).firstTimestamp() < cutoff) {
+            Segment expired = segments.remove(0);
+            try {
+                Files.deleteIfExists(expired.path());
+                logger.info("Deleted expired journal segment {}", expired.path().getFileName());
+            } catch (IOException e) {
+                logger.warn("Failed to delete journal segment {}: {}", expired.path(), e.getMessage());
+            }
+        }
+    }
+
+    private boolean readSegment(Path path, long fromMillis, long toMillis, JournalBatchConsumer consumer)
+            throws IOException, InterruptedException {
+        MappedByteBuffer buffer;
+        try {
+            buffer = map(path, FileChannel.MapMode.READ_ONLY, 0);
+        } catch (IOException e) {
+            // Removido pela retenção durante a leitura
+            logger.debug("Journal segment {} no longer readable: {}", path.getFileName(), e.getMessage());
+            return true;
+        }
+
+        int position = 0;
+        int length;
+        while ((length = committedLength(buffer, position)) > 0) {
+            long timestamp = buffer.getLong(position + 8);
+            if (timestamp > toMillis) {
+                return false;
+            }
+            if (timestamp >= fromMillis) {
+                ByteBuffer payload = buffer.slice(position + BATCH_HEADER_BYTES, length);
+                if (!consumer.accept(timestamp, GpsRecordCodec.decode(payload, buffer.getInt(position + 16)))) {
+                    return false;
+                }
+            }
+            position += BATCH_HEADER_BYTES + length;
+        }
+        return true;
+    }
+
+    private static MappedByteBuffer map(Path path, FileChannel.MapMode mode, int size) throws IOException {
+        boolean writable = mode == FileChannel.MapMode.READ_WRITE;
+        try (FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            // O mapeamento continua válido depois que o canal é fechado
+            return channel.map(mode, 0, writable ? size : channel.size());
+        }
+    }
+
+    private static int endOfBatches(ByteBuffer buffer) {
+        int position = 0;
+        int length;
+        while ((length = committedLength(buffer, position)) > 0) {
+            position += BATCH_HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    /**
+     * Payload length of the batch at {@code position}, or 0 when there is no complete, intact batch
+     * there (end of the written data or a write torn by a crash).
+     */
+    private static int committedLength(ByteBuffer buffer, int position) {
+        if (position + BATCH_HEADER_BYTES > buffer.capacity()) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + BATCH_HEADER_BYTES + length > buffer.capacity()) {
+            return 0;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position + BATCH_HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(position + 4) ? length : 0;
+    }
+
+    private static long firstTimestampOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,142 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-side last-known state of every vehicle, keyed by {@code ordem}. Each polling cycle is
+ * diffed against it so only vehicles that actually changed are broadcast.
+ *
+ * @author Fellipe Toledo
+ */
+
+@Service
+public class FleetStateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetStateService.class);
+
+    @Value("${gps.fleet.stale-after-seconds}")
+    private long staleAfterSeconds;
+
+    private final Map<String, GpsDataDTO> lastKnownState = new ConcurrentHashMap<>();
+    // Incrementada a cada ciclo que altera o estado; identifica snapshots já serializados
+    private final AtomicLong version = new AtomicLong();
+
+    // Métricas
+    private final Counter changedCounter;
+    private final Counter unchangedCounter;
+    private final Counter removedCounter;
+
+    public FleetStateService(MeterRegistry registry) {
+        Gauge.builder("gps.fleet.size", lastKnownState, Map::size)
+                .description("Quantidade de veículos no estado atual da frota")
+                .register(registry);
+
+        changedCounter = Counter.builder("gps.fleet.changed")
+                .description("Veículos com posição, velocidade, linha ou horário alterados")
+                .register(registry);
+
+        unchangedCounter = Counter.builder("gps.fleet.unchanged")
+                .description("Veículos recebidos sem alteração desde o último ciclo")
+                .register(registry);
+
+        removedCounter = Counter.builder("gps.fleet.removed")
+                .description("Veículos removidos do estado por inatividade")
+                .register(registry);
+    }
+
+    /**
+     * Merges the latest record per vehicle into the last-known state and returns what changed.
+     * Vehicles whose last server timestamp is older than {@code gps.fleet.stale-after-seconds}
+     * are evicted and reported as removed.
+     */
+    public FleetDelta applyUpdates(Map<String, GpsDataDTO> latestUpdates) {
+        List<GpsDataDTO> changed = new ArrayList<>();
+        Map<String, GpsDataDTO> previousState = new HashMap<>();
+        int unchanged = 0;
+
+        for (GpsDataDTO data : latestUpdates.values()) {
+            GpsDataDTO previous = lastKnownState.get(data.getOrdem());
+
+            if (previous == null || (data.hasChangedFrom(previous) && !previous.isMoreRecentThan(data))) {
+                lastKnownState.put(data.getOrdem(), data);
+                changed.add(data);
+                if (previous != null) {
+                    previousState.put(data.getOrdem(), previous);
+                }
+            } else {
+                unchanged++;
+            }
+        }
+
+        List<String> removed = evictStale(previousState);
+        if (!changed.isEmpty() || !removed.isEmpty()) {
+            version.incrementAndGet();
+        }
+
+        changedCounter.increment(changed.size());
+        unchangedCounter.increment(unchanged);
+        removedCounter.increment(removed.size());
+
+        logger.debug("Fleet state: {} changed, {} unchanged, {} removed, {} tracked",
+                changed.size(), unchanged, removed.size(), lastKnownState.size());
+
+        return new FleetDelta(changed, removed, previousState);
+    }
+
+    /**
+     * Version of the current state, advanced by every update cycle that changes it.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Full copy of the current fleet, used to bring newly connected clients up to date.
+     */
+    public List<GpsDataDTO> snapshot() {
+        return List.copyOf(lastKnownState.values());
+    }
+
+    /**
+     * Whether a record is no newer than what is already known for its vehicle.
+     */
+    public boolean isAlreadyIngested(GpsDataDTO data) {
+        GpsDataDTO known = lastKnownState.get(data.getOrdem());
+        return known != null && !data.isMoreRecentThan(known);
+    }
+
+    public int size() {
+        return lastKnownState.size();
+    }
+
+    private List<String> evictStale(Map<String, GpsDataDTO> previousState) {
+        long threshold = System.currentTimeMillis() - staleAfterSeconds * 1000;
+        List<String> removed = new ArrayList<>();
+
+        lastKnownState.values().removeIf(data -> {
+            if (data.getDatahoraservidorMillis() < threshold) {
+                removed.add(data.getOrdem());
+                previousState.put(data.getOrdem(), data);
+                return true;
+            }
+            return false;
+        });
+
+        return removed;
+    }
+}
@@ -0,0 +1,16 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.FleetDelta;
+
+/**
+ * Receives every fleet delta after it has been applied to {@link FleetStateService}. Implemented
+ * by the components that maintain derived, incrementally updated views of the fleet.
+ * Implementations run on the polling thread and must be quick. Those that read another
+ * listener's view of the same delta declare their position with {@code @Order}.
+ *
+ * @author Fellipe Toledo
+ */
+public interface FleetUpdateListener {
+
+    void onFleetUpdate(FleetDelta delta);
+}
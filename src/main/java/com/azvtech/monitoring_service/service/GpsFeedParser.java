@@ -0,0 +1,402 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.utils.NumberUtils;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Parses the upstream GPS feed token by token straight from the response stream and keeps
+ * only the most recent record per vehicle while parsing, so peak memory follows the fleet size
+ * rather than the number of records in the polling window. Records the caller has already
+ * ingested are dropped before deduplication.
+ * <p>
+ * Each record is decoded into a reused {@link GpsDataDTO}: coordinates and timestamps are read
+ * from the parser's character buffer and ids are canonicalized through an {@link IdDictionary},
+ * so only the first record of each vehicle in a response allocates.
+ * <p>
+ * Once a response reaches {@code gps.ingest.parallel-threshold-records}, the next one is buffered
+ * and decoded in parallel shards instead, since a single decoding thread becomes the bottleneck
+ * for very large feeds. The buffer holds the whole response on the heap, so it is bounded by
+ * {@code gps.ingest.max-buffered-mb} and by a quarter of the heap; a larger response is parsed
+ * sequentially, continuing from the bytes already read.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+public class GpsFeedParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(GpsFeedParser.class);
+
+    // Frota e linhas somam poucos milhares de ids; o limite só protege contra dados corrompidos
+    private static final int MAX_INTERNED_IDS = 65_536;
+    // Maior array que a JVM aloca com segurança
+    private static final int MAX_ARRAY_BYTES = Integer.MAX_VALUE - 8;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final IdDictionary ids = new IdDictionary(MAX_INTERNED_IDS);
+
+    // 0 desativa a decodificação paralela
+    @Value("${gps.ingest.parallel-threshold-records}")
+    private int parallelThresholdRecords;
+
+    // 0 usa um shard por núcleo
+    @Value("${gps.ingest.shards}")
+    private int shards;
+
+    // Limite da resposta bufferizada para a decodificação paralela
+    @Value("${gps.ingest.max-buffered-mb}")
+    private int maxBufferedMb;
+
+    private volatile int lastTotalRecords;
+    private volatile boolean bufferLimitReported;
+
+    public FeedParseResult parseLatestUpdates(InputStream body) throws IOException {
+        return parseLatestUpdates(body, data -> false);
+    }
+
+    public FeedParseResult parseLatestUpdates(InputStream body, Predicate<GpsDataDTO> alreadySeen) throws IOException {
+        int shardCount = shardCount();
+        FeedParseResult result;
+        // O tamanho da próxima resposta é desconhecido até ser lida; a anterior decide se vale bufferizar
+        if (shardCount > 1 && parallelThresholdRecords > 0 && lastTotalRecords >= parallelThresholdRecords) {
+            result = parseBuffered(body, shardCount, maxBufferedBytes(), alreadySeen);
+        } else {
+            result = parseSequential(body, alreadySeen);
+        }
+        lastTotalRecords = result.totalRecords();
+        return result;
+    }
+
+    /**
+     * Buffers the response for a sharded parse when it fits in {@code maxBufferedBytes}; otherwise
+     * parses it sequentially, starting with the bytes already buffered.
+     */
+    FeedParseResult parseBuffered(InputStream body, int shards, int maxBufferedBytes,
+                                  Predicate<GpsDataDTO> alreadySeen) throws IOException {
+        byte[] buffered = body.readNBytes(maxBufferedBytes + 1);
+        if (buffered.length <= maxBufferedBytes) {
+            return parseLatestUpdates(buffered, shards, alreadySeen);
+        }
+        if (!bufferLimitReported) {
+            bufferLimitReported = true;
+            logger.warn("GPS response larger than {} MB, parsing it sequentially; raise gps.ingest.max-buffered-mb "
+                    + "and the heap to decode it in parallel", maxBufferedBytes >> 20);
+        }
+        return parseSequential(new SequenceInputStream(new ByteArrayInputStream(buffered), body), alreadySeen);
+    }
+
+    /**
+     * Parses a buffered response split into up to {@code shards} ranges of whole records, each
+     * decoded and reduced on its own thread into a private map; the per-shard maps are then merged
+     * keeping the most recent record per vehicle. The buffer is modified while parsing and restored
+     * before returning. If the body cannot be split on record boundaries it is parsed sequentially.
+     */
+    public FeedParseResult parseLatestUpdates(byte[] body, int shards, Predicate<GpsDataDTO> alreadySeen)
+            throws IOException {
+        int[] separators = findRecordSeparators(body, shards);
+        if (separators.length == 0) {
+            return parseSequential(new ByteArrayInputStream(body), alreadySeen);
+        }
+
+        List<Callable<Reduction>> tasks = new ArrayList<>(separators.length + 1);
+        for (int shard = 0; shard <= separators.length; shard++) {
+            int from = shard == 0 ? 0 : separators[shard - 1];
+            int to = shard == separators.length ? body.length : separators[shard];
+            boolean openEnded = shard < separators.length;
+            tasks.add(() -> reduceRange(body, from, to, openEnded, alreadySeen));
+        }
+
+        // Cada trecho intermediário passa a começar com '[' no lugar da vírgula que o separa do anterior
+        for (int separator : separators) {
+            body[separator] = '[';
+        }
+        Reduction merged;
+        try {
+            merged = mergeShards(tasks);
+        } catch (IOException e) {
+            logger.debug("Sharded parse failed ({}), falling back to sequential parse", e.getMessage());
+            merged = null;
+        } finally {
+            for (int separator : separators) {
+                body[separator] = ',';
+            }
+        }
+        if (merged == null) {
+            return parseSequential(new ByteArrayInputStream(body), alreadySeen);
+        }
+
+        logger.debug("Filtered {} unique vehicles from {} total records ({} already ingested) in {} shards",
+                merged.latestUpdates.size(), merged.totalRecords, merged.discardedRecords, tasks.size());
+        return merged.result();
+    }
+
+    private FeedParseResult parseSequential(InputStream body, Predicate<GpsDataDTO> alreadySeen) throws IOException {
+        Reduction reduction = new Reduction(alreadySeen);
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                logger.warn("Empty JSON data received");
+                return FeedParseResult.empty();
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of GPS records but found " + token);
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                reduction.accept(parser);
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.error("Failed to parse JSON data after {} records: {}", reduction.totalRecords, e.getMessage());
+            throw e instanceof IOException io ? io : new IOException(e.getMessage(), e);
+        }
+
+        logger.debug("Filtered {} unique vehicles from {} total records ({} already ingested)",
+                reduction.latestUpdates.size(), reduction.totalRecords, reduction.discardedRecords);
+        return reduction.result();
+    }
+
+    private Reduction reduceRange(byte[] body, int from, int to, boolean openEnded,
+                                  Predicate<GpsDataDTO> alreadySeen) throws IOException {
+        Reduction reduction = new Reduction(alreadySeen);
+        try (JsonParser parser = jsonFactory.createParser(body, from, to - from)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Shard does not start at a record boundary");
+            }
+            while (nextInRange(parser, openEnded) == JsonToken.START_OBJECT) {
+                reduction.accept(parser);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return reduction;
+    }
+
+    private static JsonToken nextInRange(JsonParser parser, boolean openEnded) throws IOException {
+        try {
+            return parser.nextToken();
+        } catch (JsonEOFException e) {
+            // Trechos intermediários terminam logo após o último registro, sem fechar o array
+            if (openEnded && parser.getParsingContext().inArray()) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private static Reduction mergeShards(List<Callable<Reduction>> tasks) throws IOException {
+        List<Future<Reduction>> futures = ForkJoinPool.commonPool().invokeAll(tasks);
+        Reduction merged = null;
+        try {
+            for (Future<Reduction> future : futures) {
+                Reduction shard = future.get();
+                if (merged == null) {
+                    merged = shard;
+                } else {
+                    merged.mergeFrom(shard);
+                }
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while merging feed shards");
+        }
+        return merged;
+    }
+
+    /**
+     * Picks up to {@code shards - 1} commas that separate two records ({@code },{} with optional
+     * whitespace), starting the search at evenly spaced offsets. Feed records are flat objects, so
+     * a closing brace followed by a comma and an opening brace only occurs between records.
+     */
+    static int[] findRecordSeparators(byte[] body, int shards) {
+        int[] separators = new int[Math.max(0, shards - 1)];
+        int count = 0;
+        int searchFrom = 0;
+        for (int shard = 1; shard < shards; shard++) {
+            int position = Math.max(searchFrom, (int) ((long) body.length * shard / shards));
+            int separator = nextSeparator(body, position);
+            if (separator < 0) {
+                break;
+            }
+            separators[count++] = separator;
+            searchFrom = separator + 1;
+        }
+        return Arrays.copyOf(separators, count);
+    }
+
+    private static int nextSeparator(byte[] body, int from) {
+        for (int i = from; i < body.length; i++) {
+            if (body[i] == ',' && previousNonBlank(body, i) == '}' && nextNonBlank(body, i) == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte previousNonBlank(byte[] body, int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            if (!isBlank(body[i])) {
+                return body[i];
+            }
+        }
+        return 0;
+    }
+
+    private static byte nextNonBlank(byte[] body, int index) {
+        for (int i = index + 1; i < body.length; i++) {
+            if (!isBlank(body[i])) {
+                return body[i];
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private int maxBufferedBytes() {
+        long limit = Math.min((long) maxBufferedMb << 20, Runtime.getRuntime().maxMemory() / 4);
+        return (int) Math.min(limit, MAX_ARRAY_BYTES - 1);
+    }
+
+    private int shardCount() {
+        return shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Latest record per vehicle over a sequence of decoded records, with a scratch record reused
+     * for decoding. Not thread-safe: each shard owns one.
+     */
+    private final class Reduction {
+
+        private final Predicate<GpsDataDTO> alreadySeen;
+        private final Map<String, GpsDataDTO> latestUpdates = new HashMap<>();
+        private final GpsDataDTO record = new GpsDataDTO();
+        private int totalRecords;
+        private int discardedRecords;
+        private long newestServerTimestamp = GpsDataDTO.NO_TIMESTAMP;
+
+        private Reduction(Predicate<GpsDataDTO> alreadySeen) {
+            this.alreadySeen = alreadySeen;
+        }
+
+        private void accept(JsonParser parser) throws IOException {
+            record.clear();
+            decodeRecord(parser, record);
+            totalRecords++;
+
+            newestServerTimestamp = Math.max(newestServerTimestamp, record.getDatahoraservidorMillis());
+            if (record.getOrdem() == null) {
+                return;
+            }
+            if (alreadySeen.test(record)) {
+                discardedRecords++;
+                return;
+            }
+
+            GpsDataDTO existingData = latestUpdates.get(record.getOrdem());
+            if (existingData == null) {
+                GpsDataDTO data = new GpsDataDTO();
+                data.copyFrom(record);
+                latestUpdates.put(data.getOrdem(), data);
+            } else if (record.isMoreRecentThan(existingData)) {
+                existingData.copyFrom(record);
+            }
+        }
+
+        private void mergeFrom(Reduction other) {
+            totalRecords += other.totalRecords;
+            discardedRecords += other.discardedRecords;
+            newestServerTimestamp = Math.max(newestServerTimestamp, other.newestServerTimestamp);
+            other.latestUpdates.forEach((ordem, data) -> latestUpdates.merge(ordem, data,
+                    (current, candidate) -> candidate.isMoreRecentThan(current) ? candidate : current));
+        }
+
+        private FeedParseResult result() {
+            return new FeedParseResult(latestUpdates, totalRecords, discardedRecords,
+                    toLocalDateTime(newestServerTimestamp));
+        }
+    }
+
+    private void decodeRecord(JsonParser parser, GpsDataDTO record) throws IOException {
+        double latitude = 0;
+        double longitude = 0;
+        String field;
+        // Nomes de campo vêm canonicalizados da tabela de símbolos do Jackson
+        while ((field = parser.nextFieldName()) != null) {
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "ordem" -> record.setOrdem(readId(parser, value));
+                case "linha" -> record.setLinha(readId(parser, value));
+                case "latitude" -> latitude = readDecimal(parser, value);
+                case "longitude" -> longitude = readDecimal(parser, value);
+                case "velocidade" -> record.setVelocidade((int) readDecimal(parser, value));
+                case "datahora" -> record.setDatahora(readLong(parser, value));
+                case "datahoraenvio" -> record.setDatahoraenvio(readLong(parser, value));
+                case "datahoraservidor" -> record.setDatahoraservidor(readLong(parser, value));
+                default -> parser.skipChildren();
+            }
+        }
+        record.setCoordinates(latitude, longitude);
+    }
+
+    private String readId(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return ids.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        return ids.intern(parser.getText());
+    }
+
+    private static double readDecimal(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return NumberUtils.parseDecimal(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        return parser.getDoubleValue();
+    }
+
+    private static long readLong(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return NumberUtils.parseLong(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        return parser.getLongValue();
+    }
+
+    private static LocalDateTime toLocalDateTime(long timestamp) {
+        if (timestamp == GpsDataDTO.NO_TIMESTAMP) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+    }
+}
@@ -1,32 +1,39 @@
 package com.azvtech.monitoring_service.service;
 
+import com.azvtech.monitoring_service.config.metrics.FreshnessMetrics;
+import com.azvtech.monitoring_service.dto.FleetDelta;
 import com.azvtech.monitoring_service.dto.GpsDataDTO;
 import com.azvtech.monitoring_service.handler.GpsWebSocketHandler;
 import com.azvtech.monitoring_service.utils.DateUtils;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Fellipe Toledo
@@ -40,9 +47,29 @@ public class GpsPollingService {
     @Value("${gps.endpoint}")
     private String gpsEndpoint;
 
+    @Value("${gps.fleet.stale-after-seconds}")
+    private long staleAfterSeconds;
+
     private final GpsWebSocketHandler webSocketHandler;
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final FleetStateService fleetStateService;
+    private final List<FleetUpdateListener> fleetUpdateListeners;
+    private final GpsFeedParser feedParser;
+    private final PollingWindow pollingWindow;
+    private final GpsUpstreamClient upstreamClient;
+    private final FleetJournal fleetJournal;
+    private final TaskScheduler taskScheduler;
+    private final AdaptivePollingInterval pollingInterval;
+    private final FreshnessMetrics freshnessMetrics;
+
+    private final PipelineStage<FeedParseResult> processStage;
+    private final PipelineStage<FleetDelta> fanOutStage;
+    private final AtomicBoolean fetchInFlight = new AtomicBoolean();
+    private volatile boolean running;
+    // Em modo cluster só o líder consulta o upstream; os demais começam seguindo (ver ClusterCoordinator)
+    private volatile boolean leader;
+    private volatile ScheduledFuture<?> scheduledTick;
+    private Instant nextTick;
+    private volatile long lastFetchStartNanos;
 
     // Métricas
     private final Counter dataProcessedCounter;
@@ -52,12 +79,31 @@ public class GpsPollingService {
     private final Counter httpRequestsCounter;
     private final DistributionSummary batchSizeDistribution;
     private final Timer apiResponseTimer;
+    private final Counter recordsFetchedCounter;
+    private final Counter duplicateRecordsCounter;
+    private final Timer fetchStageTimer;
+    private final Timer effectiveIntervalTimer;
+    private final Counter skippedTicksCounter;
 
 
     @Autowired
-    public GpsPollingService(GpsWebSocketHandler webSocketHandler, MeterRegistry registry) {
+    public GpsPollingService(GpsWebSocketHandler webSocketHandler, FleetStateService fleetStateService,
+                             List<FleetUpdateListener> fleetUpdateListeners, GpsFeedParser feedParser,
+                             PollingWindow pollingWindow, GpsUpstreamClient upstreamClient,
+                             FleetJournal fleetJournal, TaskScheduler taskScheduler,
+                             AdaptivePollingInterval pollingInterval, FreshnessMetrics freshnessMetrics,
+                             @Value("${gps.cluster.enabled}") boolean clusterEnabled, MeterRegistry registry) {
         this.webSocketHandler = webSocketHandler;
-        objectMapper.registerModule(new JavaTimeModule());
+        this.fleetStateService = fleetStateService;
+        this.fleetUpdateListeners = fleetUpdateListeners;
+        this.feedParser = feedParser;
+        this.pollingWindow = pollingWindow;
+        this.upstreamClient = upstreamClient;
+        this.fleetJournal = fleetJournal;
+        this.taskScheduler = taskScheduler;
+        this.pollingInterval = pollingInterval;
+        this.freshnessMetrics = freshnessMetrics;
+        this.leader = !clusterEnabled;
 
         dataProcessedCounter = Counter.builder("gps.data.processed")
                 .description("Quantidade de dados de GPS processados")
@@ -91,51 +137,223 @@ public class GpsPollingService {
                 .publishPercentileHistogram(true)
                 .register(registry);
 
+        recordsFetchedCounter = Counter.builder("gps.polling.records.fetched")
+                .description("Registros recebidos da API externa")
+                .register(registry);
+
+        duplicateRecordsCounter = Counter.builder("gps.polling.records.duplicate")
+                .description("Registros descartados por já terem sido processados")
+                .register(registry);
+
+        fetchStageTimer = Timer.builder("gps.pipeline.stage.time")
+                .description("Tempo de execução de cada estágio do pipeline de polling")
+                .tag("stage", "fetch")
+                .publishPercentileHistogram(true)
+                .register(registry);
+
+        effectiveIntervalTimer = Timer.builder("gps.polling.interval.effective")
+                .description("Intervalo efetivo entre o início de duas buscas consecutivas")
+                .publishPercentileHistogram(true)
+                .register(registry);
+
+        skippedTicksCounter = Counter.builder("gps.polling.ticks.skipped")
+                .description("Ciclos ignorados porque a busca anterior ainda estava em andamento")
+                .register(registry);
+
+        processStage = new PipelineStage<>("process", FeedParseResult::mergedWith, this::process, registry);
+        fanOutStage = new PipelineStage<>("fanout", FleetDelta::followedBy, this::fanOut, registry);
+
+    }
+
+    /**
+     * Rebuilds the fleet state from the journal tail, so clients connecting right after a restart
+     * get a snapshot before the first poll completes.
+     */
+    @PostConstruct
+    public void restoreFromJournal() {
+        if (!fleetJournal.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Map<String, GpsDataDTO> recovered =
+                    fleetJournal.recoverLatestState(System.currentTimeMillis() - staleAfterSeconds * 1000);
+            if (!recovered.isEmpty()) {
+                applyUpdates(recovered);
+            }
+            logger.info("Restored {} vehicles from the journal in {} ms",
+                    recovered.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            logger.warn("Failed to restore fleet state from the journal: {}", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts the polling loop once the application is ready. Each tick schedules the next one before
+     * fetching, so the interval does not stretch with fetch, processing or broadcast time. The
+     * interval itself is tuned by {@link AdaptivePollingInterval}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        running = true;
+        nextTick = Instant.now();
+        scheduleNextTick();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        ScheduledFuture<?> tick = scheduledTick;
+        if (tick != null) {
+            tick.cancel(false);
+        }
+    }
+
+    /**
+     * Starts polling right away, on the node that just took the cluster lease.
+     */
+    public synchronized void becomeLeader() {
+        if (leader) {
+            return;
+        }
+        leader = true;
+        nextTick = Instant.now();
+        scheduleNextTick();
+    }
+
+    /**
+     * Stops polling; the fleet is then fed by {@link #applyReplicated}.
+     */
+    public synchronized void becomeFollower() {
+        leader = false;
+        ScheduledFuture<?> pending = scheduledTick;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        // Se voltar a liderar, a primeira consulta cobre a janela completa
+        pollingWindow.reset();
+    }
+
+    /**
+     * Applies a cycle published by the cluster leader through the same process and fan-out
+     * stages as a local poll. Only changed records are replicated: every node evicts stale
+     * vehicles by the same {@code stale-after-seconds} rule.
+     */
+    public void applyReplicated(ReplicationFrame frame) {
+        Map<String, GpsDataDTO> latestUpdates = new HashMap<>();
+        for (GpsDataDTO data : frame.records()) {
+            latestUpdates.merge(data.getOrdem(), data,
+                    (current, candidate) -> candidate.isMoreRecentThan(current) ? candidate : current);
+        }
+        processStage.submit(new FeedParseResult(latestUpdates, frame.records().size(), 0, null));
+    }
+
+    private synchronized void scheduleNextTick() {
+        if (!running || !leader) {
+            return;
+        }
+        long intervalMillis = pollingInterval.currentMillis();
+        // Se o agendador atrasou além de um intervalo, retoma a cadência a partir de agora
+        Instant now = Instant.now();
+        if (nextTick.isBefore(now.minusMillis(intervalMillis))) {
+            nextTick = now;
+        }
+        scheduledTick = taskScheduler.schedule(this::tick, nextTick);
+        nextTick = nextTick.plusMillis(intervalMillis);
+    }
+
+    /**
+     * Replaces the pending tick with one a full (backed-off) interval from now, so a failure takes
+     * effect immediately instead of after the tick that was already scheduled.
+     */
+    private synchronized void rescheduleAfterFailure() {
+        ScheduledFuture<?> pending = scheduledTick;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        nextTick = Instant.now().plusMillis(pollingInterval.currentMillis());
+        scheduleNextTick();
     }
 
-    @Scheduled(fixedDelay = 2000)
+    private void tick() {
+        if (!leader) {
+            return;
+        }
+        scheduleNextTick();
+        if (!fetchInFlight.compareAndSet(false, true)) {
+            // A busca anterior ainda não terminou: não acumula requisições ao upstream
+            skippedTicksCounter.increment();
+            logger.debug("Skipping polling tick, previous fetch still running");
+            return;
+        }
+        try {
+            checkForUpdates();
+        } finally {
+            fetchInFlight.set(false);
+        }
+    }
+
+    /**
+     * Fetch stage: requests the current window and decodes it as it streams in. The decoded batch is
+     * handed to the process stage, so the next fetch can start while this one is still being applied
+     * and broadcast.
+     */
     public void checkForUpdates() {
         // Gerar correlation ID para cada execução do polling
         String pollingId = UUID.randomUUID().toString();
         MDC.put("traceId", pollingId);
-        MDC.put("spanId", "polling");
+        MDC.put("spanId", "fetch");
+
+        long now = System.nanoTime();
+        long previous = lastFetchStartNanos;
+        lastFetchStartNanos = now;
+        if (previous != 0) {
+            effectiveIntervalTimer.record(now - previous, TimeUnit.NANOSECONDS);
+        }
 
         try {
             pollingTimer.record(() -> {
                 logger.debug("Starting scheduled GPS polling");
                 try {
-                    LocalDateTime dataFinal = LocalDateTime.now();
-                    LocalDateTime dataInicial = dataFinal.minusSeconds(90);
+                    FeedParseResult feed = fetchStageTimer.record(() -> {
+                        PollingWindow.Range window = pollingWindow.next();
 
-                    String dataInicialStr = DateUtils.format(dataInicial);
-                    String dataFinalStr = DateUtils.format(dataFinal);
+                        String dataInicialStr = DateUtils.format(window.start());
+                        String dataFinalStr = DateUtils.format(window.end());
 
-                    logger.debug("Fetching GPS data from {} to {}", dataInicialStr, dataFinalStr);
+                        logger.debug("Fetching GPS data from {} to {}", dataInicialStr, dataFinalStr);
 
-                    List<GpsDataDTO> gpsData = apiResponseTimer.record(() ->
-                    {
-                        try {
-                            return fetchGpsData(dataInicialStr, dataFinalStr);
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
+                        long fetchStart = System.nanoTime();
+                        FeedParseResult result = apiResponseTimer.record(() -> fetchGpsData(dataInicialStr, dataFinalStr));
+                        pollingInterval.onFetchSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fetchStart));
+                        return result;
                     });
 
                     httpRequestsCounter.increment();
-
-                    Map<String, GpsDataDTO> latestUpdates = getLatestUpdates(gpsData);
-                    processData(latestUpdates);
-
-                    dataProcessedCounter.increment(latestUpdates.size());
-                    batchSizeDistribution.record(latestUpdates.size());
-
-                    logger.info("Polling completed: processed {} GPS records", latestUpdates.size());
+                    recordsFetchedCounter.increment(feed.totalRecords());
+                    duplicateRecordsCounter.increment(feed.discardedRecords());
+
+                    // Sincronizado com becomeFollower: a busca que terminou após perder o lease é descartada
+                    synchronized (this) {
+                        if (!leader) {
+                            logger.info("Discarding fetch completed after losing the leader lease");
+                            return;
+                        }
+                        pollingWindow.advance(feed.newestServerTimestamp());
+                        processStage.submit(feed);
+                    }
 
                 } catch (Exception e) {
+                    // Sem garantia de que o intervalo foi ingerido, a próxima consulta volta à janela completa
+                    pollingWindow.reset();
                     errorCounter.increment();
                     logger.error("Polling failed: {}", e.getMessage(), e);
                     // Métrica adicional para erros específicos
                     errorCounter.increment();
+                    pollingInterval.onFailure();
+                    rescheduleAfterFailure();
                 }
             });
         } finally {
@@ -143,70 +361,75 @@ public class GpsPollingService {
         }
     }
 
-    private List<GpsDataDTO> fetchGpsData(String dataInicial, String dataFinal) throws IOException {
-        String url = UriComponentsBuilder.fromUriString(gpsEndpoint)
-                .queryParam("dataInicial", dataInicial)
-                .queryParam("dataFinal", dataFinal)
-                .toUriString();
+    /**
+     * Process stage: persists the batch, applies it to the fleet state and notifies the listeners.
+     * Batches that arrive while a previous one is still being applied are merged per vehicle.
+     */
+    private void process(FeedParseResult feed) {
+        Map<String, GpsDataDTO> latestUpdates = feed.latestUpdates();
+        try {
+            fleetJournal.append(System.currentTimeMillis(), latestUpdates.values());
+            FleetDelta delta = applyUpdates(latestUpdates);
+            freshnessMetrics.positionsIngested(delta.changed(), System.currentTimeMillis());
+            pollingInterval.onCycleProcessed(delta.changed().size(), fleetStateService.size());
+        } catch (RuntimeException e) {
+            // O lote não chegou ao estado: a próxima consulta volta à janela completa
+            pollingWindow.reset();
+            errorCounter.increment();
+            throw e;
+        }
 
-        logger.debug("Making request to URL: {}", url);
-        String jsonData = restTemplate.getForObject(url, String.class);
-        logger.debug("Received response with {} characters", jsonData != null ? jsonData.length() : 0);
+        dataProcessedCounter.increment(latestUpdates.size());
+        batchSizeDistribution.record(latestUpdates.size());
 
-        return parseGpsData(jsonData);
+        logger.info("Polling completed: processed {} GPS records", latestUpdates.size());
     }
 
-    private List<GpsDataDTO> parseGpsData(String jsonData) throws IOException {
-        if (jsonData == null || jsonData.isEmpty()) {
-            logger.warn("Empty or null JSON data received");
-            return List.of();
-        }
+    /**
+     * Fan-out stage: encodes the delta per subscription group and hands it to the session outboxes.
+     * Deltas that pile up behind a slow broadcast are merged into one.
+     */
+    private void fanOut(FleetDelta delta) {
+        webSocketHandler.broadcastUpdate(delta);
+        logger.debug("Broadcasted {} changed records to WebSocket clients", delta.changed().size());
+    }
 
+    private FeedParseResult fetchGpsData(String dataInicial, String dataFinal) {
+        URI uri = UriComponentsBuilder.fromUriString(gpsEndpoint)
+                .queryParam("dataInicial", dataInicial)
+                .queryParam("dataFinal", dataFinal)
+                .encode()
+                .build()
+                .toUri();
+
+        logger.debug("Making request to URL: {}", uri);
+        // O corpo é consumido como stream, sem materializar a resposta inteira em memória
         try {
-            List<GpsDataDTO> result = objectMapper.readValue(jsonData, new TypeReference<>() {});
-            logger.debug("Parsed {} GPS records from JSON", result.size());
-            return result;
+            return upstreamClient.get(uri,
+                    body -> feedParser.parseLatestUpdates(body, fleetStateService::isAlreadyIngested));
         } catch (IOException e) {
-            logger.error("Failed to parse JSON data: {}", e.getMessage());
-            throw e;
+            throw new UncheckedIOException(e);
         }
     }
 
-    private Map<String, GpsDataDTO> getLatestUpdates(List<GpsDataDTO> gpsData) {
-        Map<String, GpsDataDTO> latestUpdatesMap = new HashMap<>();
-
-        if (gpsData == null || gpsData.isEmpty()) {
-            logger.warn("No GPS data to process");
-            return latestUpdatesMap;
+    private FleetDelta applyUpdates(Map<String, GpsDataDTO> data) {
+        if (data == null || data.isEmpty()) {
+            // Com a janela incremental, um ciclo sem registros novos é esperado
+            logger.debug("No new GPS data received in this cycle");
         }
 
-        for (GpsDataDTO data : gpsData) {
-            GpsDataDTO existingData = latestUpdatesMap.get(data.getOrdem());
+        // Mesmo sem dados novos, o estado precisa expirar os veículos inativos
+        FleetDelta delta = fleetStateService.applyUpdates(data == null ? Map.of() : data);
 
-            if (existingData == null || data.isMoreRecentThan(existingData)) {
-                latestUpdatesMap.put(data.getOrdem(), data);
+        for (FleetUpdateListener listener : fleetUpdateListeners) {
+            try {
+                listener.onFleetUpdate(delta);
+            } catch (Exception e) {
+                logger.error("Fleet update listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage(), e);
             }
         }
 
-        logger.debug("Filtered {} unique vehicles from {} total records",
-                latestUpdatesMap.size(), gpsData.size());
-
-        return latestUpdatesMap;
-    }
-
-    private void processData(Map<String, GpsDataDTO> data) {
-        if (data == null || data.isEmpty()) {
-            logger.warn("Invalid or empty data received in processData");
-            return;
-        }
-
-        List<GpsDataDTO> latestUpdatesList = List.copyOf(data.values());
-
-        try {
-            webSocketHandler.broadcastUpdate(latestUpdatesList);
-            logger.debug("Broadcasted {} records to WebSocket clients", latestUpdatesList.size());
-        } catch (Exception e) {
-            logger.error("Failed to broadcast data: {}", e.getMessage(), e);
-        }
+        fanOutStage.submit(delta);
+        return delta;
     }
-}
\ No newline at end of file
+}
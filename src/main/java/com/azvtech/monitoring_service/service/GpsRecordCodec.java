@@ -0,0 +1,93 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lossless binary layout of GPS records, shared by the {@link FleetJournal} and cluster
+ * replication: {@code [short length][ordem][short length][linha]} (length -1 for {@code null}),
+ * then latitude and longitude as doubles, speed as an int and the three timestamps as longs.
+ *
+ * @author Fellipe Toledo
+ */
+public final class GpsRecordCodec {
+
+    private GpsRecordCodec() {
+    }
+
+    /**
+     * Writes the batch into {@code scratch}, replacing it with a larger buffer when it does not
+     * fit, and returns the buffer that holds the records, flipped for reading.
+     */
+    public static ByteBuffer encode(ByteBuffer scratch, Collection<GpsDataDTO> batch) {
+        scratch.clear();
+        for (GpsDataDTO data : batch) {
+            byte[] ordem = bytesOf(data.getOrdem());
+            byte[] linha = bytesOf(data.getLinha());
+            int needed = 4 + length(ordem) + length(linha) + 16 + 4 + 24;
+            if (scratch.remaining() < needed) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + needed));
+                scratch.flip();
+                larger.put(scratch);
+                scratch = larger;
+            }
+            writeString(scratch, ordem);
+            writeString(scratch, linha);
+            scratch.putDouble(data.getLatitude());
+            scratch.putDouble(data.getLongitude());
+            scratch.putInt(data.getVelocidade());
+            scratch.putLong(data.getDatahoraMillis());
+            scratch.putLong(data.getDatahoraenvioMillis());
+            scratch.putLong(data.getDatahoraservidorMillis());
+        }
+        return scratch.flip();
+    }
+
+    public static List<GpsDataDTO> decode(ByteBuffer payload, int count) {
+        List<GpsDataDTO> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            GpsDataDTO data = new GpsDataDTO();
+            data.setOrdem(readString(payload));
+            data.setLinha(readString(payload));
+            data.setCoordinates(payload.getDouble(), payload.getDouble());
+            data.setVelocidade(payload.getInt());
+            data.setDatahora(payload.getLong());
+            data.setDatahoraenvio(payload.getLong());
+            data.setDatahoraservidor(payload.getLong());
+            batch.add(data);
+        }
+        return batch;
+    }
+
+    private static void writeString(ByteBuffer target, byte[] value) {
+        if (value == null) {
+            target.putShort((short) -1);
+            return;
+        }
+        target.putShort((short) value.length);
+        target.put(value);
+    }
+
+    private static String readString(ByteBuffer payload) {
+        short length = payload.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        payload.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+}
@@ -0,0 +1,155 @@
+package com.azvtech.monitoring_service.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fetches the upstream GPS feed over a pooled JDK {@link HttpClient}, asking for gzip and handing
+ * the (decompressed) body to the caller as a stream. Each request is timed by phase: host
+ * resolution, time to the response headers and body transfer.
+ * <p>
+ * The JDK client does not expose when it opens a connection, so connection setup on a cold
+ * connection is part of the {@code ttfb} phase.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+public class GpsUpstreamClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(GpsUpstreamClient.class);
+
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+
+    private final Timer dnsTimer;
+    private final Timer ttfbTimer;
+    private final Timer bodyTimer;
+    private final DistributionSummary responseBytes;
+
+    public GpsUpstreamClient(HttpClient upstreamHttpClient,
+                             @Value("${gps.upstream.request-timeout-ms}") long requestTimeoutMs,
+                             MeterRegistry registry) {
+        this.httpClient = upstreamHttpClient;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+
+        dnsTimer = phaseTimer("dns", registry);
+        ttfbTimer = phaseTimer("ttfb", registry);
+        bodyTimer = phaseTimer("body", registry);
+
+        responseBytes = DistributionSummary.builder("gps.upstream.response.bytes")
+                .description("Bytes recebidos da API externa, antes da descompressão")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static Timer phaseTimer(String phase, MeterRegistry registry) {
+        return Timer.builder("gps.upstream.phase")
+                .description("Tempo de cada fase da requisição à API externa")
+                .tag("phase", phase)
+                .publishPercentileHistogram(true)
+                .register(registry);
+    }
+
+    public <T> T get(URI uri, BodyReader<T> reader) throws IOException {
+        resolveHost(uri);
+
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the GPS endpoint");
+        }
+        long headersReceived = System.nanoTime();
+        ttfbTimer.record(headersReceived - start, TimeUnit.NANOSECONDS);
+
+        CountingInputStream wire = new CountingInputStream(response.body());
+        try (wire) {
+            // Antes de descomprimir: respostas de erro podem declarar gzip sem trazer um corpo gzip
+            if (response.statusCode() >= 400) {
+                throw new IOException("GPS endpoint responded with status " + response.statusCode());
+            }
+            logger.debug("GPS endpoint responded {} over {}", response.statusCode(), response.version());
+            try (InputStream body = isGzip(response) ? new GZIPInputStream(wire) : wire) {
+                return reader.read(body);
+            }
+        } finally {
+            bodyTimer.record(System.nanoTime() - headersReceived, TimeUnit.NANOSECONDS);
+            responseBytes.record(wire.count);
+        }
+    }
+
+    private void resolveHost(URI uri) throws IOException {
+        // Resolver antes do envio mede o DNS e aquece o cache de endereços usado pelo cliente
+        long start = System.nanoTime();
+        try {
+            InetAddress.getByName(uri.getHost());
+        } finally {
+            dnsTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static boolean isGzip(HttpResponse<?> response) {
+        return response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.azvtech.monitoring_service.service;
+
+/**
+ * Canonicalizing dictionary for the small, recurring set of vehicle and line ids. Lookups hash
+ * the characters in place, so a known id costs no allocation and every record of the same
+ * vehicle shares one {@link String} instance. Once {@code maxEntries} ids are known, new ones are
+ * returned as plain strings without being stored.
+ * <p>
+ * Lookups of known ids read the table without locking, so parallel decoders do not contend on
+ * the dictionary; only inserts and resizes are synchronized. A racy read that misses an id being
+ * inserted falls back to the locked path.
+ *
+ * @author Fellipe Toledo
+ */
+public class IdDictionary {
+
+    private final int maxEntries;
+    private volatile String[] table;
+    private int size;
+
+    public IdDictionary(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.table = new String[64];
+    }
+
+    public String intern(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        // Strings têm campos finais, então uma entrada vista sem lock está sempre completa
+        String known = find(table, hash, chars, offset, length);
+        return known != null ? known : insert(hash, chars, offset, length);
+    }
+
+    private synchronized String insert(int hash, char[] chars, int offset, int length) {
+        String[] table = this.table;
+        int mask = table.length - 1;
+        int index = spread(hash) & mask;
+
+        String candidate;
+        while ((candidate = table[index]) != null) {
+            if (candidate.hashCode() == hash && matches(candidate, chars, offset, length)) {
+                return candidate;
+            }
+            index = (index + 1) & mask;
+        }
+
+        String id = new String(chars, offset, length);
+        if (size < maxEntries) {
+            table[index] = id;
+            if (++size * 2 > table.length) {
+                resize();
+            }
+        }
+        return id;
+    }
+
+    public String intern(String id) {
+        return intern(id.toCharArray(), 0, id.length());
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private static String find(String[] table, int hash, char[] chars, int offset, int length) {
+        int mask = table.length - 1;
+        int index = spread(hash) & mask;
+
+        String candidate;
+        while ((candidate = table[index]) != null) {
+            if (candidate.hashCode() == hash && matches(candidate, chars, offset, length)) {
+                return candidate;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    private void resize() {
+        String[] previous = table;
+        String[] resized = new String[previous.length * 2];
+        int mask = resized.length - 1;
+        for (String id : previous) {
+            if (id != null) {
+                int index = spread(id.hashCode()) & mask;
+                while (resized[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                resized[index] = id;
+            }
+        }
+        // Publica a nova tabela só depois de preenchida
+        table = resized;
+    }
+
+    // Mesmo polinômio de String.hashCode(), para reaproveitar o hash já armazenado em cada String
+    private static int hash(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String candidate, char[] chars, int offset, int length) {
+        if (candidate.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (candidate.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,12 @@
+package com.azvtech.monitoring_service.service;
+
+import java.util.List;
+
+/**
+ * One direction of a line's route as published in the SPPO itinerary dataset. Each part is an
+ * interleaved {@code [lon, lat, ...]} polyline at full resolution.
+ *
+ * @author Fellipe Toledo
+ */
+public record Itinerary(String servico, int direcao, String destino, String consorcio, List<double[]> parts) {
+}
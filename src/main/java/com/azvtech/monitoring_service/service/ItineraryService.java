@@ -0,0 +1,408 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.utils.GeometryUtils;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Route geometry of every line, loaded from the SPPO itinerary GeoJSON (a local file or a URL)
+ * and indexed by {@code servico}. A background loader retries with exponential backoff until the
+ * first load succeeds, then re-reads the source periodically and rebuilds the index only when the
+ * content checksum changes. For each configured zoom level the line's directions are
+ * simplified with Douglas-Peucker at a tolerance of one screen pixel at that zoom, encoded as a
+ * GeoJSON FeatureCollection and kept gzip-compressed with an ETag, so serving a line is a map
+ * lookup and a byte copy.
+ *
+ * @author Fellipe Toledo
+ */
+@Service
+public class ItineraryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ItineraryService.class);
+
+    // Tiles de 256 px: um pixel no zoom z cobre 360 / (256 * 2^z) graus de longitude
+    private static final int TILE_SIZE = 256;
+    // ~0,1 m: mais casas só aumentam a resposta
+    private static final double COORDINATE_PRECISION = 1e6;
+    private static final Duration DOWNLOAD_TIMEOUT = Duration.ofMinutes(2);
+
+    /**
+     * Pre-encoded geometry of one line at one zoom level.
+     */
+    public record CachedGeometry(byte[] gzip, String etag, int zoomLevel) {
+    }
+
+    private record Index(Map<String, List<Itinerary>> itineraries, Map<String, CachedGeometry[]> geometry,
+                         long cachedBytes, long sourceChecksum, long version) {
+    }
+
+    private final String source;
+    private final int[] zoomLevels;
+    private final Duration retryInitial;
+    private final Duration retryMax;
+    private final Duration refreshInterval;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Trocado por inteiro ao fim da carga; leitores nunca veem um índice pela metade
+    private volatile Index index;
+    private Thread loader;
+
+    private final Counter loadFailuresCounter;
+
+    public ItineraryService(@Value("${gps.itinerary.source}") String source,
+                            @Value("${gps.itinerary.zoom-levels}") int[] zoomLevels,
+                            @Value("${gps.itinerary.retry-initial-ms}") long retryInitialMillis,
+                            @Value("${gps.itinerary.retry-max-ms}") long retryMaxMillis,
+                            @Value("${gps.itinerary.refresh-minutes}") long refreshMinutes,
+                            HttpClient upstreamHttpClient, MeterRegistry registry) {
+        if (zoomLevels.length == 0) {
+            throw new IllegalArgumentException("gps.itinerary.zoom-levels must list at least one zoom level");
+        }
+        if (retryInitialMillis <= 0 || retryMaxMillis < retryInitialMillis) {
+            throw new IllegalArgumentException("gps.itinerary.retry-initial-ms must be positive and not above retry-max-ms");
+        }
+        this.source = source;
+        this.zoomLevels = zoomLevels.clone();
+        Arrays.sort(this.zoomLevels);
+        this.retryInitial = Duration.ofMillis(retryInitialMillis);
+        this.retryMax = Duration.ofMillis(retryMaxMillis);
+        this.refreshInterval = Duration.ofMinutes(Math.max(0, refreshMinutes));
+        this.httpClient = upstreamHttpClient;
+
+        Gauge.builder("gps.itinerary.loaded", this, service -> service.index == null ? 0 : 1)
+                .description("1 depois que os itinerários foram carregados ao menos uma vez")
+                .register(registry);
+
+        loadFailuresCounter = Counter.builder("gps.itinerary.load.failures")
+                .description("Tentativas de carga dos itinerários que falharam")
+                .register(registry);
+
+        Gauge.builder("gps.itinerary.lines", this, service -> service.index == null ? 0 : service.index.itineraries().size())
+                .description("Linhas com itinerário carregado")
+                .register(registry);
+
+        Gauge.builder("gps.itinerary.cache.size", this, service -> service.index == null ? 0 : service.index.cachedBytes())
+                .description("Bytes das geometrias simplificadas e comprimidas em cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Loads the dataset off the startup path; until the first load succeeds, lookups report it as
+     * not loaded.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void loadInBackground() {
+        if (source.isBlank()) {
+            logger.info("No itinerary source configured, itinerary endpoints disabled");
+            return;
+        }
+        loader = Thread.ofVirtual().name("itinerary-loader").start(this::runLoader);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (loader != null) {
+            loader.interrupt();
+        }
+    }
+
+    public boolean isLoaded() {
+        return index != null;
+    }
+
+    /**
+     * Incremented every time the index is replaced, so callers can drop state derived from it;
+     * 0 while nothing is loaded.
+     */
+    public long version() {
+        Index current = index;
+        return current == null ? 0 : current.version();
+    }
+
+    public Set<String> lines() {
+        Index current = index;
+        return current == null ? Set.of() : current.itineraries().keySet();
+    }
+
+    /**
+     * Full-resolution itineraries of a line, empty when the line is unknown or nothing is loaded.
+     */
+    public List<Itinerary> itineraries(String linha) {
+        Index current = index;
+        return current == null ? List.of() : current.itineraries().getOrDefault(linha, List.of());
+    }
+
+    /**
+     * The line's geometry simplified for {@code zoom}: the finest cached level not above it, or
+     * the coarsest level for zooms below every configured one.
+     */
+    public Optional<CachedGeometry> geometry(String linha, int zoom) {
+        Index current = index;
+        if (current == null) {
+            return Optional.empty();
+        }
+        CachedGeometry[] levels = current.geometry().get(linha);
+        return levels == null ? Optional.empty() : Optional.of(levels[levelIndex(zoom)]);
+    }
+
+    void runLoader() {
+        Duration backoff = retryInitial;
+        while (true) {
+            Duration wait;
+            try {
+                loadFromSource();
+                if (refreshInterval.isZero()) {
+                    return;
+                }
+                backoff = retryInitial;
+                wait = refreshInterval;
+            } catch (IOException | RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                loadFailuresCounter.increment();
+                wait = backoff;
+                // Depois da primeira carga, uma falha mantém o índice atual até a próxima tentativa
+                logger.warn("Failed to load itineraries from {} ({}), retrying in {} s: {}", source,
+                        isLoaded() ? "keeping the loaded index" : "nothing loaded yet", wait.toSeconds(), e.getMessage(), e);
+                Duration doubled = backoff.multipliedBy(2);
+                backoff = doubled.compareTo(retryMax) > 0 ? retryMax : doubled;
+            }
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    void loadFromSource() throws IOException {
+        long start = System.nanoTime();
+        boolean changed;
+        try (InputStream body = open(source)) {
+            changed = load(body);
+        }
+        if (!changed) {
+            logger.debug("Itineraries at {} unchanged, keeping the current index", source);
+            return;
+        }
+        Index loaded = index;
+        logger.info("Loaded itineraries of {} lines from {} in {} ms ({} KB cached over {} zoom levels)",
+                loaded.itineraries().size(), source, (System.nanoTime() - start) / 1_000_000,
+                loaded.cachedBytes() / 1024, zoomLevels.length);
+    }
+
+    /**
+     * Parses a GeoJSON FeatureCollection and replaces the index with it, unless its checksum
+     * matches the loaded one; returns whether the index was replaced.
+     */
+    boolean load(InputStream geoJson) throws IOException {
+        Map<String, List<Itinerary>> itineraries = new HashMap<>();
+        CheckedInputStream checked = new CheckedInputStream(geoJson, new CRC32());
+        try (JsonParser parser = objectMapper.getFactory().createParser(checked)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Itinerary source is not a GeoJSON object");
+            }
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                if (field.equals("features") && token == JsonToken.START_ARRAY) {
+                    // Uma feature por vez: o arquivo completo tem dezenas de MB
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Itinerary itinerary = toItinerary(parser.readValueAsTree());
+                        if (itinerary != null) {
+                            itineraries.computeIfAbsent(itinerary.servico(), linha -> new ArrayList<>()).add(itinerary);
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            // O checksum precisa cobrir o corpo inteiro, inclusive o que o parser não leu
+            checked.transferTo(OutputStream.nullOutputStream());
+        }
+        long sourceChecksum = checked.getChecksum().getValue();
+        Index current = index;
+        if (current != null && current.sourceChecksum() == sourceChecksum) {
+            return false;
+        }
+
+        Map<String, CachedGeometry[]> geometry = new HashMap<>(itineraries.size() * 2);
+        long cachedBytes = 0;
+        for (Map.Entry<String, List<Itinerary>> entry : itineraries.entrySet()) {
+            entry.getValue().sort(Comparator.comparingInt(Itinerary::direcao));
+            CachedGeometry[] levels = new CachedGeometry[zoomLevels.length];
+            for (int i = 0; i < zoomLevels.length; i++) {
+                levels[i] = encode(entry.getValue(), zoomLevels[i]);
+                cachedBytes += levels[i].gzip().length;
+            }
+            geometry.put(entry.getKey(), levels);
+        }
+        index = new Index(Map.copyOf(itineraries), geometry, cachedBytes, sourceChecksum,
+                current == null ? 1 : current.version() + 1);
+        return true;
+    }
+
+    static double toleranceFor(int zoom) {
+        return 360.0 / ((long) TILE_SIZE << zoom);
+    }
+
+    private int levelIndex(int zoom) {
+        int level = 0;
+        while (level + 1 < zoomLevels.length && zoomLevels[level + 1] <= zoom) {
+            level++;
+        }
+        return level;
+    }
+
+    private CachedGeometry encode(List<Itinerary> itineraries, int zoomLevel) throws IOException {
+        double tolerance = toleranceFor(zoomLevel);
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        CRC32 checksum = new CRC32();
+        try (OutputStream compressed = new GZIPOutputStream(gzip);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(
+                     new CheckedOutputStream(compressed, checksum), JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("type", "FeatureCollection");
+            generator.writeArrayFieldStart("features");
+            for (Itinerary itinerary : itineraries) {
+                generator.writeStartObject();
+                generator.writeStringField("type", "Feature");
+                generator.writeObjectFieldStart("properties");
+                generator.writeStringField("servico", itinerary.servico());
+                generator.writeNumberField("direcao", itinerary.direcao());
+                generator.writeStringField("destino", itinerary.destino());
+                generator.writeStringField("consorcio", itinerary.consorcio());
+                generator.writeEndObject();
+
+                boolean single = itinerary.parts().size() == 1;
+                generator.writeObjectFieldStart("geometry");
+                generator.writeStringField("type", single ? "LineString" : "MultiLineString");
+                generator.writeArrayFieldStart("coordinates");
+                for (double[] part : itinerary.parts()) {
+                    if (!single) {
+                        generator.writeStartArray();
+                    }
+                    double[] simplified = GeometryUtils.simplify(part, tolerance);
+                    for (int i = 0; i < simplified.length; i += 2) {
+                        generator.writeStartArray();
+                        generator.writeNumber(Math.round(simplified[i] * COORDINATE_PRECISION) / COORDINATE_PRECISION);
+                        generator.writeNumber(Math.round(simplified[i + 1] * COORDINATE_PRECISION) / COORDINATE_PRECISION);
+                        generator.writeEndArray();
+                    }
+                    if (!single) {
+                        generator.writeEndArray();
+                    }
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        // O checksum cobre o JSON descomprimido: a mesma geometria gera a mesma ETag entre reinícios
+        String etag = "\"" + Long.toHexString(checksum.getValue()) + "-z" + zoomLevel + "\"";
+        return new CachedGeometry(gzip.toByteArray(), etag, zoomLevel);
+    }
+
+    private Itinerary toItinerary(JsonNode feature) {
+        JsonNode properties = feature.path("properties");
+        String servico = properties.path("servico").asText(null);
+        JsonNode geometry = feature.path("geometry");
+        JsonNode coordinates = geometry.path("coordinates");
+        if (servico == null || !coordinates.isArray()) {
+            return null;
+        }
+
+        List<double[]> parts = new ArrayList<>();
+        switch (geometry.path("type").asText()) {
+            case "LineString" -> parts.add(toLonLat(coordinates));
+            case "MultiLineString" -> coordinates.forEach(part -> parts.add(toLonLat(part)));
+            default -> {
+                return null;
+            }
+        }
+        parts.removeIf(part -> part.length < 4);
+        if (parts.isEmpty()) {
+            return null;
+        }
+        return new Itinerary(servico, properties.path("direcao").asInt(), properties.path("destino").asText(null),
+                properties.path("consorcio").asText(null), List.copyOf(parts));
+    }
+
+    private static double[] toLonLat(JsonNode points) {
+        double[] lonLat = new double[points.size() * 2];
+        int i = 0;
+        for (JsonNode point : points) {
+            lonLat[i++] = point.path(0).asDouble();
+            lonLat[i++] = point.path(1).asDouble();
+        }
+        return lonLat;
+    }
+
+    private InputStream open(String location) throws IOException {
+        if (!location.startsWith("http://") && !location.startsWith("https://")) {
+            return new FileInputStream(location);
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(location))
+                .timeout(DOWNLOAD_TIMEOUT)
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() >= 400) {
+                response.body().close();
+                throw new IOException("Itinerary source responded with status " + response.statusCode());
+            }
+            boolean gzip = response.headers().firstValue("Content-Encoding")
+                    .map(encoding -> encoding.equalsIgnoreCase("gzip")).orElse(false);
+            return gzip ? new GZIPInputStream(response.body()) : response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading itineraries");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the batches read back from the {@link FleetJournal}, in the order they were written.
+ *
+ * @author Fellipe Toledo
+ */
+@FunctionalInterface
+public interface JournalBatchConsumer {
+
+    /**
+     * @param timestamp when the batch was ingested, in epoch millis
+     * @return {@code false} to stop reading
+     */
+    boolean accept(long timestamp, List<GpsDataDTO> batch) throws IOException, InterruptedException;
+}
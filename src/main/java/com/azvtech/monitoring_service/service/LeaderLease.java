@@ -0,0 +1,41 @@
+package com.azvtech.monitoring_service.service;
+
+import java.io.IOException;
+
+/**
+ * Time-bound claim on the polling role in cluster mode. At most one node holds an unexpired
+ * lease; the holder renews it well before it expires and every other node follows the holder.
+ * Implementations only need an atomic read-modify-write on shared storage (see
+ * {@link FileLeaderLease}).
+ *
+ * @author Fellipe Toledo
+ */
+public interface LeaderLease {
+
+    /**
+     * This node's identity, as written in the leases it holds.
+     */
+    String nodeId();
+
+    /**
+     * Takes the lease if it is free or expired, renews it if this node already holds it, and
+     * returns the lease as it stands afterwards, whoever holds it.
+     */
+    Lease acquireOrRenew() throws IOException;
+
+    /**
+     * Gives the lease up if this node holds it, so another node can take over right away.
+     */
+    void release() throws IOException;
+
+    /**
+     * A lease as stored: its holder, the URL followers replicate from, when the holder last
+     * renewed it and when it expires (epoch millis).
+     */
+    record Lease(String nodeId, String replicationUrl, long renewedAtMillis, long expiresAtMillis) {
+
+        public boolean isHeldBy(String candidate) {
+            return nodeId.equals(candidate);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.LineStatsDTO;
+import com.azvtech.monitoring_service.dto.RouteMatchDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Per-line aggregates of the fleet, kept incrementally from each fleet delta: vehicle count,
+ * speed mean and percentiles from a histogram, and headways between consecutive buses along each
+ * itinerary. Every direction keeps its in-service buses sorted by distance along the route and
+ * the multiset of gaps between neighbours, so a vehicle moving costs a few tree updates and a
+ * cycle costs O(changed vehicles). Pairs closer than {@code gps.analytics.bunching-meters} are
+ * reported as bunching.
+ * <p>
+ * Positions along the route come from {@link MapMatchingService}, which runs first on the same
+ * delta. State is confined to the polling thread; readers see the {@link LineStatsDTO} published
+ * for each line the cycle touched.
+ *
+ * @author Fellipe Toledo
+ */
+@Service
+@Order(MapMatchingService.LISTENER_ORDER + 1)
+public class LineAnalyticsService implements FleetUpdateListener {
+
+    // Velocidades acima disso caem no último balde do histograma
+    private static final int MAX_SPEED = 150;
+    private static final Comparator<Position> ALONG_ROUTE =
+            Comparator.comparingDouble(Position::meters).thenComparing(Position::ordem);
+
+    private final MapMatchingService mapMatchingService;
+    private final double bunchingMeters;
+    private final boolean perLineGauges;
+    private final MeterRegistry registry;
+    private final Counter bunchingAlerts;
+    private final Timer cycleTimer;
+
+    // Acessados apenas pela thread do polling
+    private final Map<String, LineState> lines = new HashMap<>();
+    private final Map<String, VehicleEntry> vehicles = new HashMap<>();
+    private final Set<String> gaugedLines = new HashSet<>();
+
+    private final Map<String, LineStatsDTO> snapshots = new ConcurrentHashMap<>();
+
+    public LineAnalyticsService(MapMatchingService mapMatchingService,
+                                @Value("${gps.analytics.bunching-meters}") double bunchingMeters,
+                                @Value("${gps.analytics.per-line-gauges:true}") boolean perLineGauges,
+                                MeterRegistry registry) {
+        this.mapMatchingService = mapMatchingService;
+        this.bunchingMeters = bunchingMeters;
+        this.perLineGauges = perLineGauges;
+        this.registry = registry;
+
+        bunchingAlerts = Counter.builder("gps.line.bunching.alerts")
+                .description("Novos pares de ônibus consecutivos agrupados")
+                .register(registry);
+
+        cycleTimer = Timer.builder("gps.line.analytics.cycle.time")
+                .description("Tempo para atualizar os agregados por linha com um ciclo")
+                .register(registry);
+
+        Gauge.builder("gps.line.count", snapshots, Map::size)
+                .description("Linhas com veículos ativos")
+                .register(registry);
+    }
+
+    @Override
+    public void onFleetUpdate(FleetDelta delta) {
+        long start = System.nanoTime();
+        Map<LineState, Boolean> touched = new IdentityHashMap<>();
+        for (GpsDataDTO data : delta.changed()) {
+            remove(data.getOrdem(), touched);
+            if (data.getLinha() == null) {
+                continue;
+            }
+            LineState line = lines.computeIfAbsent(data.getLinha(), LineState::new);
+            RouteMatchDTO match = mapMatchingService.match(data.getOrdem())
+                    .filter(candidate -> Objects.equals(candidate.linha(), data.getLinha()))
+                    .orElse(null);
+            vehicles.put(data.getOrdem(), line.add(data, match));
+            touched.put(line, Boolean.TRUE);
+        }
+        for (String ordem : delta.removed()) {
+            remove(ordem, touched);
+        }
+
+        for (LineState line : touched.keySet()) {
+            if (line.vehicles == 0) {
+                lines.remove(line.linha);
+                snapshots.remove(line.linha);
+                continue;
+            }
+            snapshots.put(line.linha, line.snapshot());
+            if (perLineGauges && gaugedLines.add(line.linha)) {
+                registerGauges(line.linha);
+            }
+        }
+        cycleTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Every line with active vehicles, ordered by line.
+     */
+    public List<LineStatsDTO> stats() {
+        List<LineStatsDTO> result = new ArrayList<>(snapshots.values());
+        result.sort(Comparator.comparing(LineStatsDTO::linha));
+        return result;
+    }
+
+    public Optional<LineStatsDTO> stats(String linha) {
+        return Optional.ofNullable(snapshots.get(linha));
+    }
+
+    private void remove(String ordem, Map<LineState, Boolean> touched) {
+        VehicleEntry previous = vehicles.remove(ordem);
+        if (previous != null) {
+            LineState line = lines.get(previous.linha());
+            line.remove(previous);
+            touched.put(line, Boolean.TRUE);
+        }
+    }
+
+    // Registradas na primeira vez que a linha aparece; linhas sem veículos ficam em zero
+    private void registerGauges(String linha) {
+        lineGauge("gps.line.vehicles", "Veículos ativos na linha", linha, LineStatsDTO::vehicles);
+        lineGauge("gps.line.speed.mean", "Velocidade média dos veículos da linha (km/h)", linha,
+                LineStatsDTO::meanSpeed);
+        lineGauge("gps.line.headway.mean", "Distância média entre ônibus consecutivos da linha (m)", linha,
+                stats -> stats.meanHeadwayMeters() == null ? Double.NaN : stats.meanHeadwayMeters());
+        lineGauge("gps.line.bunched.pairs", "Pares de ônibus consecutivos agrupados na linha", linha,
+                LineStatsDTO::bunchedPairs);
+    }
+
+    private void lineGauge(String name, String description, String linha, ToDoubleFunction<LineStatsDTO> value) {
+        Gauge.builder(name, snapshots, current -> {
+                    LineStatsDTO stats = current.get(linha);
+                    return stats == null ? 0 : value.applyAsDouble(stats);
+                })
+                .description(description)
+                .tag("linha", linha)
+                .register(registry);
+    }
+
+    private record Position(double meters, String ordem) {
+    }
+
+    private record Gap(String follower, String leader, double meters) {
+    }
+
+    private record VehicleEntry(String linha, int velocidade, Direction direction, Position position) {
+    }
+
+    /**
+     * Aggregates of one line, mutated only by the polling thread.
+     */
+    private final class LineState {
+        final String linha;
+        final int[] speedHistogram = new int[MAX_SPEED + 1];
+        final Map<Integer, Direction> directions = new TreeMap<>();
+        int vehicles;
+        long speedSum;
+        long movingSpeedSum;
+        int moving;
+        // Pares agrupados já contados como alerta
+        Set<String> alertedPairs = Set.of();
+
+        LineState(String linha) {
+            this.linha = linha;
+        }
+
+        VehicleEntry add(GpsDataDTO data, RouteMatchDTO match) {
+            int velocidade = Math.max(0, data.getVelocidade());
+            vehicles++;
+            speedSum += velocidade;
+            speedHistogram[Math.min(velocidade, MAX_SPEED)]++;
+            if (velocidade > 0) {
+                moving++;
+                movingSpeedSum += velocidade;
+            }
+
+            // Só ônibus em serviço entram nos intervalos: na rota e não parados (ex.: no terminal)
+            if (match == null || match.direcao() == null || match.distanceAlongMeters() == null
+                    || match.offRoute() || match.stopped()) {
+                return new VehicleEntry(linha, velocidade, null, null);
+            }
+            Direction direction = directions.computeIfAbsent(match.direcao(), Direction::new);
+            Position position = new Position(match.distanceAlongMeters(), data.getOrdem());
+            direction.insert(position);
+            return new VehicleEntry(linha, velocidade, direction, position);
+        }
+
+        void remove(VehicleEntry entry) {
+            vehicles--;
+            speedSum -= entry.velocidade();
+            speedHistogram[Math.min(entry.velocidade(), MAX_SPEED)]--;
+            if (entry.velocidade() > 0) {
+                moving--;
+                movingSpeedSum -= entry.velocidade();
+            }
+            if (entry.direction() != null) {
+                entry.direction().delete(entry.position());
+            }
+        }
+
+        LineStatsDTO snapshot() {
+            int headwayVehicles = 0;
+            int gaps = 0;
+            double span = 0;
+            double minHeadway = Double.POSITIVE_INFINITY;
+            List<LineStatsDTO.BunchedPair> bunching = new ArrayList<>();
+            for (Direction direction : directions.values()) {
+                headwayVehicles += direction.positions.size();
+                if (direction.positions.size() < 2) {
+                    continue;
+                }
+                // A soma das lacunas entre vizinhos é a distância entre o primeiro e o último
+                gaps += direction.positions.size() - 1;
+                span += direction.positions.last().meters() - direction.positions.first().meters();
+                minHeadway = Math.min(minHeadway, direction.gapLengths.firstKey());
+                for (Gap gap : direction.bunched.values()) {
+                    bunching.add(new LineStatsDTO.BunchedPair(gap.follower(), gap.leader(), direction.direcao,
+                            gap.meters()));
+                }
+            }
+            countNewBunching(bunching);
+
+            Double meanHeadway = gaps == 0 ? null : span / gaps;
+            Double headwaySeconds = meanHeadway == null || moving == 0 ? null
+                    : meanHeadway / ((double) movingSpeedSum / moving / 3.6);
+            return new LineStatsDTO(linha, vehicles, (double) speedSum / vehicles, percentile(0.5), percentile(0.95),
+                    headwayVehicles, meanHeadway, gaps == 0 ? null : minHeadway, headwaySeconds, bunching.size(),
+                    bunching.isEmpty() ? List.of() : Collections.unmodifiableList(bunching));
+        }
+
+        // Um par que continua agrupado ciclo após ciclo conta uma vez
+        private void countNewBunching(List<LineStatsDTO.BunchedPair> bunching) {
+            if (bunching.isEmpty()) {
+                alertedPairs = Set.of();
+                return;
+            }
+            Set<String> current = new HashSet<>();
+            for (LineStatsDTO.BunchedPair pair : bunching) {
+                String key = pair.follower() + '>' + pair.leader();
+                current.add(key);
+                if (!alertedPairs.contains(key)) {
+                    bunchingAlerts.increment();
+                }
+            }
+            alertedPairs = current;
+        }
+
+        private int percentile(double quantile) {
+            long rank = (long) Math.ceil(quantile * vehicles);
+            long seen = 0;
+            for (int speed = 0; speed < speedHistogram.length; speed++) {
+                seen += speedHistogram[speed];
+                if (seen >= rank) {
+                    return speed;
+                }
+            }
+            return MAX_SPEED;
+        }
+    }
+
+    /**
+     * Buses of one line running one itinerary, sorted by distance along it, with the gap from
+     * each to the next one ahead.
+     */
+    private final class Direction {
+        final int direcao;
+        final TreeSet<Position> positions = new TreeSet<>(ALONG_ROUTE);
+        // Lacuna até o ônibus da frente, indexada pelo de trás
+        final Map<String, Gap> gaps = new HashMap<>();
+        // Multiconjunto dos comprimentos das lacunas, para o mínimo
+        final TreeMap<Double, Integer> gapLengths = new TreeMap<>();
+        final Map<String, Gap> bunched = new HashMap<>();
+
+        Direction(int direcao) {
+            this.direcao = direcao;
+        }
+
+        void insert(Position position) {
+            Position behind = positions.lower(position);
+            Position ahead = positions.higher(position);
+            if (behind != null && ahead != null) {
+                removeGap(behind.ordem());
+            }
+            positions.add(position);
+            if (behind != null) {
+                addGap(behind, position);
+            }
+            if (ahead != null) {
+                addGap(position, ahead);
+            }
+        }
+
+        void delete(Position position) {
+            positions.remove(position);
+            removeGap(position.ordem());
+            Position behind = positions.lower(position);
+            if (behind != null) {
+                removeGap(behind.ordem());
+                Position ahead = positions.higher(position);
+                if (ahead != null) {
+                    addGap(behind, ahead);
+                }
+            }
+        }
+
+        private void addGap(Position follower, Position leader) {
+            Gap gap = new Gap(follower.ordem(), leader.ordem(), leader.meters() - follower.meters());
+            gaps.put(gap.follower(), gap);
+            gapLengths.merge(gap.meters(), 1, Integer::sum);
+            if (gap.meters() < bunchingMeters) {
+                bunched.put(gap.follower(), gap);
+            }
+        }
+
+        private void removeGap(String follower) {
+            Gap gap = gaps.remove(follower);
+            if (gap != null) {
+                gapLengths.compute(gap.meters(), (meters, count) -> count == 1 ? null : count - 1);
+                bunched.remove(follower);
+            }
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.RouteEventDTO;
+import com.azvtech.monitoring_service.dto.RouteMatchDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches every position in a fleet delta to its line's itineraries, held in one
+ * {@link RouteIndex} per line. For each vehicle it keeps the direction it is running, inferred
+ * from which itinerary it advances along and switched only after consecutive confirmations, and
+ * its progress along that itinerary. Vehicles farther than {@code gps.matching.off-route-meters}
+ * from every itinerary of their line raise {@code OFF_ROUTE} (and {@code BACK_ON_ROUTE} on their
+ * return); vehicles that stay within a small radius for {@code gps.matching.stopped-after-seconds}
+ * raise {@code STOPPED} (and {@code MOVING}). Events go to a bounded, sequenced buffer and to
+ * every {@link RouteEventListener}.
+ * <p>
+ * Per-vehicle tracks are confined to the polling thread; readers see the immutable
+ * {@link RouteMatchDTO} published after each vehicle is matched. Runs ahead of the listeners
+ * that read those matches for the same delta.
+ *
+ * @author Fellipe Toledo
+ */
+@Service
+@Order(MapMatchingService.LISTENER_ORDER)
+public class MapMatchingService implements FleetUpdateListener {
+
+    /** Posição entre os {@link FleetUpdateListener}s; quem lê os matches do ciclo vem depois. */
+    public static final int LISTENER_ORDER = 0;
+
+    private static final Logger logger = LoggerFactory.getLogger(MapMatchingService.class);
+
+    // Avanço mínimo a favor de outro itinerário para contar como indício de troca de sentido
+    private static final double DIRECTION_MARGIN_METERS = 20;
+
+    private final ItineraryService itineraryService;
+    private final List<RouteEventListener> listeners;
+    private final double offRouteMeters;
+    private final int confirmations;
+    private final double stoppedRadiusMeters;
+    private final long stoppedAfterMillis;
+    private final int eventBufferSize;
+
+    // Acessados apenas pela thread do polling
+    private final Map<String, Optional<RouteIndex>> indexes = new HashMap<>();
+    private long indexesVersion;
+    private final Map<String, Track> tracks = new HashMap<>();
+
+    private final Map<String, RouteMatchDTO> matches = new ConcurrentHashMap<>();
+
+    // Protegidos pelo monitor de events
+    private final Deque<RouteEventDTO> events = new ArrayDeque<>();
+    private long lastSequence;
+
+    // Um único escritor (a thread do polling)
+    private volatile int offRouteVehicles;
+    private volatile int stoppedVehicles;
+    private volatile int unmatchedVehicles;
+    private volatile int indexedLines;
+
+    private final Timer cycleTimer;
+    private final Map<RouteEventDTO.Type, Counter> eventCounters = new EnumMap<>(RouteEventDTO.Type.class);
+
+    public MapMatchingService(ItineraryService itineraryService, List<RouteEventListener> listeners,
+                              @Value("${gps.matching.off-route-meters}") double offRouteMeters,
+                              @Value("${gps.matching.confirmations}") int confirmations,
+                              @Value("${gps.matching.stopped-radius-meters}") double stoppedRadiusMeters,
+                              @Value("${gps.matching.stopped-after-seconds}") long stoppedAfterSeconds,
+                              @Value("${gps.matching.event-buffer-size}") int eventBufferSize,
+                              MeterRegistry registry) {
+        this.itineraryService = itineraryService;
+        this.listeners = listeners;
+        this.offRouteMeters = offRouteMeters;
+        this.confirmations = Math.max(1, confirmations);
+        this.stoppedRadiusMeters = stoppedRadiusMeters;
+        this.stoppedAfterMillis = stoppedAfterSeconds * 1000;
+        this.eventBufferSize = eventBufferSize;
+
+        cycleTimer = Timer.builder("gps.matching.cycle.time")
+                .description("Tempo para casar as posições de um ciclo com os itinerários")
+                .register(registry);
+
+        for (RouteEventDTO.Type type : RouteEventDTO.Type.values()) {
+            eventCounters.put(type, Counter.builder("gps.matching.events")
+                    .description("Eventos de rota emitidos")
+                    .tag("type", type.name().toLowerCase())
+                    .register(registry));
+        }
+
+        Gauge.builder("gps.matching.vehicles.off_route", this, service -> service.offRouteVehicles)
+                .description("Veículos fora do itinerário da linha")
+                .register(registry);
+
+        Gauge.builder("gps.matching.vehicles.stopped", this, service -> service.stoppedVehicles)
+                .description("Veículos parados além do tempo limite")
+                .register(registry);
+
+        Gauge.builder("gps.matching.vehicles.unmatched", this, service -> service.unmatchedVehicles)
+                .description("Veículos cuja linha não tem itinerário carregado")
+                .register(registry);
+
+        Gauge.builder("gps.matching.lines", this, service -> service.indexedLines)
+                .description("Linhas com índice de itinerário construído")
+                .register(registry);
+    }
+
+    @Override
+    public void onFleetUpdate(FleetDelta delta) {
+        long start = System.nanoTime();
+        List<RouteEventDTO> raised = new ArrayList<>();
+        for (GpsDataDTO data : delta.changed()) {
+            matchVehicle(data, raised);
+        }
+        for (String ordem : delta.removed()) {
+            Track track = tracks.remove(ordem);
+            if (track != null) {
+                discard(track);
+            }
+            matches.remove(ordem);
+        }
+        cycleTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (raised.isEmpty()) {
+            return;
+        }
+        publish(raised);
+        for (RouteEventListener listener : listeners) {
+            try {
+                listener.onRouteEvents(raised);
+            } catch (Exception e) {
+                logger.error("Route event listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    public Optional<RouteMatchDTO> match(String ordem) {
+        return Optional.ofNullable(matches.get(ordem));
+    }
+
+    public List<RouteMatchDTO> offRoute() {
+        return matches.values().stream().filter(RouteMatchDTO::offRoute).toList();
+    }
+
+    public List<RouteMatchDTO> stopped() {
+        return matches.values().stream().filter(RouteMatchDTO::stopped).toList();
+    }
+
+    /**
+     * Buffered events with a sequence above {@code sinceSequence}, oldest first, at most
+     * {@code limit}. Events older than the buffer are gone.
+     */
+    public List<RouteEventDTO> eventsSince(long sinceSequence, int limit) {
+        List<RouteEventDTO> result = new ArrayList<>();
+        synchronized (events) {
+            for (RouteEventDTO event : events) {
+                if (event.sequence() > sinceSequence) {
+                    result.add(event);
+                    if (result.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void matchVehicle(GpsDataDTO data, List<RouteEventDTO> raised) {
+        RouteIndex index = indexFor(data.getLinha());
+        Track track = tracks.get(data.getOrdem());
+        if (track != null && (!Objects.equals(track.linha, data.getLinha()) || track.index != index)) {
+            // Troca de linha ou itinerários (re)carregados: sentido e progresso anteriores não valem
+            discard(track);
+            track = null;
+        }
+        if (track == null) {
+            track = new Track(data.getLinha(), index);
+            tracks.put(data.getOrdem(), track);
+            if (index == null) {
+                unmatchedVehicles++;
+            }
+        }
+
+        RouteIndex.Match match = null;
+        if (index != null) {
+            match = matchDirection(track, index, data);
+            boolean onRoute = match != null;
+            if (onRoute != track.offRoute) {
+                track.offRouteStreak = 0;
+            } else if (++track.offRouteStreak >= confirmations) {
+                track.offRoute = !onRoute;
+                track.offRouteStreak = 0;
+                offRouteVehicles += track.offRoute ? 1 : -1;
+                raised.add(event(track.offRoute ? RouteEventDTO.Type.OFF_ROUTE : RouteEventDTO.Type.BACK_ON_ROUTE,
+                        data, index, match));
+            }
+        }
+        detectStop(track, data, index, match, raised);
+
+        Integer direcao = match == null ? null : index.itinerary(match.itinerary()).direcao();
+        String destino = match == null ? null : index.itinerary(match.itinerary()).destino();
+        matches.put(data.getOrdem(), new RouteMatchDTO(data.getOrdem(), data.getLinha(), direcao, destino,
+                data.getLatitude(), data.getLongitude(), match == null ? null : match.distanceMeters(),
+                match == null ? null : match.progress(), match == null ? null : match.alongMeters(),
+                track.offRoute, track.stopped, data.getDatahoraservidor()));
+    }
+
+    /**
+     * Matches the position against every itinerary of the line and returns the match on the one
+     * the vehicle is running, or {@code null} when no itinerary is within the off-route distance.
+     * A vehicle switches itinerary right away when its current one no longer matches, and after
+     * {@code confirmations} consecutive positions when another one is gaining on it.
+     */
+    private RouteIndex.Match matchDirection(Track track, RouteIndex index, GpsDataDTO data) {
+        RouteIndex.Match[] candidates = new RouteIndex.Match[index.itineraryCount()];
+        int preferred = -1;
+        double preferredAdvance = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = index.nearest(data.getLatitude(), data.getLongitude(), offRouteMeters, i);
+            if (candidates[i] == null) {
+                continue;
+            }
+            double advance = Double.isNaN(track.lastProgress[i]) ? 0
+                    : (candidates[i].progress() - track.lastProgress[i]) * index.lengthMeters(i);
+            // Sem avanço mensurável (parado, primeira posição), prevalece o mais próximo
+            if (advance > preferredAdvance + DIRECTION_MARGIN_METERS
+                    || (advance > preferredAdvance - DIRECTION_MARGIN_METERS
+                    && candidates[i].distanceMeters() < candidates[preferred].distanceMeters())) {
+                preferred = i;
+                preferredAdvance = advance;
+            }
+        }
+
+        int current = track.itinerary;
+        if (preferred < 0) {
+            track.pendingCount = 0;
+        } else if (current < 0 || candidates[current] == null) {
+            track.itinerary = preferred;
+            track.pendingCount = 0;
+        } else if (preferred != current && preferredAdvance - advanceOn(track, index, candidates, current)
+                > DIRECTION_MARGIN_METERS) {
+            if (++track.pendingCount >= confirmations) {
+                track.itinerary = preferred;
+                track.pendingCount = 0;
+            }
+        } else {
+            track.pendingCount = 0;
+        }
+
+        for (int i = 0; i < candidates.length; i++) {
+            track.lastProgress[i] = candidates[i] == null ? Double.NaN : candidates[i].progress();
+        }
+        return preferred < 0 ? null : candidates[track.itinerary];
+    }
+
+    private static double advanceOn(Track track, RouteIndex index, RouteIndex.Match[] candidates, int itinerary) {
+        double last = track.lastProgress[itinerary];
+        return Double.isNaN(last) ? 0 : (candidates[itinerary].progress() - last) * index.lengthMeters(itinerary);
+    }
+
+    private void detectStop(Track track, GpsDataDTO data, RouteIndex index, RouteIndex.Match match,
+                            List<RouteEventDTO> raised) {
+        // Hora do aparelho quando presente: o atraso de transmissão não conta como tempo parado
+        long time = data.getDatahoraMillis() != GpsDataDTO.NO_TIMESTAMP
+                ? data.getDatahoraMillis() : data.getDatahoraservidorMillis();
+        if (track.anchorTime == GpsDataDTO.NO_TIMESTAMP || VehicleSpatialIndex.distanceMeters(track.anchorLatitude,
+                track.anchorLongitude, data.getLatitude(), data.getLongitude()) > stoppedRadiusMeters) {
+            track.anchorLatitude = data.getLatitude();
+            track.anchorLongitude = data.getLongitude();
+            track.anchorTime = time;
+            if (track.stopped) {
+                track.stopped = false;
+                stoppedVehicles--;
+                raised.add(event(RouteEventDTO.Type.MOVING, data, index, match));
+            }
+        } else if (!track.stopped && time - track.anchorTime >= stoppedAfterMillis) {
+            track.stopped = true;
+            stoppedVehicles++;
+            raised.add(event(RouteEventDTO.Type.STOPPED, data, index, match));
+        }
+    }
+
+    private RouteIndex indexFor(String linha) {
+        if (linha == null || !itineraryService.isLoaded()) {
+            return null;
+        }
+        long version = itineraryService.version();
+        if (version != indexesVersion) {
+            // Itinerários recarregados com conteúdo novo: os índices antigos são refeitos sob demanda
+            indexes.clear();
+            indexedLines = 0;
+            indexesVersion = version;
+        }
+        // Construído na primeira posição da linha depois de cada carga dos itinerários
+        return indexes.computeIfAbsent(linha, key -> {
+            Optional<RouteIndex> index = Optional.ofNullable(RouteIndex.build(itineraryService.itineraries(key)));
+            index.ifPresent(built -> indexedLines++);
+            return index;
+        }).orElse(null);
+    }
+
+    private void discard(Track track) {
+        if (track.offRoute) {
+            offRouteVehicles--;
+        }
+        if (track.stopped) {
+            stoppedVehicles--;
+        }
+        if (track.index == null) {
+            unmatchedVehicles--;
+        }
+    }
+
+    private RouteEventDTO event(RouteEventDTO.Type type, GpsDataDTO data, RouteIndex index, RouteIndex.Match match) {
+        return new RouteEventDTO(0, type, data.getOrdem(), data.getLinha(),
+                match == null ? null : index.itinerary(match.itinerary()).direcao(),
+                data.getLatitude(), data.getLongitude(), match == null ? null : match.distanceMeters(),
+                match == null ? null : match.progress(), data.getDatahoraservidor());
+    }
+
+    // Numera os eventos do ciclo e os guarda no buffer, descartando os mais antigos
+    private void publish(List<RouteEventDTO> raised) {
+        synchronized (events) {
+            for (int i = 0; i < raised.size(); i++) {
+                RouteEventDTO event = raised.get(i);
+                RouteEventDTO sequenced = new RouteEventDTO(++lastSequence, event.type(), event.ordem(), event.linha(),
+                        event.direcao(), event.latitude(), event.longitude(), event.distanceMeters(), event.progress(),
+                        event.datahoraservidor());
+                raised.set(i, sequenced);
+                events.addLast(sequenced);
+                if (events.size() > eventBufferSize) {
+                    events.removeFirst();
+                }
+                eventCounters.get(event.type()).increment();
+            }
+        }
+    }
+
+    /**
+     * Matching state of one vehicle, mutated only by the polling thread.
+     */
+    private static final class Track {
+        final String linha;
+        final RouteIndex index;
+        // Progresso em cada itinerário na posição anterior; NaN quando não casou com ele
+        final double[] lastProgress;
+        int itinerary = -1;
+        int pendingCount;
+        boolean offRoute;
+        // Posições seguidas contrárias ao estado atual de offRoute
+        int offRouteStreak;
+        double anchorLatitude;
+        double anchorLongitude;
+        long anchorTime = GpsDataDTO.NO_TIMESTAMP;
+        boolean stopped;
+
+        Track(String linha, RouteIndex index) {
+            this.linha = linha;
+            this.index = index;
+            this.lastProgress = new double[index == null ? 0 : index.itineraryCount()];
+            Arrays.fill(lastProgress, Double.NaN);
+        }
+    }
+}
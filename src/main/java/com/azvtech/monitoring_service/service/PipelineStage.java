@@ -0,0 +1,127 @@
+package com.azvtech.monitoring_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * One stage of the polling pipeline: a single-slot mailbox drained by one virtual thread at a time.
+ * <p>
+ * The mailbox never holds more than one item. When the stage is still busy with the previous item,
+ * a newer submission is merged into the pending one instead of queueing behind it, so a slow stage
+ * sees the latest state on its next run and the stages upstream never block. Items are handled in
+ * submission order and never concurrently.
+ *
+ * @author Fellipe Toledo
+ */
+public class PipelineStage<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+
+    private final String name;
+    private final BinaryOperator<T> merge;
+    private final Consumer<T> handler;
+
+    private final Timer stageTimer;
+    private final Counter coalescedCounter;
+    private final Counter failureCounter;
+
+    private T pending;
+    private String pendingTraceId;
+    private boolean draining;
+
+    /**
+     * @param merge combines the pending item (first argument) with a newer one (second argument)
+     */
+    public PipelineStage(String name, BinaryOperator<T> merge, Consumer<T> handler, MeterRegistry registry) {
+        this.name = name;
+        this.merge = merge;
+        this.handler = handler;
+
+        stageTimer = Timer.builder("gps.pipeline.stage.time")
+                .description("Tempo de execução de cada estágio do pipeline de polling")
+                .tag("stage", name)
+                .publishPercentileHistogram(true)
+                .register(registry);
+
+        coalescedCounter = Counter.builder("gps.pipeline.coalesced")
+                .description("Itens mesclados ao pendente porque o estágio ainda estava ocupado")
+                .tag("stage", name)
+                .register(registry);
+
+        failureCounter = Counter.builder("gps.pipeline.failures")
+                .description("Execuções do estágio que terminaram com erro")
+                .tag("stage", name)
+                .register(registry);
+
+        Gauge.builder("gps.pipeline.queue.depth", this, PipelineStage::depth)
+                .description("Itens aguardando o estágio (0 ou 1, o excedente é mesclado)")
+                .tag("stage", name)
+                .register(registry);
+    }
+
+    public void submit(T item) {
+        synchronized (this) {
+            if (pending != null) {
+                pending = merge.apply(pending, item);
+                coalescedCounter.increment();
+            } else {
+                pending = item;
+            }
+            pendingTraceId = MDC.get("traceId");
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        Thread.ofVirtual().name("pipeline-" + name).start(this::drain);
+    }
+
+    private void drain() {
+        while (true) {
+            T item;
+            String traceId;
+            synchronized (this) {
+                if (pending == null) {
+                    draining = false;
+                    return;
+                }
+                item = pending;
+                traceId = pendingTraceId;
+                pending = null;
+                pendingTraceId = null;
+            }
+            handle(item, traceId);
+        }
+    }
+
+    private void handle(T item, String traceId) {
+        if (traceId != null) {
+            MDC.put("traceId", traceId);
+        }
+        MDC.put("spanId", name);
+        try {
+            stageTimer.record(() -> handler.accept(item));
+        } catch (Exception e) {
+            failureCounter.increment();
+            logger.error("Pipeline stage {} failed: {}", name, e.getMessage(), e);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    synchronized int depth() {
+        return pending == null ? 0 : 1;
+    }
+
+    synchronized boolean isIdle() {
+        return pending == null && !draining;
+    }
+}
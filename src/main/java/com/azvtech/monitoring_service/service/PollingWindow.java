@@ -0,0 +1,86 @@
+package com.azvtech.monitoring_service.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Chooses the time range of each upstream request. After a successful poll it keeps a
+ * high-water mark at the newest {@code datahoraservidor} ingested and only asks for
+ * {@code [highWater - safetyMargin, now]}; on startup or after a failure it falls back to the
+ * full window.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+public class PollingWindow {
+
+    private static final Logger logger = LoggerFactory.getLogger(PollingWindow.class);
+
+    @Value("${gps.polling.window-seconds}")
+    private long windowSeconds;
+
+    @Value("${gps.polling.safety-margin-seconds}")
+    private long safetyMarginSeconds;
+
+    private volatile LocalDateTime highWater;
+
+    private final DistributionSummary windowWidthSummary;
+
+    public PollingWindow(MeterRegistry registry) {
+        windowWidthSummary = DistributionSummary.builder("gps.polling.window.width")
+                .description("Largura da janela solicitada à API externa")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    public record Range(LocalDateTime start, LocalDateTime end) {
+    }
+
+    public Range next() {
+        LocalDateTime end = LocalDateTime.now();
+        LocalDateTime fullWindowStart = end.minusSeconds(windowSeconds);
+        LocalDateTime start = fullWindowStart;
+
+        LocalDateTime mark = highWater;
+        if (mark != null) {
+            start = mark.minusSeconds(safetyMarginSeconds);
+            // Limitar à janela completa e a pelo menos a margem, mesmo com relógios divergentes
+            if (start.isBefore(fullWindowStart)) {
+                start = fullWindowStart;
+            }
+            LocalDateTime latestStart = end.minusSeconds(safetyMarginSeconds);
+            if (start.isAfter(latestStart)) {
+                start = latestStart;
+            }
+        }
+
+        windowWidthSummary.record(Duration.between(start, end).toMillis() / 1000.0);
+        return new Range(start, end);
+    }
+
+    /**
+     * Moves the high-water mark forward to the newest server timestamp seen in a successful poll.
+     */
+    public void advance(LocalDateTime newestServerTimestamp) {
+        if (newestServerTimestamp != null && (highWater == null || newestServerTimestamp.isAfter(highWater))) {
+            highWater = newestServerTimestamp;
+        }
+    }
+
+    /**
+     * Forgets the high-water mark so the next poll requests the full window again.
+     */
+    public void reset() {
+        if (highWater != null) {
+            logger.info("Polling window reset to the full {}s window", windowSeconds);
+        }
+        highWater = null;
+    }
+}
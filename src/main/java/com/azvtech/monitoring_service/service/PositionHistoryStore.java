@@ -0,0 +1,258 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.PositionSampleDTO;
+import com.azvtech.monitoring_service.dto.VehicleTrailDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded position history of the fleet, fed from each fleet delta. Every vehicle owns a
+ * fixed-size ring of samples (timestamp as a long, lat/lon as fixed-point ints, speed) in
+ * off-heap memory, so the footprint is capped at {@code maxVehicles * samplesPerVehicle} samples
+ * and never touches the GC. Rings are allocated in chunks as vehicles appear; a vehicle's ring is
+ * recycled once its newest sample is older than the retention.
+ *
+ * @author Fellipe Toledo
+ */
+@Service
+public class PositionHistoryStore implements FleetUpdateListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PositionHistoryStore.class);
+
+    static final double COORDINATE_SCALE = 1e7;
+    // timestamp (long), latitude e longitude (int em ponto fixo) e velocidade (int)
+    static final int SAMPLE_BYTES = 20;
+    private static final int VEHICLES_PER_CHUNK = 256;
+
+    private final long retentionMillis;
+    private final int maxVehicles;
+    private final int samplesPerVehicle;
+    private final int ringBytes;
+    private final ByteBuffer[] chunks;
+
+    // Metadados por ring em arrays primitivos, indexados pelo slot do veículo
+    private final Map<String, Integer> slotsByOrdem = new HashMap<>();
+    private final String[] ordemBySlot;
+    private final int[] heads;
+    private final int[] counts;
+    private final long[] newest;
+    private final int[] freeSlots;
+    private int freeCount;
+    private int usedSlots;
+
+    private volatile int activeVehicles;
+    private volatile long storedSamples;
+    private volatile long allocatedBytes;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Counter rejectedCounter;
+
+    public PositionHistoryStore(@Value("${gps.history.retention-minutes}") long retentionMinutes,
+                                @Value("${gps.history.max-vehicles}") int maxVehicles,
+                                @Value("${gps.history.samples-per-vehicle}") int samplesPerVehicle,
+                                MeterRegistry registry) {
+        this.retentionMillis = retentionMinutes * 60_000;
+        this.maxVehicles = maxVehicles;
+        this.samplesPerVehicle = samplesPerVehicle;
+        this.ringBytes = samplesPerVehicle * SAMPLE_BYTES;
+        this.chunks = new ByteBuffer[(maxVehicles + VEHICLES_PER_CHUNK - 1) / VEHICLES_PER_CHUNK];
+        this.ordemBySlot = new String[maxVehicles];
+        this.heads = new int[maxVehicles];
+        this.counts = new int[maxVehicles];
+        this.newest = new long[maxVehicles];
+        this.freeSlots = new int[maxVehicles];
+
+        Gauge.builder("gps.history.vehicles", this, store -> store.activeVehicles)
+                .description("Veículos com histórico armazenado")
+                .register(registry);
+
+        Gauge.builder("gps.history.samples", this, store -> store.storedSamples)
+                .description("Posições armazenadas no histórico")
+                .register(registry);
+
+        Gauge.builder("gps.history.allocated", this, store -> store.allocatedBytes)
+                .description("Memória off-heap alocada pelo histórico")
+                .baseUnit("bytes")
+                .register(registry);
+
+        Gauge.builder("gps.history.capacity", this, store -> (double) store.maxVehicles * store.ringBytes)
+                .description("Limite de memória off-heap do histórico")
+                .baseUnit("bytes")
+                .register(registry);
+
+        rejectedCounter = Counter.builder("gps.history.rejected")
+                .description("Posições descartadas por falta de espaço no histórico")
+                .register(registry);
+    }
+
+    @Override
+    public void onFleetUpdate(FleetDelta delta) {
+        lock.writeLock().lock();
+        try {
+            for (GpsDataDTO data : delta.changed()) {
+                append(data);
+            }
+            expire(System.currentTimeMillis() - retentionMillis);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Positions of one vehicle at or after {@code sinceMillis}, oldest first.
+     */
+    public VehicleTrailDTO trail(String ordem, long sinceMillis) {
+        long from = Math.max(sinceMillis, System.currentTimeMillis() - retentionMillis);
+        lock.readLock().lock();
+        try {
+            Integer slot = slotsByOrdem.get(ordem);
+            List<PositionSampleDTO> positions = new ArrayList<>();
+            if (slot != null) {
+                readSamples(slot, from, Long.MAX_VALUE, positions);
+            }
+            return new VehicleTrailDTO(ordem, positions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Positions of every vehicle between {@code fromMillis} and {@code toMillis}, inclusive.
+     */
+    public List<VehicleTrailDTO> positionsBetween(long fromMillis, long toMillis) {
+        long from = Math.max(fromMillis, System.currentTimeMillis() - retentionMillis);
+        lock.readLock().lock();
+        try {
+            List<VehicleTrailDTO> trails = new ArrayList<>();
+            for (int slot = 0; slot < usedSlots; slot++) {
+                if (ordemBySlot[slot] == null) {
+                    continue;
+                }
+                List<PositionSampleDTO> positions = new ArrayList<>();
+                readSamples(slot, from, toMillis, positions);
+                if (!positions.isEmpty()) {
+                    trails.add(new VehicleTrailDTO(ordemBySlot[slot], positions));
+                }
+            }
+            return trails;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void append(GpsDataDTO data) {
+        long timestamp = data.getDatahoraservidorMillis();
+        if (timestamp == GpsDataDTO.NO_TIMESTAMP) {
+            return;
+        }
+        Integer existing = slotsByOrdem.get(data.getOrdem());
+        int slot = existing != null ? existing : allocateSlot(data.getOrdem());
+        if (slot < 0) {
+            rejectedCounter.increment();
+            return;
+        }
+        // O ring precisa permanecer em ordem cronológica
+        if (timestamp <= newest[slot]) {
+            return;
+        }
+
+        ByteBuffer chunk = chunks[slot / VEHICLES_PER_CHUNK];
+        int offset = ringOffset(slot) + heads[slot] * SAMPLE_BYTES;
+        chunk.putLong(offset, timestamp);
+        chunk.putInt(offset + 8, (int) Math.round(data.getLatitude() * COORDINATE_SCALE));
+        chunk.putInt(offset + 12, (int) Math.round(data.getLongitude() * COORDINATE_SCALE));
+        chunk.putInt(offset + 16, data.getVelocidade());
+
+        heads[slot] = (heads[slot] + 1) % samplesPerVehicle;
+        if (counts[slot] < samplesPerVehicle) {
+            counts[slot]++;
+            storedSamples++;
+        }
+        newest[slot] = timestamp;
+    }
+
+    private int allocateSlot(String ordem) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else if (usedSlots < maxVehicles) {
+            slot = usedSlots++;
+            ensureChunk(slot / VEHICLES_PER_CHUNK);
+        } else {
+            return -1;
+        }
+        slotsByOrdem.put(ordem, slot);
+        ordemBySlot[slot] = ordem;
+        heads[slot] = 0;
+        counts[slot] = 0;
+        newest[slot] = Long.MIN_VALUE;
+        activeVehicles++;
+        return slot;
+    }
+
+    private void ensureChunk(int chunkIndex) {
+        if (chunks[chunkIndex] == null) {
+            int vehicles = Math.min(VEHICLES_PER_CHUNK, maxVehicles - chunkIndex * VEHICLES_PER_CHUNK);
+            chunks[chunkIndex] = ByteBuffer.allocateDirect(vehicles * ringBytes);
+            allocatedBytes += (long) vehicles * ringBytes;
+            logger.debug("Allocated history chunk {} ({} bytes)", chunkIndex, vehicles * ringBytes);
+        }
+    }
+
+    private void expire(long cutoff) {
+        for (int slot = 0; slot < usedSlots; slot++) {
+            if (ordemBySlot[slot] != null && newest[slot] < cutoff) {
+                slotsByOrdem.remove(ordemBySlot[slot]);
+                ordemBySlot[slot] = null;
+                storedSamples -= counts[slot];
+                freeSlots[freeCount++] = slot;
+                activeVehicles--;
+            }
+        }
+    }
+
+    private void readSamples(int slot, long from, long to, List<PositionSampleDTO> out) {
+        ByteBuffer chunk = chunks[slot / VEHICLES_PER_CHUNK];
+        int base = ringOffset(slot);
+        int count = counts[slot];
+        int oldest = (heads[slot] - count + samplesPerVehicle) % samplesPerVehicle;
+
+        for (int i = 0; i < count; i++) {
+            int offset = base + ((oldest + i) % samplesPerVehicle) * SAMPLE_BYTES;
+            long timestamp = chunk.getLong(offset);
+            if (timestamp < from) {
+                continue;
+            }
+            if (timestamp > to) {
+                break;
+            }
+            out.add(new PositionSampleDTO(
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()),
+                    chunk.getInt(offset + 8) / COORDINATE_SCALE,
+                    chunk.getInt(offset + 12) / COORDINATE_SCALE,
+                    chunk.getInt(offset + 16)));
+        }
+    }
+
+    private int ringOffset(int slot) {
+        return (slot % VEHICLES_PER_CHUNK) * ringBytes;
+    }
+}
@@ -0,0 +1,157 @@
+package com.azvtech.monitoring_service.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Follower side of the replication channel: a WebSocket connection to the leader's
+ * {@code /cluster/replication}, whose frames are decoded and handed to the fleet pipeline.
+ * {@link #follow} is called on every lease check and only (re)connects when the leader changed
+ * or the connection dropped.
+ *
+ * @author Fellipe Toledo
+ */
+class ReplicationClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationClient.class);
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+
+    private final HttpClient httpClient;
+    private final Consumer<ReplicationFrame> frameHandler;
+    private final Timer lagTimer;
+
+    private volatile Connection connection;
+    // Evita repetir o aviso a cada tentativa enquanto o líder não aceita conexões
+    private boolean lastAttemptFailed;
+
+    ReplicationClient(HttpClient httpClient, Consumer<ReplicationFrame> frameHandler, MeterRegistry registry) {
+        this.httpClient = httpClient;
+        this.frameHandler = frameHandler;
+
+        lagTimer = Timer.builder("gps.cluster.replication.lag")
+                .description("Atraso entre o líder publicar um ciclo e este seguidor recebê-lo")
+                .publishPercentileHistogram(true)
+                .register(registry);
+
+        Gauge.builder("gps.cluster.replication.connected", this, client -> client.isConnected() ? 1 : 0)
+                .description("1 enquanto este seguidor recebe a replicação do líder")
+                .register(registry);
+    }
+
+    synchronized void follow(String replicationUrl) {
+        Connection current = connection;
+        if (current != null && current.url.equals(replicationUrl) && !current.closed) {
+            return;
+        }
+        disconnect();
+
+        Connection next = new Connection(replicationUrl);
+        connection = next;
+        httpClient.newWebSocketBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .buildAsync(URI.create(replicationUrl), next)
+                .whenComplete((socket, error) -> onConnectAttempt(next, socket, error));
+    }
+
+    synchronized void disconnect() {
+        Connection current = connection;
+        connection = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    boolean isConnected() {
+        Connection current = connection;
+        return current != null && current.socket != null && !current.closed;
+    }
+
+    private synchronized void onConnectAttempt(Connection attempt, WebSocket socket, Throwable error) {
+        if (error != null) {
+            attempt.closed = true;
+            if (!lastAttemptFailed) {
+                logger.warn("Failed to connect to leader at {}: {}", attempt.url, error.getMessage());
+            }
+            lastAttemptFailed = true;
+            return;
+        }
+        lastAttemptFailed = false;
+        attempt.socket = socket;
+        if (attempt != connection) {
+            // Substituída enquanto conectava
+            attempt.close();
+            return;
+        }
+        logger.info("Following leader at {}", attempt.url);
+    }
+
+    /**
+     * One connection attempt; frames may arrive split in parts and are reassembled here.
+     */
+    private final class Connection implements WebSocket.Listener {
+
+        private final String url;
+        private final ByteArrayOutputStream parts = new ByteArrayOutputStream();
+        private volatile WebSocket socket;
+        private volatile boolean closed;
+
+        private Connection(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            parts.writeBytes(bytes);
+            if (last) {
+                ByteBuffer frame = ByteBuffer.wrap(parts.toByteArray());
+                parts.reset();
+                try {
+                    ReplicationFrame decoded = ReplicationFrame.decode(frame);
+                    lagTimer.record(Math.max(0, System.currentTimeMillis() - decoded.publishedAtMillis()),
+                            TimeUnit.MILLISECONDS);
+                    frameHandler.accept(decoded);
+                } catch (RuntimeException e) {
+                    logger.error("Failed to apply replication frame from {}: {}", url, e.getMessage(), e);
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            closed = true;
+            logger.info("Replication connection to {} closed: {} {}", url, statusCode, reason);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            closed = true;
+            logger.warn("Replication connection to {} failed: {}", url, error.getMessage());
+        }
+
+        private void close() {
+            closed = true;
+            WebSocket current = socket;
+            if (current != null) {
+                current.abort();
+            }
+        }
+    }
+}
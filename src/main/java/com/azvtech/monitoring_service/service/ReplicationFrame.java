@@ -0,0 +1,42 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * One message of the leader-to-follower replication channel: the records the leader applied
+ * in a cycle, or its whole fleet when {@code snapshot} is set, and when the leader published
+ * them. Encoded as {@code [byte kind][long publishedAtMillis][int count][records]}, with the
+ * records in the {@link GpsRecordCodec} layout.
+ *
+ * @author Fellipe Toledo
+ */
+public record ReplicationFrame(boolean snapshot, long publishedAtMillis, List<GpsDataDTO> records) {
+
+    private static final byte KIND_DELTA = 1;
+    private static final byte KIND_SNAPSHOT = 2;
+    private static final int HEADER_BYTES = 1 + 8 + 4;
+
+    public static ByteBuffer encode(boolean snapshot, long publishedAtMillis, Collection<GpsDataDTO> records) {
+        ByteBuffer body = GpsRecordCodec.encode(ByteBuffer.allocate(64 * records.size() + 64), records);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + body.remaining());
+        frame.put(snapshot ? KIND_SNAPSHOT : KIND_DELTA);
+        frame.putLong(publishedAtMillis);
+        frame.putInt(records.size());
+        frame.put(body);
+        return frame.flip();
+    }
+
+    public static ReplicationFrame decode(ByteBuffer frame) {
+        byte kind = frame.get();
+        if (kind != KIND_DELTA && kind != KIND_SNAPSHOT) {
+            throw new IllegalArgumentException("Unknown replication frame kind " + kind);
+        }
+        long publishedAtMillis = frame.getLong();
+        int count = frame.getInt();
+        return new ReplicationFrame(kind == KIND_SNAPSHOT, publishedAtMillis, GpsRecordCodec.decode(frame, count));
+    }
+}
@@ -0,0 +1,16 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.RouteEventDTO;
+
+import java.util.List;
+
+/**
+ * Receives the route events raised by {@link MapMatchingService}, once per fleet delta that
+ * raised any. Implementations run on the polling thread and must be quick.
+ *
+ * @author Fellipe Toledo
+ */
+public interface RouteEventListener {
+
+    void onRouteEvents(List<RouteEventDTO> events);
+}
@@ -0,0 +1,292 @@
+package com.azvtech.monitoring_service.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Static R-tree over the segments of one line's itineraries, bulk-loaded with Sort-Tile-Recursive
+ * packing. Coordinates are projected once to local meters around the line's first vertex, so a
+ * nearest-segment query is a handful of bounding-box tests and a few exact point-to-segment
+ * distances. Immutable after construction and safe to share between threads.
+ *
+ * @author Fellipe Toledo
+ */
+final class RouteIndex {
+
+    static final int NODE_CAPACITY = 16;
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    /**
+     * Closest point of a route to a position: which itinerary, how far away, and how far along the
+     * itinerary the projected point is, in meters and as a fraction (0 at its start, 1 at its end).
+     */
+    record Match(int itinerary, double distanceMeters, double alongMeters, double progress) {
+    }
+
+    private final List<Itinerary> itineraries;
+    private final double originLat;
+    private final double originLon;
+    private final double lonScale;
+
+    // Segmentos, reordenados pelo empacotamento STR
+    private final double[] ax, ay, bx, by;
+    private final int[] segmentItinerary;
+    // Distância ao longo do itinerário até o início do segmento
+    private final double[] segmentStart;
+    private final double[] itineraryLength;
+
+    // Níveis da árvore; o nível 0 são as folhas, cujos filhos são segmentos
+    private final Level[] levels;
+
+    private RouteIndex(List<Itinerary> itineraries, int segments) {
+        this.itineraries = itineraries;
+        double[] first = itineraries.getFirst().parts().getFirst();
+        originLon = first[0];
+        originLat = first[1];
+        lonScale = Math.cos(Math.toRadians(originLat));
+
+        ax = new double[segments];
+        ay = new double[segments];
+        bx = new double[segments];
+        by = new double[segments];
+        segmentItinerary = new int[segments];
+        segmentStart = new double[segments];
+        itineraryLength = new double[itineraries.size()];
+
+        int segment = 0;
+        for (int i = 0; i < itineraries.size(); i++) {
+            double along = 0;
+            // As partes são percorridas em sequência; o progresso segue contando entre elas
+            for (double[] part : itineraries.get(i).parts()) {
+                for (int p = 0; p + 3 < part.length; p += 2) {
+                    ax[segment] = x(part[p]);
+                    ay[segment] = y(part[p + 1]);
+                    bx[segment] = x(part[p + 2]);
+                    by[segment] = y(part[p + 3]);
+                    segmentItinerary[segment] = i;
+                    segmentStart[segment] = along;
+                    along += Math.hypot(bx[segment] - ax[segment], by[segment] - ay[segment]);
+                    segment++;
+                }
+            }
+            itineraryLength[i] = along;
+        }
+        levels = pack();
+    }
+
+    /**
+     * Index over every segment of the given itineraries, or {@code null} when they have none.
+     */
+    static RouteIndex build(List<Itinerary> itineraries) {
+        int segments = 0;
+        for (Itinerary itinerary : itineraries) {
+            for (double[] part : itinerary.parts()) {
+                segments += Math.max(0, part.length / 2 - 1);
+            }
+        }
+        return segments == 0 ? null : new RouteIndex(itineraries, segments);
+    }
+
+    Itinerary itinerary(int index) {
+        return itineraries.get(index);
+    }
+
+    int itineraryCount() {
+        return itineraries.size();
+    }
+
+    double lengthMeters(int itinerary) {
+        return itineraryLength[itinerary];
+    }
+
+    int segmentCount() {
+        return ax.length;
+    }
+
+    /**
+     * The closest segment within {@code maxDistanceMeters}, optionally restricted to one
+     * itinerary ({@code -1} for any), or {@code null} when none is that close.
+     */
+    Match nearest(double latitude, double longitude, double maxDistanceMeters, int onlyItinerary) {
+        double px = x(longitude);
+        double py = y(latitude);
+        double best = maxDistanceMeters * maxDistanceMeters;
+        int bestSegment = -1;
+        double bestT = 0;
+
+        // Busca em profundidade; a pilha guarda (nível, nó)
+        int[] stack = new int[2 * (levels.length * NODE_CAPACITY + 1)];
+        int top = 0;
+        Level root = levels[levels.length - 1];
+        for (int node = 0; node < root.size(); node++) {
+            stack[top++] = levels.length - 1;
+            stack[top++] = node;
+        }
+        while (top > 0) {
+            int node = stack[--top];
+            int level = stack[--top];
+            Level current = levels[level];
+            if (current.distanceSquared(node, px, py) > best) {
+                continue;
+            }
+            int from = current.childStart[node];
+            int to = current.childEnd[node];
+            if (level > 0) {
+                for (int child = from; child < to; child++) {
+                    stack[top++] = level - 1;
+                    stack[top++] = child;
+                }
+                continue;
+            }
+            for (int s = from; s < to; s++) {
+                if (onlyItinerary >= 0 && segmentItinerary[s] != onlyItinerary) {
+                    continue;
+                }
+                double dx = bx[s] - ax[s];
+                double dy = by[s] - ay[s];
+                double lengthSquared = dx * dx + dy * dy;
+                double t = lengthSquared == 0 ? 0 : Math.clamp(((px - ax[s]) * dx + (py - ay[s]) * dy) / lengthSquared, 0, 1);
+                double cx = ax[s] + t * dx - px;
+                double cy = ay[s] + t * dy - py;
+                double distance = cx * cx + cy * cy;
+                if (distance <= best) {
+                    best = distance;
+                    bestSegment = s;
+                    bestT = t;
+                }
+            }
+        }
+        if (bestSegment < 0) {
+            return null;
+        }
+        int itinerary = segmentItinerary[bestSegment];
+        double along = segmentStart[bestSegment]
+                + bestT * Math.hypot(bx[bestSegment] - ax[bestSegment], by[bestSegment] - ay[bestSegment]);
+        double length = itineraryLength[itinerary];
+        return new Match(itinerary, Math.sqrt(best), along, length == 0 ? 0 : along / length);
+    }
+
+    private double x(double longitude) {
+        return (longitude - originLon) * lonScale * METERS_PER_DEGREE;
+    }
+
+    private double y(double latitude) {
+        return (latitude - originLat) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * Packs the segments into leaves and the leaves into parents until one level fits in a node,
+     * reordering each level so that every node's children are contiguous in the level below.
+     */
+    private Level[] pack() {
+        int count = ax.length;
+        double[] minX = new double[count], minY = new double[count], maxX = new double[count], maxY = new double[count];
+        for (int s = 0; s < count; s++) {
+            minX[s] = Math.min(ax[s], bx[s]);
+            maxX[s] = Math.max(ax[s], bx[s]);
+            minY[s] = Math.min(ay[s], by[s]);
+            maxY[s] = Math.max(ay[s], by[s]);
+        }
+        int[] order = strOrder(minX, minY, maxX, maxY);
+        reorderSegments(order);
+        Level level = Level.over(permute(minX, order), permute(minY, order), permute(maxX, order), permute(maxY, order));
+
+        Level[] levels = {level};
+        while (level.size() > NODE_CAPACITY) {
+            int[] nodeOrder = strOrder(level.minX, level.minY, level.maxX, level.maxY);
+            level = level.permuted(nodeOrder);
+            levels[levels.length - 1] = level;
+            Level parent = Level.over(level.minX, level.minY, level.maxX, level.maxY);
+            levels = Arrays.copyOf(levels, levels.length + 1);
+            levels[levels.length - 1] = parent;
+            level = parent;
+        }
+        return levels;
+    }
+
+    // Sort-Tile-Recursive: fatias verticais pelo centro em x, cada uma ordenada pelo centro em y
+    private static int[] strOrder(double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        int count = minX.length;
+        int nodes = Math.ceilDiv(count, NODE_CAPACITY);
+        int sliceSize = NODE_CAPACITY * (int) Math.ceil(Math.sqrt(nodes));
+        Integer[] order = new Integer[count];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> Double.compare(minX[a] + maxX[a], minX[b] + maxX[b]));
+        for (int start = 0; start < count; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(count, start + sliceSize),
+                    (a, b) -> Double.compare(minY[a] + maxY[a], minY[b] + maxY[b]));
+        }
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    private void reorderSegments(int[] order) {
+        double[][] coordinates = {ax, ay, bx, by, segmentStart};
+        for (double[] values : coordinates) {
+            System.arraycopy(permute(values, order), 0, values, 0, values.length);
+        }
+        int[] itinerary = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            itinerary[i] = segmentItinerary[order[i]];
+        }
+        System.arraycopy(itinerary, 0, segmentItinerary, 0, itinerary.length);
+    }
+
+    private static double[] permute(double[] values, int[] order) {
+        double[] permuted = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            permuted[i] = values[order[i]];
+        }
+        return permuted;
+    }
+
+    /**
+     * Bounding boxes of one tree level and the range of children each node covers.
+     */
+    private record Level(double[] minX, double[] minY, double[] maxX, double[] maxY, int[] childStart, int[] childEnd) {
+
+        // Um nó para cada NODE_CAPACITY entradas consecutivas do nível abaixo
+        static Level over(double[] minX, double[] minY, double[] maxX, double[] maxY) {
+            int nodes = Math.ceilDiv(minX.length, NODE_CAPACITY);
+            Level level = new Level(new double[nodes], new double[nodes], new double[nodes], new double[nodes],
+                    new int[nodes], new int[nodes]);
+            for (int node = 0; node < nodes; node++) {
+                int from = node * NODE_CAPACITY;
+                int to = Math.min(minX.length, from + NODE_CAPACITY);
+                level.childStart[node] = from;
+                level.childEnd[node] = to;
+                level.minX[node] = Double.POSITIVE_INFINITY;
+                level.minY[node] = Double.POSITIVE_INFINITY;
+                level.maxX[node] = Double.NEGATIVE_INFINITY;
+                level.maxY[node] = Double.NEGATIVE_INFINITY;
+                for (int i = from; i < to; i++) {
+                    level.minX[node] = Math.min(level.minX[node], minX[i]);
+                    level.minY[node] = Math.min(level.minY[node], minY[i]);
+                    level.maxX[node] = Math.max(level.maxX[node], maxX[i]);
+                    level.maxY[node] = Math.max(level.maxY[node], maxY[i]);
+                }
+            }
+            return level;
+        }
+
+        Level permuted(int[] order) {
+            int[] start = new int[order.length];
+            int[] end = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                start[i] = childStart[order[i]];
+                end[i] = childEnd[order[i]];
+            }
+            return new Level(permute(minX, order), permute(minY, order), permute(maxX, order), permute(maxY, order),
+                    start, end);
+        }
+
+        int size() {
+            return minX.length;
+        }
+
+        double distanceSquared(int node, double x, double y) {
+            double dx = Math.max(0, Math.max(minX[node] - x, x - maxX[node]));
+            double dy = Math.max(0, Math.max(minY[node] - y, y - maxY[node]));
+            return dx * dx + dy * dy;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.BoundingBox;
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.NearbyVehicleDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Uniform lat/lon grid over the live fleet, updated incrementally from each fleet delta.
+ * Radius, k-nearest and bounding-box queries only visit the cells that can contain results
+ * instead of scanning every vehicle. Reads are lock-free and may observe a cycle in progress.
+ *
+ * @author Fellipe Toledo
+ */
+
+@Service
+public class VehicleSpatialIndex implements FleetUpdateListener {
+
+    static final double METERS_PER_DEGREE = 111_320.0;
+    private static final int SPARSE_RING_CHECK = 32;
+
+    private final double cellSizeDegrees;
+    private final Map<Long, Map<String, GpsDataDTO>> cells = new ConcurrentHashMap<>();
+    private final Map<String, IndexedVehicle> vehicles = new ConcurrentHashMap<>();
+
+    public VehicleSpatialIndex(@Value("${gps.spatial.cell-size-degrees}") double cellSizeDegrees,
+                               MeterRegistry registry) {
+        this.cellSizeDegrees = cellSizeDegrees;
+
+        Gauge.builder("gps.spatial.vehicles", vehicles, Map::size)
+                .description("Veículos no índice espacial")
+                .register(registry);
+
+        Gauge.builder("gps.spatial.cells", cells, Map::size)
+                .description("Células ocupadas no índice espacial")
+                .register(registry);
+    }
+
+    @Override
+    public void onFleetUpdate(FleetDelta delta) {
+        for (GpsDataDTO data : delta.changed()) {
+            update(data);
+        }
+        for (String ordem : delta.removed()) {
+            remove(ordem);
+        }
+    }
+
+    public void update(GpsDataDTO data) {
+        long cellKey = cellKey(data.getLatitude(), data.getLongitude());
+        IndexedVehicle previous = vehicles.put(data.getOrdem(), new IndexedVehicle(data, cellKey));
+
+        if (previous != null && previous.cellKey() != cellKey) {
+            removeFromCell(previous.cellKey(), data.getOrdem());
+        }
+        cells.computeIfAbsent(cellKey, key -> new ConcurrentHashMap<>()).put(data.getOrdem(), data);
+    }
+
+    public void remove(String ordem) {
+        IndexedVehicle previous = vehicles.remove(ordem);
+        if (previous != null) {
+            removeFromCell(previous.cellKey(), ordem);
+        }
+    }
+
+    public int size() {
+        return vehicles.size();
+    }
+
+    /**
+     * Vehicles within {@code radiusMeters} of the point, closest first.
+     */
+    public List<NearbyVehicleDTO> findWithinRadius(double latitude, double longitude, double radiusMeters) {
+        double latDelta = radiusMeters / METERS_PER_DEGREE;
+        double lonDelta = radiusMeters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+
+        List<NearbyVehicleDTO> result = new ArrayList<>();
+        forEachCell(row(latitude - latDelta), row(latitude + latDelta),
+                column(longitude - lonDelta), column(longitude + lonDelta), cell -> {
+                    for (GpsDataDTO data : cell.values()) {
+                        double distance = distanceMeters(latitude, longitude, data.getLatitude(), data.getLongitude());
+                        if (distance <= radiusMeters) {
+                            result.add(new NearbyVehicleDTO(data, distance));
+                        }
+                    }
+                });
+
+        result.sort(Comparator.comparingDouble(NearbyVehicleDTO::distanceMeters));
+        return result;
+    }
+
+    /**
+     * The {@code k} vehicles closest to the point, closest first. Searches rings of cells
+     * outward from the point's cell and stops once no unvisited cell can hold a closer vehicle.
+     */
+    public List<NearbyVehicleDTO> findNearest(double latitude, double longitude, int k) {
+        PriorityQueue<NearbyVehicleDTO> best = new PriorityQueue<>(
+                Comparator.comparingDouble(NearbyVehicleDTO::distanceMeters).reversed());
+        int centerRow = row(latitude);
+        int centerColumn = column(longitude);
+        double cellHeightMeters = cellSizeDegrees * METERS_PER_DEGREE;
+        double cellWidthMeters = cellHeightMeters * Math.cos(Math.toRadians(latitude));
+        double ringStepMeters = Math.min(cellHeightMeters, cellWidthMeters);
+        int total = vehicles.size();
+        int visited = 0;
+        int maxRing = Integer.MAX_VALUE;
+
+        for (int ring = 0; visited < total && ring <= maxRing; ring++) {
+            if (ring == SPARSE_RING_CHECK) {
+                // Frota esparsa ou removida durante a busca: limitar aos anéis que ainda têm células
+                maxRing = outermostOccupiedRing(centerRow, centerColumn);
+            }
+            // Qualquer veículo no anel seguinte está a pelo menos ring * célula de distância
+            if (best.size() == k && ring > 0 && (ring - 1) * ringStepMeters > best.peek().distanceMeters()) {
+                break;
+            }
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                for (int column = centerColumn - ring; column <= centerColumn + ring;
+                     column += edgeRow || ring == 0 ? 1 : 2 * ring) {
+                    Map<String, GpsDataDTO> cell = cells.get(key(row, column));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (GpsDataDTO data : cell.values()) {
+                        visited++;
+                        double distance = distanceMeters(latitude, longitude, data.getLatitude(), data.getLongitude());
+                        if (best.size() < k) {
+                            best.add(new NearbyVehicleDTO(data, distance));
+                        } else if (distance < best.peek().distanceMeters()) {
+                            best.poll();
+                            best.add(new NearbyVehicleDTO(data, distance));
+                        }
+                    }
+                }
+            }
+        }
+
+        List<NearbyVehicleDTO> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(NearbyVehicleDTO::distanceMeters));
+        return result;
+    }
+
+    /**
+     * Vehicles inside the bounding box.
+     */
+    public List<GpsDataDTO> findInBoundingBox(BoundingBox box) {
+        List<GpsDataDTO> result = new ArrayList<>();
+        forEachCell(row(box.minLat()), row(box.maxLat()), column(box.minLon()), column(box.maxLon()),
+                cell -> collectInside(cell, box, result));
+        return result;
+    }
+
+    private int outermostOccupiedRing(int centerRow, int centerColumn) {
+        int outermost = 0;
+        for (long cellKey : cells.keySet()) {
+            int row = (int) (cellKey >> 32);
+            int column = (int) cellKey;
+            outermost = Math.max(outermost, Math.max(Math.abs(row - centerRow), Math.abs(column - centerColumn)));
+        }
+        return outermost;
+    }
+
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        // Aproximação equiretangular: precisa o bastante na escala de uma cidade
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE * 180 / Math.PI;
+    }
+
+    private static void collectInside(Map<String, GpsDataDTO> cell, BoundingBox box, List<GpsDataDTO> result) {
+        for (GpsDataDTO data : cell.values()) {
+            if (box.contains(data.getLatitude(), data.getLongitude())) {
+                result.add(data);
+            }
+        }
+    }
+
+    /**
+     * Visits the occupied cells in the row and column range. Near the poles a radius spans
+     * columns up to the limits of {@code int}, so the range is measured in {@code long}.
+     */
+    private void forEachCell(int minRow, int maxRow, int minColumn, int maxColumn,
+                             Consumer<Map<String, GpsDataDTO>> action) {
+        long rows = (long) maxRow - minRow + 1;
+        long columns = (long) maxColumn - minColumn + 1;
+        int occupied = cells.size();
+        // Intervalos maiores que a área ocupada: percorrer apenas as células existentes
+        if (rows > occupied || columns > occupied || rows * columns > occupied) {
+            cells.forEach((cellKey, cell) -> {
+                int row = (int) (cellKey >> 32);
+                int column = (int) (long) cellKey;
+                if (row >= minRow && row <= maxRow && column >= minColumn && column <= maxColumn) {
+                    action.accept(cell);
+                }
+            });
+            return;
+        }
+
+        for (long row = minRow; row <= maxRow; row++) {
+            for (long column = minColumn; column <= maxColumn; column++) {
+                Map<String, GpsDataDTO> cell = cells.get(key((int) row, (int) column));
+                if (cell != null) {
+                    action.accept(cell);
+                }
+            }
+        }
+    }
+
+    private void removeFromCell(long cellKey, String ordem) {
+        cells.computeIfPresent(cellKey, (key, cell) -> {
+            cell.remove(ordem);
+            return cell.isEmpty() ? null : cell;
+        });
+    }
+
+    private long cellKey(double latitude, double longitude) {
+        return key(row(latitude), column(longitude));
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellSizeDegrees);
+    }
+
+    private int column(double longitude) {
+        return (int) Math.floor(longitude / cellSizeDegrees);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    private record IndexedVehicle(GpsDataDTO data, long cellKey) {
+    }
+}
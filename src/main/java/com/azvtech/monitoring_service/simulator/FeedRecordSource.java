@@ -0,0 +1,36 @@
+package com.azvtech.monitoring_service.simulator;
+
+import java.io.IOException;
+
+/**
+ * Produces the records a simulated upstream returns for a time window.
+ *
+ * @author Fellipe Toledo
+ */
+interface FeedRecordSource {
+
+    /**
+     * Emits every record whose server timestamp falls in {@code [fromMillis, toMillis]}.
+     */
+    void forEach(long fromMillis, long toMillis, FeedRecordWriter writer) throws IOException;
+
+    int vehicleCount();
+
+    /**
+     * Emits the route of every line as interleaved {@code [lon, lat]} vertices, for sources that
+     * know their routes; the default emits nothing.
+     */
+    default void forEachRoute(RouteWriter writer) throws IOException {
+    }
+
+    @FunctionalInterface
+    interface FeedRecordWriter {
+        void write(String ordem, String linha, double latitude, double longitude, int velocidade,
+                   long datahora, long datahoraenvio, long datahoraservidor) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface RouteWriter {
+        void write(String linha, double[] lonLat) throws IOException;
+    }
+}
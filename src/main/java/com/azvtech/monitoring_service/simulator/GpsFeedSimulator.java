@@ -0,0 +1,274 @@
+package com.azvtech.monitoring_service.simulator;
+
+import com.azvtech.monitoring_service.utils.DateUtils;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stand-in for the city GPS endpoint, for load tests that must not hit the real upstream. Serves
+ * {@code GET /gps?dataInicial=&dataFinal=} on the loopback interface in the upstream format
+ * (every field a string, decimal-comma coordinates by default), from either a synthetic fleet
+ * moving along generated routes or a recorded response replayed in a loop. Latency, jitter and an
+ * error rate can be injected. The synthetic routes are also served as itinerary GeoJSON on
+ * {@code GET /itineraries}, one feature per direction. Started only when
+ * {@code gps.simulator.enabled} is set; the {@code simulator} profile enables it and points
+ * {@code gps.endpoint} and {@code gps.itinerary.source} at it.
+ *
+ * @author Fellipe Toledo
+ */
+@Component
+@ConditionalOnProperty(name = "gps.simulator.enabled", havingValue = "true")
+public class GpsFeedSimulator {
+
+    private static final Logger logger = LoggerFactory.getLogger(GpsFeedSimulator.class);
+
+    @Value("${gps.simulator.port}")
+    private int port;
+
+    @Value("${gps.simulator.vehicles}")
+    private int vehicles;
+
+    @Value("${gps.simulator.lines}")
+    private int lines;
+
+    @Value("${gps.simulator.report-interval-seconds}")
+    private long reportIntervalSeconds;
+
+    @Value("${gps.simulator.latency-ms}")
+    private long latencyMs;
+
+    @Value("${gps.simulator.jitter-ms}")
+    private long jitterMs;
+
+    @Value("${gps.simulator.error-rate}")
+    private double errorRate;
+
+    @Value("${gps.simulator.decimal-comma}")
+    private boolean decimalComma;
+
+    @Value("${gps.simulator.replay-file}")
+    private String replayFile;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Counter servedCounter;
+    private final Counter failedCounter;
+    private final Counter recordsCounter;
+
+    private FeedRecordSource source;
+    private HttpServer server;
+
+    public GpsFeedSimulator(MeterRegistry registry) {
+        servedCounter = Counter.builder("gps.simulator.requests")
+                .description("Requisições atendidas pelo simulador do feed")
+                .tag("outcome", "served")
+                .register(registry);
+        failedCounter = Counter.builder("gps.simulator.requests")
+                .description("Requisições atendidas pelo simulador do feed")
+                .tag("outcome", "injected_error")
+                .register(registry);
+        recordsCounter = Counter.builder("gps.simulator.records")
+                .description("Registros emitidos pelo simulador do feed")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (replayFile.isBlank()) {
+            source = new SyntheticRoutes(vehicles, lines, reportIntervalSeconds * 1000, 42);
+        } else {
+            try (InputStream recording = new FileInputStream(replayFile)) {
+                source = new RecordedFeed(recording, System.currentTimeMillis());
+            }
+        }
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/gps", this::handle);
+        server.createContext("/itineraries", this::handleItineraries);
+        server.start();
+        logger.info("GPS feed simulator listening on http://{}:{}/gps with {} vehicles ({})",
+                InetAddress.getLoopbackAddress().getHostAddress(), port, source.vehicleCount(),
+                replayFile.isBlank() ? "synthetic routes" : "replaying " + replayFile);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    int boundPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            long from;
+            long to;
+            try {
+                from = toMillis(DateUtils.parse(query.get("dataInicial")));
+                to = Math.min(toMillis(DateUtils.parse(query.get("dataFinal"))), System.currentTimeMillis());
+            } catch (DateTimeParseException | NullPointerException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = latencyMs + (jitterMs > 0 ? random.nextLong(jitterMs + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (random.nextDouble() < errorRate) {
+                failedCounter.increment();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if (gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, 0);
+
+            OutputStream body = gzip ? new GZIPOutputStream(exchange.getResponseBody(), 65536) : exchange.getResponseBody();
+            int[] records = new int[1];
+            try (JsonGenerator generator = jsonFactory.createGenerator(body)) {
+                generator.writeStartArray();
+                source.forEach(from, to, (ordem, linha, latitude, longitude, velocidade, datahora, datahoraenvio,
+                                          datahoraservidor) -> {
+                    generator.writeStartObject();
+                    generator.writeStringField("ordem", ordem);
+                    generator.writeStringField("latitude", formatCoordinate(latitude));
+                    generator.writeStringField("longitude", formatCoordinate(longitude));
+                    generator.writeStringField("datahora", Long.toString(datahora));
+                    generator.writeStringField("velocidade", Integer.toString(velocidade));
+                    generator.writeStringField("linha", linha);
+                    generator.writeStringField("datahoraenvio", Long.toString(datahoraenvio));
+                    generator.writeStringField("datahoraservidor", Long.toString(datahoraservidor));
+                    generator.writeEndObject();
+                    records[0]++;
+                });
+                generator.writeEndArray();
+            }
+            servedCounter.increment();
+            recordsCounter.increment(records[0]);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // O cliente desistiu no meio da resposta (timeout): nada a fazer além de registrar
+            logger.debug("Simulator response aborted: {}", e.getMessage());
+        }
+    }
+
+    private void handleItineraries(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getResponseHeaders().set("Content-Type", "application/geo+json");
+            exchange.sendResponseHeaders(200, 0);
+            try (JsonGenerator generator = jsonFactory.createGenerator(exchange.getResponseBody())) {
+                generator.writeStartObject();
+                generator.writeStringField("type", "FeatureCollection");
+                generator.writeArrayFieldStart("features");
+                source.forEachRoute((linha, lonLat) -> {
+                    // Ida percorre a rota do início ao fim; a volta, o caminho inverso
+                    writeItinerary(generator, linha, 0, lonLat, false);
+                    writeItinerary(generator, linha, 1, lonLat, true);
+                });
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        } catch (IOException e) {
+            logger.debug("Simulator itinerary response aborted: {}", e.getMessage());
+        }
+    }
+
+    private static void writeItinerary(JsonGenerator generator, String linha, int direcao, double[] lonLat,
+                                       boolean reversed) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "Feature");
+        generator.writeObjectFieldStart("properties");
+        generator.writeStringField("servico", linha);
+        generator.writeNumberField("direcao", direcao);
+        generator.writeStringField("destino", (reversed ? "Origem " : "Destino ") + linha);
+        generator.writeStringField("consorcio", "Simulador");
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("geometry");
+        generator.writeStringField("type", "LineString");
+        generator.writeArrayFieldStart("coordinates");
+        int points = lonLat.length / 2;
+        for (int p = 0; p < points; p++) {
+            int i = reversed ? points - 1 - p : p;
+            generator.writeStartArray();
+            generator.writeNumber(lonLat[2 * i]);
+            generator.writeNumber(lonLat[2 * i + 1]);
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    // Cinco casas decimais (~1 m), com vírgula como a API da prefeitura
+    String formatCoordinate(double value) {
+        long scaled = Math.round(Math.abs(value) * 100_000);
+        StringBuilder text = new StringBuilder(12);
+        if (value < 0 && scaled != 0) {
+            text.append('-');
+        }
+        text.append(scaled / 100_000).append(decimalComma ? ',' : '.');
+        String fraction = Long.toString(scaled % 100_000);
+        text.append("0".repeat(5 - fraction.length())).append(fraction);
+        return text.toString();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                // O '+' do formato de data pode chegar sem codificação e não deve virar espaço
+                query.put(pair.substring(0, equals), URLDecoder.decode(pair.substring(equals + 1).replace("+", "%2B"),
+                        StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
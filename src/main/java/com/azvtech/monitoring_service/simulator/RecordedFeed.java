@@ -0,0 +1,180 @@
+package com.azvtech.monitoring_service.simulator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Replays a recorded upstream response (a JSON array in the upstream format) in a loop. Timestamps
+ * are shifted so the newest recorded record lands at {@code startMillis}, and every later pass over
+ * the recording is shifted by its span, so the replay looks like a live feed.
+ *
+ * @author Fellipe Toledo
+ */
+class RecordedFeed implements FeedRecordSource {
+
+    private final String[] ordens;
+    private final String[] linhas;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] velocidades;
+    private final long[] datahoras;
+    private final long[] datahorasEnvio;
+    private final long[] datahorasServidor;
+    private final int vehicles;
+
+    private final long shift;
+    private final long span;
+
+    RecordedFeed(InputStream recording, long startMillis) throws IOException {
+        Records records = read(recording);
+        if (records.size == 0) {
+            throw new IOException("Recorded feed has no records");
+        }
+        // Ordena pelo horário do servidor, para localizar cada janela por busca binária
+        Integer[] order = new Integer[records.size];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> Long.compare(records.datahorasServidor[a], records.datahorasServidor[b]));
+
+        ordens = new String[records.size];
+        linhas = new String[records.size];
+        latitudes = new double[records.size];
+        longitudes = new double[records.size];
+        velocidades = new int[records.size];
+        datahoras = new long[records.size];
+        datahorasEnvio = new long[records.size];
+        datahorasServidor = new long[records.size];
+        for (int i = 0; i < records.size; i++) {
+            int source = order[i];
+            ordens[i] = records.ordens[source];
+            linhas[i] = records.linhas[source];
+            latitudes[i] = records.latitudes[source];
+            longitudes[i] = records.longitudes[source];
+            velocidades[i] = records.velocidades[source];
+            datahoras[i] = records.datahoras[source];
+            datahorasEnvio[i] = records.datahorasEnvio[source];
+            datahorasServidor[i] = records.datahorasServidor[source];
+        }
+        vehicles = (int) Arrays.stream(ordens).distinct().count();
+
+        long oldest = datahorasServidor[0];
+        long newest = datahorasServidor[records.size - 1];
+        shift = startMillis - newest;
+        span = newest - oldest + 1000;
+    }
+
+    @Override
+    public int vehicleCount() {
+        return vehicles;
+    }
+
+    @Override
+    public void forEach(long fromMillis, long toMillis, FeedRecordWriter writer) throws IOException {
+        long firstPass = Math.floorDiv(fromMillis - shift - datahorasServidor[0], span);
+        long lastPass = Math.floorDiv(toMillis - shift - datahorasServidor[0], span);
+        for (long pass = firstPass; pass <= lastPass; pass++) {
+            long offset = shift + pass * span;
+            int start = lowerBound(fromMillis - offset);
+            for (int i = start; i < datahorasServidor.length && datahorasServidor[i] + offset <= toMillis; i++) {
+                writer.write(ordens[i], linhas[i], latitudes[i], longitudes[i], velocidades[i],
+                        datahoras[i] + offset, datahorasEnvio[i] + offset, datahorasServidor[i] + offset);
+            }
+        }
+    }
+
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = datahorasServidor.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (datahorasServidor[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static Records read(InputStream recording) throws IOException {
+        Records records = new Records();
+        try (JsonParser parser = new JsonFactory().createParser(recording)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Recorded feed must be a JSON array");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                records.add(parser);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number in recorded feed: " + e.getMessage(), e);
+        }
+        return records;
+    }
+
+    /**
+     * Growable columns for the records read from the recording.
+     */
+    private static final class Records {
+
+        private String[] ordens = new String[1024];
+        private String[] linhas = new String[1024];
+        private double[] latitudes = new double[1024];
+        private double[] longitudes = new double[1024];
+        private int[] velocidades = new int[1024];
+        private long[] datahoras = new long[1024];
+        private long[] datahorasEnvio = new long[1024];
+        private long[] datahorasServidor = new long[1024];
+        private int size;
+
+        private void add(JsonParser parser) throws IOException {
+            if (size == ordens.length) {
+                int capacity = size * 2;
+                ordens = Arrays.copyOf(ordens, capacity);
+                linhas = Arrays.copyOf(linhas, capacity);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                velocidades = Arrays.copyOf(velocidades, capacity);
+                datahoras = Arrays.copyOf(datahoras, capacity);
+                datahorasEnvio = Arrays.copyOf(datahorasEnvio, capacity);
+                datahorasServidor = Arrays.copyOf(datahorasServidor, capacity);
+            }
+            // A posição pode ter sido ocupada por um registro sem ordem, descartado
+            ordens[size] = null;
+            linhas[size] = null;
+            latitudes[size] = longitudes[size] = 0;
+            velocidades[size] = 0;
+            datahoras[size] = datahorasEnvio[size] = datahorasServidor[size] = 0;
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                if (token.isStructStart()) {
+                    parser.skipChildren();
+                    continue;
+                }
+                String value = parser.getValueAsString();
+                if (value == null) {
+                    continue;
+                }
+                switch (field) {
+                    case "ordem" -> ordens[size] = value;
+                    case "linha" -> linhas[size] = value;
+                    case "latitude" -> latitudes[size] = Double.parseDouble(value.replace(',', '.'));
+                    case "longitude" -> longitudes[size] = Double.parseDouble(value.replace(',', '.'));
+                    case "velocidade" -> velocidades[size] = (int) Double.parseDouble(value.replace(',', '.'));
+                    case "datahora" -> datahoras[size] = Long.parseLong(value);
+                    case "datahoraenvio" -> datahorasEnvio[size] = Long.parseLong(value);
+                    case "datahoraservidor" -> datahorasServidor[size] = Long.parseLong(value);
+                    default -> {
+                    }
+                }
+            }
+            if (ordens[size] != null) {
+                size++;
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.azvtech.monitoring_service.simulator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic fleet moving along generated routes, one route per line. Each vehicle shuttles back
+ * and forth along its line's route at a fixed speed and reports its position every
+ * {@code reportIntervalMillis}, with its own phase and transmission delay. About one vehicle in
+ * fifty runs a detour parallel to its route, far enough to count as off-route. Positions are a
+ * pure function of time, so any window can be served without keeping per-vehicle state.
+ *
+ * @author Fellipe Toledo
+ */
+class SyntheticRoutes implements FeedRecordSource {
+
+    private static final double MIN_LAT = -23.08, MAX_LAT = -22.75, MIN_LON = -43.79, MAX_LON = -43.10;
+    private static final int ROUTE_POINTS = 40;
+    private static final double STEP_DEGREES = 0.003;
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    // ~330 m ao norte da rota
+    private static final double DETOUR_DEGREES = 0.003;
+
+    private final long reportIntervalMillis;
+
+    // Rotas: coordenadas dos vértices e distância acumulada em metros até cada um
+    private final double[][] routeLatitudes;
+    private final double[][] routeLongitudes;
+    private final double[][] routeDistances;
+    private final String[] lineIds;
+
+    // Veículos
+    private final String[] ordens;
+    private final int[] lines;
+    private final double[] startOffsets;
+    private final double[] speeds;
+    private final long[] phases;
+    private final long[] transmissionDelays;
+    private final double[] detours;
+
+    SyntheticRoutes(int vehicles, int lineCount, long reportIntervalMillis, long seed) {
+        this.reportIntervalMillis = reportIntervalMillis;
+        SplittableRandom random = new SplittableRandom(seed);
+
+        routeLatitudes = new double[lineCount][];
+        routeLongitudes = new double[lineCount][];
+        routeDistances = new double[lineCount][];
+        lineIds = new String[lineCount];
+        for (int line = 0; line < lineCount; line++) {
+            lineIds[line] = String.valueOf(100 + line);
+            buildRoute(line, random);
+        }
+
+        ordens = new String[vehicles];
+        lines = new int[vehicles];
+        startOffsets = new double[vehicles];
+        speeds = new double[vehicles];
+        phases = new long[vehicles];
+        transmissionDelays = new long[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            ordens[i] = "S" + (100000 + i);
+            lines[i] = i % lineCount;
+            double[] distances = routeDistances[lines[i]];
+            startOffsets[i] = random.nextDouble(2 * distances[distances.length - 1]);
+            // Cerca de 10% parados (terminal, garagem); os demais entre 10 e 55 km/h
+            speeds[i] = random.nextInt(10) == 0 ? 0 : random.nextDouble(2.8, 15.3);
+            phases[i] = random.nextLong(reportIntervalMillis);
+            transmissionDelays[i] = 500 + random.nextLong(2500);
+        }
+        // Sorteados à parte para não alterar a frota gerada pelas mesmas sementes
+        detours = new double[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            detours[i] = random.nextInt(50) == 0 ? DETOUR_DEGREES : 0;
+        }
+    }
+
+    private void buildRoute(int line, SplittableRandom random) {
+        double[] latitudes = new double[ROUTE_POINTS];
+        double[] longitudes = new double[ROUTE_POINTS];
+        double[] distances = new double[ROUTE_POINTS];
+        latitudes[0] = random.nextDouble(MIN_LAT, MAX_LAT);
+        longitudes[0] = random.nextDouble(MIN_LON, MAX_LON);
+        double heading = random.nextDouble(2 * Math.PI);
+        for (int i = 1; i < ROUTE_POINTS; i++) {
+            heading += random.nextDouble(-0.6, 0.6);
+            latitudes[i] = Math.clamp(latitudes[i - 1] + STEP_DEGREES * Math.sin(heading), MIN_LAT, MAX_LAT);
+            longitudes[i] = Math.clamp(longitudes[i - 1] + STEP_DEGREES * Math.cos(heading), MIN_LON, MAX_LON);
+            distances[i] = distances[i - 1] + meters(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+        }
+        routeLatitudes[line] = latitudes;
+        routeLongitudes[line] = longitudes;
+        routeDistances[line] = distances;
+    }
+
+    @Override
+    public int vehicleCount() {
+        return ordens.length;
+    }
+
+    @Override
+    public void forEachRoute(RouteWriter writer) throws IOException {
+        for (int line = 0; line < lineIds.length; line++) {
+            double[] lonLat = new double[ROUTE_POINTS * 2];
+            for (int i = 0; i < ROUTE_POINTS; i++) {
+                lonLat[2 * i] = routeLongitudes[line][i];
+                lonLat[2 * i + 1] = routeLatitudes[line][i];
+            }
+            writer.write(lineIds[line], lonLat);
+        }
+    }
+
+    @Override
+    public void forEach(long fromMillis, long toMillis, FeedRecordWriter writer) throws IOException {
+        for (int i = 0; i < ordens.length; i++) {
+            long delay = transmissionDelays[i];
+            // Primeira leitura do aparelho cujo registro chega ao servidor dentro da janela
+            long first = Math.ceilDiv(fromMillis - delay - phases[i], reportIntervalMillis);
+            for (long k = first; ; k++) {
+                long deviceTime = phases[i] + k * reportIntervalMillis;
+                long serverTime = deviceTime + delay;
+                if (serverTime > toMillis) {
+                    break;
+                }
+                int line = lines[i];
+                double distance = position(i, deviceTime);
+                int segment = segmentAt(line, distance);
+                double[] distances = routeDistances[line];
+                double fraction = distances[segment + 1] == distances[segment] ? 0
+                        : (distance - distances[segment]) / (distances[segment + 1] - distances[segment]);
+                double latitude = Math.min(MAX_LAT,
+                        lerp(routeLatitudes[line][segment], routeLatitudes[line][segment + 1], fraction) + detours[i]);
+                double longitude = lerp(routeLongitudes[line][segment], routeLongitudes[line][segment + 1], fraction);
+
+                writer.write(ordens[i], lineIds[line], latitude, longitude, (int) Math.round(speeds[i] * 3.6),
+                        deviceTime, deviceTime + delay / 2, serverTime);
+            }
+        }
+    }
+
+    // Distância ao início da rota, indo e voltando ao longo dela
+    private double position(int vehicle, long timeMillis) {
+        double[] distances = routeDistances[lines[vehicle]];
+        double length = distances[distances.length - 1];
+        double travelled = (startOffsets[vehicle] + speeds[vehicle] * (timeMillis / 1000.0)) % (2 * length);
+        if (travelled < 0) {
+            travelled += 2 * length;
+        }
+        return travelled <= length ? travelled : 2 * length - travelled;
+    }
+
+    private int segmentAt(int line, double distance) {
+        double[] distances = routeDistances[line];
+        int index = Arrays.binarySearch(distances, distance);
+        int segment = index >= 0 ? index : -index - 2;
+        return Math.clamp(segment, 0, distances.length - 2);
+    }
+
+    private static double lerp(double from, double to, double fraction) {
+        return from + (to - from) * fraction;
+    }
+
+    private static double meters(double lat1, double lon1, double lat2, double lon2) {
+        double x = (lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = lat2 - lat1;
+        return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE;
+    }
+}
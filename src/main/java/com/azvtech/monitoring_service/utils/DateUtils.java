@@ -1,7 +1,10 @@
 package com.azvtech.monitoring_service.utils;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
 
 /**
  * @author Fellipe Toledo
@@ -10,7 +13,83 @@ public class DateUtils {
 
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd+HH:mm:ss");
 
+    /** Fuso usado para apresentar os horários do feed; resolvido uma única vez. */
+    public static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private static final ZoneRules RULES = ZONE.getRules();
+
+    /** Length of the {@code yyyy-MM-dd'T'HH:mm:ss} text written by {@link #formatLocal}. */
+    public static final int LOCAL_DATE_TIME_LENGTH = 19;
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
     public static String format(LocalDateTime dateTime) {
         return dateTime.format(FORMATTER);
     }
+
+    public static LocalDateTime parse(String dateTime) {
+        return LocalDateTime.parse(dateTime, FORMATTER);
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE);
+    }
+
+    /** UTC offset of {@link #ZONE}, in seconds, at the given instant. */
+    public static int offsetSeconds(long epochSeconds) {
+        return offsetSeconds(epochSeconds, RULES);
+    }
+
+    /**
+     * Writes {@code epochMillis} as {@code yyyy-MM-dd'T'HH:mm:ss} in {@link #ZONE} into
+     * {@code buffer}, the same text as {@link #toLocalDateTime} with the DTO's pattern, without
+     * creating {@link LocalDateTime} or {@link Instant} objects for fixed-offset zones.
+     */
+    public static void formatLocal(long epochMillis, char[] buffer) {
+        formatLocal(epochMillis, RULES, buffer);
+    }
+
+    static void formatLocal(long epochMillis, ZoneRules rules, char[] buffer) {
+        long epochSeconds = Math.floorDiv(epochMillis, 1000);
+        long localSeconds = epochSeconds + offsetSeconds(epochSeconds, rules);
+        long days = Math.floorDiv(localSeconds, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(localSeconds, SECONDS_PER_DAY);
+
+        // Conversão dias -> data civil (algoritmo de H. Hinnant, calendário gregoriano proléptico)
+        long shifted = days + 719_468;
+        long era = Math.floorDiv(shifted, 146_097);
+        long dayOfEra = shifted - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        writeDigits(buffer, 0, year, 4);
+        buffer[4] = '-';
+        writeDigits(buffer, 5, month, 2);
+        buffer[7] = '-';
+        writeDigits(buffer, 8, day, 2);
+        buffer[10] = 'T';
+        writeDigits(buffer, 11, secondOfDay / 3600, 2);
+        buffer[13] = ':';
+        writeDigits(buffer, 14, secondOfDay / 60 % 60, 2);
+        buffer[16] = ':';
+        writeDigits(buffer, 17, secondOfDay % 60, 2);
+    }
+
+    private static int offsetSeconds(long epochSeconds, ZoneRules rules) {
+        if (rules.isFixedOffset()) {
+            return rules.getOffset(Instant.EPOCH).getTotalSeconds();
+        }
+        return rules.getOffset(Instant.ofEpochSecond(epochSeconds)).getTotalSeconds();
+    }
+
+    private static void writeDigits(char[] buffer, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package com.azvtech.monitoring_service.utils;
+
+import java.util.Arrays;
+
+/**
+ * Polyline helpers over interleaved {@code [lon0, lat0, lon1, lat1, ...]} coordinate arrays, the
+ * layout GeoJSON uses. Distances are planar in degrees, with longitude scaled by the cosine of
+ * the line's mean latitude, which is accurate enough at city scale.
+ *
+ * @author Fellipe Toledo
+ */
+public class GeometryUtils {
+
+    private GeometryUtils() {
+    }
+
+    /**
+     * Douglas-Peucker simplification: keeps the endpoints and every point farther than
+     * {@code tolerance} degrees from the simplified line. Iterative, so very long itineraries
+     * cannot overflow the stack.
+     */
+    public static double[] simplify(double[] lonLat, double tolerance) {
+        int points = lonLat.length / 2;
+        if (points <= 2 || tolerance <= 0) {
+            return lonLat.clone();
+        }
+        double lonScale = Math.cos(Math.toRadians(meanLatitude(lonLat)));
+        double toleranceSquared = tolerance * tolerance;
+
+        boolean[] keep = new boolean[points];
+        keep[0] = true;
+        keep[points - 1] = true;
+        // Pilha de intervalos [início, fim] ainda não resolvidos
+        int[] stack = new int[2 * points];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = points - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double farthestDistance = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = segmentDistanceSquared(lonLat, i, first, last, lonScale);
+                if (distance > farthestDistance) {
+                    farthestDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0 && farthestDistance > toleranceSquared) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        double[] simplified = new double[lonLat.length];
+        int length = 0;
+        for (int i = 0; i < points; i++) {
+            if (keep[i]) {
+                simplified[length++] = lonLat[2 * i];
+                simplified[length++] = lonLat[2 * i + 1];
+            }
+        }
+        return Arrays.copyOf(simplified, length);
+    }
+
+    /**
+     * Squared distance, in scaled degrees, from point {@code p} to the segment between points
+     * {@code a} and {@code b}.
+     */
+    static double segmentDistanceSquared(double[] lonLat, int p, int a, int b, double lonScale) {
+        double px = lonLat[2 * p] * lonScale, py = lonLat[2 * p + 1];
+        double ax = lonLat[2 * a] * lonScale, ay = lonLat[2 * a + 1];
+        double bx = lonLat[2 * b] * lonScale, by = lonLat[2 * b + 1];
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.clamp(((px - ax) * dx + (py - ay) * dy) / lengthSquared, 0, 1);
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+
+    private static double meanLatitude(double[] lonLat) {
+        double sum = 0;
+        for (int i = 1; i < lonLat.length; i += 2) {
+            sum += lonLat[i];
+        }
+        return sum / (lonLat.length / 2);
+    }
+}
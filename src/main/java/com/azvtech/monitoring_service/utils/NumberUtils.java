@@ -0,0 +1,88 @@
+package com.azvtech.monitoring_service.utils;
+
+/**
+ * Parses numbers straight from a character buffer, accepting either {@code ','} or {@code '.'}
+ * as the decimal separator, without creating intermediate strings.
+ *
+ * @author Fellipe Toledo
+ */
+public class NumberUtils {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Mantissas até 2^53 são exatas em double, então a divisão por 10^n sai corretamente arredondada
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private NumberUtils() {
+    }
+
+    public static double parseDecimal(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int scale = 0;
+        boolean digits = false;
+        boolean separator = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits = true;
+                if (separator) {
+                    scale++;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA || scale >= POWERS_OF_TEN.length) {
+                    return parseDecimalSlow(chars, offset, length);
+                }
+            } else if ((c == ',' || c == '.') && !separator) {
+                separator = true;
+            } else {
+                // Expoente ou espaços: caso raro, delega ao parser do JDK
+                return parseDecimalSlow(chars, offset, length);
+            }
+        }
+        if (!digits) {
+            throw new NumberFormatException("Invalid decimal: " + new String(chars, offset, length));
+        }
+
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    public static long parseLong(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        // 18 dígitos nunca estouram um long
+        if (i == end || end - i > 18) {
+            return Long.parseLong(new String(chars, offset, length));
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid integer: " + new String(chars, offset, length));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static double parseDecimalSlow(char[] chars, int offset, int length) {
+        return Double.parseDouble(new String(chars, offset, length).trim().replace(',', '.'));
+    }
+}
@@ -14,6 +14,8 @@ let autocompleteTimeout = null;
 let markerCluster = null;
 let currentZoomLevel = 12;
 let clusterEnabled = true;
+// Camada do modo "todos os ônibus", alimentada pelos clusters/veículos que o servidor envia
+let serverMapLayer = null;
 
 // Inicializar o mapa
 const initMap = () => {
@@ -32,21 +34,19 @@ const initMap = () => {
        showCoverageOnHover: true,
        zoomToBoundsOnClick: true,
        iconCreateFunction: function(cluster) {
-           const count = cluster.getChildCount();
-           let size = 'small';
-           if (count > 100) size = 'large';
-           else if (count > 10) size = 'medium';
-
-           return L.divIcon({
-               html: `<div class="cluster cluster-${size}">${count}</div>`,
-               className: 'marker-cluster-custom',
-               iconSize: L.point(40, 40)
-           });
+           return createClusterIcon(cluster.getChildCount());
        }
    });
    if (clusterEnabled) {
        map.addLayer(markerCluster);
    }
+   serverMapLayer = L.layerGroup();
+   // Modo "todos os ônibus": cada movimento ou zoom atualiza a assinatura do mapa no servidor
+   map.on('moveend', function() {
+       if (showingAllBuses) {
+           scheduleMapViewport();
+       }
+   });
    // Event listener para mudanças de zoom
    map.on('zoomend', function() {
        currentZoomLevel = map.getZoom();
@@ -56,9 +56,114 @@ const initMap = () => {
    saveMapView();
 };
 
+// Criar o marcador de um ônibus, com popup
+const createBusMarker = (bus) => {
+    const markerIcon = L.divIcon({
+        className: 'bus-marker-icon',
+        html: `
+            <div class="bus-marker">
+                <div class="bus-marker-line">${bus.linha || ''}</div>
+            </div>
+        `,
+        iconSize: [24, 24],
+        iconAnchor: [12, 12]
+    });
+    const marker = L.marker([bus.latitude, bus.longitude], {icon: markerIcon});
+    marker.bindPopup(`
+        <strong>Ônibus ${bus.ordem || 'N/A'}</strong><br>
+        Linha: ${bus.linha || 'N/A'}<br>
+        Velocidade: ${bus.velocidade || '0'} km/h<br>
+        Última atualização: ${bus.datahoraservidor ? new Date(bus.datahoraservidor).toLocaleString() : 'N/A'}
+    `);
+    // Adicionar dados customizados para popup de cluster
+    marker.busData = bus;
+    return marker;
+};
+
+// Ícone de cluster, no mesmo estilo dos clusters do Leaflet.markercluster
+const createClusterIcon = (count) => {
+    let size = 'small';
+    if (count > 100) size = 'large';
+    else if (count > 10) size = 'medium';
+
+    return L.divIcon({
+        html: `<div class="cluster cluster-${size}">${count}</div>`,
+        className: 'marker-cluster-custom',
+        iconSize: L.point(40, 40)
+    });
+};
+
+// Modo "todos os ônibus": em vez de um marcador por ônibus da frota, o mapa desenha o que o
+// servidor envia para a área visível (clusters nos zooms baixos, veículos nos altos)
+const showServerMap = () => {
+    if (clusterEnabled && markerCluster) {
+        markerCluster.clearLayers();
+    }
+    Object.values(busMarkers).forEach(marker => {
+        if (map.hasLayer(marker)) {
+            map.removeLayer(marker);
+        }
+    });
+    busMarkers = {};
+    document.getElementById('show-all-btn').textContent = 'Voltar para Busca';
+    updateClusterButtonState();
+
+    if (!map.hasLayer(serverMapLayer)) {
+        map.addLayer(serverMapLayer);
+        // Enquadrar a frota ao entrar no modo; depois o usuário controla o mapa
+        const coords = allBusesData.filter(bus => bus.latitude && bus.longitude)
+            .map(bus => [bus.latitude, bus.longitude]);
+        if (coords.length > 0) {
+            map.fitBounds(L.latLngBounds(coords).pad(0.1));
+        }
+    }
+    connectMapSocket();
+};
+
+const hideServerMap = () => {
+    disconnectMapSocket();
+    if (serverMapLayer) {
+        serverMapLayer.clearLayers();
+        if (map.hasLayer(serverMapLayer)) {
+            map.removeLayer(serverMapLayer);
+        }
+    }
+};
+
+// Desenhar os clusters recebidos; clicar em um aproxima o mapa dele
+const renderServerClusters = (message) => {
+    if (!mapInitialized || !showingAllBuses) return;
+    serverMapLayer.clearLayers();
+    message.clusters.forEach(cluster => {
+        const marker = L.marker([cluster.latitude, cluster.longitude], {icon: createClusterIcon(cluster.count)});
+        marker.on('click', () => {
+            map.setView([cluster.latitude, cluster.longitude], Math.min(map.getZoom() + 2, map.getMaxZoom()));
+        });
+        serverMapLayer.addLayer(marker);
+    });
+    document.getElementById('map-buses-count').textContent =
+        `${message.vehicles} ônibus na área visível em ${message.clusters.length} grupos`;
+};
+
+// Desenhar os ônibus da área visível, enviados pelo servidor nos zooms altos
+const renderServerVehicles = (buses) => {
+    if (!mapInitialized || !showingAllBuses) return;
+    serverMapLayer.clearLayers();
+    buses.filter(bus => bus.latitude && bus.longitude)
+        .forEach(bus => serverMapLayer.addLayer(createBusMarker(bus)));
+    document.getElementById('map-buses-count').textContent = `${buses.length} ônibus na área visível`;
+};
+
 // Atualizar marcadores no mapa
 const updateMapMarkers = (showAll = false) => {
     if (!mapInitialized) return;
+      showingAllBuses = showAll;
+      if (showAll) {
+          // Atualizações chegam pela conexão do mapa; nada a redesenhar a cada ciclo
+          showServerMap();
+          return;
+      }
+      hideServerMap();
       const currentCenter = map.getCenter();
       const currentZoom = map.getZoom();
       const userInteracting = map._moving;
@@ -77,7 +182,6 @@ const updateMapMarkers = (showAll = false) => {
       // Limpar referências dos marcadores antigos
       busMarkers = {};
       const dataToShow = showAll ? allBusesData : filteredBusesData;
-      showingAllBuses = showAll;
       document.getElementById('show-all-btn').textContent =
           showAll ? 'Voltar para Busca' : 'Mostrar Todos no Mapa';
       if (dataToShow.length === 0) {
@@ -88,25 +192,7 @@ const updateMapMarkers = (showAll = false) => {
       const busesWithCoords = dataToShow.filter(bus => bus.latitude && bus.longitude);
       const markers = [];
       busesWithCoords.forEach(bus => {
-          const markerIcon = L.divIcon({
-              className: 'bus-marker-icon',
-              html: `
-                  <div class="bus-marker">
-                      <div class="bus-marker-line">${bus.linha || ''}</div>
-                  </div>
-              `,
-              iconSize: [24, 24],
-              iconAnchor: [12, 12]
-          });
-          const marker = L.marker([bus.latitude, bus.longitude], {icon: markerIcon});
-          marker.bindPopup(`
-              <strong>Ônibus ${bus.ordem || 'N/A'}</strong><br>
-              Linha: ${bus.linha || 'N/A'}<br>
-              Velocidade: ${bus.velocidade || '0'} km/h<br>
-              Última atualização: ${bus.datahoraservidor ? new Date(bus.datahoraservidor).toLocaleString() : 'N/A'}
-          `);
-          // Adicionar dados customizados para popup de cluster
-          marker.busData = bus;
+          const marker = createBusMarker(bus);
           busMarkers[bus.ordem] = marker;
           markers.push(marker);
       });
@@ -229,6 +315,8 @@ const toggleMapVisibility = (visible) => {
     } else {
         mapContainer.style.display = 'none';
         toggleButton.textContent = 'Mostrar Mapa';
+        // Mapa oculto não precisa da conexão própria
+        disconnectMapSocket();
     }
     showMap = visible;
 };
@@ -5,6 +5,255 @@ let currentBatchNumber = 0;
 let currentTotalBatches = 0;
 let currentUpdateId = 0;
 let currentUpdateBusesData = [];
+// Conexão atual e assinatura enviada ao servidor (null = frota inteira)
+let gpsSocket = null;
+let currentSubscription = null;
+let subscriptionTimeout = null;
+
+// Estado da frota no cliente, indexado por ordem, para aplicar os deltas do servidor
+let busesByOrdem = new Map();
+
+// Formato binário compacto (ver BinaryMessageEncoder no servidor); sem ele o servidor envia JSON
+const BINARY_SUBPROTOCOL = 'gps-binary.v2';
+const USE_BINARY_PROTOCOL = true;
+const FRAME_DICTIONARY = 1;
+const FRAME_SNAPSHOT = 2;
+const FRAME_DELTA = 3;
+const COORDINATE_SCALE = 1e6;
+// Dicionário de ordem/linha recebido nesta conexão (id -> texto)
+let wireDictionary = new Map();
+const textDecoder = new TextDecoder();
+
+const pad = (value, width = 2) => String(value).padStart(width, '0');
+
+// Mesmo formato yyyy-MM-ddTHH:mm:ss das mensagens JSON; recebe segundos já no fuso do servidor,
+// por isso formata em UTC e não no fuso do navegador
+const formatTimestamp = (localSeconds) => {
+    const date = new Date(localSeconds * 1000);
+    return `${date.getUTCFullYear()}-${pad(date.getUTCMonth() + 1)}-${pad(date.getUTCDate())}` +
+        `T${pad(date.getUTCHours())}:${pad(date.getUTCMinutes())}:${pad(date.getUTCSeconds())}`;
+};
+
+// Decodificar um frame binário: varints LEB128, inteiros com sinal em zigzag
+const decodeBinaryFrame = (buffer) => {
+    const bytes = new Uint8Array(buffer);
+    let offset = 0;
+
+    // Multiplicação em vez de deslocamento: operadores de bit do JS são limitados a 32 bits
+    const readVarint = () => {
+        let value = 0;
+        let factor = 1;
+        let byte;
+        do {
+            byte = bytes[offset++];
+            value += (byte & 0x7f) * factor;
+            factor *= 128;
+        } while (byte & 0x80);
+        return value;
+    };
+    const readSigned = () => {
+        const value = readVarint();
+        return value % 2 === 0 ? value / 2 : -(value + 1) / 2;
+    };
+    const readId = () => {
+        const id = readVarint();
+        return id === 0 ? null : wireDictionary.get(id);
+    };
+
+    const frameType = bytes[offset++];
+    if (frameType === FRAME_DICTIONARY) {
+        const count = readVarint();
+        for (let i = 0; i < count; i++) {
+            const id = readVarint();
+            const length = readVarint();
+            wireDictionary.set(id, textDecoder.decode(bytes.subarray(offset, offset + length)));
+            offset += length;
+        }
+        return { type: 'dictionary' };
+    }
+
+    // Horários relativos à hora local do servidor (baseSeconds + deslocamento do fuso dele)
+    const baseLocalSeconds = readVarint() + readSigned();
+    const readTimestamp = () => {
+        const value = readVarint();
+        if (value === 0) return null;
+        const delta = value - 1;
+        return formatTimestamp(baseLocalSeconds + (delta % 2 === 0 ? delta / 2 : -(delta + 1) / 2));
+    };
+
+    const count = readVarint();
+    const batch = new Array(count);
+    for (let i = 0; i < count; i++) {
+        batch[i] = {
+            ordem: readId(),
+            linha: readId(),
+            latitude: readSigned() / COORDINATE_SCALE,
+            longitude: readSigned() / COORDINATE_SCALE,
+            velocidade: readSigned(),
+            datahora: readTimestamp(),
+            datahoraenvio: readTimestamp(),
+            datahoraservidor: readTimestamp()
+        };
+    }
+    const removed = new Array(readVarint());
+    for (let i = 0; i < removed.length; i++) {
+        removed[i] = readId();
+    }
+    return { type: frameType === FRAME_DELTA ? 'delta' : 'snapshot', batch, removed };
+};
+
+// Aplicar uma atualização completa (snapshot) ou incremental (delta) e atualizar a interface
+const applyUpdate = (isDelta, buses, removedOrdens) => {
+    if (isDelta) {
+        // Delta: mesclar apenas os veículos alterados e remover os inativos
+        applyDelta(buses, removedOrdens);
+    } else {
+        // Snapshot: substituir a frota inteira
+        busesByOrdem = new Map(buses.map(bus => [bus.ordem, bus]));
+    }
+    allBusesData = Array.from(busesByOrdem.values());
+
+    // ATUALIZAR OS DADOS FILTRADOS com base nos filtros atuais
+    applyFilters();
+
+    // Atualizar interface
+    updateStats();
+    renderTable();
+
+    // Atualizar mapa apenas se estiver visível
+    if (showMap) {
+        updateMapMarkers(showingAllBuses);
+    }
+
+    document.getElementById('last-update-time').textContent =
+        `Última atualização: ${new Date().toLocaleTimeString()}`;
+};
+
+// Aplicar um delta: atualizar os veículos alterados e remover os que ficaram inativos
+const applyDelta = (changedBuses, removedOrdens) => {
+    changedBuses.forEach(bus => busesByOrdem.set(bus.ordem, bus));
+    removedOrdens.forEach(ordem => busesByOrdem.delete(ordem));
+};
+
+// Enviar a assinatura atual ao servidor, se conectado
+const sendSubscription = () => {
+    if (!gpsSocket || gpsSocket.readyState !== WebSocket.OPEN) return;
+    const message = currentSubscription
+        ? { action: 'subscribe', ...currentSubscription }
+        : { action: 'unsubscribe' };
+    gpsSocket.send(JSON.stringify(message));
+};
+
+// Registrar no servidor as linhas/ordens desejadas; o servidor responde com um novo snapshot
+const updateSubscription = (lines, vehicles) => {
+    const next = lines.length === 0 && vehicles.length === 0 ? null : { lines, vehicles, match: 'contains' };
+    if (JSON.stringify(next) === JSON.stringify(currentSubscription)) return;
+    currentSubscription = next;
+
+    // Aguardar o usuário terminar de digitar antes de reenviar a assinatura
+    if (subscriptionTimeout) {
+        clearTimeout(subscriptionTimeout);
+    }
+    subscriptionTimeout = setTimeout(sendSubscription, 500);
+};
+
+// Conexão dedicada ao mapa com todos os ônibus: o servidor agrupa os veículos em clusters
+// nos zooms baixos e envia apenas os da área visível nos zooms altos
+let mapSocket = null;
+let mapBusesByOrdem = new Map();
+let mapUpdateBusesData = [];
+// O snapshot da frota inteira enviado na conexão é descartado; o mapa espera a resposta à assinatura
+let mapConnectionSnapshotSeen = false;
+let mapFeedReady = false;
+let mapViewportTimeout = null;
+
+// Enviar zoom e área visível do mapa; o servidor responde com clusters ou com um snapshot
+const sendMapViewport = () => {
+    if (!mapSocket || mapSocket.readyState !== WebSocket.OPEN || !mapInitialized) return;
+    const bounds = map.getBounds();
+    mapSocket.send(JSON.stringify({
+        action: 'subscribe',
+        zoom: map.getZoom(),
+        viewport: {
+            minLat: Math.max(bounds.getSouth(), -90),
+            minLon: Math.max(bounds.getWest(), -180),
+            maxLat: Math.min(bounds.getNorth(), 90),
+            maxLon: Math.min(bounds.getEast(), 180)
+        }
+    }));
+};
+
+// Aguardar o fim do movimento/zoom antes de reenviar a área visível
+const scheduleMapViewport = () => {
+    if (mapViewportTimeout) {
+        clearTimeout(mapViewportTimeout);
+    }
+    mapViewportTimeout = setTimeout(sendMapViewport, 300);
+};
+
+const connectMapSocket = () => {
+    if (mapSocket) return;
+    const protocol = window.location.protocol === 'https:' ? 'wss:' : 'ws:';
+    // Sem subprotocolo: clusters e veículos do mapa chegam em JSON
+    const ws = new WebSocket(`${protocol}//${window.location.host}/gps-updates`);
+    mapSocket = ws;
+    mapConnectionSnapshotSeen = false;
+    mapFeedReady = false;
+    mapUpdateBusesData = [];
+
+    ws.onopen = sendMapViewport;
+
+    ws.onmessage = (event) => {
+        try {
+            const message = JSON.parse(event.data);
+            if (message.type === 'clusters') {
+                mapFeedReady = true;
+                mapBusesByOrdem = new Map();
+                renderServerClusters(message);
+            } else if (message.batch && Array.isArray(message.batch)) {
+                if (message.batchNumber === 1) {
+                    mapUpdateBusesData = [];
+                }
+                mapUpdateBusesData = mapUpdateBusesData.concat(message.batch);
+                if (message.batchNumber !== message.totalBatches) return;
+
+                if (message.type === 'delta') {
+                    if (!mapFeedReady) return;
+                    mapUpdateBusesData.forEach(bus => mapBusesByOrdem.set(bus.ordem, bus));
+                    (message.removed || []).forEach(ordem => mapBusesByOrdem.delete(ordem));
+                } else if (!mapConnectionSnapshotSeen) {
+                    mapConnectionSnapshotSeen = true;
+                    return;
+                } else {
+                    mapFeedReady = true;
+                    mapBusesByOrdem = new Map(mapUpdateBusesData.map(bus => [bus.ordem, bus]));
+                }
+                renderServerVehicles(Array.from(mapBusesByOrdem.values()));
+            } else if (message.type === 'error') {
+                console.error('Erro informado pelo servidor (mapa):', message.message);
+            }
+        } catch (error) {
+            console.error('Erro ao processar dados do mapa:', error);
+        }
+    };
+
+    ws.onclose = () => {
+        if (mapSocket !== ws) return;
+        mapSocket = null;
+        if (showMap && showingAllBuses) {
+            setTimeout(connectMapSocket, 5000);
+        }
+    };
+};
+
+const disconnectMapSocket = () => {
+    const ws = mapSocket;
+    mapSocket = null;
+    mapBusesByOrdem = new Map();
+    if (ws) {
+        ws.close();
+    }
+};
 
 // Conectar ao WebSocket
 const connectWebSocket = () => {
@@ -12,7 +261,11 @@ const connectWebSocket = () => {
     const wsUrl = `${protocol}//${window.location.host}/gps-updates`;
 
     console.log('Conectando ao WebSocket:', wsUrl);
-    const ws = new WebSocket(wsUrl);
+    const ws = USE_BINARY_PROTOCOL ? new WebSocket(wsUrl, [BINARY_SUBPROTOCOL]) : new WebSocket(wsUrl);
+    ws.binaryType = 'arraybuffer';
+    gpsSocket = ws;
+    // O dicionário é por conexão: o servidor reenvia as entradas após reconectar
+    wireDictionary = new Map();
 
     ws.onopen = () => {
         console.log('Conectado ao WebSocket');
@@ -25,10 +278,24 @@ const connectWebSocket = () => {
         currentBatchNumber = 0;
         currentTotalBatches = 0;
         currentUpdateId++;
+
+        // Restaurar a assinatura após uma reconexão
+        if (currentSubscription) {
+            sendSubscription();
+        }
     };
 
     ws.onmessage = (event) => {
         try {
+            if (event.data instanceof ArrayBuffer) {
+                const frame = decodeBinaryFrame(event.data);
+                if (frame.type !== 'dictionary') {
+                    console.log(`Recebido frame binário (${frame.type}) com ${frame.batch.length} registros`);
+                    applyUpdate(frame.type === 'delta', frame.batch, frame.removed);
+                }
+                return;
+            }
+
             const message = JSON.parse(event.data);
             console.log('Mensagem recebida:', message);
 
@@ -37,8 +304,10 @@ const connectWebSocket = () => {
                 const batchData = message.batch;
                 const batchNumber = message.batchNumber;
                 const totalBatches = message.totalBatches;
+                // Mensagens sem tipo são tratadas como snapshot completo
+                const isDelta = message.type === 'delta';
 
-                console.log(`Recebido batch ${batchNumber}/${totalBatches} com ${batchData.length} registros`);
+                console.log(`Recebido batch ${batchNumber}/${totalBatches} (${message.type || 'snapshot'}) com ${batchData.length} registros`);
 
                 // Se for uma nova atualização (batchNumber = 1), resetar os dados
                 if (batchNumber === 1) {
@@ -53,30 +322,17 @@ const connectWebSocket = () => {
 
                 // Se for o último batch desta atualização, processar os dados
                 if (batchNumber === totalBatches) {
-                    console.log(`Último batch recebido. Total de ${currentUpdateBusesData.length} ônibus na atualização #${currentUpdateId}`);
-
-                    // MANTER APENAS OS DADOS DA ÚLTIMA ATUALIZAÇÃO COMPLETA
-                    allBusesData = [...currentUpdateBusesData];
-
-                    // ATUALIZAR OS DADOS FILTRADOS com base nos filtros atuais
-                    applyFilters();
-
-                    // Atualizar interface
-                    updateStats();
-                    renderTable();
-
-                    // Atualizar mapa apenas se estiver visível
-                    if (showMap) {
-                        updateMapMarkers(showingAllBuses);
-                    }
+                    console.log(`Último batch recebido. ${currentUpdateBusesData.length} ônibus na atualização #${currentUpdateId}`);
 
-                    document.getElementById('last-update-time').textContent =
-                        `Última atualização: ${new Date().toLocaleTimeString()}`;
+                    applyUpdate(isDelta, currentUpdateBusesData, message.removed || []);
                 }
 
+            } else if (message.type === 'error') {
+                console.error('Erro informado pelo servidor:', message.message);
             } else if (Array.isArray(message)) {
                 console.log('Recebidos', message.length, 'registros (formato antigo)');
                 // Formato antigo: tratar como atualização completa
+                busesByOrdem = new Map(message.map(bus => [bus.ordem, bus]));
                 allBusesData = [...message];
                 applyFilters();
                 updateStats();
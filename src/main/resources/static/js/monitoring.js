@@ -7,7 +7,7 @@ const itemsPerPage = 50;
 let currentSortColumn = -1;
 let sortDirection = 1;
 // Variáveis para itinerários
-let itineraryData = null; // Armazenará todos os dados de itinerário
+let itineraryCache = {}; // Itinerários já baixados, por linha e zoom
 let currentItineraryLines = {}; // Armazenará as linhas de itinerário atualmente exibidas
 
 // Função para formatar o endereço extraindo apenas as partes relevantes
@@ -130,18 +130,38 @@ const searchAddress = async (address = null, lat = null, lon = null) => {
     }
 };
 
-// Carregar dados de itinerário da API
-const loadItineraryData = async () => {
-    try {
-        console.log('Carregando dados de itinerário...');
-        const response = await fetch('https://pgeo3.rio.rj.gov.br/arcgis/rest/services/Hosted/Itiner%C3%A1rios_da_rede_de_transporte_p%C3%BAblico_por_%C3%B4nibus_(SPPO)/FeatureServer/1/query?outFields=*&where=1%3D1&f=geojson');
-        itineraryData = await response.json();
-        console.log('Dados de itinerário carregados:', itineraryData);
-        document.getElementById('itinerary-info').textContent = 'Dados de itinerário carregados';
-    } catch (error) {
-        console.error('Erro ao carregar dados de itinerário:', error);
-        document.getElementById('itinerary-info').textContent = 'Erro ao carregar itinerários';
+// Itinerários são buscados sob demanda no servidor, uma linha por vez e já simplificados para o zoom
+const loadItineraryData = () => {
+    itineraryCache = {};
+    document.getElementById('itinerary-info').textContent = 'Itinerários disponíveis sob demanda';
+};
+
+// Buscar o itinerário de uma linha; o navegador revalida com ETag e recebe 304 quando nada mudou
+const fetchLineItinerary = async (line, zoom) => {
+    const key = `${line}@${zoom}`;
+    if (!itineraryCache[key]) {
+        itineraryCache[key] = fetch(`/itineraries/${encodeURIComponent(line)}?zoom=${zoom}`)
+            .then(response => {
+                if (response.status === 404) {
+                    return [];
+                }
+                if (!response.ok) {
+                    throw new Error(`HTTP ${response.status}`);
+                }
+                return response.json().then(collection => collection.features || []);
+            })
+            .catch(error => {
+                delete itineraryCache[key];
+                throw error;
+            });
     }
+    return itineraryCache[key];
+};
+
+// Coordenadas [lng, lat] de LineString ou MultiLineString como partes no formato [lat, lng] do Leaflet
+const toLatLngParts = geometry => {
+    const parts = geometry.type === 'MultiLineString' ? geometry.coordinates : [geometry.coordinates];
+    return parts.map(part => part.map(coord => [coord[1], coord[0]]));
 };
 
 const getFilteredLines = () => {
@@ -154,7 +174,7 @@ const getFilteredLines = () => {
     return Array.from(lines);
 };
 // Mostrar itinerário no mapa
-const showItinerary = () => {
+const showItinerary = async () => {
     const selectedDirection = document.getElementById('itinerary-direction-select').value;
     // Obter linhas dos ônibus filtrados
     const filteredLines = getFilteredLines();
@@ -162,16 +182,18 @@ const showItinerary = () => {
         alert('Nenhuma linha encontrada nos filtros atuais. Ajuste os filtros primeiro.');
         return;
     }
-    if (!itineraryData || !itineraryData.features) {
-        alert('Dados de itinerário não carregados. Tente novamente em alguns instantes.');
+    document.getElementById('itinerary-info').textContent = 'Carregando itinerários...';
+    let lineFeatures;
+    try {
+        const zoom = map.getZoom();
+        lineFeatures = (await Promise.all(filteredLines.map(line => fetchLineItinerary(line, zoom)))).flat();
+    } catch (error) {
+        console.error('Erro ao carregar dados de itinerário:', error);
+        document.getElementById('itinerary-info').textContent = 'Erro ao carregar itinerários';
         return;
     }
     // Limpar itinerários anteriores
     hideItinerary();
-    // Filtrar features pelas linhas filtradas
-    const lineFeatures = itineraryData.features.filter(feature =>
-        feature.properties && filteredLines.includes(feature.properties.servico)
-    );
     if (lineFeatures.length === 0) {
         document.getElementById('itinerary-info').textContent = 'Nenhum itinerário encontrado para as linhas filtradas';
         return;
@@ -195,7 +217,7 @@ const showItinerary = () => {
     featuresToShow.forEach(feature => {
         if (feature.geometry && feature.geometry.coordinates) {
             // Converter coordenadas para o formato [lat, lng] que o Leaflet espera
-            const latLngs = feature.geometry.coordinates.map(coord => [coord[1], coord[0]]);
+            const latLngs = toLatLngParts(feature.geometry);
             // Criar uma polilinha com estilos diferentes para ida e volta
             const color = feature.properties.direcao === 1 ? '#007bff' : '#ff0000';
             const weight = 4;
@@ -226,9 +248,7 @@ const showItinerary = () => {
     const bounds = new L.LatLngBounds();
     featuresToShow.forEach(feature => {
         if (feature.geometry && feature.geometry.coordinates) {
-            feature.geometry.coordinates.forEach(coord => {
-                bounds.extend([coord[1], coord[0]]);
-            });
+            toLatLngParts(feature.geometry).forEach(part => part.forEach(latLng => bounds.extend(latLng)));
         }
     });
     if (bounds.isValid()) {
@@ -276,6 +296,17 @@ const applyFilters = () => {
     }
 };
 
+// Pedir ao servidor apenas as linhas/ordens filtradas; o servidor casa trechos em qualquer posição,
+// ignorando maiúsculas, como applyFilters, então uma busca parcial ("23") não perde ônibus
+const syncServerSubscription = () => {
+    const toFragments = (value) => value.split(',')
+        .map(item => item.trim())
+        .filter(item => item.length > 0);
+    const lines = toFragments(document.getElementById('search-line').value);
+    const vehicles = toFragments(document.getElementById('search-order').value);
+    updateSubscription(lines, vehicles); // Do websocket.js
+};
+
 // Atualizar a tabela com os dados recebidos
 const renderTable = () => {
     const tableBody = document.getElementById('buses-body');
@@ -367,6 +398,7 @@ const sortTable = (columnIndex) => {
 
 // Filtrar tabela com base nos critérios de busca
 const performSearch = () => {
+    syncServerSubscription();
     applyFilters();
     currentPage = 1;
     updateStats();
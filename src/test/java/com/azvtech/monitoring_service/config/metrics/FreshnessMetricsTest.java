@@ -0,0 +1,83 @@
+package com.azvtech.monitoring_service.config.metrics;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FreshnessMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void recordsEachPositionStageOverallAndPerLine() {
+        FreshnessMetrics metrics = new FreshnessMetrics(registry, true);
+
+        metrics.positionsIngested(List.of(vehicle("A1", "100", 1_000, 3_000, 4_000)), 10_000);
+
+        assertThat(stage("device").totalTime(TimeUnit.MILLISECONDS)).isEqualTo(2_000);
+        assertThat(stage("upstream").totalTime(TimeUnit.MILLISECONDS)).isEqualTo(1_000);
+        assertThat(stage("ingest").totalTime(TimeUnit.MILLISECONDS)).isEqualTo(6_000);
+        Timer line = registry.get("gps.freshness.line").tag("stage", "ingest").tag("linha", "100").timer();
+        assertThat(line.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(6_000);
+    }
+
+    @Test
+    void clampsClockSkewToZeroAndCountsIt() {
+        FreshnessMetrics metrics = new FreshnessMetrics(registry, false);
+
+        // Relógio do dispositivo adiantado: o fix parece posterior ao envio
+        metrics.positionsIngested(List.of(vehicle("A1", "100", 5_000, 3_000, 4_000)), 10_000);
+
+        assertThat(stage("device").count()).isEqualTo(1);
+        assertThat(stage("device").totalTime(TimeUnit.MILLISECONDS)).isZero();
+        assertThat(registry.get("gps.freshness.clock.skew").tag("stage", "device").counter().count()).isEqualTo(1);
+        assertThat(registry.find("gps.freshness.line").timers()).isEmpty();
+    }
+
+    @Test
+    void skipsMissingTimestamps() {
+        FreshnessMetrics metrics = new FreshnessMetrics(registry, true);
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem("A1");
+        data.setLinha("100");
+        data.setDatahoraservidor(4_000);
+
+        metrics.positionsIngested(List.of(data), 10_000);
+
+        assertThat(stage("device").count()).isZero();
+        assertThat(stage("upstream").count()).isZero();
+        assertThat(stage("ingest").count()).isEqualTo(1);
+    }
+
+    @Test
+    void deliveredAgeNeedsPositions() {
+        FreshnessMetrics metrics = new FreshnessMetrics(registry, false);
+
+        metrics.updateSent(System.nanoTime(), GpsDataDTO.NO_TIMESTAMP);
+        metrics.updateSent(System.nanoTime(), System.currentTimeMillis() - 5_000);
+
+        assertThat(stage("send").count()).isEqualTo(2);
+        assertThat(stage("delivered").count()).isEqualTo(1);
+        assertThat(stage("delivered").totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(5_000);
+    }
+
+    private Timer stage(String stage) {
+        return registry.get("gps.freshness").tag("stage", stage).timer();
+    }
+
+    private static GpsDataDTO vehicle(String ordem, String linha, long datahora, long envio, long servidor) {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem(ordem);
+        data.setLinha(linha);
+        data.setDatahora(datahora);
+        data.setDatahoraenvio(envio);
+        data.setDatahoraservidor(servidor);
+        return data;
+    }
+}
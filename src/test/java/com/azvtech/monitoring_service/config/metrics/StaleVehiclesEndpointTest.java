@@ -0,0 +1,52 @@
+package com.azvtech.monitoring_service.config.metrics;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.service.FleetStateService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StaleVehiclesEndpointTest {
+
+    private final FleetStateService fleetState = new FleetStateService(new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(fleetState, "staleAfterSeconds", 90L);
+        long now = System.currentTimeMillis();
+        Map<String, GpsDataDTO> fleet = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            GpsDataDTO data = new GpsDataDTO();
+            data.setOrdem("A" + i);
+            data.setLinha("100");
+            data.setDatahoraservidor(now - i * 5_000L);
+            fleet.put(data.getOrdem(), data);
+        }
+        fleetState.applyUpdates(fleet);
+    }
+
+    @Test
+    void listsTheOldestVehiclesFirst() {
+        StaleVehiclesEndpoint endpoint = new StaleVehiclesEndpoint(fleetState, 50);
+
+        assertThat(endpoint.staleVehicles(3))
+                .extracting(StaleVehiclesEndpoint.StaleVehicle::ordem)
+                .containsExactly("A9", "A8", "A7");
+        assertThat(endpoint.staleVehicles(3).getFirst().ageSeconds()).isBetween(45L, 46L);
+    }
+
+    @Test
+    void capsTheLimit() {
+        StaleVehiclesEndpoint endpoint = new StaleVehiclesEndpoint(fleetState, 4);
+
+        assertThat(endpoint.staleVehicles(null)).hasSize(4);
+        assertThat(endpoint.staleVehicles(1000)).hasSize(4);
+        assertThat(endpoint.staleVehicles(0)).hasSize(1);
+    }
+}
@@ -0,0 +1,45 @@
+package com.azvtech.monitoring_service.config.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebSocketMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final WebSocketMetrics metrics = new WebSocketMetrics(registry);
+
+    @Test
+    void tracksActiveConnectionsAcrossTheLifecycle() {
+        metrics.connectionEstablished();
+        metrics.connectionEstablished();
+        metrics.connectionClosed(System.nanoTime(), CloseStatus.NORMAL);
+
+        assertThat(registry.get("websocket.connections.active").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("websocket.connections.established.total").functionCounter().count()).isEqualTo(2);
+        assertThat(registry.get("websocket.connections.closed.total").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsLifetimeAtCloseByStatus() {
+        long openedFiveSecondsAgo = System.nanoTime() - TimeUnit.SECONDS.toNanos(5);
+
+        metrics.connectionClosed(openedFiveSecondsAgo, CloseStatus.SESSION_NOT_RELIABLE);
+        metrics.connectionClosed(openedFiveSecondsAgo, CloseStatus.SERVICE_OVERLOAD.withReason("Send queue overflow"));
+        metrics.connectionClosed(openedFiveSecondsAgo, null);
+
+        assertThat(lifetime("inactive").totalTime(TimeUnit.SECONDS)).isGreaterThanOrEqualTo(5);
+        assertThat(lifetime("overload").count()).isEqualTo(1);
+        assertThat(lifetime("error").count()).isEqualTo(1);
+        assertThat(lifetime("normal").count()).isZero();
+    }
+
+    private Timer lifetime(String status) {
+        return registry.get("websocket.connection.duration").tag("status", status).timer();
+    }
+}
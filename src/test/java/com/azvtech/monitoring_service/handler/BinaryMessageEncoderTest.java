@@ -0,0 +1,133 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.config.metrics.BroadcastMetrics;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.utils.DateUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryMessageEncoderTest {
+
+    private final BinaryMessageEncoder encoder = new BinaryMessageEncoder(new BroadcastMetrics(new SimpleMeterRegistry()));
+
+    @Test
+    void recordsRoundTripThroughTheDictionary() {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem("A63535");
+        data.setLatitude("-22,861153");
+        data.setLongitude("-43,256147");
+        data.setVelocidade(42);
+        data.setLinha("SV671");
+        data.setDatahora(1_705_000_000_000L);
+        data.setDatahoraenvio(1_705_000_001_000L);
+        data.setDatahoraservidor(1_705_000_002_000L);
+
+        OutboundUpdate update = encoder.encodeUpdate(false, List.of(data), List.of("B1"));
+        Map<Long, String> dictionary = new HashMap<>();
+        decodeDictionary(new SessionDictionary(encoder).missingEntries(update.dictionaryIds()), dictionary);
+
+        ByteBuffer frame = ((BinaryMessage) update.messages().get(0)).getPayload();
+        assertThat(frame.get()).isEqualTo((byte) BinaryMessageEncoder.FRAME_DELTA);
+        long baseSeconds = readVarint(frame);
+        assertThat(baseSeconds).isEqualTo(1_705_000_002L);
+        long offsetSeconds = unzigzag(readVarint(frame));
+        assertThat(offsetSeconds).isEqualTo(DateUtils.offsetSeconds(baseSeconds));
+        assertThat(readVarint(frame)).isEqualTo(1);
+        assertThat(dictionary.get(readVarint(frame))).isEqualTo("A63535");
+        assertThat(dictionary.get(readVarint(frame))).isEqualTo("SV671");
+        assertThat(unzigzag(readVarint(frame)) / BinaryMessageEncoder.COORDINATE_SCALE).isEqualTo(-22.861153);
+        assertThat(unzigzag(readVarint(frame)) / BinaryMessageEncoder.COORDINATE_SCALE).isEqualTo(-43.256147);
+        assertThat(unzigzag(readVarint(frame))).isEqualTo(42);
+        assertThat(unzigzag(readVarint(frame) - 1)).isEqualTo(-2);
+        assertThat(unzigzag(readVarint(frame) - 1)).isEqualTo(-1);
+        assertThat(unzigzag(readVarint(frame) - 1)).isEqualTo(0);
+        assertThat(readVarint(frame)).isEqualTo(1);
+        assertThat(dictionary.get(readVarint(frame))).isEqualTo("B1");
+        assertThat(frame.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void timestampsFormatLikeTheJsonEncoder() throws Exception {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem("A1");
+        data.setDatahora(1_541_300_399_000L);
+        data.setDatahoraservidor(1_730_613_600_000L);
+
+        OutboundUpdate update = encoder.encodeUpdate(true, List.of(data), List.of());
+        JsonNode json = new ObjectMapper().readTree(new GpsMessageEncoder(new BroadcastMetrics(new SimpleMeterRegistry()))
+                .encodeBatch("snapshot", List.of(data), List.of(), 1, 1).asBytes()).get("batch").get(0);
+
+        // Decodifica como o navegador: hora local do servidor formatada em UTC
+        ByteBuffer frame = ((BinaryMessage) update.messages().get(0)).getPayload();
+        frame.get();
+        long baseLocalSeconds = readVarint(frame) + unzigzag(readVarint(frame));
+        for (int i = 0; i < 6; i++) {
+            readVarint(frame);
+        }
+        assertThat(formatUtc(baseLocalSeconds + unzigzag(readVarint(frame) - 1))).isEqualTo(json.get("datahora").asText());
+        assertThat(readVarint(frame)).isZero();
+        assertThat(json.get("datahoraenvio").isNull()).isTrue();
+        assertThat(formatUtc(baseLocalSeconds + unzigzag(readVarint(frame) - 1))).isEqualTo(json.get("datahoraservidor").asText());
+    }
+
+    @Test
+    void sessionsAreSentEachDictionaryEntryOnce() {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem("A1");
+        SessionDictionary dictionary = new SessionDictionary(encoder);
+
+        OutboundUpdate first = encoder.encodeUpdate(true, List.of(data), List.of());
+        OutboundUpdate second = encoder.encodeUpdate(false, List.of(data), List.of());
+
+        assertThat(first.dictionaryIds()).isEqualTo(second.dictionaryIds());
+        assertThat(dictionary.missingEntries(first.dictionaryIds())).isNotNull();
+        assertThat(dictionary.missingEntries(second.dictionaryIds())).isNull();
+        assertThat(new SessionDictionary(encoder).missingEntries(second.dictionaryIds())).isNotNull();
+    }
+
+    private static void decodeDictionary(BinaryMessage message, Map<Long, String> dictionary) {
+        ByteBuffer frame = message.getPayload();
+        assertThat(frame.get()).isEqualTo((byte) BinaryMessageEncoder.FRAME_DICTIONARY);
+        long count = readVarint(frame);
+        for (int i = 0; i < count; i++) {
+            long id = readVarint(frame);
+            byte[] value = new byte[(int) readVarint(frame)];
+            frame.get(value);
+            dictionary.put(id, new String(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String formatUtc(long localSeconds) {
+        return LocalDateTime.ofEpochSecond(localSeconds, 0, ZoneOffset.UTC).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    private static long readVarint(ByteBuffer frame) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = frame.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
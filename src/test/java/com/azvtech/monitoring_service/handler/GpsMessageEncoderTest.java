@@ -0,0 +1,48 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.config.metrics.BroadcastMetrics;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GpsMessageEncoderTest {
+
+    private final GpsMessageEncoder encoder = new GpsMessageEncoder(new BroadcastMetrics(new SimpleMeterRegistry()));
+
+    @Test
+    void encodesVehiclesWithTheSameShapeAsTheDto() throws Exception {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem("A63535");
+        data.setLatitude("-22,86115");
+        data.setLongitude("-43,25614");
+        data.setVelocidade(42);
+        data.setLinha("SV671");
+        data.setDatahora(1_705_000_000_000L);
+        data.setDatahoraenvio(1_705_000_001_000L);
+        data.setDatahoraservidor(1_705_000_002_000L);
+
+        TextMessage message = encoder.encodeBatch("delta", List.of(data), List.of("B1"), 1, 3);
+
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        JsonNode encoded = objectMapper.readTree(message.asBytes());
+
+        assertThat(encoded.get("type").asText()).isEqualTo("delta");
+        assertThat(encoded.get("batchNumber").asInt()).isEqualTo(1);
+        assertThat(encoded.get("totalBatches").asInt()).isEqualTo(3);
+        assertThat(encoded.get("totalRecords").asInt()).isEqualTo(1);
+        assertThat(encoded.get("removed").get(0).asText()).isEqualTo("B1");
+        assertThat(encoded.get("batch").get(0)).isEqualTo(objectMapper.valueToTree(data));
+        assertThat(message.getPayload()).isEqualTo(new String(message.asBytes(), StandardCharsets.UTF_8));
+    }
+}
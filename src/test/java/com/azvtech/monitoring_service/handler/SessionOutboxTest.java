@@ -0,0 +1,148 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.config.metrics.BroadcastMetrics;
+import com.azvtech.monitoring_service.config.metrics.FreshnessMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionOutboxTest {
+
+    private final WebSocketSession session = mock(WebSocketSession.class);
+    private final List<Runnable> pendingTasks = new ArrayList<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void dropOldestKeepsTheNewestUpdates() throws Exception {
+        SessionOutbox outbox = outbox(OverflowPolicy.DROP_OLDEST);
+
+        outbox.enqueue(update("1"));
+        outbox.enqueue(update("2"));
+        outbox.enqueue(update("3"));
+        runPendingTasks();
+
+        var order = inOrder(session);
+        order.verify(session).sendMessage(new TextMessage("2"));
+        order.verify(session).sendMessage(new TextMessage("3"));
+        assertThat(registry.get("websocket.outbox.dropped").tag("policy", "drop_oldest").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void dropOldestNeverDropsRemovals() throws Exception {
+        SessionOutbox outbox = outbox(OverflowPolicy.DROP_OLDEST);
+
+        outbox.enqueue(update("removes V1").withRemovals(true));
+        outbox.enqueue(update("2"));
+        outbox.enqueue(update("3"));
+        runPendingTasks();
+
+        var order = inOrder(session);
+        order.verify(session).sendMessage(new TextMessage("removes V1"));
+        order.verify(session).sendMessage(new TextMessage("3"));
+        verify(session, never()).sendMessage(new TextMessage("2"));
+    }
+
+    @Test
+    void dropOldestFallsBackToASnapshotWhenNothingIsDroppable() throws Exception {
+        SessionOutbox outbox = outbox(OverflowPolicy.DROP_OLDEST);
+
+        outbox.enqueue(new OutboundUpdate(List.of(new TextMessage("initial snapshot")), true));
+        outbox.enqueue(update("removes V1").withRemovals(true));
+        outbox.enqueue(update("3"));
+        runPendingTasks();
+
+        verify(session).sendMessage(new TextMessage("snapshot"));
+        verify(session, never()).sendMessage(new TextMessage("initial snapshot"));
+        assertThat(registry.get("websocket.outbox.dropped").tag("policy", "drop_oldest").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void coalesceLatestReplacesTheQueueWithASnapshot() throws Exception {
+        SessionOutbox outbox = outbox(OverflowPolicy.COALESCE_LATEST);
+
+        outbox.enqueue(update("1"));
+        outbox.enqueue(update("2"));
+        outbox.enqueue(update("3"));
+        runPendingTasks();
+
+        verify(session).sendMessage(new TextMessage("snapshot"));
+        assertThat(outbox.queuedUpdates()).isZero();
+        assertThat(registry.get("websocket.outbox.dropped").tag("policy", "coalesce_latest").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void disconnectClosesTheSlowSession() throws Exception {
+        SessionOutbox outbox = outbox(OverflowPolicy.DISCONNECT);
+
+        outbox.enqueue(update("1"));
+        outbox.enqueue(update("2"));
+        outbox.enqueue(update("3"));
+        runPendingTasks();
+
+        verify(session).close(any(CloseStatus.class));
+        assertThat(outbox.queuedUpdates()).isZero();
+    }
+
+    @Test
+    void reportsDeliveredDeltasButNotSnapshots() throws Exception {
+        when(session.isOpen()).thenReturn(true);
+        SessionOutbox outbox = new SessionOutbox(session, 4, OverflowPolicy.DROP_OLDEST, null, pendingTasks::add,
+                new BroadcastMetrics(registry), null, new FreshnessMetrics(registry, false));
+
+        outbox.enqueue(new OutboundUpdate(List.of(new TextMessage("snapshot")), true));
+        outbox.enqueue(update("1").withNewestPosition(System.currentTimeMillis() - 2_000));
+        runPendingTasks();
+
+        assertThat(registry.get("gps.freshness").tag("stage", "send").timer().count()).isEqualTo(1);
+        assertThat(registry.get("gps.freshness").tag("stage", "delivered").timer().totalTime(TimeUnit.MILLISECONDS))
+                .isGreaterThanOrEqualTo(2_000);
+    }
+
+    @Test
+    void countsSentFramesAndSendFailures() throws Exception {
+        SessionOutbox outbox = outbox(OverflowPolicy.DROP_OLDEST);
+        doThrow(new IOException("broken pipe")).when(session).sendMessage(new TextMessage("2"));
+
+        outbox.enqueue(update("1"));
+        outbox.enqueue(update("2"));
+        runPendingTasks();
+
+        assertThat(registry.get("websocket.broadcast.messages.sent").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("websocket.broadcast.bytes.sent").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("websocket.send.latency").timer().count()).isEqualTo(1);
+        assertThat(registry.get("websocket.send.failures").functionCounter().count()).isEqualTo(1);
+    }
+
+    private SessionOutbox outbox(OverflowPolicy policy) {
+        when(session.isOpen()).thenReturn(true);
+        when(session.getId()).thenReturn("session-1");
+        return new SessionOutbox(session, 2, policy, () -> update("snapshot"), pendingTasks::add,
+                new BroadcastMetrics(registry));
+    }
+
+    private void runPendingTasks() {
+        while (!pendingTasks.isEmpty()) {
+            pendingTasks.remove(0).run();
+        }
+    }
+
+    private static OutboundUpdate update(String payload) {
+        return new OutboundUpdate(List.of(new TextMessage(payload)), false);
+    }
+}
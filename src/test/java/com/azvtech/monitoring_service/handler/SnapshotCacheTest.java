@@ -0,0 +1,40 @@
+package com.azvtech.monitoring_service.handler;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotCacheTest {
+
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicInteger encodings = new AtomicInteger();
+    private final SnapshotCache cache = new SnapshotCache(version::get);
+
+    @Test
+    void encodesOncePerVersionAndFormat() {
+        SnapshotCache.Lookup first = cache.get(false, this::encode);
+        SnapshotCache.Lookup second = cache.get(false, this::encode);
+        cache.get(true, this::encode);
+
+        assertThat(first.cached()).isFalse();
+        assertThat(second.cached()).isTrue();
+        assertThat(second.snapshot()).isSameAs(first.snapshot());
+        assertThat(encodings).hasValue(2);
+
+        version.incrementAndGet();
+        SnapshotCache.Lookup afterUpdate = cache.get(false, this::encode);
+
+        assertThat(afterUpdate.cached()).isFalse();
+        assertThat(afterUpdate.snapshot()).isNotSameAs(first.snapshot());
+        assertThat(encodings).hasValue(3);
+    }
+
+    private OutboundUpdate encode() {
+        return new OutboundUpdate(List.of(new TextMessage("snapshot " + encodings.incrementAndGet())), true);
+    }
+}
@@ -0,0 +1,126 @@
+package com.azvtech.monitoring_service.handler;
+
+import com.azvtech.monitoring_service.dto.BoundingBox;
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SubscriptionRegistryTest {
+
+    private final SubscriptionRegistry registry = new SubscriptionRegistry();
+
+    @Test
+    void routesVehiclesOnlyToMatchingGroups() {
+        SessionOutbox all = outbox("all");
+        SessionOutbox line100 = outbox("line100");
+        SessionOutbox vehicleB2 = outbox("vehicleB2");
+        registry.register(all, Subscription.ALL);
+        registry.register(line100, new Subscription(Set.of("100"), Set.of(), null));
+        registry.register(vehicleB2, new Subscription(Set.of(), Set.of("B2"), null));
+
+        FleetDelta delta = new FleetDelta(List.of(gps("B1", "100", -22.9), gps("B2", "200", -22.9)), List.of());
+        Map<SubscriptionRegistry.SubscriptionGroup, FleetDelta> routed = registry.route(delta);
+
+        assertThat(changedFor(routed, all)).containsExactly("B1", "B2");
+        assertThat(changedFor(routed, line100)).containsExactly("B1");
+        assertThat(changedFor(routed, vehicleB2)).containsExactly("B2");
+    }
+
+    @Test
+    void partialSubscriptionsMatchFragmentsLikeTheSearchBox() {
+        SessionOutbox exact = outbox("exact");
+        SessionOutbox partialLine = outbox("partialLine");
+        SessionOutbox partialVehicle = outbox("partialVehicle");
+        registry.register(exact, new Subscription(Set.of("23"), Set.of(), null));
+        registry.register(partialLine, new Subscription(Set.of("23"), Set.of(), null, null, true));
+        registry.register(partialVehicle, new Subscription(Set.of(), Set.of("a41"), null, null, true));
+
+        FleetDelta delta = new FleetDelta(List.of(gps("A41001", "232", -22.9), gps("B2", "23", -22.9),
+                gps("C3", "123", -22.9), gps("D4", "100", -22.9)), List.of());
+        Map<SubscriptionRegistry.SubscriptionGroup, FleetDelta> routed = registry.route(delta);
+
+        assertThat(changedFor(routed, exact)).containsExactly("B2");
+        assertThat(changedFor(routed, partialLine)).containsExactly("A41001", "B2", "C3");
+        assertThat(changedFor(routed, partialVehicle)).containsExactly("A41001");
+    }
+
+    @Test
+    void vehicleLeavingTheViewportIsSentAsRemoved() {
+        SessionOutbox viewport = outbox("viewport");
+        registry.register(viewport, new Subscription(Set.of(), Set.of(), new BoundingBox(-23.0, -43.5, -22.8, -43.0)));
+
+        GpsDataDTO before = gps("B1", "100", -22.9);
+        GpsDataDTO after = gps("B1", "100", -22.5);
+        Map<SubscriptionRegistry.SubscriptionGroup, FleetDelta> routed =
+                registry.route(new FleetDelta(List.of(after), List.of(), Map.of("B1", before)));
+
+        FleetDelta groupDelta = deltaFor(routed, viewport);
+        assertThat(groupDelta.changed()).isEmpty();
+        assertThat(groupDelta.removed()).containsExactly("B1");
+    }
+
+    @Test
+    void sessionsWithEqualSubscriptionsShareAGroup() {
+        registry.register(outbox("s1"), new Subscription(Set.of("100"), Set.of(), null));
+        registry.register(outbox("s2"), new Subscription(Set.of("100"), Set.of(), null));
+        assertThat(registry.groupCount()).isEqualTo(1);
+
+        registry.unregister("s1");
+        registry.unregister("s2");
+        assertThat(registry.groupCount()).isZero();
+        assertThat(registry.route(new FleetDelta(List.of(gps("B1", "100", -22.9)), List.of()))).isEmpty();
+    }
+
+    @Test
+    void clusteredGroupsAreNotRoutedVehicles() {
+        SessionOutbox map = outbox("map");
+        Subscription clustered = new Subscription(Set.of(), Set.of(), new BoundingBox(-23.0, -43.5, -22.8, -43.0), 11);
+        registry.register(map, clustered);
+
+        assertThat(registry.route(new FleetDelta(List.of(gps("B1", "100", -22.9)), List.of()))).isEmpty();
+        assertThat(registry.clusteredGroups()).singleElement()
+                .satisfies(group -> assertThat(group.members()).containsExactly(map));
+
+        registry.register(map, Subscription.ALL);
+        assertThat(registry.clusteredGroups()).isEmpty();
+    }
+
+    private static List<String> changedFor(Map<SubscriptionRegistry.SubscriptionGroup, FleetDelta> routed,
+                                           SessionOutbox outbox) {
+        return deltaFor(routed, outbox).changed().stream().map(GpsDataDTO::getOrdem).toList();
+    }
+
+    private static FleetDelta deltaFor(Map<SubscriptionRegistry.SubscriptionGroup, FleetDelta> routed,
+                                       SessionOutbox outbox) {
+        return routed.entrySet().stream()
+                .filter(entry -> entry.getKey().members().contains(outbox))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(FleetDelta.empty());
+    }
+
+    private static SessionOutbox outbox(String sessionId) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(sessionId);
+        return new SessionOutbox(session, 1, OverflowPolicy.DROP_OLDEST, null, Runnable::run, null);
+    }
+
+    private static GpsDataDTO gps(String ordem, String linha, double latitude) {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem(ordem);
+        data.setLinha(linha);
+        data.setLatitude(String.valueOf(latitude));
+        data.setLongitude("-43,2");
+        data.setDatahoraservidor(System.currentTimeMillis());
+        return data;
+    }
+}
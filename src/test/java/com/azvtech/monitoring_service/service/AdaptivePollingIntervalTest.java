@@ -0,0 +1,77 @@
+package com.azvtech.monitoring_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptivePollingIntervalTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AdaptivePollingInterval interval = new AdaptivePollingInterval(2000, 1000, 30000, 120000, 3, registry);
+
+    @Test
+    void quietFeedStretchesTheIntervalUpToTheMaximum() {
+        for (int i = 0; i < 50; i++) {
+            interval.onFetchSuccess(100);
+            interval.onCycleProcessed(0, 1000);
+        }
+
+        assertThat(interval.currentMillis()).isEqualTo(30000);
+        assertThat(adjustments("idle")).isPositive();
+    }
+
+    @Test
+    void busyFeedShortensTheIntervalDownToTheMinimum() {
+        for (int i = 0; i < 50; i++) {
+            interval.onFetchSuccess(100);
+            interval.onCycleProcessed(900, 1000);
+        }
+
+        assertThat(interval.currentMillis()).isEqualTo(1000);
+        assertThat(adjustments("busy")).isPositive();
+    }
+
+    @Test
+    void slowUpstreamKeepsTheIntervalAboveItsLatency() {
+        interval.onFetchSuccess(1800);
+        interval.onCycleProcessed(900, 1000);
+
+        assertThat(interval.currentMillis()).isEqualTo(3600);
+        assertThat(adjustments("latency")).isEqualTo(1);
+    }
+
+    @Test
+    void failuresBackOffExponentiallyAndRecoverOnSuccess() {
+        interval.onFailure();
+        assertThat(interval.currentMillis()).isEqualTo(4000);
+        interval.onFailure();
+        assertThat(interval.currentMillis()).isEqualTo(8000);
+        assertThat(interval.isCircuitOpen()).isFalse();
+
+        interval.onFailure();
+        assertThat(interval.isCircuitOpen()).isTrue();
+        for (int i = 0; i < 10; i++) {
+            interval.onFailure();
+        }
+        assertThat(interval.currentMillis()).isEqualTo(120000);
+        assertThat(registry.get("gps.polling.circuit.open").gauge().value()).isEqualTo(1);
+
+        interval.onFetchSuccess(100);
+
+        assertThat(interval.isCircuitOpen()).isFalse();
+        assertThat(interval.currentMillis()).isEqualTo(2000);
+        assertThat(adjustments("recovered")).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsInconsistentBounds() {
+        assertThatThrownBy(() -> new AdaptivePollingInterval(500, 1000, 30000, 120000, 3, registry))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private double adjustments(String reason) {
+        return registry.counter("gps.polling.interval.adjustments", "reason", reason).count();
+    }
+}
@@ -0,0 +1,69 @@
+package com.azvtech.monitoring_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ClusterCoordinatorTest {
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong clock = new AtomicLong(10_000);
+    private final SimpleMeterRegistry registryA = new SimpleMeterRegistry();
+    private final GpsPollingService pollingA = mock(GpsPollingService.class);
+    private final GpsPollingService pollingB = mock(GpsPollingService.class);
+    private ClusterCoordinator nodeA;
+    private ClusterCoordinator nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = coordinator("a", pollingA, registryA);
+        nodeB = coordinator("b", pollingB, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.stop();
+        nodeB.stop();
+    }
+
+    @Test
+    void followerTakesOverWhenTheLeaderStopsRenewing() {
+        nodeA.renew();
+        nodeB.renew();
+        assertThat(nodeA.isLeader()).isTrue();
+        assertThat(nodeB.isLeader()).isFalse();
+        verify(pollingA).becomeLeader();
+        verify(pollingB, never()).becomeLeader();
+
+        // a para de renovar: b assume assim que o lease expira
+        clock.addAndGet(1_200);
+        nodeB.renew();
+        assertThat(nodeB.isLeader()).isTrue();
+        verify(pollingB).becomeLeader();
+
+        nodeA.renew();
+        assertThat(nodeA.isLeader()).isFalse();
+        verify(pollingA).becomeFollower();
+        assertThat(registryA.get("gps.cluster.leadership.acquired").counter().count()).isEqualTo(1);
+    }
+
+    private ClusterCoordinator coordinator(String nodeId, GpsPollingService polling, SimpleMeterRegistry registry) {
+        // Porta fechada: o seguidor tenta conectar ao líder e falha sem afetar o lease
+        LeaderLease lease = new FileLeaderLease(directory.resolve("leader.lease"), nodeId,
+                "ws://127.0.0.1:9/cluster/replication", 1_200, clock::get);
+        return new ClusterCoordinator(lease, polling, mock(TaskScheduler.class), 300, registry);
+    }
+}
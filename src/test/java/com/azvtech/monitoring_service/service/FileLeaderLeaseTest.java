@@ -0,0 +1,75 @@
+package com.azvtech.monitoring_service.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileLeaderLeaseTest {
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong clock = new AtomicLong(10_000);
+
+    @Test
+    void onlyOneNodeHoldsAnUnexpiredLease() throws Exception {
+        FileLeaderLease a = lease("a");
+        FileLeaderLease b = lease("b");
+
+        assertThat(a.acquireOrRenew().isHeldBy("a")).isTrue();
+        LeaderLease.Lease seenByB = b.acquireOrRenew();
+        assertThat(seenByB.nodeId()).isEqualTo("a");
+        assertThat(seenByB.replicationUrl()).isEqualTo("ws://a/cluster/replication");
+
+        // Renovações de a adiam a expiração
+        clock.addAndGet(800);
+        assertThat(a.acquireOrRenew().expiresAtMillis()).isEqualTo(12_000);
+        clock.addAndGet(800);
+        assertThat(b.acquireOrRenew().isHeldBy("a")).isTrue();
+    }
+
+    @Test
+    void expiredLeaseIsTakenOver() throws Exception {
+        FileLeaderLease a = lease("a");
+        FileLeaderLease b = lease("b");
+        a.acquireOrRenew();
+
+        clock.addAndGet(1_200);
+        LeaderLease.Lease taken = b.acquireOrRenew();
+        assertThat(taken.isHeldBy("b")).isTrue();
+        assertThat(taken.renewedAtMillis()).isEqualTo(11_200);
+
+        // O antigo líder descobre que perdeu o lease na próxima renovação
+        assertThat(a.acquireOrRenew().isHeldBy("b")).isTrue();
+    }
+
+    @Test
+    void releasedLeaseIsFreeImmediately() throws Exception {
+        FileLeaderLease a = lease("a");
+        FileLeaderLease b = lease("b");
+        a.acquireOrRenew();
+
+        // Liberar um lease de outro nó não tem efeito
+        b.release();
+        assertThat(b.acquireOrRenew().isHeldBy("a")).isTrue();
+
+        a.release();
+        assertThat(b.acquireOrRenew().isHeldBy("b")).isTrue();
+    }
+
+    @Test
+    void unreadableLeaseIsTreatedAsFree() throws Exception {
+        Files.writeString(directory.resolve("leader.lease"), "node-id=a\nexpires-at=oops\n");
+        assertThat(lease("b").acquireOrRenew().isHeldBy("b")).isTrue();
+    }
+
+    private FileLeaderLease lease(String nodeId) {
+        return new FileLeaderLease(directory.resolve("leader.lease"), nodeId,
+                "ws://" + nodeId + "/cluster/replication", 1_200, clock::get);
+    }
+}
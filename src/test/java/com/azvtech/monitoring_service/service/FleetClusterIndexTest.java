@@ -0,0 +1,120 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.BoundingBox;
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.MapClusterDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class FleetClusterIndexTest {
+
+    private final FleetClusterIndex index = new FleetClusterIndex(14, 64, new SimpleMeterRegistry());
+
+    @Test
+    void incrementalUpdatesMatchAFreshIndex() {
+        SplittableRandom random = new SplittableRandom(11);
+        Map<String, GpsDataDTO> fleet = new LinkedHashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            fleet.put("V" + i, gps("V" + i, random.nextDouble(-23.0, -22.8), random.nextDouble(-43.6, -43.2)));
+        }
+        index.onFleetUpdate(new FleetDelta(List.copyOf(fleet.values()), List.of()));
+
+        for (int cycle = 0; cycle < 5; cycle++) {
+            List<GpsDataDTO> changed = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            for (GpsDataDTO data : List.copyOf(fleet.values())) {
+                double roll = random.nextDouble();
+                if (roll < 0.02) {
+                    fleet.remove(data.getOrdem());
+                    removed.add(data.getOrdem());
+                } else if (roll < 0.5) {
+                    // Passos curtos (mesma célula nos zooms baixos) e saltos entre células
+                    double step = roll < 0.4 ? 0.0005 : 0.05;
+                    GpsDataDTO moved = gps(data.getOrdem(), data.getLatitude() + random.nextDouble(-step, step),
+                            data.getLongitude() + random.nextDouble(-step, step));
+                    fleet.put(moved.getOrdem(), moved);
+                    changed.add(moved);
+                }
+            }
+            index.onFleetUpdate(new FleetDelta(changed, removed));
+        }
+
+        FleetClusterIndex fresh = new FleetClusterIndex(14, 64, new SimpleMeterRegistry());
+        fresh.onFleetUpdate(new FleetDelta(List.copyOf(fleet.values()), List.of()));
+
+        assertThat(index.size()).isEqualTo(fleet.size());
+        for (int zoom = 0; zoom <= 14; zoom++) {
+            List<MapClusterDTO> actual = sorted(index.clusters(zoom, null));
+            List<MapClusterDTO> expected = sorted(fresh.clusters(zoom, null));
+            assertThat(actual).hasSameSizeAs(expected);
+            assertThat(actual.stream().mapToInt(MapClusterDTO::count).sum()).isEqualTo(fleet.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(actual.get(i).count()).isEqualTo(expected.get(i).count());
+                assertThat(actual.get(i).latitude()).isCloseTo(expected.get(i).latitude(), within(1e-6));
+                assertThat(actual.get(i).longitude()).isCloseTo(expected.get(i).longitude(), within(1e-6));
+            }
+        }
+    }
+
+    @Test
+    void coarserZoomsMergeCellsIntoCentroids() {
+        index.onFleetUpdate(new FleetDelta(List.of(
+                gps("A", -22.90, -43.20), gps("B", -22.91, -43.21), gps("C", -22.50, -43.80)), List.of()));
+
+        assertThat(index.clusters(0, null)).singleElement().satisfies(cluster -> {
+            assertThat(cluster.count()).isEqualTo(3);
+            assertThat(cluster.latitude()).isCloseTo((-22.90 - 22.91 - 22.50) / 3, within(1e-6));
+            assertThat(cluster.longitude()).isCloseTo((-43.20 - 43.21 - 43.80) / 3, within(1e-6));
+        });
+        // Zoom 11: células de 64 px têm ~4,5 km, separando C de A e B
+        assertThat(index.clusters(11, null)).extracting(MapClusterDTO::count).containsExactlyInAnyOrder(2, 1);
+        assertThat(index.clusters(14, null)).hasSize(3);
+
+        index.onFleetUpdate(new FleetDelta(List.of(), List.of("C")));
+        assertThat(index.clusters(0, null)).singleElement()
+                .satisfies(cluster -> assertThat(cluster.count()).isEqualTo(2));
+    }
+
+    @Test
+    void viewportSelectsOverlappingCells() {
+        index.onFleetUpdate(new FleetDelta(List.of(
+                gps("A", -22.90, -43.20), gps("B", -22.91, -43.21), gps("C", -22.50, -43.80)), List.of()));
+
+        // Caixa pequena: percorre o intervalo de células; caixa grande: percorre as células ocupadas
+        BoundingBox aroundA = new BoundingBox(-22.92, -43.22, -22.89, -43.19);
+        assertThat(index.clusters(14, aroundA)).extracting(MapClusterDTO::count).containsExactly(1, 1);
+        BoundingBox state = new BoundingBox(-23.5, -44.0, -22.0, -43.0);
+        assertThat(index.clusters(14, state)).hasSize(3);
+        BoundingBox elsewhere = new BoundingBox(-10.0, -40.0, -9.0, -39.0);
+        assertThat(index.clusters(5, elsewhere)).isEmpty();
+
+        assertThatThrownBy(() -> index.clusters(15, null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<MapClusterDTO> sorted(List<MapClusterDTO> clusters) {
+        return clusters.stream()
+                .sorted(Comparator.comparingDouble(MapClusterDTO::latitude).thenComparingDouble(MapClusterDTO::longitude))
+                .toList();
+    }
+
+    private static GpsDataDTO gps(String ordem, double latitude, double longitude) {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem(ordem);
+        data.setLinha("100");
+        data.setCoordinates(latitude, longitude);
+        data.setDatahoraservidor(System.currentTimeMillis());
+        return data;
+    }
+}
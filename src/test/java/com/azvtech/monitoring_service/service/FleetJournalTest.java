@@ -0,0 +1,111 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FleetJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenedJournalRecoversTheLatestStateAndKeepsAppending() throws Exception {
+        FleetJournal journal = open();
+        journal.append(1_000, List.of(gps("A1", -22.90, 1_000), gps("B1", -22.80, 1_000)));
+        journal.append(2_000, List.of(gps("A1", -22.91, 2_000)));
+        journal.close();
+
+        FleetJournal reopened = open();
+        reopened.append(3_000, List.of(gps("B1", -22.81, 3_000)));
+
+        Map<String, GpsDataDTO> state = reopened.recoverLatestState(0);
+        assertThat(state).containsOnlyKeys("A1", "B1");
+        assertThat(state.get("A1").getLatitude()).isEqualTo(-22.91);
+        assertThat(state.get("B1").getLatitude()).isEqualTo(-22.81);
+        assertThat(state.get("B1").getDatahoraservidorMillis()).isEqualTo(3_000);
+        assertThat(readTimestamps(reopened, 1_500, 2_500)).containsExactly(2_000L);
+    }
+
+    @Test
+    void tornBatchIsIgnoredAndOverwritten() throws Exception {
+        FleetJournal journal = open();
+        journal.append(1_000, List.of(gps("A1", -22.90, 1_000)));
+        journal.append(2_000, List.of(gps("A1", -22.91, 2_000)));
+        journal.close();
+
+        // Simula uma escrita interrompida: o tamanho confirmado aponta para um payload corrompido
+        Path segment;
+        try (var files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int secondBatch = FleetJournal.BATCH_HEADER_BYTES + channel.map(FileChannel.MapMode.READ_ONLY, 0, 4).getInt(0);
+            channel.write(ByteBuffer.wrap(new byte[]{42}), secondBatch + FleetJournal.BATCH_HEADER_BYTES);
+        }
+
+        FleetJournal reopened = open();
+        assertThat(readTimestamps(reopened, 0, Long.MAX_VALUE)).containsExactly(1_000L);
+
+        reopened.append(3_000, List.of(gps("A1", -22.92, 3_000)));
+        assertThat(readTimestamps(reopened, 0, Long.MAX_VALUE)).containsExactly(1_000L, 3_000L);
+    }
+
+    @Test
+    void unwritableDirectoryDisablesTheJournal() throws Exception {
+        // Um arquivo no lugar do diretório pai impede a criação dos segmentos
+        Path blocked = Files.createFile(directory.resolve("blocked"));
+        FleetJournal journal = new FleetJournal(true, blocked.resolve("journal").toString(), 1, 6,
+                new SimpleMeterRegistry());
+        journal.open();
+
+        assertThat(journal.isEnabled()).isFalse();
+        journal.append(1_000, List.of(gps("A1", -22.90, 1_000)));
+        assertThat(readTimestamps(journal, 0, Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    void rejectsSegmentSizesThatDoNotFitAMapping() {
+        for (int segmentSizeMb : new int[]{0, -1, 2048, 4096}) {
+            assertThatThrownBy(() -> new FleetJournal(true, directory.toString(), segmentSizeMb, 6, new SimpleMeterRegistry()))
+                    .as("%d MB", segmentSizeMb)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("segment-size-mb");
+        }
+        new FleetJournal(false, directory.toString(), FleetJournal.MAX_SEGMENT_SIZE_MB, 6, new SimpleMeterRegistry());
+    }
+
+    private FleetJournal open() {
+        FleetJournal journal = new FleetJournal(true, directory.toString(), 1, 6, new SimpleMeterRegistry());
+        journal.open();
+        return journal;
+    }
+
+    private static List<Long> readTimestamps(FleetJournal journal, long from, long to) throws Exception {
+        List<Long> timestamps = new ArrayList<>();
+        journal.read(from, to, (timestamp, batch) -> timestamps.add(timestamp));
+        return timestamps;
+    }
+
+    private static GpsDataDTO gps(String ordem, double latitude, long timestamp) {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem(ordem);
+        data.setLinha("232");
+        data.setCoordinates(latitude, -43.2);
+        data.setDatahoraservidor(timestamp);
+        return data;
+    }
+}
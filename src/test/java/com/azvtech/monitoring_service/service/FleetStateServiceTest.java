@@ -0,0 +1,109 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FleetStateServiceTest {
+
+    private FleetStateService fleetStateService;
+
+    @BeforeEach
+    void setUp() {
+        fleetStateService = new FleetStateService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fleetStateService, "staleAfterSeconds", 90L);
+    }
+
+    @Test
+    void firstCycleReportsEveryVehicleAsChanged() {
+        long now = System.currentTimeMillis();
+
+        FleetDelta delta = fleetStateService.applyUpdates(Map.of(
+                "A1", gps("A1", "100", "-22,9", now),
+                "A2", gps("A2", "200", "-22,8", now)));
+
+        assertThat(delta.changed()).extracting(GpsDataDTO::getOrdem).containsExactlyInAnyOrder("A1", "A2");
+        assertThat(delta.removed()).isEmpty();
+    }
+
+    @Test
+    void unchangedVehiclesAreNotReported() {
+        long now = System.currentTimeMillis();
+        fleetStateService.applyUpdates(Map.of(
+                "A1", gps("A1", "100", "-22,9", now),
+                "A2", gps("A2", "200", "-22,8", now)));
+
+        FleetDelta delta = fleetStateService.applyUpdates(Map.of(
+                "A1", gps("A1", "100", "-22,9", now),
+                "A2", gps("A2", "200", "-22,7", now + 1000)));
+
+        assertThat(delta.changed()).extracting(GpsDataDTO::getOrdem).containsExactly("A2");
+        assertThat(fleetStateService.snapshot()).hasSize(2);
+    }
+
+    @Test
+    void olderRecordsDoNotOverwriteState() {
+        long now = System.currentTimeMillis();
+        fleetStateService.applyUpdates(Map.of("A1", gps("A1", "100", "-22,9", now)));
+
+        FleetDelta delta = fleetStateService.applyUpdates(Map.of("A1", gps("A1", "100", "-22,5", now - 5000)));
+
+        assertThat(delta.changed()).isEmpty();
+        assertThat(fleetStateService.snapshot().get(0).getLatitude()).isEqualTo(-22.9);
+    }
+
+    @Test
+    void staleVehiclesAreRemoved() {
+        long now = System.currentTimeMillis();
+        fleetStateService.applyUpdates(Map.of(
+                "A1", gps("A1", "100", "-22,9", now - 120_000),
+                "A2", gps("A2", "200", "-22,8", now)));
+
+        assertThat(fleetStateService.snapshot()).extracting(GpsDataDTO::getOrdem).containsExactly("A2");
+
+        FleetDelta delta = fleetStateService.applyUpdates(Map.of());
+        assertThat(delta.isEmpty()).isTrue();
+    }
+
+    @Test
+    void consecutiveDeltasMergeIntoTheNetChange() {
+        long now = System.currentTimeMillis();
+        fleetStateService.applyUpdates(Map.of(
+                "A1", gps("A1", "100", "-22,9", now),
+                "A2", gps("A2", "200", "-22,8", now)));
+
+        FleetDelta first = fleetStateService.applyUpdates(Map.of(
+                "A1", gps("A1", "100", "-22,7", now + 1000),
+                "A3", gps("A3", "300", "-22,6", now + 1000)));
+        FleetDelta second = fleetStateService.applyUpdates(Map.of(
+                "A1", gps("A1", "101", "-22,5", now + 2000)));
+
+        FleetDelta merged = first.followedBy(second);
+
+        assertThat(merged.changed()).extracting(GpsDataDTO::getLatitude).containsExactlyInAnyOrder(-22.5, -22.6);
+        assertThat(merged.removed()).isEmpty();
+        // O estado anterior é o de antes do primeiro ciclo; A3 surgiu nele e não tinha estado
+        assertThat(merged.previous()).containsOnlyKeys("A1");
+        assertThat(merged.previous().get("A1").getLatitude()).isEqualTo(-22.9);
+    }
+
+    private static GpsDataDTO gps(String ordem, String linha, String latitude, long timestamp) {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem(ordem);
+        data.setLinha(linha);
+        data.setLatitude(latitude);
+        data.setLongitude("-43,2");
+        data.setVelocidade(30);
+        data.setDatahora(timestamp);
+        data.setDatahoraenvio(timestamp);
+        data.setDatahoraservidor(timestamp);
+        return data;
+    }
+}
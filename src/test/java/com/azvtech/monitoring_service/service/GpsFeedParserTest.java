@@ -0,0 +1,155 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GpsFeedParserTest {
+
+    private final GpsFeedParser parser = new GpsFeedParser();
+
+    @Test
+    void keepsOnlyTheMostRecentRecordPerVehicle() throws IOException {
+        String feed = """
+                [
+                  {"ordem":"A63535","latitude":"-22,86115","longitude":"-43,25614","datahora":"1705000000000",
+                   "velocidade":"12","linha":"SV671","datahoraenvio":"1705000001000","datahoraservidor":"1705000002000"},
+                  {"ordem":"A63535","latitude":"-22,86200","longitude":"-43,25700","datahora":"1705000030000",
+                   "velocidade":"20","linha":"SV671","datahoraenvio":"1705000031000","datahoraservidor":"1705000032000"},
+                  {"ordem":"B10001","latitude":"-22,9","longitude":"-43,2","datahora":1705000000000,
+                   "velocidade":0,"linha":"232","datahoraenvio":1705000001000,"datahoraservidor":1705000002000},
+                  {"ordem":"A63535","latitude":"-22,80000","longitude":"-43,20000","datahora":"1704999990000",
+                   "velocidade":"5","linha":"SV671","datahoraenvio":"1704999991000","datahoraservidor":"1704999992000"}
+                ]
+                """;
+
+        FeedParseResult result = parser.parseLatestUpdates(stream(feed));
+
+        assertThat(result.totalRecords()).isEqualTo(4);
+        assertThat(result.latestUpdates()).containsOnlyKeys("A63535", "B10001");
+        GpsDataDTO latest = result.latestUpdates().get("A63535");
+        assertThat(latest.getLatitude()).isEqualTo(-22.862);
+        assertThat(latest.getLongitude()).isEqualTo(-43.257);
+        assertThat(latest.getVelocidade()).isEqualTo(20);
+        assertThat(latest.getLinha()).isEqualTo("SV671");
+    }
+
+    @Test
+    void dropsAlreadyIngestedRecordsButTracksNewestTimestamp() throws IOException {
+        String feed = """
+                [
+                  {"ordem":"A63535","latitude":"-22,86115","longitude":"-43,25614","datahora":"1705000000000",
+                   "velocidade":"12","linha":"SV671","datahoraenvio":"1705000001000","datahoraservidor":"1705000002000"},
+                  {"ordem":"B10001","latitude":"-22,9","longitude":"-43,2","datahora":"1705000030000",
+                   "velocidade":"0","linha":"232","datahoraenvio":"1705000031000","datahoraservidor":"1705000032000"}
+                ]
+                """;
+
+        FeedParseResult result = parser.parseLatestUpdates(stream(feed), data -> data.getOrdem().equals("B10001"));
+
+        assertThat(result.totalRecords()).isEqualTo(2);
+        assertThat(result.discardedRecords()).isEqualTo(1);
+        assertThat(result.latestUpdates()).containsOnlyKeys("A63535");
+        assertThat(result.newestServerTimestamp()).isEqualTo(
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(1705000032000L), ZoneId.systemDefault()));
+    }
+
+    @Test
+    void canonicalizesIdsAcrossResponses() throws IOException {
+        String feed = """
+                [{"ordem":"A63535","latitude":"-22,86115","longitude":"-43,25614","datahora":"1705000000000",
+                  "velocidade":"12","linha":"SV671","datahoraenvio":"1705000001000","datahoraservidor":"1705000002000"}]
+                """;
+
+        GpsDataDTO first = parser.parseLatestUpdates(stream(feed)).latestUpdates().get("A63535");
+        GpsDataDTO second = parser.parseLatestUpdates(stream(feed)).latestUpdates().get("A63535");
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getOrdem()).isSameAs(first.getOrdem());
+        assertThat(second.getLinha()).isSameAs(first.getLinha());
+        assertThat(second.getDatahoraservidorMillis()).isEqualTo(1705000002000L);
+    }
+
+    @Test
+    void emptyBodyYieldsNoUpdates() throws IOException {
+        assertThat(parser.parseLatestUpdates(stream("")).latestUpdates()).isEmpty();
+        assertThat(parser.parseLatestUpdates(stream("[]")).latestUpdates()).isEmpty();
+    }
+
+    @Test
+    void rejectsNonArrayResponses() {
+        assertThatThrownBy(() -> parser.parseLatestUpdates(stream("{\"error\":\"unavailable\"}")))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void shardedParseMatchesSequentialParse() throws IOException {
+        StringBuilder feed = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) {
+                feed.append(i % 7 == 0 ? " ,\n " : ",");
+            }
+            feed.append("{\"ordem\":\"A").append(i % 37).append("\",\"latitude\":\"-22,").append(i)
+                    .append("\",\"longitude\":\"-43,2\",\"velocidade\":\"").append(i % 80)
+                    .append("\",\"linha\":\"").append(i % 5).append("\",\"datahoraservidor\":\"")
+                    .append(1705000000000L + (i * 7919L) % 100_000).append("\"}");
+        }
+        byte[] body = feed.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        byte[] original = body.clone();
+
+        FeedParseResult sequential = parser.parseLatestUpdates(new ByteArrayInputStream(body));
+        FeedParseResult sharded = parser.parseLatestUpdates(body, 4, data -> false);
+
+        assertThat(GpsFeedParser.findRecordSeparators(body, 4)).hasSize(3);
+        assertThat(body).isEqualTo(original);
+        assertThat(sharded.totalRecords()).isEqualTo(1000);
+        assertThat(sharded.newestServerTimestamp()).isEqualTo(sequential.newestServerTimestamp());
+        assertThat(sharded.latestUpdates()).hasSize(37);
+        sequential.latestUpdates().forEach((ordem, data) ->
+                assertThat(sharded.latestUpdates().get(ordem).getLatitude()).isEqualTo(data.getLatitude()));
+    }
+
+    @Test
+    void responsesLargerThanTheBufferLimitAreParsedSequentially() throws IOException {
+        String feed = """
+                [{"ordem":"A1","latitude":"-22,9","longitude":"-43,2","datahoraservidor":"1705000001000"},
+                 {"ordem":"B1","latitude":"-22,8","longitude":"-43,1","datahoraservidor":"1705000002000"},
+                 {"ordem":"A1","latitude":"-22,7","longitude":"-43,2","datahoraservidor":"1705000003000"}]
+                """;
+
+        FeedParseResult truncatedBuffer = parser.parseBuffered(stream(feed), 4, 64, data -> false);
+        FeedParseResult fullBuffer = parser.parseBuffered(stream(feed), 4, 4096, data -> false);
+
+        for (FeedParseResult result : List.of(truncatedBuffer, fullBuffer)) {
+            assertThat(result.totalRecords()).isEqualTo(3);
+            assertThat(result.latestUpdates()).containsOnlyKeys("A1", "B1");
+            assertThat(result.latestUpdates().get("A1").getLatitude()).isEqualTo(-22.7);
+        }
+    }
+
+    @Test
+    void shardedParseFallsBackWhenRecordsCannotBeSplit() throws IOException {
+        byte[] body = """
+                [{"ordem":"A1","latitude":"-22,9","longitude":"-43,2","datahoraservidor":"1705000002000"}]
+                """.getBytes(StandardCharsets.UTF_8);
+
+        FeedParseResult result = parser.parseLatestUpdates(body, 4, data -> false);
+
+        assertThat(result.latestUpdates()).containsOnlyKeys("A1");
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
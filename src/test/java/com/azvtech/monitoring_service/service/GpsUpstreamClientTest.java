@@ -0,0 +1,102 @@
+package com.azvtech.monitoring_service.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GpsUpstreamClientTest {
+
+    private HttpServer server;
+    private HttpClient httpClient;
+    private SimpleMeterRegistry registry;
+    private GpsUpstreamClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/gzip", exchange -> {
+            byte[] body = gzip("[{\"ordem\":\"A1\"}]");
+            boolean acceptsGzip = String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")).contains("gzip");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(acceptsGzip ? 200 : 406, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/error", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.createContext("/gzip-error", exchange -> {
+            // Proxies costumam repetir o Content-Encoding em páginas de erro em texto puro
+            byte[] body = "Bad gateway".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(502, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        httpClient = HttpClient.newHttpClient();
+        registry = new SimpleMeterRegistry();
+        client = new GpsUpstreamClient(httpClient, 5000, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void decompressesGzipBodiesAndTimesEachPhase() throws IOException {
+        String body = client.get(uri("/gzip"), in -> new String(in.readAllBytes(), StandardCharsets.UTF_8));
+
+        assertThat(body).isEqualTo("[{\"ordem\":\"A1\"}]");
+        for (String phase : new String[]{"dns", "ttfb", "body"}) {
+            assertThat(registry.get("gps.upstream.phase").tag("phase", phase).timer().count()).isEqualTo(1);
+        }
+        assertThat(registry.get("gps.upstream.response.bytes").summary().totalAmount()).isPositive();
+    }
+
+    @Test
+    void failsOnErrorStatus() {
+        assertThatThrownBy(() -> client.get(uri("/error"), in -> in.readAllBytes()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("503");
+    }
+
+    @Test
+    void reportsTheErrorStatusOfGzipDeclaredErrorBodies() {
+        assertThatThrownBy(() -> client.get(uri("/gzip-error"), in -> in.readAllBytes()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("502");
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
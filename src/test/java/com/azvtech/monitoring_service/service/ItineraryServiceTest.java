@@ -0,0 +1,142 @@
+package com.azvtech.monitoring_service.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItineraryServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ItineraryService service;
+    private byte[] geoJson;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        service = new ItineraryService("", new int[]{16, 10}, 1000, 1000, 0, HttpClient.newHttpClient(), new SimpleMeterRegistry());
+        StringBuilder wiggly = new StringBuilder();
+        // 101 pontos quase em linha reta, com desvios de ~11 m
+        for (int i = 0; i <= 100; i++) {
+            if (i > 0) {
+                wiggly.append(',');
+            }
+            wiggly.append('[').append(-43.30 + i * 0.001).append(',').append(-22.90 + (i % 2) * 0.0001).append(']');
+        }
+        geoJson = """
+                {"type":"FeatureCollection","features":[
+                  {"type":"Feature","properties":{"servico":"100","direcao":1,"destino":"Centro","consorcio":"Intersul"},
+                   "geometry":{"type":"LineString","coordinates":[%s]}},
+                  {"type":"Feature","properties":{"servico":"100","direcao":0,"destino":"Gávea","consorcio":"Intersul"},
+                   "geometry":{"type":"MultiLineString","coordinates":[[[-43.2,-22.9],[-43.1,-22.8]],[[-43.1,-22.8],[-43.0,-22.8]]]}},
+                  {"type":"Feature","properties":{"servico":"200"},"geometry":{"type":"Point","coordinates":[-43.2,-22.9]}},
+                  {"type":"Feature","properties":{"direcao":1},"geometry":{"type":"LineString","coordinates":[[-43.2,-22.9],[-43.1,-22.8]]}}
+                ]}
+                """.formatted(wiggly).getBytes(StandardCharsets.UTF_8);
+        service.load(new ByteArrayInputStream(geoJson));
+    }
+
+    @Test
+    void indexesLineStringsAndMultiLineStringsByLine() {
+        assertThat(service.isLoaded()).isTrue();
+        assertThat(service.lines()).containsExactly("100");
+        assertThat(service.itineraries("100")).extracting(Itinerary::direcao).containsExactly(0, 1);
+        assertThat(service.itineraries("100").getFirst().parts()).hasSize(2);
+        assertThat(service.itineraries("unknown")).isEmpty();
+    }
+
+    @Test
+    void simplifiesMoreAtLowerZooms() throws IOException {
+        JsonNode coarse = decode(service.geometry("100", 11).orElseThrow());
+        JsonNode fine = decode(service.geometry("100", 18).orElseThrow());
+
+        // Direção 1 (a segunda feature): no zoom 10 os desvios de ~11 m somem, no 16 permanecem
+        assertThat(coarse.at("/features/1/geometry/coordinates")).hasSize(2);
+        assertThat(fine.at("/features/1/geometry/coordinates")).hasSize(101);
+        assertThat(coarse.at("/features/0/geometry/type").asText()).isEqualTo("MultiLineString");
+        assertThat(coarse.at("/features/0/properties/destino").asText()).isEqualTo("Gávea");
+    }
+
+    @Test
+    void picksTheFinestLevelNotAboveTheZoom() {
+        assertThat(service.geometry("100", 3).orElseThrow().zoomLevel()).isEqualTo(10);
+        assertThat(service.geometry("100", 15).orElseThrow().zoomLevel()).isEqualTo(10);
+        assertThat(service.geometry("100", 16).orElseThrow().zoomLevel()).isEqualTo(16);
+        assertThat(service.geometry("200", 16)).isEmpty();
+    }
+
+    @Test
+    void etagsDifferPerLevelAndSurviveReloads() throws IOException {
+        String coarse = service.geometry("100", 10).orElseThrow().etag();
+        String fine = service.geometry("100", 16).orElseThrow().etag();
+
+        assertThat(coarse).isNotEqualTo(fine).startsWith("\"").endsWith("-z10\"");
+        ItineraryService restarted = new ItineraryService("", new int[]{16, 10}, 1000, 1000, 0,
+                HttpClient.newHttpClient(), new SimpleMeterRegistry());
+        restarted.load(new ByteArrayInputStream(geoJson));
+        assertThat(restarted.geometry("100", 10).orElseThrow().etag()).isEqualTo(coarse);
+        assertThat(ItineraryService.toleranceFor(10)).isGreaterThan(ItineraryService.toleranceFor(16));
+    }
+
+    @Test
+    void rebuildsTheIndexOnlyWhenTheContentChanges() throws IOException {
+        assertThat(service.version()).isEqualTo(1);
+        assertThat(service.load(new ByteArrayInputStream(geoJson))).isFalse();
+        assertThat(service.version()).isEqualTo(1);
+
+        byte[] changed = new String(geoJson, StandardCharsets.UTF_8).replace("Centro", "Praça XV")
+                .getBytes(StandardCharsets.UTF_8);
+        assertThat(service.load(new ByteArrayInputStream(changed))).isTrue();
+        assertThat(service.version()).isEqualTo(2);
+        assertThat(service.itineraries("100").get(1).destino()).isEqualTo("Praça XV");
+    }
+
+    @Test
+    void retriesUntilTheFirstLoadSucceeds(@TempDir Path directory) throws Exception {
+        Path source = directory.resolve("itineraries.geojson");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ItineraryService retrying = new ItineraryService(source.toString(), new int[]{14}, 10, 40, 0,
+                HttpClient.newHttpClient(), registry);
+        retrying.loadInBackground();
+        try {
+            // Fonte ausente: falha, mas o carregador continua tentando
+            await(() -> registry.counter("gps.itinerary.load.failures").count() >= 2);
+            assertThat(retrying.isLoaded()).isFalse();
+            assertThat(registry.get("gps.itinerary.loaded").gauge().value()).isZero();
+
+            Files.write(source, geoJson);
+            await(retrying::isLoaded);
+            assertThat(retrying.lines()).containsExactly("100");
+            assertThat(registry.get("gps.itinerary.loaded").gauge().value()).isEqualTo(1);
+        } finally {
+            retrying.stop();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private JsonNode decode(ItineraryService.CachedGeometry geometry) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(geometry.gzip()))) {
+            return objectMapper.readTree(in);
+        }
+    }
+}
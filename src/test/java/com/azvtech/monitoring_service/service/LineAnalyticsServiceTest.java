@@ -0,0 +1,123 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.LineStatsDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LineAnalyticsServiceTest {
+
+    private static final double METERS_PER_DEGREE_LON = Math.cos(Math.toRadians(-22.90)) * 111_320.0;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private MapMatchingService matching;
+    private LineAnalyticsService analytics;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ItineraryService itineraries = new ItineraryService("", new int[]{14}, 1000, 1000, 0, HttpClient.newHttpClient(), registry);
+        itineraries.load(new ByteArrayInputStream("""
+                {"type":"FeatureCollection","features":[
+                  {"type":"Feature","properties":{"servico":"100","direcao":0},
+                   "geometry":{"type":"LineString","coordinates":[[-43.30,-22.90],[-43.20,-22.90]]}},
+                  {"type":"Feature","properties":{"servico":"100","direcao":1},
+                   "geometry":{"type":"LineString","coordinates":[[-43.20,-22.90],[-43.30,-22.90]]}}
+                ]}
+                """.getBytes(StandardCharsets.UTF_8)));
+        matching = new MapMatchingService(itineraries, List.of(), 80, 2, 25, 180, 100, registry);
+        analytics = new LineAnalyticsService(matching, 250, true, registry);
+    }
+
+    @Test
+    void aggregatesSpeedAndHeadwaysAlongTheRoute() {
+        update(gps("A", "100", 1000, 20), gps("B", "100", 1100, 30), gps("C", "100", 3000, 40));
+
+        LineStatsDTO stats = analytics.stats("100").orElseThrow();
+        assertThat(stats.vehicles()).isEqualTo(3);
+        assertThat(stats.meanSpeed()).isEqualTo(30);
+        assertThat(stats.p50Speed()).isEqualTo(30);
+        assertThat(stats.p95Speed()).isEqualTo(40);
+        assertThat(stats.headwayVehicles()).isEqualTo(3);
+        assertThat(stats.meanHeadwayMeters()).isCloseTo(1000, within(0.01));
+        assertThat(stats.minHeadwayMeters()).isCloseTo(100, within(0.01));
+        // 1000 m a 30 km/h
+        assertThat(stats.meanHeadwaySeconds()).isCloseTo(120, within(0.01));
+        assertThat(stats.bunching()).singleElement().satisfies(pair -> {
+            assertThat(pair.follower()).isEqualTo("A");
+            assertThat(pair.leader()).isEqualTo("B");
+            assertThat(pair.direcao()).isZero();
+        });
+        assertThat(registry.get("gps.line.vehicles").tag("linha", "100").gauge().value()).isEqualTo(3);
+        assertThat(registry.get("gps.line.bunched.pairs").tag("linha", "100").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void updatesNeighbourGapsWhenABusMoves() {
+        update(gps("A", "100", 1000, 20), gps("B", "100", 1100, 30), gps("C", "100", 3000, 40));
+        // Mesmo par agrupado no ciclo seguinte: não gera novo alerta
+        update(gps("A", "100", 1010, 20));
+        assertThat(registry.get("gps.line.bunching.alerts").counter().count()).isEqualTo(1);
+
+        update(gps("B", "100", 2000, 30));
+        LineStatsDTO spread = analytics.stats("100").orElseThrow();
+        assertThat(spread.bunching()).isEmpty();
+        assertThat(spread.minHeadwayMeters()).isCloseTo(990, within(0.01));
+
+        // B ultrapassa C: a ordem ao longo da rota muda e C passa a seguir B
+        update(gps("B", "100", 3100, 30));
+        LineStatsDTO overtaken = analytics.stats("100").orElseThrow();
+        assertThat(overtaken.bunching()).singleElement().satisfies(pair -> {
+            assertThat(pair.follower()).isEqualTo("C");
+            assertThat(pair.leader()).isEqualTo("B");
+        });
+        assertThat(overtaken.meanHeadwayMeters()).isCloseTo(1045, within(0.01));
+        assertThat(registry.get("gps.line.bunching.alerts").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void dropsRemovedVehiclesAndEmptyLines() {
+        update(gps("A", "100", 1000, 20), gps("B", "100", 1100, 30), gps("X", "999", 0, 50));
+        LineStatsDTO unrouted = analytics.stats("999").orElseThrow();
+        assertThat(unrouted.vehicles()).isEqualTo(1);
+        assertThat(unrouted.meanHeadwayMeters()).isNull();
+        assertThat(unrouted.meanHeadwaySeconds()).isNull();
+
+        matching.onFleetUpdate(new FleetDelta(List.of(), List.of("B", "X")));
+        analytics.onFleetUpdate(new FleetDelta(List.of(), List.of("B", "X")));
+
+        LineStatsDTO remaining = analytics.stats("100").orElseThrow();
+        assertThat(remaining.vehicles()).isEqualTo(1);
+        assertThat(remaining.minHeadwayMeters()).isNull();
+        assertThat(remaining.bunching()).isEmpty();
+        assertThat(analytics.stats()).extracting(LineStatsDTO::linha).containsExactly("100");
+        assertThat(registry.get("gps.line.vehicles").tag("linha", "999").gauge().value()).isZero();
+    }
+
+    private void update(GpsDataDTO... data) {
+        FleetDelta delta = new FleetDelta(List.of(data), List.of());
+        matching.onFleetUpdate(delta);
+        analytics.onFleetUpdate(delta);
+    }
+
+    // Veículo sobre a reta da linha 100, a alongMeters do início da ida
+    private static GpsDataDTO gps(String ordem, String linha, double alongMeters, int velocidade) {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem(ordem);
+        data.setLinha(linha);
+        data.setCoordinates(-22.90, -43.30 + alongMeters / METERS_PER_DEGREE_LON);
+        data.setVelocidade(velocidade);
+        data.setDatahoraservidor(1_700_000_000_000L);
+        return data;
+    }
+}
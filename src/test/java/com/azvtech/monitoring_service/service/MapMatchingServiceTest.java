@@ -0,0 +1,180 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.RouteEventDTO;
+import com.azvtech.monitoring_service.dto.RouteMatchDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MapMatchingServiceTest {
+
+    // ~100 m de longitude na latitude da reta
+    private static final double STEP = 0.00097;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<RouteEventDTO> received = new ArrayList<>();
+    private ItineraryService itineraries;
+    private MapMatchingService service;
+    private long clock = 1_700_000_000_000L;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        itineraries = new ItineraryService("", new int[]{14}, 1000, 1000, 0, HttpClient.newHttpClient(), registry);
+        // Linha 100: ida de oeste para leste em ~10 km; a volta é o mesmo caminho ao contrário
+        itineraries.load(new ByteArrayInputStream("""
+                {"type":"FeatureCollection","features":[
+                  {"type":"Feature","properties":{"servico":"100","direcao":0,"destino":"Centro"},
+                   "geometry":{"type":"LineString","coordinates":[[-43.30,-22.90],[-43.20,-22.90]]}},
+                  {"type":"Feature","properties":{"servico":"100","direcao":1,"destino":"Gávea"},
+                   "geometry":{"type":"LineString","coordinates":[[-43.20,-22.90],[-43.30,-22.90]]}}
+                ]}
+                """.getBytes(StandardCharsets.UTF_8)));
+        service = new MapMatchingService(itineraries, List.of(received::addAll), 80, 2, 25, 180, 3, registry);
+    }
+
+    @Test
+    void followsTheDirectionTheVehicleAdvancesAlong() {
+        for (int i = 0; i < 5; i++) {
+            update(gps("A1", "100", -22.9002, -43.28 + i * STEP));
+        }
+        RouteMatchDTO eastbound = service.match("A1").orElseThrow();
+        assertThat(eastbound.direcao()).isZero();
+        assertThat(eastbound.destino()).isEqualTo("Centro");
+        assertThat(eastbound.progress()).isCloseTo((0.02 + 4 * STEP) / 0.1, within(0.001));
+        assertThat(eastbound.distanceMeters()).isCloseTo(22.3, within(0.5));
+
+        // Meia-volta: o sentido só troca depois de duas posições confirmando
+        update(gps("A1", "100", -22.9002, -43.28 + 3 * STEP));
+        assertThat(service.match("A1").orElseThrow().direcao()).isZero();
+        update(gps("A1", "100", -22.9002, -43.28 + 2 * STEP));
+        RouteMatchDTO westbound = service.match("A1").orElseThrow();
+        assertThat(westbound.direcao()).isEqualTo(1);
+        assertThat(westbound.progress()).isCloseTo(1 - (0.02 + 2 * STEP) / 0.1, within(0.001));
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void raisesOffRouteAfterConsecutiveConfirmationsAndBackOnRouteOnReturn() {
+        update(gps("A1", "100", -22.90, -43.28));
+        update(gps("A1", "100", -22.903, -43.28 + STEP));
+        assertThat(service.match("A1").orElseThrow().offRoute()).isFalse();
+
+        update(gps("A1", "100", -22.903, -43.28 + 2 * STEP));
+        assertThat(received).singleElement().satisfies(event -> {
+            assertThat(event.type()).isEqualTo(RouteEventDTO.Type.OFF_ROUTE);
+            assertThat(event.sequence()).isEqualTo(1);
+            assertThat(event.distanceMeters()).isNull();
+        });
+        RouteMatchDTO offRoute = service.match("A1").orElseThrow();
+        assertThat(offRoute.offRoute()).isTrue();
+        assertThat(offRoute.direcao()).isNull();
+        assertThat(service.offRoute()).extracting(RouteMatchDTO::ordem).containsExactly("A1");
+        assertThat(registry.get("gps.matching.vehicles.off_route").gauge().value()).isEqualTo(1);
+
+        update(gps("A1", "100", -22.90, -43.28 + 3 * STEP));
+        update(gps("A1", "100", -22.90, -43.28 + 4 * STEP));
+        assertThat(received).extracting(RouteEventDTO::type)
+                .containsExactly(RouteEventDTO.Type.OFF_ROUTE, RouteEventDTO.Type.BACK_ON_ROUTE);
+        assertThat(received.getLast().direcao()).isZero();
+        assertThat(registry.get("gps.matching.vehicles.off_route").gauge().value()).isZero();
+        assertThat(registry.get("gps.matching.events").tag("type", "off_route").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void raisesStoppedOnceTheVehicleStaysPutAndMovingWhenItLeaves() {
+        update(gps("A1", "100", -22.90, -43.28));
+        clock += 100_000;
+        update(gps("A1", "100", -22.90001, -43.28));
+        assertThat(received).isEmpty();
+
+        clock += 90_000;
+        update(gps("A1", "100", -22.90, -43.28001));
+        assertThat(received).extracting(RouteEventDTO::type).containsExactly(RouteEventDTO.Type.STOPPED);
+        assertThat(service.stopped()).extracting(RouteMatchDTO::ordem).containsExactly("A1");
+
+        clock += 20_000;
+        update(gps("A1", "100", -22.90, -43.28 + STEP));
+        assertThat(received).extracting(RouteEventDTO::type)
+                .containsExactly(RouteEventDTO.Type.STOPPED, RouteEventDTO.Type.MOVING);
+        assertThat(service.stopped()).isEmpty();
+    }
+
+    @Test
+    void keepsTheNewestEventsForPollingClients() {
+        for (int i = 0; i < 3; i++) {
+            update(gps("V" + i, "100", -22.903, -43.28));
+            update(gps("V" + i, "100", -22.903, -43.28));
+        }
+        clock += 200_000;
+        update(gps("V0", "100", -22.903, -43.28));
+
+        assertThat(service.eventsSince(0, 10)).extracting(RouteEventDTO::sequence).containsExactly(2L, 3L, 4L);
+        assertThat(service.eventsSince(2, 1)).extracting(RouteEventDTO::sequence).containsExactly(3L);
+        assertThat(service.eventsSince(4, 10)).isEmpty();
+    }
+
+    @Test
+    void forgetsRemovedVehiclesAndCountsLinesWithoutItinerary() {
+        update(gps("A1", "100", -22.903, -43.28));
+        update(gps("A1", "100", -22.903, -43.28));
+        update(gps("B1", "999", -22.90, -43.28));
+        assertThat(registry.get("gps.matching.vehicles.off_route").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("gps.matching.vehicles.unmatched").gauge().value()).isEqualTo(1);
+        assertThat(service.match("B1").orElseThrow().progress()).isNull();
+
+        service.onFleetUpdate(new FleetDelta(List.of(), List.of("A1", "B1")));
+
+        assertThat(service.match("A1")).isEmpty();
+        assertThat(registry.get("gps.matching.vehicles.off_route").gauge().value()).isZero();
+        assertThat(registry.get("gps.matching.vehicles.unmatched").gauge().value()).isZero();
+    }
+
+    @Test
+    void rebuildsRouteIndexesWhenTheItinerariesChange() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            update(gps("A1", "100", -22.9002, -43.28 + i * STEP));
+        }
+        assertThat(service.match("A1").orElseThrow().destino()).isEqualTo("Centro");
+
+        // Nova versão com um único sentido e outro destino
+        itineraries.load(new ByteArrayInputStream("""
+                {"type":"FeatureCollection","features":[
+                  {"type":"Feature","properties":{"servico":"100","direcao":0,"destino":"Praça XV"},
+                   "geometry":{"type":"LineString","coordinates":[[-43.30,-22.90],[-43.20,-22.90]]}}
+                ]}
+                """.getBytes(StandardCharsets.UTF_8)));
+        for (int i = 3; i < 6; i++) {
+            update(gps("A1", "100", -22.9002, -43.28 + i * STEP));
+        }
+
+        assertThat(service.match("A1").orElseThrow().destino()).isEqualTo("Praça XV");
+        assertThat(registry.get("gps.matching.lines").gauge().value()).isEqualTo(1);
+    }
+
+    private void update(GpsDataDTO data) {
+        service.onFleetUpdate(new FleetDelta(List.of(data), List.of()));
+    }
+
+    private GpsDataDTO gps(String ordem, String linha, double latitude, double longitude) {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem(ordem);
+        data.setLinha(linha);
+        data.setCoordinates(latitude, longitude);
+        data.setDatahora(clock);
+        data.setDatahoraservidor(clock + 2000);
+        clock += 20_000;
+        return data;
+    }
+}
@@ -0,0 +1,72 @@
+package com.azvtech.monitoring_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipelineStageTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void mergesSubmissionsWhileBusy() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        List<String> handled = new CopyOnWriteArrayList<>();
+
+        PipelineStage<String> stage = new PipelineStage<>("test", (pending, newer) -> pending + "+" + newer, item -> {
+            started.countDown();
+            await(release);
+            handled.add(item);
+            done.countDown();
+        }, registry);
+
+        stage.submit("1");
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        stage.submit("2");
+        stage.submit("3");
+
+        assertThat(stage.depth()).isEqualTo(1);
+        release.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handled).containsExactly("1", "2+3");
+        assertThat(registry.counter("gps.pipeline.coalesced", "stage", "test").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failuresDoNotStopTheStage() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        PipelineStage<String> stage = new PipelineStage<>("test", (pending, newer) -> newer, item -> {
+            if (item.equals("bad")) {
+                failed.countDown();
+                throw new IllegalStateException("boom");
+            }
+            done.countDown();
+        }, registry);
+
+        stage.submit("bad");
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+        stage.submit("good");
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(registry.counter("gps.pipeline.failures", "stage", "test").count()).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.azvtech.monitoring_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PollingWindowTest {
+
+    private PollingWindow pollingWindow;
+
+    @BeforeEach
+    void setUp() {
+        pollingWindow = new PollingWindow(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(pollingWindow, "windowSeconds", 90L);
+        ReflectionTestUtils.setField(pollingWindow, "safetyMarginSeconds", 10L);
+    }
+
+    @Test
+    void startsWithTheFullWindow() {
+        assertThat(widthSeconds(pollingWindow.next())).isEqualTo(90);
+    }
+
+    @Test
+    void narrowsToTheHighWaterMarkMinusTheSafetyMargin() {
+        pollingWindow.advance(LocalDateTime.now().minusSeconds(5));
+
+        PollingWindow.Range range = pollingWindow.next();
+
+        assertThat(widthSeconds(range)).isBetween(14L, 16L);
+    }
+
+    @Test
+    void neverExceedsTheFullWindowNorShrinksBelowTheMargin() {
+        pollingWindow.advance(LocalDateTime.now().minusHours(1));
+        assertThat(widthSeconds(pollingWindow.next())).isEqualTo(90);
+
+        // Relógio do servidor adiantado em relação ao local
+        pollingWindow.advance(LocalDateTime.now().plusMinutes(5));
+        assertThat(widthSeconds(pollingWindow.next())).isEqualTo(10);
+    }
+
+    @Test
+    void resetFallsBackToTheFullWindow() {
+        pollingWindow.advance(LocalDateTime.now().minusSeconds(5));
+        pollingWindow.reset();
+
+        assertThat(widthSeconds(pollingWindow.next())).isEqualTo(90);
+    }
+
+    private static long widthSeconds(PollingWindow.Range range) {
+        return Duration.between(range.start(), range.end()).toSeconds();
+    }
+}
@@ -0,0 +1,71 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.PositionSampleDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PositionHistoryStoreTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PositionHistoryStore store = new PositionHistoryStore(60, 2, 4, registry);
+    private final long now = System.currentTimeMillis();
+
+    @Test
+    void ringKeepsTheNewestSamplesInOrder() {
+        for (int i = 0; i < 6; i++) {
+            store.onFleetUpdate(update(gps("A1", -22.9 + i * 0.001, now - 60_000 + i * 1000)));
+        }
+
+        List<PositionSampleDTO> positions = store.trail("A1", Long.MIN_VALUE).positions();
+
+        assertThat(positions).hasSize(4);
+        assertThat(positions).extracting(PositionSampleDTO::latitude)
+                .containsExactly(-22.898, -22.897, -22.896, -22.895);
+        assertThat(positions.get(0).longitude()).isEqualTo(-43.2);
+        assertThat(registry.get("gps.history.samples").gauge().value()).isEqualTo(4);
+    }
+
+    @Test
+    void windowQueryFiltersByTimestamp() {
+        store.onFleetUpdate(update(gps("A1", -22.9, now - 30_000), gps("B1", -22.8, now - 30_000)));
+        store.onFleetUpdate(update(gps("A1", -22.91, now - 10_000)));
+
+        assertThat(store.positionsBetween(now - 20_000, now)).singleElement()
+                .satisfies(trail -> {
+                    assertThat(trail.ordem()).isEqualTo("A1");
+                    assertThat(trail.positions()).extracting(PositionSampleDTO::latitude).containsExactly(-22.91);
+                });
+        assertThat(store.trail("B1", now - 20_000).positions()).isEmpty();
+    }
+
+    @Test
+    void rejectsVehiclesBeyondCapacityAndRecyclesExpiredRings() {
+        store.onFleetUpdate(update(gps("A1", -22.9, now - 2 * 3_600_000), gps("B1", -22.8, now - 1000)));
+        // A1 expirou ao final do ciclo anterior, liberando o ring para C1
+        store.onFleetUpdate(update(gps("C1", -22.7, now - 1000), gps("D1", -22.6, now - 1000)));
+
+        assertThat(store.trail("A1", Long.MIN_VALUE).positions()).isEmpty();
+        assertThat(store.trail("C1", Long.MIN_VALUE).positions()).hasSize(1);
+        assertThat(store.trail("D1", Long.MIN_VALUE).positions()).isEmpty();
+        assertThat(registry.get("gps.history.rejected").counter().count()).isEqualTo(1);
+        assertThat(registry.get("gps.history.vehicles").gauge().value()).isEqualTo(2);
+    }
+
+    private static FleetDelta update(GpsDataDTO... vehicles) {
+        return new FleetDelta(List.of(vehicles), List.of());
+    }
+
+    private static GpsDataDTO gps(String ordem, double latitude, long timestamp) {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem(ordem);
+        data.setCoordinates(latitude, -43.2);
+        data.setDatahoraservidor(timestamp);
+        return data;
+    }
+}
@@ -0,0 +1,35 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicationFrameTest {
+
+    @Test
+    void framesRoundTripLosslessly() {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem("A1");
+        data.setCoordinates(-22.9123456789, -43.1987654321);
+        data.setVelocidade(42);
+        data.setDatahora(1_700_000_000_123L);
+        data.setDatahoraservidor(1_700_000_001_456L);
+
+        ByteBuffer encoded = ReplicationFrame.encode(true, 99, List.of(data));
+        ReplicationFrame decoded = ReplicationFrame.decode(encoded);
+
+        assertThat(decoded.snapshot()).isTrue();
+        assertThat(decoded.publishedAtMillis()).isEqualTo(99);
+        assertThat(decoded.records()).singleElement().satisfies(copy -> {
+            assertThat(copy.getOrdem()).isEqualTo("A1");
+            assertThat(copy.getLinha()).isNull();
+            assertThat(copy.hasChangedFrom(data)).isFalse();
+            assertThat(copy.getDatahoraMillis()).isEqualTo(1_700_000_000_123L);
+            assertThat(copy.getDatahoraenvioMillis()).isEqualTo(GpsDataDTO.NO_TIMESTAMP);
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package com.azvtech.monitoring_service.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RouteIndexTest {
+
+    @Test
+    void projectsOntoTheClosestItineraryWithProgressAlongIt() {
+        // Reta de ~10 km para leste; a volta é o mesmo caminho no sentido inverso
+        double[] east = {-43.30, -22.90, -43.25, -22.90, -43.20, -22.90};
+        double[] west = {-43.20, -22.90, -43.25, -22.90, -43.30, -22.90};
+        RouteIndex index = RouteIndex.build(List.of(
+                new Itinerary("100", 0, "Centro", null, List.of(east)),
+                new Itinerary("100", 1, "Gávea", null, List.of(west))));
+
+        RouteIndex.Match outbound = index.nearest(-22.9003, -43.275, 100, 0);
+        RouteIndex.Match inbound = index.nearest(-22.9003, -43.275, 100, 1);
+
+        assertThat(outbound.distanceMeters()).isCloseTo(33.4, within(0.5));
+        assertThat(outbound.progress()).isCloseTo(0.25, within(0.001));
+        assertThat(inbound.progress()).isCloseTo(0.75, within(0.001));
+        assertThat(index.lengthMeters(0)).isCloseTo(10_250, within(50.0));
+        assertThat(index.nearest(-22.91, -43.275, 100, -1)).isNull();
+    }
+
+    @Test
+    void continuesProgressAcrossTheParts() {
+        RouteIndex index = RouteIndex.build(List.of(new Itinerary("100", 0, null, null, List.of(
+                new double[]{-43.30, -22.90, -43.29, -22.90},
+                new double[]{-43.29, -22.90, -43.28, -22.90}))));
+
+        assertThat(index.nearest(-22.90, -43.285, 10, -1).progress()).isCloseTo(0.75, within(0.001));
+    }
+
+    @Test
+    void agreesWithABruteForceScan() {
+        SplittableRandom random = new SplittableRandom(7);
+        double[] walk = new double[2 * 3000];
+        walk[0] = -43.3;
+        walk[1] = -22.9;
+        for (int i = 2; i < walk.length; i += 2) {
+            walk[i] = walk[i - 2] + random.nextDouble(-0.002, 0.002);
+            walk[i + 1] = walk[i - 1] + random.nextDouble(-0.002, 0.002);
+        }
+        RouteIndex index = RouteIndex.build(List.of(new Itinerary("100", 0, null, null, List.of(walk))));
+        assertThat(index.segmentCount()).isEqualTo(2999);
+
+        for (int query = 0; query < 200; query++) {
+            double latitude = -22.9 + random.nextDouble(-0.05, 0.05);
+            double longitude = -43.3 + random.nextDouble(-0.05, 0.05);
+
+            assertThat(index.nearest(latitude, longitude, 100_000, -1).distanceMeters())
+                    .isCloseTo(bruteForceDistance(walk, latitude, longitude), within(1e-6));
+        }
+    }
+
+    @Test
+    void returnsNullWithoutSegments() {
+        assertThat(RouteIndex.build(List.of())).isNull();
+    }
+
+    // Mesma projeção do índice: metros locais com origem no primeiro vértice
+    private static double bruteForceDistance(double[] lonLat, double latitude, double longitude) {
+        double scale = Math.cos(Math.toRadians(lonLat[1])) * 111_320.0;
+        double px = (longitude - lonLat[0]) * scale;
+        double py = (latitude - lonLat[1]) * 111_320.0;
+        double best = Double.MAX_VALUE;
+        for (int p = 0; p + 3 < lonLat.length; p += 2) {
+            double ax = (lonLat[p] - lonLat[0]) * scale, ay = (lonLat[p + 1] - lonLat[1]) * 111_320.0;
+            double bx = (lonLat[p + 2] - lonLat[0]) * scale, by = (lonLat[p + 3] - lonLat[1]) * 111_320.0;
+            double dx = bx - ax, dy = by - ay;
+            double t = Math.clamp(((px - ax) * dx + (py - ay) * dy) / (dx * dx + dy * dy), 0, 1);
+            best = Math.min(best, Math.hypot(ax + t * dx - px, ay + t * dy - py));
+        }
+        return best;
+    }
+}
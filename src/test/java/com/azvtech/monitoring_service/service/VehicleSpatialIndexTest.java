@@ -0,0 +1,107 @@
+package com.azvtech.monitoring_service.service;
+
+import com.azvtech.monitoring_service.dto.BoundingBox;
+import com.azvtech.monitoring_service.dto.FleetDelta;
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.dto.NearbyVehicleDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VehicleSpatialIndexTest {
+
+    private final VehicleSpatialIndex index = new VehicleSpatialIndex(0.01, new SimpleMeterRegistry());
+    private final List<GpsDataDTO> fleet = new ArrayList<>();
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 2000; i++) {
+            fleet.add(gps("V" + i, random.nextDouble(-23.0, -22.8), random.nextDouble(-43.6, -43.2)));
+        }
+        index.onFleetUpdate(new FleetDelta(fleet, List.of()));
+    }
+
+    @Test
+    void radiusQueryMatchesLinearScan() {
+        for (int i = 0; i < 50; i++) {
+            double lat = random.nextDouble(-23.0, -22.8);
+            double lon = random.nextDouble(-43.6, -43.2);
+
+            List<String> expected = fleet.stream()
+                    .filter(data -> distance(lat, lon, data) <= 800)
+                    .sorted(Comparator.comparingDouble(data -> distance(lat, lon, data)))
+                    .map(GpsDataDTO::getOrdem)
+                    .toList();
+
+            assertThat(index.findWithinRadius(lat, lon, 800))
+                    .extracting(nearby -> nearby.vehicle().getOrdem())
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void nearestQueryMatchesLinearScan() {
+        for (int i = 0; i < 50; i++) {
+            double lat = random.nextDouble(-23.2, -22.6);
+            double lon = random.nextDouble(-43.8, -43.0);
+
+            List<String> expected = fleet.stream()
+                    .sorted(Comparator.comparingDouble(data -> distance(lat, lon, data)))
+                    .limit(7)
+                    .map(GpsDataDTO::getOrdem)
+                    .toList();
+
+            assertThat(index.findNearest(lat, lon, 7))
+                    .extracting(nearby -> nearby.vehicle().getOrdem())
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void movedAndRemovedVehiclesAreReindexed() {
+        GpsDataDTO moved = gps("V0", -22.5, -43.0);
+        index.onFleetUpdate(new FleetDelta(List.of(moved), List.of("V1")));
+
+        List<NearbyVehicleDTO> nearest = index.findNearest(-22.5, -43.0, 1);
+        assertThat(nearest).extracting(nearby -> nearby.vehicle().getOrdem()).containsExactly("V0");
+        assertThat(index.findInBoundingBox(new BoundingBox(-23.0, -43.6, -22.8, -43.2)))
+                .extracting(GpsDataDTO::getOrdem)
+                .doesNotContain("V0", "V1")
+                .hasSize(fleet.size() - 2);
+    }
+
+    @Test
+    @Timeout(5)
+    void radiusQueryAtThePoleTerminates() {
+        index.update(gps("P1", 89.996, 120.0));
+
+        // No polo o intervalo de colunas do raio cobre todas as longitudes
+        assertThat(index.findWithinRadius(90, 0, 1000))
+                .extracting(nearby -> nearby.vehicle().getOrdem())
+                .containsExactly("P1");
+        assertThat(index.findWithinRadius(-90, 180, 1000)).isEmpty();
+    }
+
+    private static double distance(double lat, double lon, GpsDataDTO data) {
+        return VehicleSpatialIndex.distanceMeters(lat, lon, data.getLatitude(), data.getLongitude());
+    }
+
+    private static GpsDataDTO gps(String ordem, double latitude, double longitude) {
+        GpsDataDTO data = new GpsDataDTO();
+        data.setOrdem(ordem);
+        data.setLinha("100");
+        data.setLatitude(String.valueOf(latitude));
+        data.setLongitude(String.valueOf(longitude));
+        data.setDatahoraservidor(System.currentTimeMillis());
+        return data;
+    }
+}
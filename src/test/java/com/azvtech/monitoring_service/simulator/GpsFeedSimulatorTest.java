@@ -0,0 +1,140 @@
+package com.azvtech.monitoring_service.simulator;
+
+import com.azvtech.monitoring_service.dto.GpsDataDTO;
+import com.azvtech.monitoring_service.service.FeedParseResult;
+import com.azvtech.monitoring_service.service.GpsFeedParser;
+import com.azvtech.monitoring_service.utils.DateUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GpsFeedSimulatorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private GpsFeedSimulator simulator;
+
+    @AfterEach
+    void tearDown() {
+        if (simulator != null) {
+            simulator.stop();
+        }
+    }
+
+    @Test
+    void servesSyntheticFleetInTheUpstreamFormat() throws Exception {
+        simulator = start(0.0);
+        LocalDateTime now = LocalDateTime.now();
+
+        HttpResponse<byte[]> response = fetch(now.minusSeconds(90), now);
+        FeedParseResult result = new GpsFeedParser().parseLatestUpdates(new ByteArrayInputStream(response.body()));
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(result.latestUpdates()).hasSize(200);
+        // Com transmissões a cada 20 s, cada veículo aparece 4 ou 5 vezes em 90 s
+        assertThat(result.totalRecords()).isBetween(800, 1000);
+        long newest = System.currentTimeMillis();
+        for (GpsDataDTO data : result.latestUpdates().values()) {
+            assertThat(data.getDatahoraservidorMillis()).isLessThanOrEqualTo(newest);
+            assertThat(data.getLatitude()).isBetween(-23.08, -22.75);
+            assertThat(data.getLongitude()).isBetween(-43.79, -43.10);
+        }
+    }
+
+    @Test
+    void servesTheSyntheticRoutesAsItineraries() throws Exception {
+        simulator = start(0.0);
+        URI uri = URI.create("http://127.0.0.1:" + simulator.boundPort() + "/itineraries");
+        JsonNode features;
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            features = new ObjectMapper().readTree(response.body()).path("features");
+        }
+
+        // Ida e volta para cada uma das 20 linhas, a volta no sentido inverso
+        assertThat(features).hasSize(40);
+        JsonNode outbound = features.get(0);
+        JsonNode inbound = features.get(1);
+        assertThat(outbound.at("/properties/servico").asText()).isEqualTo("100");
+        assertThat(inbound.at("/properties/direcao").asInt()).isEqualTo(1);
+        JsonNode coordinates = outbound.at("/geometry/coordinates");
+        assertThat(coordinates).hasSize(40);
+        assertThat(inbound.at("/geometry/coordinates/0")).isEqualTo(coordinates.get(39));
+    }
+
+    @Test
+    void injectsErrors() throws Exception {
+        simulator = start(1.0);
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThat(fetch(now.minusSeconds(90), now).statusCode()).isEqualTo(503);
+        assertThat(registry.counter("gps.simulator.requests", "outcome", "injected_error").count()).isEqualTo(1);
+    }
+
+    @Test
+    void formatsCoordinatesWithDecimalComma() {
+        GpsFeedSimulator formatter = new GpsFeedSimulator(registry);
+        ReflectionTestUtils.setField(formatter, "decimalComma", true);
+
+        assertThat(formatter.formatCoordinate(-22.9012345)).isEqualTo("-22,90123");
+        assertThat(formatter.formatCoordinate(-43.1)).isEqualTo("-43,10000");
+        assertThat(formatter.formatCoordinate(-0.000001)).isEqualTo("0,00000");
+    }
+
+    @Test
+    void replaysRecordingShiftedToTheCurrentTime() throws IOException {
+        String recording = """
+                [{"ordem":"A1","latitude":"-22,9","longitude":"-43,2","velocidade":"10","linha":"100",
+                  "datahora":"1000","datahoraenvio":"1500","datahoraservidor":"2000"},
+                 {"ordem":"A2","latitude":"-22,8","longitude":"-43,1","velocidade":"0","linha":"200",
+                  "datahora":"9000","datahoraenvio":"9500","datahoraservidor":"10000"}]
+                """;
+        RecordedFeed feed = new RecordedFeed(new ByteArrayInputStream(recording.getBytes(StandardCharsets.UTF_8)),
+                100_000);
+        List<Long> serverTimes = new ArrayList<>();
+
+        // O mais novo cai em 100000 e o mais antigo em 92000; a gravação se repete a cada 9 s
+        feed.forEach(91_500, 109_500, (ordem, linha, latitude, longitude, velocidade, datahora, envio, servidor) ->
+                serverTimes.add(servidor));
+
+        assertThat(feed.vehicleCount()).isEqualTo(2);
+        assertThat(serverTimes).containsExactly(92_000L, 100_000L, 101_000L, 109_000L);
+    }
+
+    private GpsFeedSimulator start(double errorRate) throws IOException {
+        GpsFeedSimulator simulator = new GpsFeedSimulator(registry);
+        ReflectionTestUtils.setField(simulator, "port", 0);
+        ReflectionTestUtils.setField(simulator, "vehicles", 200);
+        ReflectionTestUtils.setField(simulator, "lines", 20);
+        ReflectionTestUtils.setField(simulator, "reportIntervalSeconds", 20L);
+        ReflectionTestUtils.setField(simulator, "errorRate", errorRate);
+        ReflectionTestUtils.setField(simulator, "decimalComma", true);
+        ReflectionTestUtils.setField(simulator, "replayFile", "");
+        simulator.start();
+        return simulator;
+    }
+
+    private HttpResponse<byte[]> fetch(LocalDateTime from, LocalDateTime to) throws Exception {
+        URI uri = URI.create("http://127.0.0.1:" + simulator.boundPort() + "/gps?dataInicial="
+                + DateUtils.format(from).replace("+", "%2B") + "&dataFinal=" + DateUtils.format(to).replace("+", "%2B"));
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            return client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofByteArray());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.azvtech.monitoring_service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DateUtilsTest {
+
+    private static final DateTimeFormatter DTO_PATTERN = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    @Test
+    void formatsLikeTheDtoPatternAcrossZonesAndTransitions() {
+        long[] samples = {
+                0L, -1L, 951_782_400_000L, 1_705_000_000_999L, 1_709_164_800_000L,
+                // Transições de horário de verão de São Paulo (2018) e Nova York (2024)
+                1_541_300_399_000L, 1_541_300_400_000L, 1_550_372_399_000L, 1_550_372_400_000L,
+                1_710_054_000_000L, 1_730_613_600_000L, 4_102_444_799_000L
+        };
+        char[] buffer = new char[DateUtils.LOCAL_DATE_TIME_LENGTH];
+        for (String zone : new String[]{"UTC", "America/Sao_Paulo", "America/New_York", "Asia/Kolkata"}) {
+            ZoneId zoneId = ZoneId.of(zone);
+            for (long millis : samples) {
+                DateUtils.formatLocal(millis, zoneId.getRules(), buffer);
+                String expected = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zoneId).format(DTO_PATTERN);
+                assertThat(new String(buffer)).as(zone + " " + millis).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void usesTheSharedZone() {
+        char[] buffer = new char[DateUtils.LOCAL_DATE_TIME_LENGTH];
+        DateUtils.formatLocal(1_705_000_000_000L, buffer);
+
+        assertThat(new String(buffer)).isEqualTo(DateUtils.toLocalDateTime(1_705_000_000_000L).format(DTO_PATTERN));
+        assertThat(DateUtils.offsetSeconds(1_705_000_000L))
+                .isEqualTo(DateUtils.ZONE.getRules().getOffset(Instant.ofEpochSecond(1_705_000_000L)).getTotalSeconds());
+    }
+}
@@ -0,0 +1,39 @@
+package com.azvtech.monitoring_service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeometryUtilsTest {
+
+    @Test
+    void dropsPointsWithinTheTolerance() {
+        // Quase reta com um desvio de 0,00001 grau no meio
+        double[] line = {-43.20, -22.90, -43.19, -22.90001, -43.18, -22.90};
+
+        assertThat(GeometryUtils.simplify(line, 0.0001)).containsExactly(-43.20, -22.90, -43.18, -22.90);
+        assertThat(GeometryUtils.simplify(line, 0.000001)).containsExactly(line);
+    }
+
+    @Test
+    void keepsCornersOfAnLShapedRoute() {
+        double[] line = {-43.20, -22.90, -43.195, -22.90, -43.19, -22.90, -43.19, -22.895, -43.19, -22.89};
+
+        assertThat(GeometryUtils.simplify(line, 0.001)).containsExactly(-43.20, -22.90, -43.19, -22.90, -43.19, -22.89);
+    }
+
+    @Test
+    void leavesShortLinesAlone() {
+        double[] line = {-43.20, -22.90, -43.19, -22.89};
+
+        assertThat(GeometryUtils.simplify(line, 1)).containsExactly(line);
+    }
+
+    @Test
+    void measuresDistanceToTheSegmentNotTheLine() {
+        double[] points = {0, 0, 1, 0, 2, 1};
+
+        // O ponto (2, 1) fica além da ponta (1, 0): a distância é até a ponta
+        assertThat(GeometryUtils.segmentDistanceSquared(points, 2, 0, 1, 1)).isEqualTo(2.0);
+    }
+}
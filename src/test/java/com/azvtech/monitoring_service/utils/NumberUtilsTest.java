@@ -0,0 +1,43 @@
+package com.azvtech.monitoring_service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NumberUtilsTest {
+
+    @Test
+    void parsesDecimalsWithCommaOrDotLikeTheJdk() {
+        for (String value : new String[]{"-22,86115", "-43.25614", "0", "12", "+3,5", "-0,000001", "123456789,123456"}) {
+            assertThat(parseDecimal(value)).as(value).isEqualTo(Double.parseDouble(value.replace(',', '.')));
+        }
+    }
+
+    @Test
+    void fallsBackForExponentsAndLongMantissas() {
+        assertThat(parseDecimal("1,5e3")).isEqualTo(1500.0);
+        assertThat(parseDecimal("-22,8611512345678901234")).isEqualTo(-22.8611512345678901234);
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        assertThatThrownBy(() -> parseDecimal("-")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> parseLong("17a")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void parsesLongs() {
+        assertThat(parseLong("1705000002000")).isEqualTo(1705000002000L);
+        assertThat(parseLong("-42")).isEqualTo(-42L);
+        assertThat(parseLong("9223372036854775807")).isEqualTo(Long.MAX_VALUE);
+    }
+
+    private static double parseDecimal(String value) {
+        return NumberUtils.parseDecimal(value.toCharArray(), 0, value.length());
+    }
+
+    private static long parseLong(String value) {
+        return NumberUtils.parseLong(value.toCharArray(), 0, value.length());
+    }
+}